@@ -1,6 +1,9 @@
 package cn.xiaolin.avalon.config;
 
+import cn.xiaolin.avalon.service.TokenRevocationService;
 import cn.xiaolin.avalon.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,19 +13,39 @@ import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    /**
+     * 认证通过后写入的请求属性，值为JWT中的用户ID，供限流等后续过滤器使用
+     */
+    public static final String USER_ID_ATTRIBUTE = "avalon.userId";
+
+    /**
+     * 认证通过后写入的请求属性，值为JWT中的用户名，供控制器广播事件使用
+     */
+    public static final String USERNAME_ATTRIBUTE = "avalon.username";
+
+    /**
+     * 事件流令牌的查询参数，只在游戏事件流（SSE）接口上接受
+     */
+    public static final String STREAM_TOKEN_PARAMETER = "token";
+
+    private static final Pattern EVENT_STREAM_PATH = Pattern.compile("^/api/games/([0-9a-fA-F-]{36})/events$");
+
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -34,23 +57,57 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String token = authorizationHeader.substring(7);
             
             try {
-                if (jwtUtil.validateToken(token) && !jwtUtil.isTokenExpired(token)) {
-                    String username = jwtUtil.getUsernameFromToken(token);
-
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                    
-                    UsernamePasswordAuthenticationToken authentication = 
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    
-                    SecurityContextHolder.getContext()
-                            .setAuthentication(authentication);
+                // 只解析一次令牌；身份直接取自令牌声明，吊销检查在本机内存完成，不查数据库
+                Claims claims = jwtUtil.parseClaims(token);
+                if (jwtUtil.isAccessToken(claims) && !tokenRevocationService.isRevoked(claims.getId())) {
+                    authenticate(request, claims);
                 }
+            } catch (JwtException e) {
+                logger.debug("JWT token rejected: " + e.getMessage());
             } catch (Exception e) {
                 logger.error("JWT token validation failed", e);
             }
+        } else if (request.getParameter(STREAM_TOKEN_PARAMETER) != null) {
+            authenticateStreamToken(request, request.getParameter(STREAM_TOKEN_PARAMETER));
         }
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * 浏览器 EventSource 不能携带请求头，事件流接口改从查询参数读取令牌；
+     * 只接受限定为路径中这局游戏的事件流令牌，访问令牌不能出现在URL中
+     */
+    private void authenticateStreamToken(HttpServletRequest request, String token) {
+        Matcher matcher = EVENT_STREAM_PATH.matcher(request.getRequestURI().substring(request.getContextPath().length()));
+        if (!matcher.matches()) {
+            return;
+        }
+        try {
+            Claims claims = jwtUtil.parseClaims(token);
+            if (jwtUtil.isStreamTokenFor(claims, UUID.fromString(matcher.group(1)))
+                    && !tokenRevocationService.isRevoked(claims.getId())) {
+                authenticate(request, claims);
+            }
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.debug("Stream token rejected: " + e.getMessage());
+        }
+    }
+
+    private void authenticate(HttpServletRequest request, Claims claims) {
+        String username = claims.get("username", String.class);
+        UserDetails userDetails = User.withUsername(username)
+            .password("")
+            .authorities("ROLE_USER")
+            .build();
+
+        UsernamePasswordAuthenticationToken authentication =
+            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+        SecurityContextHolder.getContext()
+                .setAuthentication(authentication);
+        request.setAttribute(USER_ID_ATTRIBUTE, UUID.fromString(claims.getSubject()));
+        request.setAttribute(USERNAME_ATTRIBUTE, username);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package cn.xiaolin.avalon.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Arrays;
+
+/**
+ * 密码哈希配置
+ * BCrypt 代价因子默认在启动时按目标耗时自动校准：代价每加一，耗时翻倍，
+ * 因此只测量最低代价的耗时即可推算。已有哈希自带代价因子，调整后仍可正常校验
+ */
+@Configuration
+@Slf4j
+public class PasswordHashingConfig {
+    private static final int SAMPLES = 3;
+
+    @Value("${auth.bcrypt.strength:0}") // 0 表示自动校准
+    private Integer strength;
+
+    @Value("${auth.bcrypt.target-millis:250}")
+    private Long targetMillis;
+
+    @Value("${auth.bcrypt.min-strength:10}")
+    private Integer minStrength;
+
+    @Value("${auth.bcrypt.max-strength:14}")
+    private Integer maxStrength;
+
+    @Bean
+    public BCryptPasswordEncoder passwordEncoder() {
+        int cost = strength > 0 ? strength : calibrate();
+        return new BCryptPasswordEncoder(cost);
+    }
+
+    private int calibrate() {
+        String salt = BCrypt.gensalt(minStrength);
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("avalon-calibration", salt);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        double baseMillis = samples[SAMPLES / 2] / 1_000_000.0;
+
+        int cost = minStrength;
+        while (cost < maxStrength && baseMillis * (1L << (cost + 1 - minStrength)) <= targetMillis) {
+            cost++;
+        }
+        log.info("BCrypt代价因子校准完成: strength={}, 代价{}耗时{}ms, 目标{}ms",
+            cost, minStrength, String.format("%.1f", baseMillis), targetMillis);
+        return cost;
+    }
+}
@@ -0,0 +1,114 @@
+package cn.xiaolin.avalon.config;
+
+import cn.xiaolin.avalon.dto.Result;
+import cn.xiaolin.avalon.service.RateLimitService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 接口限流过滤器
+ * 按路由分配令牌桶预算，登录注册按客户端IP限流，其余接口已认证时按JWT中的用户ID、匿名时按IP限流。
+ * 超出预算直接返回429，不占用业务线程；每个请求只在本机内存中做一次O(1)的令牌扣减
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final RateLimitService rateLimitService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final List<RouteBudget> routes;
+
+    @Value("${rate-limit.enabled:true}")
+    private Boolean enabled;
+
+    public RateLimitFilter(RateLimitService rateLimitService,
+                           ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${rate-limit.routes.auth.capacity:10}") Integer authCapacity,
+                           @Value("${rate-limit.routes.auth.refill-per-second:0.2}") Double authRefill,
+                           @Value("${rate-limit.routes.game-read.capacity:20}") Integer gameReadCapacity,
+                           @Value("${rate-limit.routes.game-read.refill-per-second:5}") Double gameReadRefill,
+                           @Value("${rate-limit.routes.room-read.capacity:30}") Integer roomReadCapacity,
+                           @Value("${rate-limit.routes.room-read.refill-per-second:10}") Double roomReadRefill,
+                           @Value("${rate-limit.routes.default.capacity:60}") Integer defaultCapacity,
+                           @Value("${rate-limit.routes.default.refill-per-second:20}") Double defaultRefill) {
+        this.rateLimitService = rateLimitService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        // 按顺序匹配，第一个命中的路由生效
+        this.routes = List.of(
+            new RouteBudget("auth", "POST", "/api/auth/**", true, authCapacity, authRefill),
+            new RouteBudget("game-read", "GET", "/api/games/**", false, gameReadCapacity, gameReadRefill),
+            new RouteBudget("room-read", "GET", "/api/rooms/**", false, roomReadCapacity, roomReadRefill),
+            new RouteBudget("default", null, "/api/**", false, defaultCapacity, defaultRefill)
+        );
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        RouteBudget route = match(request);
+        if (route == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Object userId = request.getAttribute(JwtAuthenticationFilter.USER_ID_ATTRIBUTE);
+        String client = route.byIp() || userId == null ? "ip:" + request.getRemoteAddr() : "user:" + userId;
+        long retryAfterMillis = rateLimitService.tryAcquire(route.name() + ":" + client, route.capacity(), route.refillPerSecond());
+        if (retryAfterMillis == 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        meterRegistry.counter("avalon.ratelimit.rejected", "route", route.name()).increment();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterMillis + 999) / 1000));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), Result.error("请求过于频繁，请稍后再试"));
+    }
+
+    private RouteBudget match(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (RouteBudget route : routes) {
+            if ((route.method() == null || route.method().equals(request.getMethod()))
+                && PATH_MATCHER.match(route.pattern(), path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 路由预算
+     * @param byIp 是否总是按IP限流（登录注册等匿名接口）
+     */
+    private record RouteBudget(String name, String method, String pattern, boolean byIp,
+                               int capacity, double refillPerSecond) {
+    }
+}
@@ -0,0 +1,13 @@
+package cn.xiaolin.avalon.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置类
+ * 启用Spring定时任务，用于空闲房间和对局的后台回收
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
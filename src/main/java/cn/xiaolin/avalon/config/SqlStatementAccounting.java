@@ -0,0 +1,106 @@
+package cn.xiaolin.avalon.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * SQL语句统计
+ * 向 Hibernate 注册 {@link SqlStatementStats} 的语句检查器和计时监听器，并作为 clientInboundChannel 的拦截器
+ * 统计每条STOMP消息；HTTP请求由 {@link SqlStatementFilter} 统计。每次请求结束后按来源和路由记录语句数和耗时，
+ * 同一语句在一次请求内的执行次数达到阈值时记为疑似N+1查询并打印告警
+ */
+@Component
+@Slf4j
+public class SqlStatementAccounting implements HibernatePropertiesCustomizer, ExecutorChannelInterceptor {
+
+    private static final Pattern UUID_SEGMENT = Pattern.compile(
+        "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${sql-stats.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${sql-stats.repeat-threshold:10}")
+    private Integer repeatThreshold;
+
+    public SqlStatementAccounting(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        if (enabled) {
+            hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementStats.Inspector());
+            hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER,
+                SqlStatementStats.TimingListener.class.getName());
+        }
+    }
+
+    @Override
+    public Message<?> beforeHandle(@NonNull Message<?> message, @NonNull MessageChannel channel,
+                                   @NonNull MessageHandler handler) {
+        if (enabled && SimpMessageHeaderAccessor.getDestination(message.getHeaders()) != null) {
+            SqlStatementStats.begin();
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(@NonNull Message<?> message, @NonNull MessageChannel channel,
+                                    @NonNull MessageHandler handler, Exception ex) {
+        SqlStatementStats stats = SqlStatementStats.current();
+        if (stats == null) {
+            return;
+        }
+        SqlStatementStats.end();
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        // 订阅地址中的游戏ID替换为占位符，避免路由标签无限增长
+        record("stomp", UUID_SEGMENT.matcher(destination).replaceAll("{id}"), stats);
+    }
+
+    /**
+     * 记录一次请求的语句数和耗时
+     * @param source http 或 stomp
+     * @param route 请求路由（HTTP为匹配的路径模板，STOMP为目的地）
+     */
+    public void record(String source, String route, SqlStatementStats stats) {
+        DistributionSummary.builder("avalon.sql.statements")
+            .description("单次请求执行的SQL语句数")
+            .tags("source", source, "route", route)
+            .register(meterRegistry)
+            .record(stats.getStatements());
+        Timer.builder("avalon.sql.time")
+            .description("单次请求执行SQL语句的耗时")
+            .tags("source", source, "route", route)
+            .register(meterRegistry)
+            .record(stats.getNanos(), TimeUnit.NANOSECONDS);
+
+        Map.Entry<String, Integer> repeated = stats.mostRepeated();
+        if (repeated != null && repeated.getValue() >= repeatThreshold) {
+            meterRegistry.counter("avalon.sql.repeated", "source", source, "route", route).increment();
+            log.warn("疑似N+1查询: {} {} 共执行{}条语句，其中以下语句执行了{}次: {}",
+                source, route, stats.getStatements(), repeated.getValue(), repeated.getKey());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package cn.xiaolin.avalon.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.lang.NonNull;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * HTTP请求的SQL语句统计
+ * 排在所有过滤器之前，认证、限流和业务处理中执行的语句都计入本次请求。
+ * 开启 sql-stats.header 时在响应头中返回语句数和耗时，供调试和控制器测试断言查询预算；
+ * 响应头在响应提交前写入，响应体较大提前提交时也不会丢失
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlStatementFilter extends OncePerRequestFilter {
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String TIME_HEADER = "X-Sql-Time-Ms";
+
+    private final SqlStatementAccounting sqlStatementAccounting;
+
+    @Value("${sql-stats.header:false}")
+    private Boolean header;
+
+    public SqlStatementFilter(SqlStatementAccounting sqlStatementAccounting) {
+        this.sqlStatementAccounting = sqlStatementAccounting;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !sqlStatementAccounting.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        SqlStatementStats stats = SqlStatementStats.begin();
+        HttpServletResponse target = response;
+        if (header) {
+            target = new OnCommittedResponseWrapper(response) {
+                @Override
+                protected void onResponseCommitted() {
+                    writeHeaders(response, stats);
+                }
+            };
+        }
+        try {
+            filterChain.doFilter(request, target);
+        } finally {
+            SqlStatementStats.end();
+            if (header && !response.isCommitted()) {
+                writeHeaders(response, stats);
+            }
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            sqlStatementAccounting.record("http",
+                request.getMethod() + " " + (pattern != null ? pattern : "unmatched"), stats);
+        }
+    }
+
+    private static void writeHeaders(HttpServletResponse response, SqlStatementStats stats) {
+        response.setHeader(STATEMENTS_HEADER, String.valueOf(stats.getStatements()));
+        response.setHeader(TIME_HEADER, String.valueOf(stats.getNanos() / 1_000_000));
+    }
+}
@@ -0,0 +1,131 @@
+package cn.xiaolin.avalon.config;
+
+import org.hibernate.SessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单次请求（HTTP请求或STOMP消息）内执行的SQL语句统计
+ * 统计绑定在处理请求的线程上：Hibernate 准备每条语句时经 {@link Inspector} 计数并按SQL文本分组，
+ * 执行语句和批处理的耗时经 {@link TimingListener} 累加。线程上没有开始统计时两者直接返回，
+ * 定时任务等后台线程不受影响。只统计经过 Hibernate 的语句（包括原生查询），不包括 JdbcTemplate
+ */
+public final class SqlStatementStats {
+
+    private static final ThreadLocal<SqlStatementStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long nanos;
+
+    /**
+     * SQL文本 -> 本次请求中的执行次数，同一语句反复执行通常是N+1查询
+     */
+    private final Map<String, Integer> countsBySql = new HashMap<>();
+
+    private SqlStatementStats() {
+    }
+
+    /**
+     * 在当前线程上开始统计
+     */
+    public static SqlStatementStats begin() {
+        SqlStatementStats stats = new SqlStatementStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * 当前线程上的统计，没有开始统计时为null
+     */
+    public static SqlStatementStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 结束当前线程上的统计
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * 执行次数最多的语句及其次数，没有执行任何语句时为null
+     */
+    public Map.Entry<String, Integer> mostRepeated() {
+        Map.Entry<String, Integer> most = null;
+        for (Map.Entry<String, Integer> entry : countsBySql.entrySet()) {
+            if (most == null || entry.getValue() > most.getValue()) {
+                most = entry;
+            }
+        }
+        return most;
+    }
+
+    private void record(String sql) {
+        statements++;
+        countsBySql.merge(sql, 1, Integer::sum);
+    }
+
+    /**
+     * 通过 hibernate.session_factory.statement_inspector 注册，语句原样返回
+     */
+    public static final class Inspector implements StatementInspector {
+        @Override
+        public String inspect(String sql) {
+            SqlStatementStats stats = CURRENT.get();
+            if (stats != null) {
+                stats.record(sql);
+            }
+            return sql;
+        }
+    }
+
+    /**
+     * 通过 hibernate.session.events.auto 注册，Hibernate 为每个会话创建一个实例，会话只在一个线程上使用
+     */
+    public static final class TimingListener implements SessionEventListener {
+        private long startedAt;
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            start();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            stop();
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            start();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            stop();
+        }
+
+        private void start() {
+            startedAt = CURRENT.get() != null ? System.nanoTime() : 0;
+        }
+
+        private void stop() {
+            SqlStatementStats stats = CURRENT.get();
+            if (stats != null && startedAt != 0) {
+                stats.nanos += System.nanoTime() - startedAt;
+            }
+            startedAt = 0;
+        }
+    }
+}
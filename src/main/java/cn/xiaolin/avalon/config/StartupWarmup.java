@@ -0,0 +1,125 @@
+package cn.xiaolin.avalon.config;
+
+import cn.xiaolin.avalon.repository.GamePlayerRepository;
+import cn.xiaolin.avalon.repository.GameRepository;
+import cn.xiaolin.avalon.repository.ProposalRepository;
+import cn.xiaolin.avalon.repository.QuestRepository;
+import cn.xiaolin.avalon.repository.RoomPlayerRepository;
+import cn.xiaolin.avalon.repository.RoomRepository;
+import cn.xiaolin.avalon.websocket.GameMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * 启动预热
+ * startup 配置开启全局懒加载，接口文档等第三方的非关键bean延迟到首次使用时创建。预热在 ApplicationRunner 阶段执行，
+ * 早于就绪状态切换为 ACCEPTING_TRAFFIC，就绪探针通过前完成：
+ * 1. 创建应用自身的全部单例bean，同时完成 Flyway 迁移和 Hibernate 元模型校验，后台线程随之启动
+ * 2. 执行热点查询，建立连接池连接并预热JDBC驱动和查询计划缓存
+ * 3. 为接口和WebSocket消息的DTO、实体构建并缓存Jackson序列化器和反序列化器
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "startup.warmup.enabled", havingValue = "true")
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final String BASE_PACKAGE = "cn.xiaolin.avalon";
+    private static final String[] SERIALIZED_PACKAGES = {BASE_PACKAGE + ".dto", BASE_PACKAGE + ".entity"};
+
+    private final ConfigurableListableBeanFactory beanFactory;
+    private final ObjectMapper objectMapper;
+    private final GameRepository gameRepository;
+    private final GamePlayerRepository gamePlayerRepository;
+    private final QuestRepository questRepository;
+    private final ProposalRepository proposalRepository;
+    private final RoomRepository roomRepository;
+    private final RoomPlayerRepository roomPlayerRepository;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        int beans = initializeApplicationBeans();
+        int queries = runHotQueries();
+        int types = prefetchJacksonHandlers();
+        log.info("启动预热完成: 创建{}个应用bean，执行{}条热点查询，预热{}个类型的JSON序列化，耗时{}ms",
+            beans, queries, types, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private int initializeApplicationBeans() {
+        int count = 0;
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (!definition.isSingleton() || definition.isAbstract()) {
+                continue;
+            }
+            // 不为判断类型而初始化 FactoryBean，仓库的接口类型由 Spring Data 写在定义中
+            Class<?> type = beanFactory.getType(name, false);
+            if (type != null && type.getName().startsWith(BASE_PACKAGE)) {
+                beanFactory.getBean(name);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 用不存在的ID执行游戏状态、房间快照和结算路径上的查询，不读写任何数据
+     */
+    private int runHotQueries() {
+        UUID id = UUID.randomUUID();
+        List<Supplier<?>> queries = List.of(
+            () -> gameRepository.findResponseById(id),
+            () -> gamePlayerRepository.findByGameIdWithUserAndGame(id),
+            () -> gamePlayerRepository.findResponsesByGameId(id),
+            () -> gamePlayerRepository.findActivePlayerInfosByGameId(id),
+            () -> questRepository.findCardTally(id),
+            () -> proposalRepository.findRoundById(id),
+            () -> proposalRepository.findRoundsByGameId(id),
+            () -> roomRepository.findSnapshotRowsById(id),
+            () -> roomPlayerRepository.findActivePlayersWithUserByRoomId(id)
+        );
+        int count = 0;
+        for (Supplier<?> query : queries) {
+            try {
+                query.get();
+                count++;
+            } catch (RuntimeException e) {
+                log.warn("启动预热查询失败: {}", e.getMessage());
+            }
+        }
+        return count;
+    }
+
+    private int prefetchJacksonHandlers() {
+        List<Class<?>> types = new ArrayList<>();
+        types.add(GameMessage.class);
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter((metadataReader, metadataReaderFactory) -> true);
+        for (String basePackage : SERIALIZED_PACKAGES) {
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                types.add(ClassUtils.resolveClassName(candidate.getBeanClassName(), ClassUtils.getDefaultClassLoader()));
+            }
+        }
+        // writerFor / readerFor 预先查找根类型的序列化器和反序列化器，结果缓存在共用的 ObjectMapper 中
+        for (Class<?> type : types) {
+            objectMapper.writerFor(type);
+            objectMapper.readerFor(type);
+        }
+        return types.size();
+    }
+}
@@ -1,7 +1,17 @@
 package cn.xiaolin.avalon.config;
 
+import cn.xiaolin.avalon.service.TokenRevocationService;
 import cn.xiaolin.avalon.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import cn.xiaolin.avalon.websocket.GameTopicGuard;
+import cn.xiaolin.avalon.websocket.OutboundBacklogInterceptor;
+import cn.xiaolin.avalon.websocket.StompPrincipal;
+import cn.xiaolin.avalon.websocket.WireProtocolInterceptor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
@@ -14,11 +24,14 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 import java.util.Objects;
+import java.util.UUID;
 
 
 @Configuration
@@ -29,14 +42,98 @@ public class WebSocketAuthConfig implements WebSocketMessageBrokerConfigurer {
 
     private final JwtUtil jwtUtil;
 
+    private final TokenRevocationService tokenRevocationService;
+
+    private final OutboundBacklogInterceptor outboundBacklogInterceptor;
+
+    private final WireProtocolInterceptor wireProtocolInterceptor;
+
+    private final SqlStatementAccounting sqlStatementAccounting;
+
+    private final GameTopicGuard gameTopicGuard;
+
+    @Value("${websocket.inbound.core-pool-size:8}")
+    private Integer inboundCorePoolSize;
+
+    @Value("${websocket.inbound.max-pool-size:32}")
+    private Integer inboundMaxPoolSize;
+
+    @Value("${websocket.inbound.queue-capacity:10000}")
+    private Integer inboundQueueCapacity;
+
+    @Value("${websocket.outbound.core-pool-size:8}")
+    private Integer outboundCorePoolSize;
+
+    @Value("${websocket.outbound.max-pool-size:32}")
+    private Integer outboundMaxPoolSize;
+
+    @Value("${websocket.outbound.queue-capacity:10000}")
+    private Integer outboundQueueCapacity;
+
+    @Value("${websocket.broker.core-pool-size:4}")
+    private Integer brokerCorePoolSize;
+
+    @Value("${websocket.broker.max-pool-size:8}")
+    private Integer brokerMaxPoolSize;
+
+    @Value("${websocket.broker.queue-capacity:10000}")
+    private Integer brokerQueueCapacity;
+
+    @Value("${websocket.send-time-limit:5000}")
+    private Integer sendTimeLimit;
+
+    @Value("${websocket.send-buffer-size-limit:262144}") // 256KB
+    private Integer sendBufferSizeLimit;
+
+    @Value("${websocket.message-size-limit:65536}") // 64KB
+    private Integer messageSizeLimit;
+
+    @Value("${websocket.heartbeat:10000}")
+    private Long heartbeat;
+
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler taskScheduler) {
+        this.messageBrokerTaskScheduler = taskScheduler;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        // 心跳超时的连接由代理关闭并触发断开事件，在线状态据此判断掉线
+        config.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[]{heartbeat, heartbeat})
+                .setTaskScheduler(messageBrokerTaskScheduler);
         config.setApplicationDestinationPrefixes("/app");
+        config.configureBrokerChannel().taskExecutor()
+                .corePoolSize(brokerCorePoolSize)
+                .maxPoolSize(brokerMaxPoolSize)
+                .queueCapacity(brokerQueueCapacity);
+    }
+
+    /**
+     * 单个会话发送超时或缓冲超限时关闭该会话，避免慢速客户端长期占用出站线程
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+        // 协议改写必须在积压统计之前，积压拦截器按消息引用判断快照是否过期
+        registration.interceptors(wireProtocolInterceptor, outboundBacklogInterceptor);
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Tomcat 默认支持 permessage-deflate，客户端在握手时请求即可启用
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*");
                 // 暂时移除SockJS以简化连接
@@ -44,6 +141,10 @@ public class WebSocketAuthConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
         registration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
@@ -56,9 +157,11 @@ public class WebSocketAuthConfig implements WebSocketMessageBrokerConfigurer {
                         String token = authHeader.substring(7);
                         try {
                             // 验证token
-                            if (jwtUtil.validateToken(token)) {
-                                String username = jwtUtil.getUsernameFromToken(token);
-                                accessor.setUser(() -> username);
+                            Claims claims = jwtUtil.parseClaims(token);
+                            if (jwtUtil.isAccessToken(claims) && !tokenRevocationService.isRevoked(claims.getId())) {
+                                String username = claims.get("username", String.class);
+                                // 用户ID随会话保存，游戏指令不必再查询用户
+                                accessor.setUser(new StompPrincipal(username, UUID.fromString(claims.getSubject())));
                                 System.out.println("WebSocket用户认证成功: " + username);
                             } else {
                                 System.err.println("WebSocket token验证失败");
@@ -73,6 +176,6 @@ public class WebSocketAuthConfig implements WebSocketMessageBrokerConfigurer {
                 
                 return message;
             }
-        });
+        }, gameTopicGuard, wireProtocolInterceptor.inbound(), sqlStatementAccounting);
     }
 }
\ No newline at end of file
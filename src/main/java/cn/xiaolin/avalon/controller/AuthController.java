@@ -2,9 +2,11 @@ package cn.xiaolin.avalon.controller;
 
 import cn.xiaolin.avalon.dto.AuthResponse;
 import cn.xiaolin.avalon.dto.LoginRequest;
+import cn.xiaolin.avalon.dto.RefreshTokenRequest;
 import cn.xiaolin.avalon.dto.RegisterRequest;
 import cn.xiaolin.avalon.dto.Result;
 import cn.xiaolin.avalon.service.AuthService;
+import cn.xiaolin.avalon.service.PasswordHashingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -13,6 +15,8 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -34,7 +38,12 @@ public class AuthController {
                             schema = @Schema(implementation = Result.class))})
     })
     public ResponseEntity<Result<AuthResponse>> register(@Valid @RequestBody RegisterRequest request) {
-        AuthResponse response = authService.register(request);
+        AuthResponse response;
+        try {
+            response = authService.register(request);
+        } catch (PasswordHashingService.HashingBusyException e) {
+            return busy(e);
+        }
         if (response.isSuccess()) {
             return ResponseEntity.ok(Result.success("注册成功", response));
         } else {
@@ -53,11 +62,57 @@ public class AuthController {
                             schema = @Schema(implementation = Result.class))})
     })
     public ResponseEntity<Result<AuthResponse>> login(@Valid @RequestBody LoginRequest request) {
-        AuthResponse response = authService.login(request);
+        AuthResponse response;
+        try {
+            response = authService.login(request);
+        } catch (PasswordHashingService.HashingBusyException e) {
+            return busy(e);
+        }
         if (response.isSuccess()) {
             return ResponseEntity.ok(Result.success("登录成功", response));
         } else {
             return ResponseEntity.badRequest().body(Result.error(response.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    @PostMapping("/refresh")
+    @Operation(summary = "刷新令牌", description = "使用刷新令牌换取新的访问令牌和刷新令牌，旧刷新令牌随即失效")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "刷新成功",
+                    content = {@Content(mediaType = "application/json", 
+                            schema = @Schema(implementation = Result.class))}),
+            @ApiResponse(responseCode = "401", description = "刷新令牌无效、已过期或已被使用",
+                    content = {@Content(mediaType = "application/json", 
+                            schema = @Schema(implementation = Result.class))})
+    })
+    public ResponseEntity<Result<AuthResponse>> refresh(@Valid @RequestBody RefreshTokenRequest request) {
+        AuthResponse response = authService.refresh(request.getRefreshToken());
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(Result.success("刷新成功", response));
+        } else {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Result.error(response.getMessage()));
+        }
+    }
+
+    @PostMapping("/logout")
+    @Operation(summary = "退出登录", description = "吊销当前访问令牌，请求体中提供刷新令牌时一并吊销")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "退出登录成功",
+                    content = {@Content(mediaType = "application/json", 
+                            schema = @Schema(implementation = Result.class))})
+    })
+    public ResponseEntity<Result<Void>> logout(
+            @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+            @RequestBody(required = false) RefreshTokenRequest request) {
+        String accessToken = authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                ? authorizationHeader.substring(7) : null;
+        authService.logout(accessToken, request != null ? request.getRefreshToken() : null);
+        return ResponseEntity.ok(Result.success("退出登录成功", null));
+    }
+
+    private ResponseEntity<Result<AuthResponse>> busy(PasswordHashingService.HashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Result.error(e.getMessage()));
+    }
+}
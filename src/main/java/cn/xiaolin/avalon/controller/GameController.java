@@ -2,16 +2,21 @@ package cn.xiaolin.avalon.controller;
 
 import cn.xiaolin.avalon.dto.Result;
 import cn.xiaolin.avalon.dto.AssassinationRequest;
+import cn.xiaolin.avalon.dto.GamePlayerResponse;
+import cn.xiaolin.avalon.dto.GameResponse;
 import cn.xiaolin.avalon.dto.GameStateResponse;
 import cn.xiaolin.avalon.dto.RoleInfoResponse;
 import cn.xiaolin.avalon.dto.GameStatisticsResponse;
-import cn.xiaolin.avalon.entity.Game;
-import cn.xiaolin.avalon.entity.GamePlayer;
+import cn.xiaolin.avalon.dto.StreamTokenResponse;
+import cn.xiaolin.avalon.config.JwtAuthenticationFilter;
 import cn.xiaolin.avalon.service.GameService;
 import cn.xiaolin.avalon.service.GameStateService;
 import cn.xiaolin.avalon.service.AssassinationService;
 import cn.xiaolin.avalon.service.GameStatisticsService;
 import cn.xiaolin.avalon.utils.JwtUtil;
+import cn.xiaolin.avalon.websocket.GameEventBroadcaster;
+import cn.xiaolin.avalon.websocket.GameMessage;
+import cn.xiaolin.avalon.websocket.SpectatorFeed;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -21,8 +26,10 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.UUID;
@@ -37,6 +44,8 @@ public class GameController {
     private final AssassinationService assassinationService;
     private final GameStatisticsService gameStatisticsService;
     private final JwtUtil jwtUtil;
+    private final GameEventBroadcaster gameEventBroadcaster;
+    private final SpectatorFeed spectatorFeed;
 
     @PostMapping("/{roomId}/start")
     @Operation(summary = "开始游戏", description = "在指定房间内开始游戏")
@@ -71,11 +80,11 @@ public class GameController {
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Result.class))})
     })
-    public ResponseEntity<Result<Game>> getGame(
+    public ResponseEntity<Result<GameResponse>> getGame(
             @Parameter(description = "游戏ID", required = true)
             @PathVariable UUID gameId) {
         try {
-            Game game = gameService.getGameById(gameId);
+            GameResponse game = gameService.getGameById(gameId);
             return ResponseEntity.ok(Result.success("获取游戏信息成功", game));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Result.error(e.getMessage()));
@@ -92,11 +101,11 @@ public class GameController {
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Result.class))})
     })
-    public ResponseEntity<Result<List<GamePlayer>>> getGamePlayers(
+    public ResponseEntity<Result<List<GamePlayerResponse>>> getGamePlayers(
             @Parameter(description = "游戏ID", required = true)
             @PathVariable UUID gameId) {
         try {
-            List<GamePlayer> players = gameService.getGamePlayers(gameId);
+            List<GamePlayerResponse> players = gameService.getGamePlayers(gameId);
             return ResponseEntity.ok(Result.success("获取游戏参与者成功", players));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Result.error(e.getMessage()));
@@ -129,6 +138,83 @@ public class GameController {
         }
     }
 
+    @GetMapping("/{gameId}/spectate")
+    @Operation(summary = "获取观战画面", description = "获取指定游戏不含角色信息的公开状态，后续更新请订阅 /topic/game/{gameId}/spectate")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "获取观战画面成功",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Result.class))}),
+            @ApiResponse(responseCode = "400", description = "获取观战画面失败",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Result.class))})
+    })
+    public ResponseEntity<Result<GameMessage>> spectate(
+            @Parameter(description = "游戏ID", required = true)
+            @PathVariable UUID gameId) {
+        try {
+            return ResponseEntity.ok(Result.success("获取观战画面成功", spectatorFeed.snapshot(gameId)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Result.error(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{gameId}/events/token")
+    @Operation(summary = "获取事件流令牌", description = "浏览器 EventSource 不能携带 Authorization 头，先用访问令牌换取只对该局事件流有效的短期令牌，再以 ?token= 打开事件流")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "获取事件流令牌成功",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Result.class))}),
+            @ApiResponse(responseCode = "400", description = "获取事件流令牌失败",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Result.class))})
+    })
+    public ResponseEntity<Result<StreamTokenResponse>> issueStreamToken(
+            @Parameter(description = "游戏ID", required = true)
+            @PathVariable UUID gameId,
+            @Parameter(description = "JWT Token", required = true)
+            @RequestHeader("Authorization") String authorizationHeader) {
+        try {
+            String token = authorizationHeader.substring(7);
+            UUID userId = jwtUtil.getUserIdFromToken(token);
+            String username = jwtUtil.getUsernameFromToken(token);
+
+            String streamToken = jwtUtil.generateStreamToken(userId, username, gameId);
+            return ResponseEntity.ok(Result.success("获取事件流令牌成功",
+                    new StreamTokenResponse(streamToken, jwtUtil.getStreamExpiration())));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Result.error(e.getMessage()));
+        }
+    }
+
+    @GetMapping(value = "/{gameId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "订阅游戏事件流(SSE)", description = "WebSocket不可用时的替代方案，推送与STOMP相同的游戏事件和个性化游戏状态，支持Last-Event-ID断点续传。" +
+            "认证可使用 Authorization 头，或使用 ?token= 携带事件流令牌（浏览器 EventSource）")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "订阅游戏事件流成功",
+                    content = {@Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)}),
+            @ApiResponse(responseCode = "400", description = "订阅游戏事件流失败")
+    })
+    public ResponseEntity<SseEmitter> streamGameEvents(
+            @Parameter(description = "游戏ID", required = true)
+            @PathVariable UUID gameId,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+            @Parameter(description = "最后收到的事件ID")
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @Parameter(description = "最后收到的事件ID，新建 EventSource 时无法携带 Last-Event-ID 头，改用查询参数")
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        try {
+            // 身份由认证过滤器从 Authorization 头或事件流令牌中解析
+            SseEmitter emitter = gameEventBroadcaster.openStream(gameId, userId,
+                    lastEventId != null ? lastEventId : lastEventIdParam);
+            return ResponseEntity.ok()
+                    .header("X-Accel-Buffering", "no") // 禁止Nginx缓冲事件流
+                    .body(emitter);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/{gameId}/role-info")
     @Operation(summary = "获取角色信息", description = "获取当前用户在指定游戏中的角色信息")
     @ApiResponses(value = {
@@ -192,11 +278,11 @@ public class GameController {
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Result.class))})
     })
-    public ResponseEntity<Result<List<GamePlayer>>> getAssassinationCandidates(
+    public ResponseEntity<Result<List<GamePlayerResponse>>> getAssassinationCandidates(
             @Parameter(description = "游戏ID", required = true)
             @PathVariable UUID gameId) {
         try {
-            List<GamePlayer> candidates = assassinationService.getAssassinationCandidates(gameId);
+            List<GamePlayerResponse> candidates = assassinationService.getAssassinationCandidates(gameId);
             return ResponseEntity.ok(Result.success("获取刺杀候选人成功", candidates));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Result.error(e.getMessage()));
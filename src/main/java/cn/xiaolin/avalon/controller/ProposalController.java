@@ -1,5 +1,6 @@
 package cn.xiaolin.avalon.controller;
 
+import cn.xiaolin.avalon.dto.ProposalRound;
 import cn.xiaolin.avalon.dto.Result;
 import cn.xiaolin.avalon.dto.ProposeTeamRequest;
 import cn.xiaolin.avalon.entity.Quest;
@@ -16,6 +17,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -52,4 +54,25 @@ public class ProposalController {
             return ResponseEntity.badRequest().body(Result.error(e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    @GetMapping("/{gameId}/proposals")
+    @Operation(summary = "获取提议历史", description = "按轮次返回每次组队的队长座位、队员和投票位掩码（第n位对应座位号n+1）")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "获取提议历史成功",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Result.class))}),
+            @ApiResponse(responseCode = "400", description = "获取提议历史失败",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Result.class))})
+    })
+    public ResponseEntity<Result<List<ProposalRound>>> getProposalHistory(
+            @Parameter(description = "游戏ID", required = true)
+            @PathVariable UUID gameId) {
+        try {
+            List<ProposalRound> history = proposalService.getProposalHistory(gameId);
+            return ResponseEntity.ok(Result.success("获取提议历史成功", history));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Result.error(e.getMessage()));
+        }
+    }
+}
@@ -1,14 +1,15 @@
 package cn.xiaolin.avalon.controller;
 
+import cn.xiaolin.avalon.config.JwtAuthenticationFilter;
 import cn.xiaolin.avalon.dto.Result;
 import cn.xiaolin.avalon.dto.CreateRoomRequest;
 import cn.xiaolin.avalon.dto.JoinRoomRequest;
 import cn.xiaolin.avalon.dto.RoomResponse;
 import cn.xiaolin.avalon.dto.RoomPlayersResponse;
+import cn.xiaolin.avalon.dto.RoomSnapshotResponse;
 import cn.xiaolin.avalon.dto.PlayerInfoResponse;
 import cn.xiaolin.avalon.service.RoomService;
 import cn.xiaolin.avalon.service.RoomPlayerService;
-import cn.xiaolin.avalon.utils.JwtUtil;
 import cn.xiaolin.avalon.websocket.RoomEventController;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -34,7 +35,6 @@ import java.util.UUID;
 public class RoomController {
     private final RoomService roomService;
     private final RoomPlayerService roomPlayerService;
-    private final JwtUtil jwtUtil;
     private final RoomEventController roomEventController;
 
     @PostMapping
@@ -48,13 +48,10 @@ public class RoomController {
                             schema = @Schema(implementation = Result.class))})
     })
     public ResponseEntity<Result<RoomResponse>> createRoom(
-            @Parameter(description = "JWT Token", required = true)
-            @RequestHeader("Authorization") String authorizationHeader,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
             @Valid @RequestBody CreateRoomRequest request) {
         try {
-            String token = authorizationHeader.substring(7);
-            UUID userId = jwtUtil.getUserIdFromToken(token);
-
             RoomResponse roomResponse = roomService.createRoom(userId, request);
             return ResponseEntity.ok(Result.success("房间创建成功", roomResponse));
         } catch (Exception e) {
@@ -83,6 +80,27 @@ public class RoomController {
         }
     }
     
+    @GetMapping("/{roomId}/snapshot")
+    @Operation(summary = "获取房间快照", description = "一次返回房间信息、活跃玩家、房主、当前游戏ID和版本号")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "获取房间快照成功",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Result.class))}),
+            @ApiResponse(responseCode = "400", description = "获取房间快照失败",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Result.class))})
+    })
+    public ResponseEntity<Result<RoomSnapshotResponse>> getRoomSnapshot(
+            @Parameter(description = "房间ID", required = true)
+            @PathVariable UUID roomId) {
+        try {
+            RoomSnapshotResponse snapshot = roomService.getOpenRoomSnapshot(roomId);
+            return ResponseEntity.ok(Result.success("获取房间快照成功", snapshot));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Result.error(e.getMessage()));
+        }
+    }
+
     @GetMapping
     @Operation(summary = "根据房间代码获取房间信息", description = "根据房间代码获取房间详细信息")
     @ApiResponses(value = {
@@ -140,11 +158,9 @@ public class RoomController {
             @Parameter(description = "房间ID", required = true)
             @PathVariable UUID roomId) {
         try {
-            // 首先通过roomId获取房间，然后获取roomCode
-            RoomResponse room = roomService.getRoomById(roomId);
-            String roomCode = room.getRoomCode();
-            
-            RoomPlayersResponse playersResponse = roomService.getRoomPlayers(roomCode);
+            // 房间快照一次查询即包含房间和活跃玩家
+            RoomSnapshotResponse snapshot = roomService.getOpenRoomSnapshot(roomId);
+            RoomPlayersResponse playersResponse = roomService.getRoomPlayers(snapshot);
             return ResponseEntity.ok(Result.success("获取房间玩家列表成功", playersResponse));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Result.error(e.getMessage()));
@@ -162,28 +178,19 @@ public class RoomController {
                             schema = @Schema(implementation = Result.class))})
     })
     public ResponseEntity<Result<RoomResponse>> joinRoom(
-            @Parameter(description = "JWT Token", required = true)
-            @RequestHeader("Authorization") String authorizationHeader,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USERNAME_ATTRIBUTE) String username,
             @Parameter(description = "房间ID", required = true)
             @PathVariable UUID roomId) {
         try {
-            String token = authorizationHeader.substring(7);
-            UUID userId = jwtUtil.getUserIdFromToken(token);
-
-            // 通过roomId获取房间，然后构造JoinRoomRequest
-            RoomResponse room = roomService.getRoomById(roomId);
-            JoinRoomRequest request = new JoinRoomRequest();
-            request.setRoomCode(room.getRoomCode());
-
-            // 使用RoomPlayerService处理加入房间逻辑
-            cn.xiaolin.avalon.entity.RoomPlayer roomPlayer = roomPlayerService.joinRoom(userId, request);
+            // 使用RoomPlayerService处理加入房间逻辑，直接按roomId加入
+            cn.xiaolin.avalon.entity.RoomPlayer roomPlayer = roomPlayerService.joinRoomById(userId, roomId);
 
             // 获取房间信息用于返回
             RoomResponse roomResponse = roomService.getRoomById(roomId);
 
-            // 获取当前用户的用户名
-            String username = jwtUtil.getUsernameFromToken(token);
-
             // 广播玩家加入房间
             roomEventController.broadcastRoomEvent(
                 roomResponse.getRoomId().toString(),
@@ -209,22 +216,18 @@ public class RoomController {
                             schema = @Schema(implementation = Result.class))})
     })
     public ResponseEntity<Result<RoomResponse>> joinRoomByCode(
-            @Parameter(description = "JWT Token", required = true)
-            @RequestHeader("Authorization") String authorizationHeader,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USERNAME_ATTRIBUTE) String username,
             @Valid @RequestBody JoinRoomRequest request) {
         try {
-            String token = authorizationHeader.substring(7);
-            UUID userId = jwtUtil.getUserIdFromToken(token);
-
             // 使用RoomPlayerService处理加入房间逻辑
             cn.xiaolin.avalon.entity.RoomPlayer roomPlayer = roomPlayerService.joinRoom(userId, request);
 
             // 获取房间信息用于返回
             RoomResponse roomResponse = roomService.getRoomByCode(request.getRoomCode());
 
-            // 获取当前用户的用户名
-            String username = jwtUtil.getUsernameFromToken(token);
-
             // 广播玩家加入房间
             roomEventController.broadcastRoomEvent(
                 roomResponse.getRoomId().toString(),
@@ -252,17 +255,15 @@ public class RoomController {
                             schema = @Schema(implementation = Result.class))})
     })
     public ResponseEntity<Result<Void>> leaveRoom(
-            @Parameter(description = "JWT Token", required = true)
-            @RequestHeader("Authorization") String authorizationHeader,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USERNAME_ATTRIBUTE) String username,
             @Parameter(description = "房间ID", required = true)
             @PathVariable UUID roomId) {
         try {
-            String token = authorizationHeader.substring(7);
-            UUID userId = jwtUtil.getUserIdFromToken(token);
-            String username = jwtUtil.getUsernameFromToken(token);
-
-            // 获取房间信息（用于获取roomCode）
-            RoomResponse room = roomService.getRoomById(roomId);
+            // 获取房间快照（用于获取roomCode）
+            RoomSnapshotResponse room = roomService.getOpenRoomSnapshot(roomId);
             String roomCode = room.getRoomCode();
 
             // 使用RoomPlayerService处理离开房间逻辑，获取更新后的玩家列表
@@ -360,20 +361,18 @@ public class RoomController {
                             schema = @Schema(implementation = Result.class))})
     })
     public ResponseEntity<Result<Void>> leaveRoomByCode(
-            @Parameter(description = "JWT Token", required = true)
-            @RequestHeader("Authorization") String authorizationHeader,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USERNAME_ATTRIBUTE) String username,
             @Parameter(description = "房间代码", required = true)
             @RequestParam String roomCode) {
         try {
-            String token = authorizationHeader.substring(7);
-            UUID userId = jwtUtil.getUserIdFromToken(token);
-            String username = jwtUtil.getUsernameFromToken(token);
-
             // 使用RoomPlayerService处理离开房间逻辑，获取更新后的玩家列表
             RoomPlayersResponse playersResponse = roomPlayerService.leaveRoom(userId, roomCode);
 
-            // 获取房间信息（用于广播）
-            RoomResponse room = roomService.getRoomByCode(roomCode);
+            // 获取房间快照（用于广播），房间可能已因最后一人离开而关闭
+            RoomSnapshotResponse room = roomService.getRoomSnapshotByCode(roomCode);
             UUID roomId = room.getRoomId();
 
             // 解析特殊房间代码以确定是否房间关闭或主机转移
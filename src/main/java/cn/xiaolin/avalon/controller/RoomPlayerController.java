@@ -1,5 +1,6 @@
 package cn.xiaolin.avalon.controller;
 
+import cn.xiaolin.avalon.config.JwtAuthenticationFilter;
 import cn.xiaolin.avalon.dto.Result;
 import cn.xiaolin.avalon.dto.JoinRoomRequest;
 import cn.xiaolin.avalon.dto.RoomResponse;
@@ -7,7 +8,6 @@ import cn.xiaolin.avalon.dto.RoomPlayersResponse;
 import cn.xiaolin.avalon.dto.PlayerInfoResponse;
 import cn.xiaolin.avalon.service.RoomPlayerService;
 import cn.xiaolin.avalon.service.RoomService;
-import cn.xiaolin.avalon.utils.JwtUtil;
 import cn.xiaolin.avalon.websocket.RoomEventController;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -33,7 +33,6 @@ import java.util.UUID;
 public class RoomPlayerController {
     private final RoomPlayerService roomPlayerService;
     private final RoomService roomService;
-    private final JwtUtil jwtUtil;
     private final RoomEventController roomEventController;
 
     @PostMapping
@@ -47,22 +46,18 @@ public class RoomPlayerController {
                             schema = @Schema(implementation = Result.class))})
     })
     public ResponseEntity<Result<RoomResponse>> createRoomPlayer(
-            @Parameter(description = "JWT Token", required = true)
-            @RequestHeader("Authorization") String authorizationHeader,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USERNAME_ATTRIBUTE) String username,
             @Valid @RequestBody JoinRoomRequest request) {
         try {
-            String token = authorizationHeader.substring(7);
-            UUID userId = jwtUtil.getUserIdFromToken(token);
-
             // 使用RoomPlayerService处理加入房间逻辑
             cn.xiaolin.avalon.entity.RoomPlayer roomPlayer = roomPlayerService.joinRoom(userId, request);
 
             // 获取房间信息用于返回
             RoomResponse roomResponse = roomService.getRoomByCode(request.getRoomCode());
 
-            // 获取当前用户的用户名
-            String username = jwtUtil.getUsernameFromToken(token);
-
             // 广播玩家加入房间
             roomEventController.broadcastRoomEvent(
                 roomResponse.getRoomId().toString(),
@@ -88,15 +83,11 @@ public class RoomPlayerController {
                             schema = @Schema(implementation = Result.class))})
     })
     public ResponseEntity<Result<Void>> deleteRoomPlayer(
-            @Parameter(description = "JWT Token", required = true)
-            @RequestHeader("Authorization") String authorizationHeader,
+            @Parameter(hidden = true)
+            @RequestAttribute(JwtAuthenticationFilter.USER_ID_ATTRIBUTE) UUID userId,
             @Parameter(description = "房间玩家ID", required = true)
             @PathVariable UUID roomPlayerId) {
         try {
-            String token = authorizationHeader.substring(7);
-            UUID userId = jwtUtil.getUserIdFromToken(token);
-            String username = jwtUtil.getUsernameFromToken(token);
-
             // 使用RoomPlayerService通过roomPlayerId离开房间
             RoomPlayersResponse playersResponse = roomPlayerService.leaveRoomByRoomPlayerId(userId, roomPlayerId);
 
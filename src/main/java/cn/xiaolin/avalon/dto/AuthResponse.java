@@ -21,5 +21,6 @@ public class AuthResponse {
         private UUID userId;
         private String username;
         private String token;
+        private String refreshToken;
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package cn.xiaolin.avalon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * 游戏参与者信息
+ * 由查询直接构造；user 保持嵌套结构，与原先直接返回 GamePlayer 实体时的字段路径一致，但只包含ID和用户名
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GamePlayerResponse {
+    private UUID id;
+    private UserSummary user;
+    private String role;
+    private String alignment;
+    private Boolean isHost;
+    private Integer seatNumber;
+    private Boolean isActive;
+
+    public GamePlayerResponse(UUID id, UUID userId, String username, String role, String alignment,
+                              Boolean isHost, Integer seatNumber, Boolean isActive) {
+        this(id, new UserSummary(userId, username), role, alignment, isHost, seatNumber, isActive);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class UserSummary {
+        private UUID id;
+        private String username;
+    }
+}
@@ -0,0 +1,27 @@
+package cn.xiaolin.avalon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 游戏基本信息
+ * 由查询直接构造，只读取接口需要的列，不经过托管实体
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GameResponse {
+    private UUID id;
+    private UUID roomId;
+    private String status;
+    private Integer currentRound;
+    private String gameConfig;
+    private String winner;
+    private LocalDateTime startedAt;
+    private LocalDateTime endedAt;
+    private LocalDateTime createdAt;
+}
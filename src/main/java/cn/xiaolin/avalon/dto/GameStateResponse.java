@@ -19,6 +19,10 @@ public class GameStateResponse {
     private List<PlayerInfo> players;
     private List<QuestInfo> quests;
     private GameResult result;
+    /**
+     * 当前阶段的截止时间（毫秒时间戳），没有限时为空
+     */
+    private Long phaseDeadline;
 
     @Data
     @NoArgsConstructor
@@ -44,6 +48,13 @@ public class GameStateResponse {
         private String status;
         private UUID leaderId;
         private List<UUID> proposedMembers;
+        /**
+         * 本轮已提议次数，达到5次且仍被否决时邪恶阵营获胜
+         */
+        private Integer proposalCount;
+        /**
+         * 本轮最近一次提议的赞成、反对票数
+         */
         private Integer approveCount;
         private Integer rejectCount;
         private Boolean questResult;
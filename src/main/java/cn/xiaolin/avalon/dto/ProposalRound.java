@@ -0,0 +1,38 @@
+package cn.xiaolin.avalon.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一次组队提议：所属轮次、第几次提议、队长座位，以及队员、赞成、反对玩家的座位位掩码
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProposalRound {
+    private Integer roundNumber;
+    private Integer attempt;
+    private Integer leaderSeat;
+    private Integer teamMask;
+    private Integer approveMask;
+    private Integer rejectMask;
+    private LocalDateTime createdAt;
+
+    public int getApproveCount() {
+        return Integer.bitCount(approveMask);
+    }
+
+    public int getRejectCount() {
+        return Integer.bitCount(rejectMask);
+    }
+
+    /**
+     * 已投票玩家的座位位掩码
+     */
+    public int votedMask() {
+        return approveMask | rejectMask;
+    }
+}
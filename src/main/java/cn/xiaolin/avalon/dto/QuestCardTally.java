@@ -0,0 +1,25 @@
+package cn.xiaolin.avalon.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 任务牌计数：出征队员和已出牌队员的座位位掩码，以及成功牌、失败牌数量
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuestCardTally {
+    private Integer teamMask;
+    private Integer playedMask;
+    private Integer successCount;
+    private Integer failCount;
+
+    /**
+     * 所有队员都已出牌
+     */
+    public boolean isComplete() {
+        return teamMask != null && teamMask.equals(playedMask);
+    }
+}
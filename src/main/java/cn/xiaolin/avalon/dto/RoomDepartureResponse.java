@@ -0,0 +1,25 @@
+package cn.xiaolin.avalon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 批量移除掉线玩家的结果，用于广播 PLAYER_LEFT / HOST_TRANSFERRED / ROOM_CLOSED
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomDepartureResponse {
+    private UUID roomId;
+    private String roomCode;
+    private Integer maxPlayers;
+    private String status;
+    private List<PlayerInfoResponse> leftPlayers;
+    private boolean roomClosed;
+    private String newHost;
+    private List<PlayerInfoResponse> players;
+}
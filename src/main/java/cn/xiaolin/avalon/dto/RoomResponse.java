@@ -21,4 +21,5 @@ public class RoomResponse {
     private Integer currentPlayers; // 新增：当前玩家数量
     @JsonSerialize(using = ToStringSerializer.class)
     private UUID gameId; // 新增：游戏ID（如果游戏已开始）
+    private Integer onlinePlayers; // 当前通过WebSocket在线的玩家数量（含重连宽限期）
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package cn.xiaolin.avalon.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 房间快照：房间信息、活跃玩家、房主和当前游戏，一次查询构建
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomSnapshotResponse {
+    @JsonSerialize(using = ToStringSerializer.class)
+    private UUID roomId;
+    private String roomCode;
+    private Integer maxPlayers;
+    private String status;
+    private String creatorName;
+    private String hostName;
+    @JsonSerialize(using = ToStringSerializer.class)
+    private UUID gameId;
+    private String gameStatus;
+    private Long version; // 房间成员最近一次变动的时间戳（毫秒），客户端可据此丢弃过期快照
+    private List<PlayerInfoResponse> players;
+}
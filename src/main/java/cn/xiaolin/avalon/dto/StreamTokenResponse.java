@@ -0,0 +1,13 @@
+package cn.xiaolin.avalon.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamTokenResponse {
+    private String token; // 只对一局游戏的事件流有效
+    private Long expiresIn; // 有效期（毫秒）
+}
@@ -0,0 +1,339 @@
+package cn.xiaolin.avalon.engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * 阿瓦隆规则引擎
+ * 用基本类型数组和位掩码描述一局游戏（座位号从0开始，第 i 位代表座位 i），
+ * 按与服务层相同的规则推进：组队 -> 全员投票 -> 出征 -> 下一轮或结束 -> 刺杀。
+ * 不依赖数据库和Spring，每步操作不分配对象；reset 后可重复使用，适合大规模模拟。
+ * 非线程安全，每个线程使用自己的实例
+ */
+public final class AvalonEngine {
+    public static final int PROPOSING = 0;
+    public static final int VOTING = 1;
+    public static final int EXECUTING = 2;
+    public static final int ASSASSINATION = 3;
+    public static final int ENDED = 4;
+
+    public static final int NO_WINNER = 0;
+    public static final int GOOD_WINS = 1;
+    public static final int EVIL_WINS = 2;
+
+    public static final int WIN_NONE = 0;
+    public static final int WIN_QUESTS = 1;
+    public static final int WIN_QUEST_FAILURES = 2;
+    public static final int WIN_ASSASSINATION = 3;
+    public static final int WIN_REJECTIONS = 4;
+
+    private final byte[] roles = new byte[AvalonRules.MAX_PLAYERS];
+    private int playerCount;
+    private int evilMask;
+    private int merlinSeat;
+    private int assassinSeat;
+
+    private int phase;
+    private int round;
+    private int leader;
+    private int team;
+    private int voted;
+    private int approvals;
+    private int executed;
+    private int fails;
+    private int successes;
+    private int failures;
+    private int winner;
+    private int winType;
+
+    /**
+     * 任务结果位掩码：第 r 位为1表示第 r 轮任务成功
+     */
+    private int questResults;
+
+    private int proposals;
+
+    /**
+     * 本轮被否决的提议数
+     */
+    private int rejections;
+
+    /**
+     * 按给定角色开始一局新游戏
+     * @param seatRoles 每个座位的角色，长度即玩家人数
+     */
+    public AvalonEngine reset(byte[] seatRoles) {
+        if (!AvalonRules.isSupportedPlayerCount(seatRoles.length)) {
+            throw new IllegalArgumentException("不支持的玩家人数: " + seatRoles.length);
+        }
+        playerCount = seatRoles.length;
+        evilMask = 0;
+        merlinSeat = -1;
+        assassinSeat = -1;
+        for (int seat = 0; seat < playerCount; seat++) {
+            byte role = seatRoles[seat];
+            roles[seat] = role;
+            if (AvalonRules.isEvil(role)) {
+                evilMask |= 1 << seat;
+            }
+            if (role == AvalonRules.MERLIN) {
+                merlinSeat = seat;
+            } else if (role == AvalonRules.ASSASSIN) {
+                assassinSeat = seat;
+            }
+        }
+        phase = PROPOSING;
+        round = 0;
+        leader = AvalonRules.roundLeaderSeat(0, playerCount);
+        team = 0;
+        voted = 0;
+        approvals = 0;
+        executed = 0;
+        fails = 0;
+        successes = 0;
+        failures = 0;
+        winner = NO_WINNER;
+        winType = WIN_NONE;
+        questResults = 0;
+        proposals = 0;
+        rejections = 0;
+        return this;
+    }
+
+    /**
+     * 按人数的标准配置随机发牌并开始一局新游戏
+     */
+    public AvalonEngine deal(int playerCount, SplittableRandom random) {
+        byte[] setup = AvalonRules.roleSetup(playerCount);
+        for (int i = setup.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            byte swap = setup[i];
+            setup[i] = setup[j];
+            setup[j] = swap;
+        }
+        return reset(setup);
+    }
+
+    /**
+     * 队长提议队伍
+     * @param teamMask 队员座位的位掩码
+     */
+    public void proposeTeam(int leaderSeat, int teamMask) {
+        requirePhase(PROPOSING, "当前阶段不是队伍组建");
+        if (leaderSeat != leader) {
+            throw new IllegalStateException("不是当前队长");
+        }
+        if ((teamMask & ~allSeats()) != 0 || Integer.bitCount(teamMask) != requiredPlayers()) {
+            throw new IllegalStateException("队伍人数不符合要求");
+        }
+        team = teamMask;
+        voted = 0;
+        approvals = 0;
+        proposals++;
+        phase = VOTING;
+    }
+
+    /**
+     * 玩家投票，所有玩家投完后自动结算
+     */
+    public void vote(int seat, boolean approve) {
+        requirePhase(VOTING, "当前阶段不是投票");
+        int bit = seatBit(seat);
+        if ((voted & bit) != 0) {
+            throw new IllegalStateException("已经投过票了");
+        }
+        voted |= bit;
+        if (approve) {
+            approvals |= bit;
+        }
+        if (voted == allSeats()) {
+            int approveCount = Integer.bitCount(approvals);
+            if (AvalonRules.votePasses(approveCount, playerCount - approveCount)) {
+                executed = 0;
+                fails = 0;
+                phase = EXECUTING;
+            } else {
+                team = 0;
+                rejections++;
+                if (AvalonRules.rejectionLimitReached(rejections)) {
+                    winner = EVIL_WINS;
+                    winType = WIN_REJECTIONS;
+                    phase = ENDED;
+                } else {
+                    leader = AvalonRules.nextLeaderSeat(leader, playerCount);
+                    phase = PROPOSING;
+                }
+            }
+        }
+    }
+
+    /**
+     * 队员提交任务结果，所有队员提交后自动结算
+     */
+    public void execute(int seat, boolean success) {
+        requirePhase(EXECUTING, "当前阶段不是任务执行");
+        int bit = seatBit(seat);
+        if ((team & bit) == 0) {
+            throw new IllegalStateException("不是本轮出征队员");
+        }
+        if ((executed & bit) != 0) {
+            throw new IllegalStateException("已经提交过任务结果");
+        }
+        executed |= bit;
+        if (!success) {
+            fails++;
+        }
+        if (executed == team) {
+            completeQuest();
+        }
+    }
+
+    /**
+     * 正义阵营完成任务后，刺客指认梅林
+     */
+    public void assassinate(int assassin, int target) {
+        requirePhase(ASSASSINATION, "当前不是刺杀阶段");
+        if (assassin != assassinSeat) {
+            throw new IllegalStateException("只有刺客可以进行刺杀");
+        }
+        seatBit(target);
+        if (AvalonRules.assassinationSucceeds(roles[target])) {
+            winner = EVIL_WINS;
+            winType = WIN_ASSASSINATION;
+        }
+        phase = ENDED;
+    }
+
+    /**
+     * 刺杀阶段超时或放弃刺杀，正义阵营保持胜利
+     */
+    public void skipAssassination() {
+        requirePhase(ASSASSINATION, "当前不是刺杀阶段");
+        phase = ENDED;
+    }
+
+    private void completeQuest() {
+        boolean success = AvalonRules.questSucceeds(fails, AvalonRules.failsRequired(playerCount, round));
+        if (success) {
+            successes++;
+            questResults |= 1 << round;
+        } else {
+            failures++;
+        }
+        team = 0;
+        rejections = 0;
+        if (successes >= AvalonRules.QUESTS_TO_WIN) {
+            winner = GOOD_WINS;
+            winType = WIN_QUESTS;
+            // 没有刺客的配置直接结束
+            phase = assassinSeat >= 0 ? ASSASSINATION : ENDED;
+        } else if (failures >= AvalonRules.QUESTS_TO_WIN) {
+            winner = EVIL_WINS;
+            winType = WIN_QUEST_FAILURES;
+            phase = ENDED;
+        } else {
+            round++;
+            leader = AvalonRules.roundLeaderSeat(round, playerCount);
+            phase = PROPOSING;
+        }
+    }
+
+    private void requirePhase(int expected, String message) {
+        if (phase != expected) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private int seatBit(int seat) {
+        if (seat < 0 || seat >= playerCount) {
+            throw new IllegalStateException("玩家不在游戏中");
+        }
+        return 1 << seat;
+    }
+
+    public int allSeats() {
+        return (1 << playerCount) - 1;
+    }
+
+    public int requiredPlayers() {
+        return AvalonRules.questSize(playerCount, round);
+    }
+
+    public int failsRequired() {
+        return AvalonRules.failsRequired(playerCount, round);
+    }
+
+    public boolean isEvil(int seat) {
+        return (evilMask & (1 << seat)) != 0;
+    }
+
+    public byte roleAt(int seat) {
+        return roles[seat];
+    }
+
+    public int playerCount() {
+        return playerCount;
+    }
+
+    public int evilMask() {
+        return evilMask;
+    }
+
+    public int merlinSeat() {
+        return merlinSeat;
+    }
+
+    public int assassinSeat() {
+        return assassinSeat;
+    }
+
+    public int phase() {
+        return phase;
+    }
+
+    public int round() {
+        return round;
+    }
+
+    public int leader() {
+        return leader;
+    }
+
+    public int team() {
+        return team;
+    }
+
+    public int successes() {
+        return successes;
+    }
+
+    public int failures() {
+        return failures;
+    }
+
+    public int questResults() {
+        return questResults;
+    }
+
+    public int proposals() {
+        return proposals;
+    }
+
+    public int rejections() {
+        return rejections;
+    }
+
+    /**
+     * 当前胜方；刺杀阶段为正义阵营的暂定胜利
+     */
+    public int winner() {
+        return winner;
+    }
+
+    public int winType() {
+        return winType;
+    }
+
+    public boolean isEnded() {
+        return phase == ENDED;
+    }
+}
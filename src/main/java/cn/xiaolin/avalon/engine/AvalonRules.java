@@ -0,0 +1,198 @@
+package cn.xiaolin.avalon.engine;
+
+import cn.xiaolin.avalon.enums.Alignment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 阿瓦隆规则表
+ * 角色配置、任务人数和失败票要求、投票和任务结算、队长轮换等规则的唯一来源，
+ * 服务层和规则引擎都从这里读取，不依赖数据库。座位号从0开始
+ */
+public final class AvalonRules {
+    public static final int MIN_PLAYERS = 5;
+    public static final int MAX_PLAYERS = 10;
+    public static final int QUEST_COUNT = 5;
+    /**
+     * 任一阵营累计成功（或失败）的任务数达到该值即决出胜负
+     */
+    public static final int QUESTS_TO_WIN = 3;
+    /**
+     * 同一轮任务中组队提议被连续否决的上限，第5次提议仍被否决时邪恶阵营获胜
+     */
+    public static final int MAX_REJECTIONS = 5;
+
+    // 角色编号，与 ROLE_CODES 的下标一致
+    public static final byte MERLIN = 0;
+    public static final byte PERCIVAL = 1;
+    public static final byte LOYAL_SERVANT = 2;
+    public static final byte MORGANA = 3;
+    public static final byte ASSASSIN = 4;
+    public static final byte MORDRED = 5;
+    public static final byte MINION = 6;
+    public static final byte OBERON = 7;
+
+    private static final String[] ROLE_CODES = {
+        "merlin", "percival", "loyal_servant", "morgana", "assassin", "mordred", "minion", "oberon"
+    };
+
+    /**
+     * 玩家人数 -> 角色配置
+     */
+    private static final byte[][] ROLE_SETUPS = new byte[MAX_PLAYERS + 1][];
+
+    /**
+     * 玩家人数 -> 每轮任务的出征人数
+     */
+    private static final int[][] QUEST_SIZES = new int[MAX_PLAYERS + 1][];
+
+    /**
+     * 玩家人数 -> 每轮任务判定失败所需的失败票数
+     */
+    private static final int[][] QUEST_FAILS_REQUIRED = new int[MAX_PLAYERS + 1][];
+
+    static {
+        ROLE_SETUPS[5] = new byte[]{MERLIN, PERCIVAL, LOYAL_SERVANT, MORGANA, ASSASSIN};
+        ROLE_SETUPS[6] = new byte[]{MERLIN, PERCIVAL, LOYAL_SERVANT, LOYAL_SERVANT, MORGANA, ASSASSIN};
+        ROLE_SETUPS[7] = new byte[]{MERLIN, PERCIVAL, LOYAL_SERVANT, LOYAL_SERVANT, MORGANA, ASSASSIN, MINION};
+        ROLE_SETUPS[8] = new byte[]{MERLIN, PERCIVAL, LOYAL_SERVANT, LOYAL_SERVANT, LOYAL_SERVANT, MORGANA, ASSASSIN, MINION};
+        ROLE_SETUPS[9] = new byte[]{MERLIN, PERCIVAL, LOYAL_SERVANT, LOYAL_SERVANT, LOYAL_SERVANT, LOYAL_SERVANT, MORGANA, ASSASSIN, MINION};
+        ROLE_SETUPS[10] = new byte[]{MERLIN, PERCIVAL, LOYAL_SERVANT, LOYAL_SERVANT, LOYAL_SERVANT, LOYAL_SERVANT, MORGANA, ASSASSIN, MINION, OBERON};
+
+        QUEST_SIZES[5] = new int[]{2, 3, 2, 3, 3};
+        QUEST_SIZES[6] = new int[]{2, 3, 4, 3, 4};
+        QUEST_SIZES[7] = new int[]{2, 3, 3, 4, 4};
+        QUEST_SIZES[8] = new int[]{3, 4, 4, 5, 5};
+        QUEST_SIZES[9] = new int[]{3, 4, 4, 5, 5};
+        QUEST_SIZES[10] = new int[]{3, 4, 4, 5, 5};
+
+        QUEST_FAILS_REQUIRED[5] = new int[]{1, 1, 1, 1, 1};
+        QUEST_FAILS_REQUIRED[6] = new int[]{1, 1, 1, 1, 1};
+        QUEST_FAILS_REQUIRED[7] = new int[]{1, 1, 1, 2, 1};
+        QUEST_FAILS_REQUIRED[8] = new int[]{1, 1, 1, 2, 1};
+        QUEST_FAILS_REQUIRED[9] = new int[]{1, 1, 1, 2, 1};
+        QUEST_FAILS_REQUIRED[10] = new int[]{1, 1, 1, 2, 1};
+    }
+
+    private AvalonRules() {
+    }
+
+    public static boolean isSupportedPlayerCount(int playerCount) {
+        return playerCount >= MIN_PLAYERS && playerCount <= MAX_PLAYERS;
+    }
+
+    /**
+     * 指定人数的角色配置（未打乱），返回副本
+     */
+    public static byte[] roleSetup(int playerCount) {
+        return ROLE_SETUPS[checkPlayerCount(playerCount)].clone();
+    }
+
+    /**
+     * 指定人数的角色代码列表，供服务层分配角色
+     */
+    public static List<String> roleCodes(int playerCount) {
+        byte[] setup = ROLE_SETUPS[checkPlayerCount(playerCount)];
+        List<String> codes = new ArrayList<>(setup.length);
+        for (byte role : setup) {
+            codes.add(ROLE_CODES[role]);
+        }
+        return codes;
+    }
+
+    public static String roleCode(byte role) {
+        return ROLE_CODES[role];
+    }
+
+    public static byte roleOf(String code) {
+        for (byte i = 0; i < ROLE_CODES.length; i++) {
+            if (ROLE_CODES[i].equals(code)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("未知角色: " + code);
+    }
+
+    public static boolean isEvil(byte role) {
+        return role == MORGANA || role == ASSASSIN || role == MORDRED || role == MINION || role == OBERON;
+    }
+
+    /**
+     * 角色代码对应的阵营值（good / evil）
+     */
+    public static String alignmentOf(String roleCode) {
+        return isEvil(roleOf(roleCode)) ? Alignment.EVIL.getValue() : Alignment.GOOD.getValue();
+    }
+
+    /**
+     * @param round 轮次，从0开始
+     */
+    public static int questSize(int playerCount, int round) {
+        return QUEST_SIZES[checkPlayerCount(playerCount)][round];
+    }
+
+    /**
+     * @param round 轮次，从0开始
+     */
+    public static int failsRequired(int playerCount, int round) {
+        return QUEST_FAILS_REQUIRED[checkPlayerCount(playerCount)][round];
+    }
+
+    /**
+     * 失败票数未达到要求时任务成功
+     */
+    public static boolean questSucceeds(int failCount, int failsRequired) {
+        return failCount < failsRequired;
+    }
+
+    /**
+     * 赞成票多于反对票时队伍通过，平票视为否决
+     */
+    public static boolean votePasses(int approveCount, int rejectCount) {
+        return approveCount > rejectCount;
+    }
+
+    /**
+     * 本轮被否决的提议数达到上限
+     */
+    public static boolean rejectionLimitReached(int rejections) {
+        return rejections >= MAX_REJECTIONS;
+    }
+
+    /**
+     * 座位号（从1开始，即 GamePlayer.seatNumber）在座位位掩码中对应的位
+     */
+    public static int seatBit(int seatNumber) {
+        return 1 << (seatNumber - 1);
+    }
+
+    /**
+     * 提议被否决后按座位顺序轮换队长
+     */
+    public static int nextLeaderSeat(int leaderSeat, int playerCount) {
+        return (leaderSeat + 1) % playerCount;
+    }
+
+    /**
+     * 每轮开始时的队长座位：按轮次依次轮换
+     * @param round 轮次，从0开始
+     */
+    public static int roundLeaderSeat(int round, int playerCount) {
+        return round % playerCount;
+    }
+
+    /**
+     * 刺客刺中梅林时邪恶阵营翻盘
+     */
+    public static boolean assassinationSucceeds(byte targetRole) {
+        return targetRole == MERLIN;
+    }
+
+    private static int checkPlayerCount(int playerCount) {
+        if (!isSupportedPlayerCount(playerCount)) {
+            throw new IllegalArgumentException("不支持的玩家人数: " + playerCount);
+        }
+        return playerCount;
+    }
+}
@@ -0,0 +1,180 @@
+package cn.xiaolin.avalon.engine;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 并行对局模拟
+ * 用 fork/join 把对局按区间拆分到所有核心，每个叶子任务复用一个引擎实例连续模拟，
+ * 随机数按区间起点派生，同样的种子和参数得到同样的结果。
+ * 用于验证角色和任务配置（胜率、对局长度），以及生成对服务层做对照测试的对局脚本
+ */
+public final class SimulationHarness {
+
+    /**
+     * 叶子任务的对局数，低于该值不再拆分
+     */
+    private static final long LEAF_SIZE = 4096;
+
+    /**
+     * 单局最多的组队次数；连续否决上限保证对局在此之前结束，超过后按僵局统计
+     */
+    public static final int MAX_PROPOSALS = 100;
+
+    private final ForkJoinPool pool;
+
+    public SimulationHarness() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public SimulationHarness(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 模拟指定人数的若干局游戏
+     */
+    public SimulationResult simulate(int playerCount, long games, long seed, SimulationStrategy strategy) {
+        if (!AvalonRules.isSupportedPlayerCount(playerCount)) {
+            throw new IllegalArgumentException("不支持的玩家人数: " + playerCount);
+        }
+        return pool.invoke(new SimulationTask(playerCount, 0, games, seed, strategy));
+    }
+
+    /**
+     * 用给定策略把一局游戏下到结束
+     * @return 正常结束返回 true；组队次数超过上限返回 false
+     */
+    public static boolean play(AvalonEngine game, SimulationStrategy strategy, SplittableRandom random) {
+        while (!game.isEnded()) {
+            switch (game.phase()) {
+                case AvalonEngine.PROPOSING -> {
+                    if (game.proposals() >= MAX_PROPOSALS) {
+                        return false;
+                    }
+                    game.proposeTeam(game.leader(), strategy.proposeTeam(game, random));
+                }
+                case AvalonEngine.VOTING -> {
+                    for (int seat = 0; seat < game.playerCount() && game.phase() == AvalonEngine.VOTING; seat++) {
+                        game.vote(seat, strategy.vote(game, seat, random));
+                    }
+                }
+                case AvalonEngine.EXECUTING -> {
+                    for (int members = game.team(); members != 0 && game.phase() == AvalonEngine.EXECUTING; members &= members - 1) {
+                        int seat = Integer.numberOfTrailingZeros(members);
+                        game.execute(seat, strategy.execute(game, seat, random));
+                    }
+                }
+                case AvalonEngine.ASSASSINATION -> game.assassinate(game.assassinSeat(), strategy.assassinate(game, random));
+                default -> throw new IllegalStateException("未知阶段: " + game.phase());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 模拟统计
+     * @param evilRejectionWins 连续否决达到上限、邪恶阵营获胜的对局数
+     * @param stalled 组队次数超过上限未能结束的对局数
+     * @param rounds 由任务决出胜负（不含连续否决结束）的对局的任务轮数之和
+     * @param proposals 正常结束对局的组队次数之和
+     */
+    public record SimulationResult(long games, long goodWins, long evilQuestWins, long evilAssassinationWins,
+                                   long evilRejectionWins, long stalled, long rounds, long proposals) {
+
+        public SimulationResult merge(SimulationResult other) {
+            return new SimulationResult(
+                games + other.games,
+                goodWins + other.goodWins,
+                evilQuestWins + other.evilQuestWins,
+                evilAssassinationWins + other.evilAssassinationWins,
+                evilRejectionWins + other.evilRejectionWins,
+                stalled + other.stalled,
+                rounds + other.rounds,
+                proposals + other.proposals);
+        }
+
+        public long finished() {
+            return games - stalled;
+        }
+
+        public double goodWinRate() {
+            return finished() == 0 ? 0 : (double) goodWins / finished();
+        }
+
+        /**
+         * 由任务决出胜负的对局的平均任务轮数
+         */
+        public double averageRounds() {
+            long decidedByQuests = finished() - evilRejectionWins;
+            return decidedByQuests == 0 ? 0 : (double) rounds / decidedByQuests;
+        }
+
+        public double averageProposals() {
+            return finished() == 0 ? 0 : (double) proposals / finished();
+        }
+    }
+
+    private static final class SimulationTask extends RecursiveTask<SimulationResult> {
+        private final int playerCount;
+        private final long from;
+        private final long to;
+        private final long seed;
+        private final SimulationStrategy strategy;
+
+        SimulationTask(int playerCount, long from, long to, long seed, SimulationStrategy strategy) {
+            this.playerCount = playerCount;
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+            this.strategy = strategy;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            if (to - from <= LEAF_SIZE) {
+                return run();
+            }
+            long mid = (from + to) >>> 1;
+            SimulationTask left = new SimulationTask(playerCount, from, mid, seed, strategy);
+            left.fork();
+            SimulationResult right = new SimulationTask(playerCount, mid, to, seed, strategy).compute();
+            return left.join().merge(right);
+        }
+
+        private SimulationResult run() {
+            SplittableRandom random = new SplittableRandom(seed ^ (from * 0x9E3779B97F4A7C15L));
+            AvalonEngine game = new AvalonEngine();
+            long goodWins = 0;
+            long evilQuestWins = 0;
+            long evilAssassinationWins = 0;
+            long evilRejectionWins = 0;
+            long stalled = 0;
+            long rounds = 0;
+            long proposals = 0;
+            for (long i = from; i < to; i++) {
+                game.deal(playerCount, random);
+                if (!play(game, strategy, random)) {
+                    stalled++;
+                    continue;
+                }
+                proposals += game.proposals();
+                if (game.winType() == AvalonEngine.WIN_REJECTIONS) {
+                    evilRejectionWins++;
+                    continue;
+                }
+                rounds += game.successes() + game.failures();
+                if (game.winner() == AvalonEngine.GOOD_WINS) {
+                    goodWins++;
+                } else if (game.winType() == AvalonEngine.WIN_ASSASSINATION) {
+                    evilAssassinationWins++;
+                } else {
+                    evilQuestWins++;
+                }
+            }
+            return new SimulationResult(to - from, goodWins, evilQuestWins, evilAssassinationWins,
+                evilRejectionWins, stalled, rounds, proposals);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package cn.xiaolin.avalon.engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * 模拟对局中玩家的决策
+ * 实现类应无状态或只读，同一实例会被多个线程同时使用；随机数由调用方按线程提供
+ */
+public interface SimulationStrategy {
+
+    /**
+     * 队长选择队伍
+     * @return 队员座位的位掩码，人数必须等于 game.requiredPlayers()
+     */
+    int proposeTeam(AvalonEngine game, SplittableRandom random);
+
+    /**
+     * 玩家对当前队伍投票
+     * @return true 为赞成
+     */
+    boolean vote(AvalonEngine game, int seat, SplittableRandom random);
+
+    /**
+     * 队员提交任务结果
+     * @return true 为成功
+     */
+    boolean execute(AvalonEngine game, int seat, SplittableRandom random);
+
+    /**
+     * 刺客选择刺杀目标
+     * @return 目标座位
+     */
+    int assassinate(AvalonEngine game, SplittableRandom random);
+
+    /**
+     * 随机策略：随机组队、随机投票，正义队员总是成功，邪恶队员以一半概率破坏任务，刺客在正义玩家中随机指认
+     */
+    SimulationStrategy RANDOM = new SimulationStrategy() {
+        @Override
+        public int proposeTeam(AvalonEngine game, SplittableRandom random) {
+            return randomSubset(game.allSeats(), game.requiredPlayers(), random);
+        }
+
+        @Override
+        public boolean vote(AvalonEngine game, int seat, SplittableRandom random) {
+            return random.nextBoolean();
+        }
+
+        @Override
+        public boolean execute(AvalonEngine game, int seat, SplittableRandom random) {
+            return !game.isEvil(seat) || random.nextBoolean();
+        }
+
+        @Override
+        public int assassinate(AvalonEngine game, SplittableRandom random) {
+            return randomSeat(game.allSeats() & ~game.evilMask(), random);
+        }
+    };
+
+    /**
+     * 从位掩码中随机选出 count 个座位
+     */
+    static int randomSubset(int candidates, int count, SplittableRandom random) {
+        int chosen = 0;
+        for (int i = 0; i < count; i++) {
+            int seat = randomSeat(candidates & ~chosen, random);
+            chosen |= 1 << seat;
+        }
+        return chosen;
+    }
+
+    /**
+     * 从位掩码中随机选出一个座位
+     */
+    static int randomSeat(int candidates, SplittableRandom random) {
+        int pick = random.nextInt(Integer.bitCount(candidates));
+        int remaining = candidates;
+        for (int i = 0; i < pick; i++) {
+            remaining &= remaining - 1;
+        }
+        return Integer.numberOfTrailingZeros(remaining);
+    }
+}
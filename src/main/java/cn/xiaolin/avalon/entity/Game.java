@@ -1,11 +1,14 @@
 package cn.xiaolin.avalon.entity;
 
+import cn.xiaolin.avalon.utils.UuidV7Generator;
+import cn.xiaolin.avalon.enums.GamePhase;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -22,7 +25,7 @@ import java.util.UUID;
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Game {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -33,6 +36,22 @@ public class Game {
     @Column(nullable = false, length = 20)
     private String status = "preparing";
 
+    // 当前阶段，取值见 GamePhase；对局推进只依据该字段，status 保留给对外接口
+    @Column(nullable = false, length = 20)
+    private String phase = GamePhase.PREPARING.getValue();
+
+    // 当前任务，命令直接按主键读取，不再扫描全部任务
+    @Column(name = "current_quest_id")
+    private UUID currentQuestId;
+
+    // 当前提议，组队后设置，投票否决或任务结束后清空
+    @Column(name = "current_proposal_id")
+    private UUID currentProposalId;
+
+    // 当前队长座位号（从1开始，即 GamePlayer.seatNumber）
+    @Column(name = "leader_seat")
+    private Integer leaderSeat;
+
     @Column(name = "current_round", nullable = false)
     private Integer currentRound = 1;
 
@@ -48,7 +67,39 @@ public class Game {
     @Column(name = "ended_at")
     private LocalDateTime endedAt;
 
+    // 最近一次玩家操作时间，用于回收长时间无人操作的对局
+    @Column(name = "last_activity_at")
+    private LocalDateTime lastActivityAt;
+
+    // 归档时间，非空表示明细数据已迁移到 game_archives
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
-}
\ No newline at end of file
+
+    public GamePhase currentPhase() {
+        return GamePhase.of(phase);
+    }
+
+    /**
+     * 当前阶段不是 expected 时拒绝操作
+     */
+    public void requirePhase(GamePhase expected, String message) {
+        if (!expected.getValue().equals(phase)) {
+            throw new RuntimeException(message);
+        }
+    }
+
+    /**
+     * 切换到下一阶段，只允许 GamePhase 中定义的转换
+     */
+    public void transitionTo(GamePhase target) {
+        GamePhase current = currentPhase();
+        if (!current.canTransitionTo(target)) {
+            throw new RuntimeException("游戏阶段不能从" + current.getValue() + "切换到" + target.getValue());
+        }
+        phase = target.getValue();
+    }
+}
@@ -0,0 +1,45 @@
+package cn.xiaolin.avalon.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 游戏归档实体类
+ * 已结束且超过保留期的游戏，其玩家、任务、提议、投票和任务结果明细会从热表中删除，
+ * 只保留一份压缩后的统计快照，供统计接口按需读取
+ */
+@Entity
+@Table(name = "game_archives")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GameArchive {
+    @Id
+    @Column(name = "game_id")
+    private UUID gameId;
+
+    @Column(name = "room_id", nullable = false)
+    private UUID roomId;
+
+    @Column(length = 10)
+    private String winner;
+
+    @Column(name = "ended_at")
+    private LocalDateTime endedAt;
+
+    // 快照格式版本，快照结构变化时用于兼容旧数据
+    @Column(name = "format_version", nullable = false)
+    private Integer formatVersion;
+
+    // gzip压缩的 GameStatisticsResponse JSON
+    @Column(name = "payload", nullable = false)
+    private byte[] payload;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
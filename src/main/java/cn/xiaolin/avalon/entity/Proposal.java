@@ -1,11 +1,13 @@
 package cn.xiaolin.avalon.entity;
 
+import cn.xiaolin.avalon.utils.UuidV7Generator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -23,7 +25,7 @@ import java.util.UUID;
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Proposal {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -36,6 +38,26 @@ public class Proposal {
     @JsonIgnoreProperties({"hibernateLazyInitializer", "handler", "gamePlayers", "createdRooms"})
     private User leader;
     
+    // 本轮任务的第几次提议，从1开始
+    @Column(nullable = false)
+    private Integer attempt = 1;
+
+    // 提议时的队长座位号
+    @Column(name = "leader_seat")
+    private Integer leaderSeat;
+
+    // 提议队员的座位位掩码
+    @Column(name = "team_mask", nullable = false)
+    private Integer teamMask = 0;
+
+    // 赞成票、反对票玩家的座位位掩码，只由 ProposalRepository.castVote 原子更新
+    @Column(name = "approve_mask", nullable = false, insertable = false, updatable = false)
+    private Integer approveMask;
+
+    @Column(name = "reject_mask", nullable = false, insertable = false, updatable = false)
+    private Integer rejectMask;
+
+    // 旧版提议成员关联表，新记录只写 team_mask
     @ManyToMany
     @JoinTable(
         name = "proposal_members",
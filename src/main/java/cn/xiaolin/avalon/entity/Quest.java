@@ -1,10 +1,12 @@
 package cn.xiaolin.avalon.entity;
 
+import cn.xiaolin.avalon.utils.UuidV7Generator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -22,7 +24,7 @@ import java.util.UUID;
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Quest {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -50,6 +52,22 @@ public class Quest {
     @JsonIgnoreProperties({"hibernateLazyInitializer", "handler", "gamePlayers", "createdRooms"})
     private User leader;
 
+    /**
+     * 出征队员座位的位掩码（第 n 位对应座位号 n + 1），组队时写入
+     */
+    @Column(name = "team_mask")
+    private Integer teamMask;
+
+    // 任务牌计数只由 QuestRepository.playCard 原子更新，保存实体时不写入，避免覆盖并发出牌的结果
+    @Column(name = "played_mask", insertable = false, updatable = false)
+    private Integer playedMask;
+
+    @Column(name = "success_count", insertable = false, updatable = false)
+    private Integer successCount;
+
+    @Column(name = "fail_count", insertable = false, updatable = false)
+    private Integer failCount;
+
     // 提议的队伍成员（仅用于向后兼容，新逻辑应通过Proposal实体获取）
     @ManyToMany
     @JoinTable(
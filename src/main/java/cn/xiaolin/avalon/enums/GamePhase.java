@@ -0,0 +1,58 @@
+package cn.xiaolin.avalon.enums;
+
+import lombok.Getter;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 游戏阶段
+ * 保存在 games.phase，是对局推进的唯一依据；status 仍保留对外兼容的粗粒度状态。
+ * 每个阶段只能转换到 next 中列出的阶段，任何阶段都可以被回收为 ended
+ */
+@Getter
+public enum GamePhase {
+    PREPARING("preparing"),
+    ROLE_VIEWING("role_viewing"),
+    PROPOSING("proposing"),
+    VOTING("voting"),
+    EXECUTING("executing"),
+    ASSASSINATION("assassination"),
+    ENDED("ended");
+
+    private final String value;
+
+    GamePhase(String value) {
+        this.value = value;
+    }
+
+    /**
+     * 合法的后继阶段
+     */
+    public Set<GamePhase> next() {
+        return switch (this) {
+            case PREPARING -> Set.of(ROLE_VIEWING, ENDED);
+            case ROLE_VIEWING -> Set.of(PROPOSING, ENDED);
+            case PROPOSING -> Set.of(VOTING, ENDED);
+            // 投票否决回到组队，通过进入出征
+            case VOTING -> Set.of(EXECUTING, PROPOSING, ENDED);
+            // 任务结算后进入下一轮组队、刺杀或直接结束
+            case EXECUTING -> Set.of(PROPOSING, ASSASSINATION, ENDED);
+            case ASSASSINATION -> Set.of(ENDED);
+            case ENDED -> Set.of();
+        };
+    }
+
+    public boolean canTransitionTo(GamePhase target) {
+        return next().contains(target);
+    }
+
+    public static GamePhase of(String value) {
+        for (GamePhase phase : values()) {
+            if (Objects.equals(phase.value, value)) {
+                return phase;
+            }
+        }
+        throw new IllegalArgumentException("未知的游戏阶段: " + value);
+    }
+}
@@ -0,0 +1,11 @@
+package cn.xiaolin.avalon.repository;
+
+import cn.xiaolin.avalon.entity.GameArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface GameArchiveRepository extends JpaRepository<GameArchive, UUID> {
+}
@@ -1,10 +1,15 @@
 package cn.xiaolin.avalon.repository;
 
+import cn.xiaolin.avalon.dto.GamePlayerResponse;
+import cn.xiaolin.avalon.dto.PlayerInfoResponse;
 import cn.xiaolin.avalon.entity.GamePlayer;
 import cn.xiaolin.avalon.entity.Game;
-import cn.xiaolin.avalon.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -15,12 +20,40 @@ import java.util.UUID;
 @Repository
 public interface GamePlayerRepository extends JpaRepository<GamePlayer, UUID> {
     List<GamePlayer> findByGame(Game game);
+    long countByGame(Game game);
     
+    // 只读加载：调用方只读取不修改，Hibernate 不为这些实体保存脏检查快照
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     @Query("SELECT gp FROM GamePlayer gp JOIN FETCH gp.user WHERE gp.game = :game")
     List<GamePlayer> findByGameWithUser(@Param("game") Game game);
     
     @Query("SELECT gp FROM GamePlayer gp JOIN FETCH gp.user JOIN FETCH gp.game WHERE gp.game.id = :gameId")
     List<GamePlayer> findByGameIdWithUserAndGame(@Param("gameId") UUID gameId);
     
-    Optional<GamePlayer> findByGameAndUser(Game game, User user);
+    @Query("SELECT new cn.xiaolin.avalon.dto.GamePlayerResponse(gp.id, u.id, u.username, gp.role, gp.alignment, " +
+           "gp.isHost, gp.seatNumber, gp.isActive) FROM GamePlayer gp JOIN gp.user u " +
+           "WHERE gp.game.id = :gameId ORDER BY gp.seatNumber")
+    List<GamePlayerResponse> findResponsesByGameId(@Param("gameId") UUID gameId);
+
+    @Query("SELECT new cn.xiaolin.avalon.dto.GamePlayerResponse(gp.id, u.id, u.username, gp.role, gp.alignment, " +
+           "gp.isHost, gp.seatNumber, gp.isActive) FROM GamePlayer gp JOIN gp.user u " +
+           "WHERE gp.game.id = :gameId AND gp.alignment = :alignment ORDER BY gp.seatNumber")
+    List<GamePlayerResponse> findResponsesByGameIdAndAlignment(@Param("gameId") UUID gameId,
+                                                               @Param("alignment") String alignment);
+
+    @Query("SELECT new cn.xiaolin.avalon.dto.PlayerInfoResponse(u.id, u.username, gp.role, gp.alignment, " +
+           "gp.isHost, gp.seatNumber, gp.isActive) FROM GamePlayer gp JOIN gp.user u " +
+           "WHERE gp.game.id = :gameId AND gp.isActive = true ORDER BY gp.seatNumber")
+    List<PlayerInfoResponse> findActivePlayerInfosByGameId(@Param("gameId") UUID gameId);
+
+    Optional<GamePlayer> findByGameAndUserId(Game game, UUID userId);
+
+    boolean existsByGameIdAndUserId(UUID gameId, UUID userId);
+
+    @Query("SELECT gp.game.id, gp.user.id FROM GamePlayer gp WHERE gp.game.id IN :gameIds")
+    List<Object[]> findGameAndUserIdsByGameIds(@Param("gameIds") List<UUID> gameIds);
+
+    @Modifying
+    @Query("DELETE FROM GamePlayer gp WHERE gp.game.id IN :gameIds")
+    int deleteByGameIds(@Param("gameIds") List<UUID> gameIds);
 }
\ No newline at end of file
@@ -1,12 +1,16 @@
 package cn.xiaolin.avalon.repository;
 
+import cn.xiaolin.avalon.dto.GameResponse;
 import cn.xiaolin.avalon.entity.Game;
 import cn.xiaolin.avalon.entity.Room;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -15,6 +19,37 @@ import java.util.UUID;
 public interface GameRepository extends JpaRepository<Game, UUID> {
     Optional<Game> findByRoomId(UUID roomId);
     
+    @Query("SELECT new cn.xiaolin.avalon.dto.GameResponse(g.id, g.room.id, g.status, g.currentRound, g.gameConfig, " +
+           "g.winner, g.startedAt, g.endedAt, g.createdAt) FROM Game g WHERE g.id = :gameId")
+    Optional<GameResponse> findResponseById(@Param("gameId") UUID gameId);
+
     @Query("SELECT g FROM Game g WHERE g.room.roomCode = :roomCode")
     Optional<Game> findByRoomRoomCode(@Param("roomCode") String roomCode);
+
+    @Query("SELECT g.id FROM Game g WHERE g.status IN :statuses " +
+           "AND COALESCE(g.lastActivityAt, g.startedAt, g.createdAt) < :cutoff")
+    List<UUID> findIdleGameIds(@Param("statuses") List<String> statuses,
+                               @Param("cutoff") LocalDateTime cutoff,
+                               Pageable pageable);
+
+    @Query("SELECT g.room.id FROM Game g WHERE g.id IN :gameIds")
+    List<UUID> findRoomIdsByGameIds(@Param("gameIds") List<UUID> gameIds);
+
+    @Modifying
+    @Query("UPDATE Game g SET g.status = :status, g.phase = :phase, g.endedAt = :endedAt WHERE g.id IN :gameIds")
+    int updateStatusByIds(@Param("gameIds") List<UUID> gameIds,
+                          @Param("status") String status,
+                          @Param("phase") String phase,
+                          @Param("endedAt") LocalDateTime endedAt);
+
+    @Query("SELECT g.id FROM Game g WHERE g.status = :status AND g.archivedAt IS NULL " +
+           "AND g.endedAt < :cutoff ORDER BY g.endedAt")
+    List<UUID> findArchivableGameIds(@Param("status") String status,
+                                     @Param("cutoff") LocalDateTime cutoff,
+                                     Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Game g SET g.archivedAt = :archivedAt WHERE g.id IN :gameIds")
+    int markArchived(@Param("gameIds") List<UUID> gameIds,
+                     @Param("archivedAt") LocalDateTime archivedAt);
 }
\ No newline at end of file
@@ -1,9 +1,11 @@
 package cn.xiaolin.avalon.repository;
 
+import cn.xiaolin.avalon.dto.ProposalRound;
 import cn.xiaolin.avalon.entity.Proposal;
 import cn.xiaolin.avalon.entity.Quest;
 import cn.xiaolin.avalon.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -15,7 +17,46 @@ import java.util.UUID;
 public interface ProposalRepository extends JpaRepository<Proposal, UUID> {
     List<Proposal> findByQuest(Quest quest);
     List<Proposal> findByQuestAndLeader(Quest quest, User leader);
+    long countByQuest(Quest quest);
+
+    /**
+     * 原子地记录一张投票：每个座位只能投一次，并发投票互不覆盖
+     * @param seatBit 投票玩家的座位位
+     * @return 更新的行数，0 表示该玩家已经投过票
+     */
+    @Modifying
+    @Query(value = "UPDATE proposals SET " +
+                   "approve_mask = approve_mask | CASE WHEN :approve THEN :seatBit ELSE 0 END, " +
+                   "reject_mask = reject_mask | CASE WHEN :approve THEN 0 ELSE :seatBit END " +
+                   "WHERE id = :proposalId AND ((approve_mask | reject_mask) & :seatBit) = 0", nativeQuery = true)
+    int castVote(@Param("proposalId") UUID proposalId, @Param("seatBit") int seatBit, @Param("approve") boolean approve);
+
+    /**
+     * 读取数据库中的最新提议记录（投影查询，不受持久化上下文中旧实体的影响）
+     */
+    @Query("SELECT new cn.xiaolin.avalon.dto.ProposalRound(p.quest.roundNumber, p.attempt, p.leaderSeat, " +
+           "p.teamMask, p.approveMask, p.rejectMask, p.createdAt) FROM Proposal p WHERE p.id = :proposalId")
+    ProposalRound findRoundById(@Param("proposalId") UUID proposalId);
+
+    /**
+     * 一局游戏的全部提议，按轮次和提议次序排列
+     */
+    @Query("SELECT new cn.xiaolin.avalon.dto.ProposalRound(p.quest.roundNumber, p.attempt, p.leaderSeat, " +
+           "p.teamMask, p.approveMask, p.rejectMask, p.createdAt) FROM Proposal p " +
+           "WHERE p.quest.game.id = :gameId ORDER BY p.quest.roundNumber, p.attempt")
+    List<ProposalRound> findRoundsByGameId(@Param("gameId") UUID gameId);
     
     @Query("SELECT p FROM Proposal p JOIN FETCH p.proposedMembers WHERE p.quest = :quest")
     List<Proposal> findByQuestWithMembers(@Param("quest") Quest quest);
-}
\ No newline at end of file
+
+    // 提议成员是多对多关联表，没有对应实体，需要用原生SQL删除
+    @Modifying
+    @Query(value = "DELETE FROM proposal_members WHERE proposal_id IN " +
+                   "(SELECT p.id FROM proposals p JOIN quests q ON p.quest_id = q.id WHERE q.game_id IN :gameIds)",
+           nativeQuery = true)
+    int deleteMembersByGameIds(@Param("gameIds") List<UUID> gameIds);
+
+    @Modifying
+    @Query("DELETE FROM Proposal p WHERE p.quest.id IN (SELECT q.id FROM Quest q WHERE q.game.id IN :gameIds)")
+    int deleteByGameIds(@Param("gameIds") List<UUID> gameIds);
+}
@@ -1,8 +1,10 @@
 package cn.xiaolin.avalon.repository;
 
+import cn.xiaolin.avalon.dto.QuestCardTally;
 import cn.xiaolin.avalon.entity.Quest;
 import cn.xiaolin.avalon.entity.Game;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -15,4 +17,43 @@ import java.util.UUID;
 public interface QuestRepository extends JpaRepository<Quest, UUID> {
     List<Quest> findByGame(Game game);
     List<Quest> findByGameOrderByRoundNumber(Game game);
-}
\ No newline at end of file
+    Optional<Quest> findByGameAndRoundNumber(Game game, Integer roundNumber);
+    long countByGameAndStatus(Game game, String status);
+
+    /**
+     * 按游戏的当前任务指针读取任务，游戏不在任务阶段时为空
+     */
+    default Optional<Quest> findCurrentQuest(Game game) {
+        return game.getCurrentQuestId() == null ? Optional.empty() : findById(game.getCurrentQuestId());
+    }
+
+    /**
+     * 原子地记录一张任务牌：只有本轮出征且尚未出牌的队员才能更新成功，并发出牌互不覆盖
+     * @param seatBit 出牌队员的座位位
+     * @return 更新的行数，0 表示队员不在队伍中、已经出过牌或任务不在执行阶段
+     */
+    @Modifying
+    @Query(value = "UPDATE quests SET played_mask = played_mask | :seatBit, " +
+                   "success_count = success_count + CASE WHEN :success THEN 1 ELSE 0 END, " +
+                   "fail_count = fail_count + CASE WHEN :success THEN 0 ELSE 1 END " +
+                   "WHERE id = :questId AND status = 'executing' " +
+                   "AND (team_mask & :seatBit) <> 0 AND (played_mask & :seatBit) = 0", nativeQuery = true)
+    int playCard(@Param("questId") UUID questId, @Param("seatBit") int seatBit, @Param("success") boolean success);
+
+    /**
+     * 读取数据库中的最新任务牌计数（投影查询，不受持久化上下文中旧实体的影响）
+     */
+    @Query("SELECT new cn.xiaolin.avalon.dto.QuestCardTally(q.teamMask, q.playedMask, q.successCount, q.failCount) " +
+           "FROM Quest q WHERE q.id = :questId")
+    QuestCardTally findCardTally(@Param("questId") UUID questId);
+
+    // 任务队伍成员是多对多关联表，没有对应实体，需要用原生SQL删除
+    @Modifying
+    @Query(value = "DELETE FROM quest_proposed_members WHERE quest_id IN " +
+                   "(SELECT q.id FROM quests q WHERE q.game_id IN :gameIds)", nativeQuery = true)
+    int deleteProposedMembersByGameIds(@Param("gameIds") List<UUID> gameIds);
+
+    @Modifying
+    @Query("DELETE FROM Quest q WHERE q.game.id IN :gameIds")
+    int deleteByGameIds(@Param("gameIds") List<UUID> gameIds);
+}
@@ -5,6 +5,7 @@ import cn.xiaolin.avalon.entity.Game;
 import cn.xiaolin.avalon.entity.Quest;
 import cn.xiaolin.avalon.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -21,4 +22,8 @@ public interface QuestResultRepository extends JpaRepository<QuestResult, UUID>
     
     @Query("SELECT qr FROM QuestResult qr JOIN FETCH qr.quest WHERE qr.quest IN :quests")
     List<QuestResult> findByQuestsWithQuest(@Param("quests") List<cn.xiaolin.avalon.entity.Quest> quests);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query("DELETE FROM QuestResult qr WHERE qr.quest.id IN (SELECT q.id FROM Quest q WHERE q.game.id IN :gameIds)")
+    int deleteByGameIds(@Param("gameIds") List<UUID> gameIds);
+}
@@ -2,10 +2,13 @@ package cn.xiaolin.avalon.repository;
 
 import cn.xiaolin.avalon.entity.RoomPlayer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -27,6 +30,20 @@ public interface RoomPlayerRepository extends JpaRepository<RoomPlayer, UUID> {
     @Query("SELECT rp FROM RoomPlayer rp JOIN FETCH rp.user JOIN FETCH rp.room WHERE rp.room.roomCode = :roomCode AND rp.isActive = true")
     List<RoomPlayer> findActivePlayersWithRoomByRoomCode(@Param("roomCode") String roomCode);
     
+    @Query("SELECT rp FROM RoomPlayer rp JOIN FETCH rp.user WHERE rp.room.id = :roomId AND rp.isActive = true")
+    List<RoomPlayer> findActivePlayersWithUserByRoomId(@Param("roomId") UUID roomId);
+
     @Query("SELECT COUNT(rp) FROM RoomPlayer rp WHERE rp.room.id = :roomId AND rp.isActive = true")
     long countActivePlayersByRoomId(@Param("roomId") UUID roomId);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query("UPDATE RoomPlayer rp SET rp.isActive = false, rp.updatedAt = :now " +
+           "WHERE rp.room.id IN :roomIds AND rp.isActive = true")
+    int deactivateByRoomIds(@Param("roomIds") List<UUID> roomIds, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RoomPlayer rp SET rp.isActive = false, rp.updatedAt = :now " +
+           "WHERE rp.room.id = :roomId AND rp.user.id IN :userIds AND rp.isActive = true")
+    int deactivateByRoomIdAndUserIds(@Param("roomId") UUID roomId, @Param("userIds") Collection<UUID> userIds,
+                                     @Param("now") LocalDateTime now);
+}
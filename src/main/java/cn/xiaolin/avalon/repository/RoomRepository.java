@@ -2,11 +2,14 @@ package cn.xiaolin.avalon.repository;
 
 import cn.xiaolin.avalon.entity.Room;
 import cn.xiaolin.avalon.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,4 +20,56 @@ public interface RoomRepository extends JpaRepository<Room, UUID> {
     
     @Query("SELECT r FROM Room r JOIN FETCH r.creator WHERE r.roomCode = :roomCode")
     Optional<Room> findByRoomCodeWithCreator(@Param("roomCode") String roomCode);
-}
\ No newline at end of file
+
+    String SNAPSHOT_SELECT = "SELECT r.id AS roomId, r.roomCode AS roomCode, r.maxPlayers AS maxPlayers, " +
+           "r.status AS status, r.createdAt AS createdAt, c.username AS creatorName, " +
+           "g.id AS gameId, g.status AS gameStatus, " +
+           "(SELECT MAX(x.updatedAt) FROM RoomPlayer x WHERE x.room = r) AS lastChangedAt, " +
+           "u.id AS userId, u.username AS username, rp.isHost AS isHost, rp.seatNumber AS seatNumber " +
+           "FROM Room r JOIN r.creator c " +
+           "LEFT JOIN Game g ON g.room = r " +
+           "LEFT JOIN RoomPlayer rp ON rp.room = r AND rp.isActive = true " +
+           "LEFT JOIN rp.user u ";
+
+    /**
+     * 房间快照：一条语句取回房间、创建者、当前游戏和所有活跃玩家，每个活跃玩家一行；
+     * 没有活跃玩家时返回一行且玩家字段为空
+     */
+    @Query(SNAPSHOT_SELECT + "WHERE r.id = :roomId ORDER BY rp.seatNumber")
+    List<RoomSnapshotRow> findSnapshotRowsById(@Param("roomId") UUID roomId);
+
+    @Query(SNAPSHOT_SELECT + "WHERE r.roomCode = :roomCode ORDER BY rp.seatNumber")
+    List<RoomSnapshotRow> findSnapshotRowsByRoomCode(@Param("roomCode") String roomCode);
+
+    /**
+     * 查找空闲房间：创建时间和所有玩家的最近变动时间都早于截止时间
+     */
+    @Query("SELECT r.id FROM Room r WHERE r.status IN :statuses AND r.createdAt < :cutoff " +
+           "AND NOT EXISTS (SELECT rp.id FROM RoomPlayer rp WHERE rp.room = r AND rp.updatedAt >= :cutoff)")
+    List<UUID> findIdleRoomIds(@Param("statuses") List<String> statuses,
+                               @Param("cutoff") LocalDateTime cutoff,
+                               Pageable pageable);
+
+    @Query("SELECT r.roomCode FROM Room r WHERE r.id IN :roomIds")
+    List<String> findRoomCodesByIds(@Param("roomIds") List<UUID> roomIds);
+
+    @Modifying
+    @Query("UPDATE Room r SET r.status = :status WHERE r.id IN :roomIds")
+    int updateStatusByIds(@Param("roomIds") List<UUID> roomIds, @Param("status") String status);
+
+    interface RoomSnapshotRow {
+        UUID getRoomId();
+        String getRoomCode();
+        Integer getMaxPlayers();
+        String getStatus();
+        LocalDateTime getCreatedAt();
+        String getCreatorName();
+        UUID getGameId();
+        String getGameStatus();
+        LocalDateTime getLastChangedAt();
+        UUID getUserId();
+        String getUsername();
+        Boolean getIsHost();
+        Integer getSeatNumber();
+    }
+}
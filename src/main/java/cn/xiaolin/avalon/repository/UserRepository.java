@@ -2,8 +2,11 @@ package cn.xiaolin.avalon.repository;
 
 import cn.xiaolin.avalon.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,4 +16,8 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    // 注册前一次查询同时检查用户名和邮箱，返回冲突记录的用户名
+    @Query("SELECT u.username FROM User u WHERE u.username = :username OR u.email = :email")
+    List<String> findConflictingUsernames(@Param("username") String username, @Param("email") String email);
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import cn.xiaolin.avalon.entity.Quest;
 import cn.xiaolin.avalon.entity.Proposal;
 import cn.xiaolin.avalon.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -31,4 +32,14 @@ public interface VoteRepository extends JpaRepository<Vote, UUID> {
     
     @Query("SELECT v FROM Vote v JOIN FETCH v.proposal WHERE v.proposal IN :proposals")
     List<Vote> findByProposalsWithProposal(@Param("proposals") List<cn.xiaolin.avalon.entity.Proposal> proposals);
-}
\ No newline at end of file
+
+    // 按任务和按提议关联的投票分别走各自的索引再合并，两个子查询用 OR 连接时只能顺序扫描整个投票表
+    @Modifying
+    @Query(value = "DELETE FROM votes WHERE id IN (" +
+                   "SELECT v.id FROM votes v JOIN quests q ON v.quest_id = q.id WHERE q.game_id IN :gameIds " +
+                   "UNION " +
+                   "SELECT v.id FROM votes v JOIN proposals p ON v.proposal_id = p.id " +
+                   "JOIN quests q ON p.quest_id = q.id WHERE q.game_id IN :gameIds)",
+           nativeQuery = true)
+    int deleteByGameIds(@Param("gameIds") List<UUID> gameIds);
+}
@@ -1,6 +1,8 @@
 package cn.xiaolin.avalon.service;
 
 import cn.xiaolin.avalon.dto.AssassinationRequest;
+import cn.xiaolin.avalon.dto.GamePlayerResponse;
+import cn.xiaolin.avalon.engine.AvalonRules;
 import cn.xiaolin.avalon.entity.*;
 import cn.xiaolin.avalon.enums.*;
 import cn.xiaolin.avalon.repository.*;
@@ -16,9 +18,14 @@ import java.util.UUID;
 @Service
 @RequiredArgsConstructor
 public class AssassinationService {
+    /**
+     * 刺客超时未刺杀的记录；不使用 assassination 字段，避免统计中被当作已刺杀
+     */
+    private static final String ASSASSINATION_TIMEOUT_CONFIG = "{\"assassinTimedOut\":true}";
+
     private final GameRepository gameRepository;
     private final GamePlayerRepository gamePlayerRepository;
-    private final UserRepository userRepository;
+    private final PhaseDeadlineService phaseDeadlineService;
 
     @Transactional
     public boolean processAssassination(UUID gameId, UUID assassinId, AssassinationRequest request) {
@@ -34,9 +41,12 @@ public class AssassinationService {
         if (!Objects.equals("good", game.getWinner())) {
             throw new RuntimeException("正义阵营未获胜，无法进行刺杀");
         }
+
+        // 每局只能刺杀一次，刺杀限时到期后也不能再刺杀
+        game.requirePhase(GamePhase.ASSASSINATION, "刺杀阶段已结束");
         
         // 验证刺客身份
-        GamePlayer assassin = gamePlayerRepository.findByGameAndUser(game, userRepository.findById(assassinId).orElseThrow())
+        GamePlayer assassin = gamePlayerRepository.findByGameAndUserId(game, assassinId)
             .orElseThrow(() -> new RuntimeException("刺客不在游戏中"));
         
         if (!Objects.equals(assassin.getRole(), "assassin")) {
@@ -48,7 +58,7 @@ public class AssassinationService {
             .orElseThrow(() -> new RuntimeException("目标玩家不存在"));
         
         // 验证目标是否是梅林
-        boolean isTargetMerlin = Objects.equals(target.getRole(), "merlin");
+        boolean isTargetMerlin = AvalonRules.assassinationSucceeds(AvalonRules.roleOf(target.getRole()));
         
         // 更新游戏结果
         if (isTargetMerlin) {
@@ -60,11 +70,29 @@ public class AssassinationService {
             game.setGameConfig(updateGameConfig(game.getGameConfig(), false, target.getId()));
         }
         
+        game.transitionTo(GamePhase.ENDED);
         gameRepository.save(game);
+        phaseDeadlineService.cancel(gameId);
         
         return isTargetMerlin;
     }
 
+    /**
+     * 刺杀限时到期的默认操作：关闭刺杀阶段，正义阵营保持胜利
+     * @return 本次关闭了刺杀阶段时返回 true
+     */
+    @Transactional
+    public boolean closeAssassination(UUID gameId) {
+        Game game = gameRepository.findById(gameId).orElse(null);
+        if (game == null || !Objects.equals(game.getPhase(), GamePhase.ASSASSINATION.getValue())) {
+            return false;
+        }
+        game.setGameConfig(ASSASSINATION_TIMEOUT_CONFIG);
+        game.transitionTo(GamePhase.ENDED);
+        gameRepository.save(game);
+        return true;
+    }
+
     private String updateGameConfig(String gameConfig, boolean assassinationSuccess, UUID targetId) {
         // 简化处理，实际应该解析和更新JSON配置
         return String.format("{\"assassination\":{\"success\":%b,\"target\":\"%s\"}}", 
@@ -75,17 +103,15 @@ public class AssassinationService {
         Game game = gameRepository.findById(gameId)
             .orElseThrow(() -> new RuntimeException("游戏不存在"));
         
-        return Objects.equals(game.getStatus(), GameStatus.ENDED.getValue()) && 
-               Objects.equals("good", game.getWinner());
+        return Objects.equals(game.getPhase(), GamePhase.ASSASSINATION.getValue());
     }
 
-    public List<GamePlayer> getAssassinationCandidates(UUID gameId) {
-        Game game = gameRepository.findById(gameId)
-            .orElseThrow(() -> new RuntimeException("游戏不存在"));
-        
-        // 返回所有正义阵营的玩家作为刺杀候选
-        return gamePlayerRepository.findByGame(game).stream()
-            .filter(p -> Objects.equals(p.getAlignment(), "good"))
-            .collect(java.util.stream.Collectors.toList());
+    public List<GamePlayerResponse> getAssassinationCandidates(UUID gameId) {
+        if (!gameRepository.existsById(gameId)) {
+            throw new RuntimeException("游戏不存在");
+        }
+
+        // 返回所有正义阵营的玩家作为刺杀候选，阵营过滤在数据库中完成
+        return gamePlayerRepository.findResponsesByGameIdAndAlignment(gameId, Alignment.GOOD.getValue());
     }
 }
\ No newline at end of file
@@ -6,48 +6,67 @@ import cn.xiaolin.avalon.dto.RegisterRequest;
 import cn.xiaolin.avalon.entity.User;
 import cn.xiaolin.avalon.repository.UserRepository;
 import cn.xiaolin.avalon.utils.JwtUtil;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class AuthService {
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final JwtUtil jwtUtil;
+    private final TokenRevocationService tokenRevocationService;
 
-    @Transactional
+    /**
+     * 注册不开启事务：密码哈希耗时较长，不应占用数据库连接。
+     * 唯一性先用一次查询预检，并发注册同名用户时由数据库唯一约束兜底
+     */
     public AuthResponse register(RegisterRequest request) {
-        // 检查用户名是否已存在
-        if (userRepository.existsByUsername(request.getUsername())) {
-            return new AuthResponse(false, "用户名已存在", null);
-        }
-
-        // 检查邮箱是否已存在
-        if (userRepository.existsByEmail(request.getEmail())) {
-            return new AuthResponse(false, "邮箱已被注册", null);
+        // 检查用户名或邮箱是否已存在
+        AuthResponse conflict = checkConflict(request);
+        if (conflict != null) {
+            return conflict;
         }
 
         // 创建新用户
         User user = new User();
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail());
-        user.setPasswordHash(passwordEncoder.encode(request.getPassword()));
-
-        User savedUser = userRepository.save(user);
+        user.setPasswordHash(passwordHashingService.encode(request.getPassword()));
 
-        // 生成JWT token
-        String token = jwtUtil.generateToken(savedUser.getId(), savedUser.getUsername());
+        User savedUser;
+        try {
+            savedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            // 并发注册的另一方已提交，重新查询判断冲突的是用户名还是邮箱
+            AuthResponse raced = checkConflict(request);
+            if (raced == null) {
+                throw e;
+            }
+            return raced;
+        }
 
-        AuthResponse.UserData userData = new AuthResponse.UserData(
-            savedUser.getId(),
-            savedUser.getUsername(),
-            token
-        );
+        return new AuthResponse(true, "注册成功", issueTokens(savedUser.getId(), savedUser.getUsername()));
+    }
 
-        return new AuthResponse(true, "注册成功", userData);
+    /**
+     * 用户名或邮箱已被占用时返回注册失败的响应，没有冲突时返回null
+     */
+    private AuthResponse checkConflict(RegisterRequest request) {
+        List<String> conflicts = userRepository.findConflictingUsernames(request.getUsername(), request.getEmail());
+        if (conflicts.contains(request.getUsername())) {
+            return new AuthResponse(false, "用户名已存在", null);
+        }
+        if (!conflicts.isEmpty()) {
+            return new AuthResponse(false, "邮箱已被注册", null);
+        }
+        return null;
     }
 
     public AuthResponse login(LoginRequest request) {
@@ -60,19 +79,58 @@ public class AuthService {
         }
 
         // 验证密码
-        if (!passwordEncoder.matches(request.getPassword(), user.getPasswordHash())) {
+        if (!passwordHashingService.matches(request.getPassword(), user.getPasswordHash())) {
             return new AuthResponse(false, "用户名/密码错误", null);
         }
 
-        // 生成JWT token
-        String token = jwtUtil.generateToken(user.getId(), user.getUsername());
+        return new AuthResponse(true, "登录成功", issueTokens(user.getId(), user.getUsername()));
+    }
 
-        AuthResponse.UserData userData = new AuthResponse.UserData(
-            user.getId(),
-            user.getUsername(),
-            token
-        );
+    /**
+     * 用刷新令牌换取新的访问令牌和刷新令牌；旧刷新令牌随即吊销，重复使用会被拒绝
+     */
+    public AuthResponse refresh(String refreshToken) {
+        Claims claims;
+        try {
+            claims = jwtUtil.parseClaims(refreshToken);
+        } catch (JwtException | IllegalArgumentException e) {
+            return new AuthResponse(false, "刷新令牌无效或已过期", null);
+        }
+        if (!jwtUtil.isRefreshToken(claims)
+            || !tokenRevocationService.revoke(claims.getId(), claims.getExpiration().getTime())) {
+            return new AuthResponse(false, "刷新令牌无效或已过期", null);
+        }
 
-        return new AuthResponse(true, "登录成功", userData);
+        UUID userId = UUID.fromString(claims.getSubject());
+        return new AuthResponse(true, "刷新成功", issueTokens(userId, claims.get("username", String.class)));
+    }
+
+    /**
+     * 退出登录：吊销当前访问令牌和刷新令牌，两者都可以为空
+     */
+    public void logout(String accessToken, String refreshToken) {
+        revokeQuietly(accessToken);
+        revokeQuietly(refreshToken);
+    }
+
+    private void revokeQuietly(String token) {
+        if (token == null || token.isBlank()) {
+            return;
+        }
+        try {
+            Claims claims = jwtUtil.parseClaims(token);
+            tokenRevocationService.revoke(claims.getId(), claims.getExpiration().getTime());
+        } catch (JwtException | IllegalArgumentException e) {
+            // 无效或已过期的令牌无需吊销
+        }
+    }
+
+    private AuthResponse.UserData issueTokens(UUID userId, String username) {
+        return new AuthResponse.UserData(
+            userId,
+            username,
+            jwtUtil.generateToken(userId, username),
+            jwtUtil.generateRefreshToken(userId, username)
+        );
     }
 }
\ No newline at end of file
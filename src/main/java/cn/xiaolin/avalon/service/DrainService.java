@@ -0,0 +1,277 @@
+package cn.xiaolin.avalon.service;
+
+import cn.xiaolin.avalon.utils.DrainSnapshotCodec;
+import cn.xiaolin.avalon.websocket.GameEventBroadcaster;
+import cn.xiaolin.avalon.websocket.GameEventLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 排空服务
+ * 滚动部署时旧实例收到停机信号后进入排空状态：就绪探针返回 REFUSING_TRAFFIC，不再接受新房间。
+ * Web服务器优雅停机、处理完进行中的请求后，把每局进行中游戏的内存状态（事件日志、阶段限时、待执行的状态广播）
+ * 打包成一个快照写入本地磁盘或Redis；新实例启动时在就绪前一次读取快照并批量恢复，
+ * 客户端重连后按原有序号补发事件，阶段限时按原到期时间继续计时
+ */
+@Service
+@Slf4j
+public class DrainService implements SmartLifecycle, ApplicationRunner {
+    private static final String SNAPSHOT_FILE = "live-games.snapshot";
+    private static final String REDIS_KEY = "drain:live-games";
+
+    private final GameEventLog eventLog;
+    private final PhaseDeadlineService phaseDeadlineService;
+    private final GameEventBroadcaster gameEventBroadcaster;
+    private final DrainSnapshotCodec codec;
+    private final StringRedisTemplate redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 本实例ID，redis 模式下作为快照的字段名，多个实例同时排空时互不覆盖
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile boolean running;
+    private volatile boolean draining;
+
+    @Value("${drain.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${drain.on-shutdown:false}")
+    private Boolean onShutdown;
+
+    @Value("${drain.restore-on-startup:true}")
+    private Boolean restoreOnStartup;
+
+    @Value("${drain.store:local}")
+    private String store;
+
+    @Value("${drain.directory:drain}")
+    private String directory;
+
+    @Value("${drain.ttl:600000}") // 10 minutes
+    private Long ttl;
+
+    public DrainService(GameEventLog eventLog,
+                        PhaseDeadlineService phaseDeadlineService,
+                        GameEventBroadcaster gameEventBroadcaster,
+                        DrainSnapshotCodec codec,
+                        StringRedisTemplate redisTemplate,
+                        ApplicationEventPublisher eventPublisher,
+                        MeterRegistry meterRegistry) {
+        this.eventLog = eventLog;
+        this.phaseDeadlineService = phaseDeadlineService;
+        this.gameEventBroadcaster = gameEventBroadcaster;
+        this.codec = codec;
+        this.redisTemplate = redisTemplate;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 是否正在排空，排空期间不再接受新房间
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * 停机时最先执行（默认阶段早于Web服务器的优雅停机）：进入排空状态，
+     * 快照推迟到 {@link #snapshotOnShutdown()}，此时已没有进行中的请求
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (!enabled || !onShutdown) {
+            return;
+        }
+        draining = true;
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        log.info("实例开始排空，不再接受新房间");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 所有生命周期组件停止后、事件日志和时间轮销毁前保存快照
+     */
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        if (!draining) {
+            return;
+        }
+        try {
+            int games = snapshot();
+            log.info("排空快照已保存: {}局游戏, store={}", games, store);
+        } catch (Exception e) {
+            log.error("排空快照保存失败，进行中的游戏将在新实例上从数据库状态继续: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 打包所有保留内存状态的游戏并写入存储
+     * @return 快照中的游戏数
+     */
+    public int snapshot() {
+        Map<UUID, PhaseDeadlineService.Deadline> deadlines = new HashMap<>();
+        for (PhaseDeadlineService.Deadline deadline : phaseDeadlineService.pendingDeadlines()) {
+            deadlines.put(deadline.gameId(), deadline);
+        }
+        Set<UUID> pendingBroadcasts = gameEventBroadcaster.pendingBroadcastIds();
+        Set<UUID> gameIds = new HashSet<>(eventLog.gameIds());
+        gameIds.addAll(deadlines.keySet());
+        gameIds.addAll(pendingBroadcasts);
+
+        List<DrainSnapshotCodec.LiveGame> games = new ArrayList<>(gameIds.size());
+        for (UUID gameId : gameIds) {
+            GameEventLog.RingSnapshot ring = eventLog.snapshot(gameId);
+            PhaseDeadlineService.Deadline deadline = deadlines.get(gameId);
+            games.add(new DrainSnapshotCodec.LiveGame(
+                gameId,
+                ring == null ? 0 : ring.sequence(),
+                ring == null ? List.of() : ring.events(),
+                deadline == null ? null : deadline.phase().name(),
+                deadline == null ? null : deadline.questId(),
+                deadline == null ? null : deadline.expiresAt(),
+                pendingBroadcasts.contains(gameId)));
+        }
+        if (games.isEmpty()) {
+            return 0;
+        }
+
+        byte[] payload = codec.encode(new DrainSnapshotCodec.Snapshot(
+            DrainSnapshotCodec.FORMAT_VERSION, System.currentTimeMillis(), games));
+        if (isRedisMode()) {
+            redisTemplate.opsForHash().put(REDIS_KEY, instanceId, Base64.getEncoder().encodeToString(payload));
+            redisTemplate.expire(REDIS_KEY, Duration.ofMillis(ttl));
+        } else {
+            writeLocal(payload);
+        }
+        meterRegistry.counter("avalon.drain.games", "action", "snapshot").increment(games.size());
+        return games.size();
+    }
+
+    /**
+     * 在就绪探针通过前恢复排空快照，快照读取后即删除，不会被重复恢复
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || !restoreOnStartup) {
+            return;
+        }
+        try {
+            int games = 0;
+            for (byte[] payload : isRedisMode() ? claimRedis() : claimLocal()) {
+                games += restore(codec.decode(payload));
+            }
+            if (games > 0) {
+                log.info("已从排空快照恢复{}局游戏", games);
+            }
+        } catch (Exception e) {
+            log.error("排空快照恢复失败，进行中的游戏从数据库状态继续: {}", e.getMessage());
+        }
+    }
+
+    private int restore(DrainSnapshotCodec.Snapshot snapshot) {
+        if (snapshot.createdAt() + ttl < System.currentTimeMillis()) {
+            log.warn("忽略过期的排空快照: createdAt={}", snapshot.createdAt());
+            return 0;
+        }
+        for (DrainSnapshotCodec.LiveGame game : snapshot.games()) {
+            if (game.sequence() > 0) {
+                eventLog.restore(game.gameId(), new GameEventLog.RingSnapshot(game.sequence(), game.events()));
+            }
+            if (game.phase() != null) {
+                phaseDeadlineService.restore(new PhaseDeadlineService.Deadline(
+                    game.gameId(), PhaseDeadlineService.Phase.valueOf(game.phase()), game.questId(), game.expiresAt()));
+            }
+            if (game.pendingBroadcast()) {
+                gameEventBroadcaster.scheduleDelayedBroadcast(game.gameId());
+            }
+        }
+        meterRegistry.counter("avalon.drain.games", "action", "restore").increment(snapshot.games().size());
+        return snapshot.games().size();
+    }
+
+    private void writeLocal(byte[] payload) {
+        try {
+            Path dir = Path.of(directory);
+            Files.createDirectories(dir);
+            // 先写临时文件再原子替换，停机中断时不会留下半个快照
+            Path temp = Files.createTempFile(dir, SNAPSHOT_FILE, ".tmp");
+            Files.write(temp, payload);
+            Files.move(temp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("排空快照写入失败", e);
+        }
+    }
+
+    private List<byte[]> claimLocal() throws IOException {
+        Path file = Path.of(directory).resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        byte[] payload = Files.readAllBytes(file);
+        Files.delete(file);
+        return List.of(payload);
+    }
+
+    /**
+     * 先把快照改名为本实例独占的键再读取，多个新实例同时启动时只有一个实例恢复
+     */
+    private List<byte[]> claimRedis() {
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(REDIS_KEY))) {
+            return List.of();
+        }
+        String claimed = REDIS_KEY + ":" + instanceId;
+        try {
+            redisTemplate.rename(REDIS_KEY, claimed);
+        } catch (RuntimeException e) {
+            // 快照已被其他实例领取
+            return List.of();
+        }
+        List<byte[]> payloads = new ArrayList<>();
+        for (Object value : redisTemplate.opsForHash().values(claimed)) {
+            payloads.add(Base64.getDecoder().decode((String) value));
+        }
+        redisTemplate.delete(claimed);
+        return payloads;
+    }
+
+    private boolean isRedisMode() {
+        return "redis".equalsIgnoreCase(store);
+    }
+}
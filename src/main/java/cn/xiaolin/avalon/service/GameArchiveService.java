@@ -0,0 +1,162 @@
+package cn.xiaolin.avalon.service;
+
+import cn.xiaolin.avalon.entity.Game;
+import cn.xiaolin.avalon.entity.GameArchive;
+import cn.xiaolin.avalon.enums.GameStatus;
+import cn.xiaolin.avalon.repository.*;
+import cn.xiaolin.avalon.utils.GameArchiveCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 游戏归档服务
+ * 定时将结束超过保留期的游戏转入冷存储：每局游戏生成一份压缩的统计快照写入 game_archives，
+ * 然后按批删除热表中的玩家、任务、提议、投票和任务结果明细，使热表和索引保持较小规模。
+ * games 表本身保留并标记 archived_at，统计接口据此改为读取归档快照。
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "archive.enabled", havingValue = "true", matchIfMissing = true)
+public class GameArchiveService {
+    private final GameRepository gameRepository;
+    private final GamePlayerRepository gamePlayerRepository;
+    private final QuestRepository questRepository;
+    private final ProposalRepository proposalRepository;
+    private final VoteRepository voteRepository;
+    private final QuestResultRepository questResultRepository;
+    private final GameArchiveRepository gameArchiveRepository;
+    private final GameStatisticsService gameStatisticsService;
+    private final GameArchiveCodec gameArchiveCodec;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter gamesArchived;
+    private final Counter payloadBytes;
+    private final Timer runTimer;
+
+    @Value("${archive.age:2592000000}") // 30 days
+    private Long archiveAge;
+
+    @Value("${archive.batch-size:100}")
+    private Integer batchSize;
+
+    @Value("${archive.max-batches:50}")
+    private Integer maxBatches;
+
+    public GameArchiveService(GameRepository gameRepository,
+                              GamePlayerRepository gamePlayerRepository,
+                              QuestRepository questRepository,
+                              ProposalRepository proposalRepository,
+                              VoteRepository voteRepository,
+                              QuestResultRepository questResultRepository,
+                              GameArchiveRepository gameArchiveRepository,
+                              GameStatisticsService gameStatisticsService,
+                              GameArchiveCodec gameArchiveCodec,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry) {
+        this.gameRepository = gameRepository;
+        this.gamePlayerRepository = gamePlayerRepository;
+        this.questRepository = questRepository;
+        this.proposalRepository = proposalRepository;
+        this.voteRepository = voteRepository;
+        this.questResultRepository = questResultRepository;
+        this.gameArchiveRepository = gameArchiveRepository;
+        this.gameStatisticsService = gameStatisticsService;
+        this.gameArchiveCodec = gameArchiveCodec;
+        this.transactionTemplate = transactionTemplate;
+
+        this.gamesArchived = Counter.builder("avalon.archive.games")
+            .description("已归档的游戏数")
+            .register(meterRegistry);
+        this.payloadBytes = Counter.builder("avalon.archive.payload.bytes")
+            .description("归档快照压缩后的总字节数")
+            .register(meterRegistry);
+        this.runTimer = Timer.builder("avalon.archive.run")
+            .description("单次归档耗时")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${archive.interval:3600000}", initialDelayString = "${archive.interval:3600000}")
+    public void archive() {
+        runTimer.record(() -> {
+            try {
+                int total = 0;
+                // 每批单独提交事务，避免长事务持有大量行锁
+                for (int i = 0; i < maxBatches; i++) {
+                    Integer archived = transactionTemplate.execute(status -> archiveBatch());
+                    if (archived == null || archived == 0) {
+                        break;
+                    }
+                    total += archived;
+                    if (archived < batchSize) {
+                        break;
+                    }
+                }
+                if (total > 0) {
+                    log.info("游戏归档完成: games={}", total);
+                }
+            } catch (Exception e) {
+                // 归档失败不影响主要功能，下一轮重试
+                log.error("游戏归档失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 在一个事务内归档一批游戏
+     * @return 本批归档的游戏数
+     */
+    private int archiveBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<UUID> gameIds = gameRepository.findArchivableGameIds(
+            GameStatus.ENDED.getValue(), now.minusNanos(archiveAge * 1_000_000), PageRequest.of(0, batchSize));
+        if (gameIds.isEmpty()) {
+            return 0;
+        }
+
+        // 1. 生成统计快照
+        List<GameArchive> archives = new ArrayList<>(gameIds.size());
+        long bytes = 0;
+        for (Game game : gameRepository.findAllById(gameIds)) {
+            GameArchive archive = new GameArchive();
+            archive.setGameId(game.getId());
+            archive.setRoomId(game.getRoom().getId());
+            archive.setWinner(game.getWinner());
+            archive.setEndedAt(game.getEndedAt());
+            archive.setFormatVersion(GameArchiveCodec.FORMAT_VERSION);
+            archive.setPayload(gameArchiveCodec.encode(gameStatisticsService.buildStatistics(game)));
+            archive.setArchivedAt(now);
+            archives.add(archive);
+            bytes += archive.getPayload().length;
+        }
+        gameArchiveRepository.saveAll(archives);
+
+        // 2. 按外键依赖顺序批量删除热表明细
+        voteRepository.deleteByGameIds(gameIds);
+        questResultRepository.deleteByGameIds(gameIds);
+        proposalRepository.deleteMembersByGameIds(gameIds);
+        proposalRepository.deleteByGameIds(gameIds);
+        questRepository.deleteProposedMembersByGameIds(gameIds);
+        questRepository.deleteByGameIds(gameIds);
+        gamePlayerRepository.deleteByGameIds(gameIds);
+
+        // 3. 标记已归档
+        gameRepository.markArchived(gameIds, now);
+
+        gamesArchived.increment(archives.size());
+        payloadBytes.increment(bytes);
+        return gameIds.size();
+    }
+}
@@ -1,6 +1,7 @@
 package cn.xiaolin.avalon.service;
 
 import cn.xiaolin.avalon.dto.*;
+import cn.xiaolin.avalon.engine.AvalonRules;
 import cn.xiaolin.avalon.entity.*;
 import cn.xiaolin.avalon.enums.*;
 import cn.xiaolin.avalon.repository.*;
@@ -31,16 +32,6 @@ public class GameService {
     @PersistenceContext
     private EntityManager entityManager;
 
-    // 角色配置
-    private static final Map<Integer, List<String>> ROLE_CONFIGS = Map.of(
-        5, List.of("merlin", "percival", "loyal_servant", "morgana", "assassin"),
-        6, List.of("merlin", "percival", "loyal_servant", "loyal_servant", "morgana", "assassin"),
-        7, List.of("merlin", "percival", "loyal_servant", "loyal_servant", "morgana", "assassin", "minion"),
-        8, List.of("merlin", "percival", "loyal_servant", "loyal_servant", "loyal_servant", "morgana", "assassin", "minion"),
-        9, List.of("merlin", "percival", "loyal_servant", "loyal_servant", "loyal_servant", "loyal_servant", "morgana", "assassin", "minion"),
-        10, List.of("merlin", "percival", "loyal_servant", "loyal_servant", "loyal_servant", "loyal_servant", "morgana", "assassin", "minion", "oberon")
-    );
-
     @Transactional
     public Game createGame(UUID roomId) {
         Room room = roomRepository.findById(roomId)
@@ -90,7 +81,9 @@ public class GameService {
         Game game = new Game();
         game.setRoom(room);
         game.setStatus(GameStatus.ROLE_VIEWING.getValue());
+        game.transitionTo(GamePhase.ROLE_VIEWING);
         game.setStartedAt(LocalDateTime.now());
+        game.setLastActivityAt(game.getStartedAt());
         game = gameRepository.save(game);
 
         // 分配角色，并将角色信息存储到数据库
@@ -108,7 +101,7 @@ public class GameService {
     }
 
     private void assignRoles(Game game, List<User> players) {
-        List<String> roles = new ArrayList<>(ROLE_CONFIGS.get(players.size()));
+        List<String> roles = AvalonRules.roleCodes(players.size());
         Collections.shuffle(roles);
         List<GamePlayer> gamePlayerList = new ArrayList<>();
         for (int i = 0; i < players.size(); i++) {
@@ -116,7 +109,7 @@ public class GameService {
             gamePlayer.setGame(game);
             gamePlayer.setUser(players.get(i));
             gamePlayer.setRole(roles.get(i));
-            gamePlayer.setAlignment(getAlignment(roles.get(i)));
+            gamePlayer.setAlignment(AvalonRules.alignmentOf(roles.get(i)));
             gamePlayer.setSeatNumber(i + 1);
             gamePlayer.setIsHost(i == 0); // 第一个玩家是房主
             gamePlayerList.add(gamePlayer);
@@ -124,20 +117,9 @@ public class GameService {
         gamePlayerRepository.saveAll(gamePlayerList);
     }
 
-    private String getAlignment(String role) {
-        return switch (role) {
-            case "morgana", "assassin", "minion", "oberon" -> Alignment.EVIL.getValue();
-            default -> Alignment.GOOD.getValue();
-        };
-    }
-
-    public Game getGameById(UUID gameId) {
-        Optional<Game> gameOpt = gameRepository.findById(gameId);
-        if (gameOpt.isPresent()) {
-            return gameOpt.get();
-        } else {
-            throw new RuntimeException("游戏不存在");
-        }
+    public GameResponse getGameById(UUID gameId) {
+        return gameRepository.findResponseById(gameId)
+            .orElseThrow(() -> new RuntimeException("游戏不存在"));
     }
 
     public Game getGameByRoomId(UUID roomId) {
@@ -145,11 +127,13 @@ public class GameService {
             .orElseThrow(() -> new RuntimeException("游戏不存在"));
     }
 
-    public List<GamePlayer> getGamePlayers(UUID gameId) {
-        Game game = gameRepository.findById(gameId)
-            .orElseThrow(() -> new RuntimeException("游戏不存在"));
-        
-        return gamePlayerRepository.findByGame(game);
+    public List<GamePlayerResponse> getGamePlayers(UUID gameId) {
+        List<GamePlayerResponse> players = gamePlayerRepository.findResponsesByGameId(gameId);
+        // 只有查不到玩家时才需要区分游戏是否存在
+        if (players.isEmpty() && !gameRepository.existsById(gameId)) {
+            throw new RuntimeException("游戏不存在");
+        }
+        return players;
     }
 
     public String getGameStatus(UUID gameId) {
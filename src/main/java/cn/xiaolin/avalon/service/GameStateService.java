@@ -1,6 +1,7 @@
 package cn.xiaolin.avalon.service;
 
 import cn.xiaolin.avalon.dto.GameStateResponse;
+import cn.xiaolin.avalon.dto.ProposalRound;
 import cn.xiaolin.avalon.dto.RoleInfoResponse;
 import cn.xiaolin.avalon.entity.*;
 import cn.xiaolin.avalon.enums.*;
@@ -21,96 +22,96 @@ public class GameStateService {
     private final GameRepository gameRepository;
     private final GamePlayerRepository gamePlayerRepository;
     private final QuestRepository questRepository;
-    private final VoteRepository voteRepository;
+    private final ProposalRepository proposalRepository;
     private final QuestResultRepository questResultRepository;
     private final RoleVisibilityService roleVisibilityService;
+    private final PhaseDeadlineService phaseDeadlineService;
 
     @Cacheable(value = "gameState", key = "#gameId + '_' + #userId")
     public GameStateResponse getGameState(UUID gameId, UUID userId) {
-        Game game = gameRepository.findById(gameId)
-            .orElseThrow(() -> new RuntimeException("游戏不存在"));
-        
-        // 使用JOIN FETCH预加载用户关联，避免N+1查询
-        List<GamePlayer> players = gamePlayerRepository.findByGameWithUser(game);
-        List<Quest> quests = questRepository.findByGameOrderByRoundNumber(game);
-        
-        // 批量加载投票和任务结果，避免每个任务单独查询
-        List<Vote> allVotes = voteRepository.findByQuestsWithQuest(quests);
-        List<QuestResult> allResults = questResultRepository.findByQuestsWithQuest(quests);
-        
-        // 将投票和结果按任务ID分组，提高查询效率
-        Map<UUID, List<Vote>> votesByQuest = allVotes.stream()
-            .collect(Collectors.groupingBy(vote -> vote.getQuest().getId()));
-        Map<UUID, List<QuestResult>> resultsByQuest = allResults.stream()
-            .collect(Collectors.groupingBy(result -> result.getQuest().getId()));
-        
-        // 获取当前玩家 - 现在用户已预加载，不会触发额外查询
-        GamePlayer currentPlayer = players.stream()
-            .filter(p -> p.getUser().getId().equals(userId))
-            .findFirst()
-            .orElseThrow(() -> new RuntimeException("玩家不在游戏中"));
+        GameData data = loadGameData(gameId);
         
-        // 获取当前任务
-        Quest currentQuest = quests.stream()
-            .filter(q -> !q.getStatus().equals(QuestStatus.COMPLETED.getValue()) && 
-                       !q.getStatus().equals(QuestStatus.FAILED.getValue()))
-            .findFirst()
-            .orElse(null);
+        // 校验当前用户是游戏玩家 - 用户已预加载，不会触发额外查询
+        if (data.players().stream().noneMatch(p -> p.getUser().getId().equals(userId))) {
+            throw new RuntimeException("玩家不在游戏中");
+        }
         
-        return buildGameStateResponse(game, players, quests, currentPlayer, currentQuest, 
-                                    votesByQuest, resultsByQuest);
+        return buildGameStateResponse(data);
     }
     
     @Transactional(readOnly = true)
     public Map<UUID, GameStateResponse> getGameStatesForAllPlayers(UUID gameId) {
+        GameData data = loadGameData(gameId);
+        
+        // 为每个玩家构建游戏状态
+        Map<UUID, GameStateResponse> gameStates = new HashMap<>();
+        for (GamePlayer player : data.players()) {
+            GameStateResponse state = buildGameStateResponse(data);
+            gameStates.put(player.getUser().getId(), state);
+        }
+        
+        return gameStates;
+    }
+
+    /**
+     * 观战视角的公开游戏状态
+     * 与玩家视角相同的公开信息，但不包含任何玩家的角色和阵营，游戏结束后才公开
+     */
+    @Transactional(readOnly = true)
+    public GameStateResponse getPublicGameState(UUID gameId) {
+        GameData data = loadGameData(gameId);
+        GameStateResponse response = buildGameStateResponse(data);
+        if (!GameStatus.ENDED.getValue().equals(data.game().getStatus())) {
+            response.getPlayers().forEach(player -> {
+                player.setRole(null);
+                player.setAlignment(null);
+            });
+        }
+        return response;
+    }
+
+    /**
+     * 一次性加载构建游戏状态所需的全部数据
+     */
+    private GameData loadGameData(UUID gameId) {
         Game game = gameRepository.findById(gameId)
             .orElseThrow(() -> new RuntimeException("游戏不存在"));
         
-        // 使用JOIN FETCH预加载用户关联
+        // 使用JOIN FETCH预加载用户关联，避免N+1查询
         List<GamePlayer> players = gamePlayerRepository.findByGameWithUser(game);
         List<Quest> quests = questRepository.findByGameOrderByRoundNumber(game);
         
-        // 批量加载投票和任务结果
-        List<Vote> allVotes = voteRepository.findByQuestsWithQuest(quests);
+        // 批量加载提议记录和任务结果，避免每个任务单独查询
+        List<ProposalRound> allProposals = proposalRepository.findRoundsByGameId(gameId);
         List<QuestResult> allResults = questResultRepository.findByQuestsWithQuest(quests);
         
-        // 将投票和结果按任务ID分组
-        Map<UUID, List<Vote>> votesByQuest = allVotes.stream()
-            .collect(Collectors.groupingBy(vote -> vote.getQuest().getId()));
+        // 将提议按轮次、结果按任务ID分组，提高查询效率
+        Map<Integer, List<ProposalRound>> proposalsByRound = allProposals.stream()
+            .collect(Collectors.groupingBy(ProposalRound::getRoundNumber));
         Map<UUID, List<QuestResult>> resultsByQuest = allResults.stream()
             .collect(Collectors.groupingBy(result -> result.getQuest().getId()));
         
-        // 获取当前任务
+        // 当前任务按游戏的当前任务指针从已加载的任务中取出
         Quest currentQuest = quests.stream()
-            .filter(q -> !q.getStatus().equals(QuestStatus.COMPLETED.getValue()) && 
-                       !q.getStatus().equals(QuestStatus.FAILED.getValue()))
+            .filter(q -> q.getId().equals(game.getCurrentQuestId()))
             .findFirst()
             .orElse(null);
         
-        // 为每个玩家构建游戏状态
-        Map<UUID, GameStateResponse> gameStates = new HashMap<>();
-        for (GamePlayer player : players) {
-            GameStateResponse state = buildGameStateResponse(game, players, quests, player, currentQuest, 
-                                                          votesByQuest, resultsByQuest);
-            gameStates.put(player.getUser().getId(), state);
-        }
-        
-        return gameStates;
+        return new GameData(game, players, quests, currentQuest, proposalsByRound, resultsByQuest);
     }
 
-    private GameStateResponse buildGameStateResponse(Game game, List<GamePlayer> players, 
-                                                   List<Quest> quests, GamePlayer currentPlayer, 
-                                                   Quest currentQuest, Map<UUID, List<Vote>> votesByQuest,
-                                                   Map<UUID, List<QuestResult>> resultsByQuest) {
+    private GameStateResponse buildGameStateResponse(GameData data) {
         GameStateResponse response = new GameStateResponse();
-        response.setGameId(game.getId());
-        response.setStatus(game.getStatus());
-        response.setCurrentRound(game.getCurrentRound());
-        response.setCurrentPhase(determineCurrentPhase(game, currentQuest));
-        response.setCurrentLeaderId(currentQuest != null ? currentQuest.getLeader().getId() : null);
+        response.setGameId(data.game().getId());
+        response.setStatus(data.game().getStatus());
+        response.setCurrentRound(data.game().getCurrentRound());
+        response.setCurrentPhase(determineCurrentPhase(data.game()));
+        response.setCurrentLeaderId(data.currentQuest() != null && data.currentQuest().getLeader() != null
+            ? data.currentQuest().getLeader().getId() : null);
+        response.setPhaseDeadline(phaseDeadlineService.deadlineOf(data.game().getId()));
         
         // 构建玩家信息
-        List<GameStateResponse.PlayerInfo> playerInfos = players.stream()
+        List<GameStateResponse.PlayerInfo> playerInfos = data.players().stream()
             .map(player -> {
                 GameStateResponse.PlayerInfo info = new GameStateResponse.PlayerInfo();
                 info.setPlayerId(player.getId());
@@ -126,7 +127,7 @@ public class GameStateService {
         response.setPlayers(playerInfos);
         
         // 构建任务信息 - 使用预加载的数据，避免N+1查询
-        List<GameStateResponse.QuestInfo> questInfos = quests.stream()
+        List<GameStateResponse.QuestInfo> questInfos = data.quests().stream()
             .map(quest -> {
                 GameStateResponse.QuestInfo info = new GameStateResponse.QuestInfo();
                 info.setQuestId(quest.getId());
@@ -136,22 +137,22 @@ public class GameStateService {
                 info.setStatus(quest.getStatus());
                 info.setLeaderId(quest.getLeader() != null ? quest.getLeader().getId() : null);
                 
-                // 使用预加载的投票数据，避免数据库查询
-                List<Vote> votes = votesByQuest.getOrDefault(quest.getId(), Collections.emptyList());
-                long approveCount = votes.stream()
-                    .filter(v -> v.getVoteType().equals(VoteType.APPROVE.getValue()))
-                    .count();
-                long rejectCount = votes.stream()
-                    .filter(v -> v.getVoteType().equals(VoteType.REJECT.getValue()))
-                    .count();
-                
-                info.setApproveCount((int) approveCount);
-                info.setRejectCount((int) rejectCount);
+                // 票数取自本轮最近一次提议的投票位掩码
+                List<ProposalRound> proposals = data.proposalsByRound().getOrDefault(quest.getRoundNumber(), Collections.emptyList());
+                info.setProposalCount(proposals.size());
+                if (!proposals.isEmpty()) {
+                    ProposalRound latest = proposals.get(proposals.size() - 1);
+                    info.setApproveCount(latest.getApproveCount());
+                    info.setRejectCount(latest.getRejectCount());
+                } else {
+                    info.setApproveCount(0);
+                    info.setRejectCount(0);
+                }
                 
                 // 使用预加载的任务结果数据，避免数据库查询
                 if (quest.getStatus().equals(QuestStatus.COMPLETED.getValue()) || 
                     quest.getStatus().equals(QuestStatus.FAILED.getValue())) {
-                    List<QuestResult> results = resultsByQuest.getOrDefault(quest.getId(), Collections.emptyList());
+                    List<QuestResult> results = data.resultsByQuest().getOrDefault(quest.getId(), Collections.emptyList());
                     boolean questSuccess = results.stream().allMatch(QuestResult::getSuccess);
                     info.setQuestResult(questSuccess);
                 }
@@ -161,50 +162,29 @@ public class GameStateService {
             .collect(Collectors.toList());
         response.setQuests(questInfos);
         
-        // 添加角色可见性信息
-        Map<String, List<String>> visibility = roleVisibilityService.getVisiblePlayers(currentPlayer, players);
-        
         return response;
     }
 
-    private String determineCurrentPhase(Game game, Quest currentQuest) {
-        if (game.getStatus().equals(GameStatus.PREPARING.getValue())) {
-            return "preparing";
-        } else if (game.getStatus().equals(GameStatus.ROLE_VIEWING.getValue())) {
-            return "role_viewing";
-        } else if (game.getStatus().equals(GameStatus.ENDED.getValue())) {
-            return "ended";
-        } else if (currentQuest == null) {
-            return "completed";
-        }
-        
-        switch (currentQuest.getStatus()) {
-            case "proposing":
-                return "team_building";
-            case "voting":
-                return "team_voting";
-            case "executing":
-                return "quest_execution";
-            default:
-                return "unknown";
-        }
+    private String determineCurrentPhase(Game game) {
+        return switch (game.currentPhase()) {
+            case PREPARING -> "preparing";
+            case ROLE_VIEWING -> "role_viewing";
+            case PROPOSING -> "team_building";
+            case VOTING -> "team_voting";
+            case EXECUTING -> "quest_execution";
+            case ASSASSINATION -> "assassination";
+            case ENDED -> "ended";
+        };
     }
 
     public boolean isPlayerTurn(UUID gameId, UUID playerId) {
         Game game = gameRepository.findById(gameId)
             .orElseThrow(() -> new RuntimeException("游戏不存在"));
         
-        Quest currentQuest = questRepository.findByGameOrderByRoundNumber(game).stream()
-            .filter(q -> !q.getStatus().equals(QuestStatus.COMPLETED.getValue()) && 
-                       !q.getStatus().equals(QuestStatus.FAILED.getValue()))
-            .findFirst()
-            .orElse(null);
-        
-        if (currentQuest == null) {
-            return false;
-        }
-        
-        return currentQuest.getLeader().getId().equals(playerId);
+        return questRepository.findCurrentQuest(game)
+            .map(Quest::getLeader)
+            .map(leader -> leader.getId().equals(playerId))
+            .orElse(false);
     }
 
     /**
@@ -245,4 +225,9 @@ public class GameStateService {
             visibility
         );
     }
-}
\ No newline at end of file
+
+    private record GameData(Game game, List<GamePlayer> players, List<Quest> quests, Quest currentQuest,
+                            Map<Integer, List<ProposalRound>> proposalsByRound,
+                            Map<UUID, List<QuestResult>> resultsByQuest) {
+    }
+}
@@ -1,9 +1,11 @@
 package cn.xiaolin.avalon.service;
 
 import cn.xiaolin.avalon.dto.GameStatisticsResponse;
+import cn.xiaolin.avalon.dto.ProposalRound;
+import cn.xiaolin.avalon.engine.AvalonRules;
 import cn.xiaolin.avalon.entity.*;
-import cn.xiaolin.avalon.enums.VoteType;
 import cn.xiaolin.avalon.repository.*;
+import cn.xiaolin.avalon.utils.GameArchiveCodec;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -19,22 +21,41 @@ public class GameStatisticsService {
     private final GameRepository gameRepository;
     private final GamePlayerRepository gamePlayerRepository;
     private final QuestRepository questRepository;
-    private final VoteRepository voteRepository;
+    private final ProposalRepository proposalRepository;
     private final QuestResultRepository questResultRepository;
+    private final GameArchiveRepository gameArchiveRepository;
+    private final GameArchiveCodec gameArchiveCodec;
 
     public GameStatisticsResponse getGameStatistics(UUID gameId) {
         Game game = gameRepository.findById(gameId)
             .orElseThrow(() -> new RuntimeException("游戏不存在"));
 
+        // 已归档的游戏明细已从热表删除，直接读取归档快照
+        if (game.getArchivedAt() != null) {
+            GameArchive archive = gameArchiveRepository.findById(gameId)
+                .orElseThrow(() -> new RuntimeException("游戏归档不存在"));
+            return gameArchiveCodec.decode(archive.getPayload());
+        }
+
+        return buildStatistics(game);
+    }
+
+    /**
+     * 根据热表中的明细数据计算游戏统计
+     * @param game 游戏对象
+     * @return 游戏统计
+     */
+    public GameStatisticsResponse buildStatistics(Game game) {
         List<GamePlayer> players = gamePlayerRepository.findByGame(game);
         List<Quest> quests = questRepository.findByGameOrderByRoundNumber(game);
-        List<Vote> votes = voteRepository.findByGame(game);
+        // 投票统计直接取自每次提议的投票位掩码，不再逐张加载投票
+        List<ProposalRound> proposals = proposalRepository.findRoundsByGameId(game.getId());
         List<QuestResult> questResults = questResultRepository.findByGame(game);
 
         GameStatisticsResponse response = new GameStatisticsResponse();
         response.setGameId(game.getId());
         response.setWinner(game.getWinner());
-        response.setWinType(determineWinType(game, quests));
+        response.setWinType(determineWinType(game, quests, proposals));
         response.setTotalRounds(quests.size());
         response.setSuccessfulQuests((int) quests.stream().filter(q -> q.getStatus().equals("completed")).count());
         response.setFailedQuests((int) quests.stream().filter(q -> q.getStatus().equals("failed")).count());
@@ -46,8 +67,6 @@ public class GameStatisticsService {
         }
 
         // 玩家统计
-        Map<UUID, List<Vote>> playerVotes = votes.stream()
-            .collect(Collectors.groupingBy(v -> v.getPlayer().getId()));
         Map<UUID, List<QuestResult>> playerQuestResults = questResults.stream()
             .collect(Collectors.groupingBy(r -> r.getPlayer().getId()));
 
@@ -61,12 +80,12 @@ public class GameStatisticsService {
                 stats.setIsHost(player.getIsHost());
 
                 // 投票统计
-                List<Vote> playerVoteList = playerVotes.getOrDefault(player.getUser().getId(), List.of());
-                stats.setVoteCount(playerVoteList.size());
-                stats.setApproveVotes((int) playerVoteList.stream()
-                    .filter(v -> v.getVoteType().equals(VoteType.APPROVE.getValue())).count());
-                stats.setRejectVotes((int) playerVoteList.stream()
-                    .filter(v -> v.getVoteType().equals(VoteType.REJECT.getValue())).count());
+                int seatBit = AvalonRules.seatBit(player.getSeatNumber());
+                int approveVotes = (int) proposals.stream().filter(r -> (r.getApproveMask() & seatBit) != 0).count();
+                int rejectVotes = (int) proposals.stream().filter(r -> (r.getRejectMask() & seatBit) != 0).count();
+                stats.setVoteCount(approveVotes + rejectVotes);
+                stats.setApproveVotes(approveVotes);
+                stats.setRejectVotes(rejectVotes);
 
                 // 任务统计
                 List<QuestResult> playerQuestList = playerQuestResults.getOrDefault(player.getUser().getId(), List.of());
@@ -99,13 +118,11 @@ public class GameStatisticsService {
                 stats.setRequiredPlayers(quest.getRequiredPlayers());
                 stats.setRequiredFails(quest.getRequiredFails());
 
-                List<Vote> questVotes = votes.stream()
-                    .filter(v -> v.getQuest().getId().equals(quest.getId()))
-                    .collect(Collectors.toList());
-                stats.setApproveVotes((int) questVotes.stream()
-                    .filter(v -> v.getVoteType().equals(VoteType.APPROVE.getValue())).count());
-                stats.setRejectVotes((int) questVotes.stream()
-                    .filter(v -> v.getVoteType().equals(VoteType.REJECT.getValue())).count());
+                List<ProposalRound> questProposals = proposals.stream()
+                    .filter(r -> r.getRoundNumber().equals(quest.getRoundNumber()))
+                    .toList();
+                stats.setApproveVotes(questProposals.stream().mapToInt(ProposalRound::getApproveCount).sum());
+                stats.setRejectVotes(questProposals.stream().mapToInt(ProposalRound::getRejectCount).sum());
 
                 if (quest.getLeader() != null) {
                     stats.setLeaderName(quest.getLeader().getUsername());
@@ -131,7 +148,7 @@ public class GameStatisticsService {
         return response;
     }
 
-    private String determineWinType(Game game, List<Quest> quests) {
+    private String determineWinType(Game game, List<Quest> quests, List<ProposalRound> proposals) {
         if (game.getWinner() == null) {
             return "unknown";
         }
@@ -153,6 +170,14 @@ public class GameStatisticsService {
             if (game.getGameConfig() != null && game.getGameConfig().contains("assassination")) {
                 return "assassination_victory";
             }
+
+            // 检查是否是连续否决胜利
+            boolean rejectionLimitReached = proposals.stream()
+                .anyMatch(r -> AvalonRules.rejectionLimitReached(r.getAttempt())
+                    && !AvalonRules.votePasses(r.getApproveCount(), r.getRejectCount()));
+            if (rejectionLimitReached) {
+                return "proposal_rejections";
+            }
         }
 
         return "unknown";
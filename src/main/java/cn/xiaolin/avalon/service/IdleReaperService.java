@@ -0,0 +1,224 @@
+package cn.xiaolin.avalon.service;
+
+import cn.xiaolin.avalon.enums.GamePhase;
+import cn.xiaolin.avalon.enums.GameStatus;
+import cn.xiaolin.avalon.enums.RoomStatus;
+import cn.xiaolin.avalon.repository.GamePlayerRepository;
+import cn.xiaolin.avalon.repository.GameRepository;
+import cn.xiaolin.avalon.repository.RoomPlayerRepository;
+import cn.xiaolin.avalon.repository.RoomRepository;
+import cn.xiaolin.avalon.websocket.GameEventBroadcaster;
+import cn.xiaolin.avalon.websocket.GameMessage;
+import cn.xiaolin.avalon.websocket.RoomEventController;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 空闲资源回收服务
+ * 定时回收长时间无人操作的房间和对局：
+ * 使用集合式SQL批量关闭房间、结束对局、将房间玩家置为非活跃，
+ * 随后清理相关缓存并广播房间关闭事件
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "reaper.enabled", havingValue = "true", matchIfMissing = true)
+public class IdleReaperService {
+    private static final List<String> ACTIVE_GAME_STATUSES = List.of(
+        GameStatus.PREPARING.getValue(),
+        GameStatus.ROLE_VIEWING.getValue(),
+        GameStatus.PLAYING.getValue()
+    );
+
+    private static final List<String> REAPABLE_ROOM_STATUSES = List.of(
+        RoomStatus.WAITING.getValue(),
+        RoomStatus.ENDED.getValue()
+    );
+
+    private final GameRepository gameRepository;
+    private final GamePlayerRepository gamePlayerRepository;
+    private final RoomRepository roomRepository;
+    private final RoomPlayerRepository roomPlayerRepository;
+    private final RoomEventController roomEventController;
+    private final GameEventBroadcaster gameEventBroadcaster;
+    private final CacheManager cacheManager;
+    private final TransactionTemplate transactionTemplate;
+    private final PhaseDeadlineService phaseDeadlineService;
+
+    private final Counter gamesExpired;
+    private final Counter roomsClosed;
+    private final Counter roomPlayersDeactivated;
+    private final Timer runTimer;
+
+    @Value("${reaper.game-idle-timeout:7200000}") // 2 hours
+    private Long gameIdleTimeout;
+
+    @Value("${reaper.room-idle-timeout:7200000}") // 2 hours
+    private Long roomIdleTimeout;
+
+    @Value("${reaper.batch-size:500}")
+    private Integer batchSize;
+
+    public IdleReaperService(GameRepository gameRepository,
+                             GamePlayerRepository gamePlayerRepository,
+                             RoomRepository roomRepository,
+                             RoomPlayerRepository roomPlayerRepository,
+                             RoomEventController roomEventController,
+                             GameEventBroadcaster gameEventBroadcaster,
+                             CacheManager cacheManager,
+                             TransactionTemplate transactionTemplate,
+                             PhaseDeadlineService phaseDeadlineService,
+                             MeterRegistry meterRegistry) {
+        this.gameRepository = gameRepository;
+        this.gamePlayerRepository = gamePlayerRepository;
+        this.roomRepository = roomRepository;
+        this.roomPlayerRepository = roomPlayerRepository;
+        this.roomEventController = roomEventController;
+        this.gameEventBroadcaster = gameEventBroadcaster;
+        this.cacheManager = cacheManager;
+        this.transactionTemplate = transactionTemplate;
+        this.phaseDeadlineService = phaseDeadlineService;
+
+        this.gamesExpired = Counter.builder("avalon.reaper.games.expired")
+            .description("因长时间无操作被结束的对局数")
+            .register(meterRegistry);
+        this.roomsClosed = Counter.builder("avalon.reaper.rooms.closed")
+            .description("因长时间无操作被关闭的房间数")
+            .register(meterRegistry);
+        this.roomPlayersDeactivated = Counter.builder("avalon.reaper.room_players.deactivated")
+            .description("被置为非活跃的房间玩家记录数")
+            .register(meterRegistry);
+        this.runTimer = Timer.builder("avalon.reaper.run")
+            .description("单次回收耗时")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${reaper.interval:60000}", initialDelayString = "${reaper.interval:60000}")
+    public void reap() {
+        runTimer.record(() -> {
+            try {
+                ReapResult result = Objects.requireNonNull(transactionTemplate.execute(status -> reapBatch()));
+                afterCommit(result);
+            } catch (Exception e) {
+                // 回收失败不影响主要功能，下一轮重试
+                log.error("空闲资源回收失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 在一个事务内回收一批空闲对局和房间
+     */
+    private ReapResult reapBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        PageRequest batch = PageRequest.of(0, batchSize);
+
+        // 1. 结束长时间无操作的对局
+        List<UUID> gameIds = gameRepository.findIdleGameIds(
+            ACTIVE_GAME_STATUSES, now.minusNanos(gameIdleTimeout * 1_000_000), batch);
+        List<Object[]> gamePlayerIds = List.of();
+        Set<UUID> roomIds = new LinkedHashSet<>();
+        if (!gameIds.isEmpty()) {
+            gamePlayerIds = gamePlayerRepository.findGameAndUserIdsByGameIds(gameIds);
+            roomIds.addAll(gameRepository.findRoomIdsByGameIds(gameIds));
+            gameRepository.updateStatusByIds(gameIds, GameStatus.ENDED.getValue(), GamePhase.ENDED.getValue(), now);
+        }
+
+        // 2. 关闭空闲房间以及被结束对局所在的房间
+        roomIds.addAll(roomRepository.findIdleRoomIds(
+            REAPABLE_ROOM_STATUSES, now.minusNanos(roomIdleTimeout * 1_000_000), batch));
+        List<UUID> closedRoomIds = new ArrayList<>(roomIds);
+        List<String> roomCodes = List.of();
+        int deactivated = 0;
+        if (!closedRoomIds.isEmpty()) {
+            roomCodes = roomRepository.findRoomCodesByIds(closedRoomIds);
+            roomRepository.updateStatusByIds(closedRoomIds, "closed");
+            deactivated = roomPlayerRepository.deactivateByRoomIds(closedRoomIds, now);
+        }
+
+        return new ReapResult(gameIds, gamePlayerIds, closedRoomIds, roomCodes, deactivated);
+    }
+
+    /**
+     * 事务提交后清理缓存、广播事件并记录指标
+     */
+    private void afterCommit(ReapResult result) {
+        if (result.isEmpty()) {
+            return;
+        }
+
+        evictCaches(result);
+
+        for (UUID gameId : result.gameIds()) {
+            GameMessage message = new GameMessage();
+            message.setType("GAME_EXPIRED");
+            message.setGameId(gameId);
+            message.setContent("游戏长时间无操作，已自动结束");
+            message.setTimestamp(System.currentTimeMillis());
+            gameEventBroadcaster.closeGame(gameId, message);
+            phaseDeadlineService.cancel(gameId);
+        }
+        for (UUID roomId : result.roomIds()) {
+            roomEventController.broadcastRoomClosed(roomId.toString());
+        }
+
+        gamesExpired.increment(result.gameIds().size());
+        roomsClosed.increment(result.roomIds().size());
+        roomPlayersDeactivated.increment(result.deactivatedPlayers());
+
+        log.info("空闲资源回收完成: games={}, rooms={}, roomPlayers={}",
+            result.gameIds().size(), result.roomIds().size(), result.deactivatedPlayers());
+    }
+
+    private void evictCaches(ReapResult result) {
+        try {
+            Cache roomCache = cacheManager.getCache("room");
+            Cache roomPlayersCache = cacheManager.getCache("roomPlayers");
+            for (String roomCode : result.roomCodes()) {
+                if (roomCache != null) {
+                    roomCache.evict(roomCode);
+                }
+                if (roomPlayersCache != null) {
+                    roomPlayersCache.evict(roomCode);
+                }
+            }
+
+            Cache gameStateCache = cacheManager.getCache("gameState");
+            if (gameStateCache != null) {
+                for (Object[] ids : result.gamePlayerIds()) {
+                    gameStateCache.evict(ids[0] + "_" + ids[1]);
+                }
+            }
+        } catch (Exception e) {
+            // 缓存不可用时不影响回收结果，缓存会按TTL过期
+            log.warn("回收后清理缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private record ReapResult(List<UUID> gameIds,
+                              List<Object[]> gamePlayerIds,
+                              List<UUID> roomIds,
+                              List<String> roomCodes,
+                              int deactivatedPlayers) {
+        boolean isEmpty() {
+            return gameIds.isEmpty() && roomIds.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package cn.xiaolin.avalon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 密码哈希服务
+ * BCrypt 计算放在独立的有界线程池中执行，同时进行的哈希数量不超过线程数，
+ * 登录高峰不会占满CPU而拖慢游戏请求；队列满或等待超时立即失败，由调用方返回503
+ */
+@Service
+@Slf4j
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer queueWait;
+    private final Timer encodeTimer;
+    private final Timer verifyTimer;
+    private final Counter rejected;
+
+    @Value("${auth.hashing.timeout:5000}")
+    private Long timeout;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${auth.hashing.threads:0}") Integer threads,
+                                  @Value("${auth.hashing.queue-capacity:100}") Integer queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        // 默认使用一半的CPU核心，另一半留给请求处理和消息推送
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("auth-hashing-"),
+            new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "auth.hashing");
+
+        this.queueWait = Timer.builder("avalon.auth.hashing.queue.wait")
+            .description("密码哈希任务在队列中的等待时间")
+            .register(meterRegistry);
+        this.encodeTimer = hashTimer(meterRegistry, "encode");
+        this.verifyTimer = hashTimer(meterRegistry, "verify");
+        this.rejected = Counter.builder("avalon.auth.hashing.rejected")
+            .description("因队列已满或等待超时而被拒绝的密码哈希请求数")
+            .register(meterRegistry);
+    }
+
+    public String encode(String rawPassword) {
+        return submit(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String passwordHash) {
+        return submit(verifyTimer, () -> passwordEncoder.matches(rawPassword, passwordHash));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List<Runnable> pending = executor.shutdownNow();
+        if (!pending.isEmpty()) {
+            log.info("密码哈希线程池关闭，丢弃{}个排队任务", pending.size());
+        }
+    }
+
+    private <T> T submit(Timer timer, Callable<T> task) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return timer.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new HashingBusyException();
+        }
+
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new HashingBusyException();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new HashingBusyException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtimeException
+                ? runtimeException : new RuntimeException("密码处理失败", cause);
+        }
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("avalon.auth.hashing")
+            .description("单次密码哈希计算耗时")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    /**
+     * 密码哈希线程池繁忙，请求应稍后重试
+     */
+    public static class HashingBusyException extends RuntimeException {
+        public HashingBusyException() {
+            super("登录人数过多，请稍后再试");
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package cn.xiaolin.avalon.service;
+
+import cn.xiaolin.avalon.utils.HashedWheelTimer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阶段限时服务
+ * 每局游戏同一时刻只有一个阶段限时（组队、投票、执行任务、刺杀），进入新阶段时取消旧的限时并登记新的限时。
+ * 所有对局共用一个哈希时间轮，登记和取消都是O(1)，到期后由 PhaseTimeoutService 执行默认操作。
+ * 限时只保存在本机内存，排空（drain）时由 DrainService 随对局快照一起保存，新实例启动时按原到期时间恢复
+ */
+@Service
+@Slf4j
+public class PhaseDeadlineService {
+
+    public enum Phase {
+        PROPOSING, VOTING, EXECUTING, ASSASSINATION
+    }
+
+    /**
+     * 一个阶段限时
+     * @param questId 登记时的当前任务，到期时用于确认阶段没有变化；刺杀阶段为空
+     * @param expiresAt 到期时间（毫秒）
+     */
+    public record Deadline(UUID gameId, Phase phase, UUID questId, long expiresAt) {
+    }
+
+    /**
+     * 到期回调
+     */
+    public interface ExpiryHandler {
+        void onExpired(Deadline deadline);
+    }
+
+    /**
+     * 游戏ID -> 当前阶段限时
+     */
+    private final Map<UUID, Entry> deadlines = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Counter scheduled;
+
+    private HashedWheelTimer timer;
+    private ExecutorService actionExecutor;
+    private volatile ExpiryHandler expiryHandler;
+
+    @Value("${deadline.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${deadline.proposing:120000}") // 2 minutes
+    private Long proposingTimeout;
+
+    @Value("${deadline.voting:60000}") // 1 minute
+    private Long votingTimeout;
+
+    @Value("${deadline.executing:60000}") // 1 minute
+    private Long executingTimeout;
+
+    @Value("${deadline.assassination:120000}") // 2 minutes
+    private Long assassinationTimeout;
+
+    @Value("${deadline.tick:100}")
+    private Long tick;
+
+    @Value("${deadline.wheel-size:512}")
+    private Integer wheelSize;
+
+    @Value("${deadline.action-threads:2}")
+    private Integer actionThreads;
+
+    public PhaseDeadlineService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.scheduled = Counter.builder("avalon.deadline.scheduled")
+            .description("登记的阶段限时数")
+            .register(meterRegistry);
+        Gauge.builder("avalon.deadline.pending", deadlines, Map::size)
+            .description("当前等待到期的阶段限时数")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        actionExecutor = Executors.newFixedThreadPool(Math.max(1, actionThreads), new CustomizableThreadFactory("phase-deadline-"));
+        timer = new HashedWheelTimer("phase-deadline-timer", tick, TimeUnit.MILLISECONDS, wheelSize, actionExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (timer != null) {
+            timer.close();
+        }
+        if (actionExecutor != null) {
+            actionExecutor.shutdownNow();
+        }
+    }
+
+    public void setExpiryHandler(ExpiryHandler expiryHandler) {
+        this.expiryHandler = expiryHandler;
+    }
+
+    /**
+     * 进入新阶段时登记限时，替换该局之前的限时；对应阶段配置为0时只取消旧限时
+     */
+    public void schedule(UUID gameId, Phase phase, UUID questId) {
+        if (!enabled) {
+            return;
+        }
+        long timeout = timeoutOf(phase);
+        if (timeout <= 0) {
+            cancel(gameId);
+            return;
+        }
+        register(new Deadline(gameId, phase, questId, System.currentTimeMillis() + timeout), timeout);
+    }
+
+    /**
+     * 按快照中的到期时间恢复限时，恢复时已过期的限时在下一个刻度执行默认操作
+     */
+    public void restore(Deadline deadline) {
+        if (!enabled) {
+            return;
+        }
+        register(deadline, Math.max(0, deadline.expiresAt() - System.currentTimeMillis()));
+    }
+
+    /**
+     * 游戏结束或被回收时取消限时
+     */
+    public void cancel(UUID gameId) {
+        Entry previous = deadlines.remove(gameId);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * 当前阶段的到期时间，没有限时返回 null
+     */
+    public Long deadlineOf(UUID gameId) {
+        Entry entry = deadlines.get(gameId);
+        return entry == null ? null : entry.deadline.expiresAt();
+    }
+
+    /**
+     * 当前等待到期的全部限时
+     */
+    public List<Deadline> pendingDeadlines() {
+        return deadlines.values().stream().map(entry -> entry.deadline).toList();
+    }
+
+    private void register(Deadline deadline, long delay) {
+        Entry entry = new Entry(deadline);
+        Entry previous = deadlines.put(deadline.gameId(), entry);
+        if (previous != null) {
+            previous.cancel();
+        }
+        // 先登记再加入时间轮；取消与加入之间的竞争由到期时的登记检查兜底
+        entry.timeout = timer.schedule(() -> expire(entry), delay, TimeUnit.MILLISECONDS);
+        scheduled.increment();
+    }
+
+    private void expire(Entry entry) {
+        Deadline deadline = entry.deadline;
+        // 只在仍是该局当前限时时处理，被替换的旧限时即使已到期也直接丢弃
+        if (!deadlines.remove(deadline.gameId(), entry)) {
+            return;
+        }
+        meterRegistry.counter("avalon.deadline.expired", "phase", deadline.phase().name().toLowerCase()).increment();
+        ExpiryHandler handler = expiryHandler;
+        if (handler == null) {
+            return;
+        }
+        try {
+            handler.onExpired(deadline);
+        } catch (Exception e) {
+            log.error("阶段限时默认操作失败: gameId={}, phase={}, error={}", deadline.gameId(), deadline.phase(), e.getMessage());
+        }
+    }
+
+    private long timeoutOf(Phase phase) {
+        return switch (phase) {
+            case PROPOSING -> proposingTimeout;
+            case VOTING -> votingTimeout;
+            case EXECUTING -> executingTimeout;
+            case ASSASSINATION -> assassinationTimeout;
+        };
+    }
+
+    private static final class Entry {
+        private final Deadline deadline;
+        private volatile HashedWheelTimer.Timeout timeout;
+
+        Entry(Deadline deadline) {
+            this.deadline = deadline;
+        }
+
+        void cancel() {
+            HashedWheelTimer.Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package cn.xiaolin.avalon.service;
+
+import cn.xiaolin.avalon.enums.VoteType;
+import cn.xiaolin.avalon.websocket.GameEventBroadcaster;
+import cn.xiaolin.avalon.websocket.GameMessage;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 阶段超时处理
+ * 阶段限时到期后执行默认操作，让无人操作的对局继续推进：
+ * 组队超时由队长和其后座位的玩家组队，投票超时未投票者按默认票处理，
+ * 执行超时未提交者按任务成功处理，刺杀超时关闭刺杀阶段、正义阵营保持胜利。
+ * 每个默认操作都会先确认阶段仍与登记时一致，玩家已经操作过的阶段不受影响
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PhaseTimeoutService {
+    private final PhaseDeadlineService phaseDeadlineService;
+    private final ProposalService proposalService;
+    private final VoteService voteService;
+    private final QuestService questService;
+    private final AssassinationService assassinationService;
+    private final GameEventBroadcaster gameEventBroadcaster;
+
+    @Value("${deadline.default-vote:approve}")
+    private String defaultVote;
+
+    @PostConstruct
+    public void init() {
+        phaseDeadlineService.setExpiryHandler(this::onExpired);
+    }
+
+    void onExpired(PhaseDeadlineService.Deadline deadline) {
+        log.info("阶段限时到期，执行默认操作: gameId={}, phase={}", deadline.gameId(), deadline.phase());
+        switch (deadline.phase()) {
+            case PROPOSING -> proposalService.proposeDefaultTeam(deadline.gameId(), deadline.questId());
+            case VOTING -> voteService.fillMissingVotes(deadline.gameId(), deadline.questId(), defaultVoteType());
+            case EXECUTING -> questService.fillMissingResults(deadline.gameId(), deadline.questId());
+            case ASSASSINATION -> {
+                if (assassinationService.closeAssassination(deadline.gameId())) {
+                    GameMessage message = new GameMessage();
+                    message.setType("ASSASSINATION_TIMEOUT");
+                    message.setGameId(deadline.gameId());
+                    message.setContent("刺客超时未刺杀，正义阵营获胜");
+                    message.setTimestamp(System.currentTimeMillis());
+                    gameEventBroadcaster.broadcastToGame(deadline.gameId(), message);
+                }
+            }
+        }
+    }
+
+    private String defaultVoteType() {
+        return VoteType.REJECT.getValue().equalsIgnoreCase(defaultVote)
+            ? VoteType.REJECT.getValue()
+            : VoteType.APPROVE.getValue();
+    }
+}
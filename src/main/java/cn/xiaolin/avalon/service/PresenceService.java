@@ -0,0 +1,368 @@
+package cn.xiaolin.avalon.service;
+
+import cn.xiaolin.avalon.dto.PlayerInfoResponse;
+import cn.xiaolin.avalon.dto.RoomDepartureResponse;
+import cn.xiaolin.avalon.repository.GameRepository;
+import cn.xiaolin.avalon.repository.RoomPlayerRepository;
+import cn.xiaolin.avalon.websocket.RoomEventController;
+import cn.xiaolin.avalon.websocket.StompPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 在线状态服务
+ * 根据STOMP会话的连接、订阅、断开事件在内存中维护每个房间的在线玩家：
+ * 1. 订阅 /topic/room/{roomId} 或 /topic/game/{gameId} 即视为在该房间在线，同一玩家可有多个订阅。
+ *    房间主题对所有已登录用户开放，只统计房间内的活跃玩家；游戏主题的订阅者已由 GameTopicGuard 校验为本局玩家
+ * 2. 最后一个订阅断开后进入重连宽限期，宽限期内重新订阅不产生任何事件
+ * 3. 宽限期过后按房间批量将玩家置为非活跃（仅等待中的房间），并处理房主转移和房间关闭
+ * 掉线检测依赖STOMP心跳（websocket.heartbeat），心跳超时的连接由代理关闭并触发断开事件
+ */
+@Service
+@Slf4j
+public class PresenceService {
+    private static final Pattern ROOM_DESTINATION = Pattern.compile("^/topic/room/([0-9a-fA-F-]{36})$");
+    private static final Pattern GAME_DESTINATION = Pattern.compile("^/topic/game/([0-9a-fA-F-]{36})$");
+
+    private final GameRepository gameRepository;
+    private final RoomPlayerRepository roomPlayerRepository;
+    private final RoomPlayerService roomPlayerService;
+    private final RoomEventController roomEventController;
+
+    private final Counter playersExpired;
+
+    @Value("${presence.grace-period:30000}") // 30 seconds
+    private Long gracePeriod;
+
+    @Value("${presence.auto-leave:true}")
+    private Boolean autoLeave;
+
+    /**
+     * sessionId -> 会话信息
+     */
+    private final Map<String, SessionPresence> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * roomId -> 房间在线玩家
+     */
+    private final Map<UUID, RoomPresence> rooms = new ConcurrentHashMap<>();
+
+    /**
+     * gameId -> roomId，订阅游戏主题时只查询一次
+     */
+    private final Map<UUID, UUID> gameRooms = new ConcurrentHashMap<>();
+
+    public PresenceService(GameRepository gameRepository,
+                           RoomPlayerRepository roomPlayerRepository,
+                           RoomPlayerService roomPlayerService,
+                           RoomEventController roomEventController,
+                           MeterRegistry meterRegistry) {
+        this.gameRepository = gameRepository;
+        this.roomPlayerRepository = roomPlayerRepository;
+        this.roomPlayerService = roomPlayerService;
+        this.roomEventController = roomEventController;
+
+        this.playersExpired = Counter.builder("avalon.presence.expired")
+            .description("重连宽限期过后被移出房间的玩家数")
+            .register(meterRegistry);
+        Gauge.builder("avalon.presence.online", this, PresenceService::totalOnline)
+            .description("在线（含重连宽限期内）的房间玩家数")
+            .register(meterRegistry);
+        Gauge.builder("avalon.presence.sessions", sessions, Map::size)
+            .description("已认证的STOMP会话数")
+            .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (!(event.getUser() instanceof StompPrincipal principal) || sessionId == null) {
+            return;
+        }
+        // 用户ID在CONNECT认证时已从令牌解析
+        sessions.put(sessionId, new SessionPresence(principal.userId()));
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        SessionPresence session = sessions.get(accessor.getSessionId());
+        if (session == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        UUID roomId = resolveRoomId(accessor.getDestination(), session.userId);
+        if (roomId == null) {
+            return;
+        }
+        session.subscriptions.put(accessor.getSubscriptionId(), roomId);
+        // 与 flushExpired 的空房间移除互斥，避免挂到已被移除的房间上
+        rooms.compute(roomId, (id, room) -> {
+            RoomPresence presence = room == null ? new RoomPresence() : room;
+            presence.attach(session.userId);
+            return presence;
+        });
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        SessionPresence session = sessions.get(accessor.getSessionId());
+        if (session == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        UUID roomId = session.subscriptions.remove(accessor.getSubscriptionId());
+        if (roomId != null) {
+            detach(roomId, session.userId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionPresence session = sessions.remove(event.getSessionId());
+        if (session == null) {
+            return;
+        }
+        for (UUID roomId : session.subscriptions.values()) {
+            detach(roomId, session.userId);
+        }
+    }
+
+    /**
+     * 玩家是否在线（重连宽限期内仍视为在线）
+     */
+    public boolean isOnline(UUID roomId, UUID userId) {
+        RoomPresence room = rooms.get(roomId);
+        return room != null && room.isOnline(userId, System.currentTimeMillis());
+    }
+
+    /**
+     * 房间在线人数（重连宽限期内仍计入），不查询数据库
+     */
+    public int onlineCount(UUID roomId) {
+        RoomPresence room = rooms.get(roomId);
+        return room == null ? 0 : room.onlineCount(System.currentTimeMillis());
+    }
+
+    /**
+     * 定时处理宽限期已过的玩家：按房间批量持久化，事务提交后再广播
+     */
+    @Scheduled(fixedDelayString = "${presence.flush-interval:5000}", initialDelayString = "${presence.flush-interval:5000}")
+    public void flushExpired() {
+        long now = System.currentTimeMillis();
+        Map<UUID, List<UUID>> expired = new HashMap<>();
+        for (UUID roomId : rooms.keySet()) {
+            rooms.computeIfPresent(roomId, (id, room) -> {
+                List<UUID> userIds = room.removeExpired(now);
+                if (!userIds.isEmpty()) {
+                    expired.put(id, userIds);
+                }
+                return room.isEmpty() ? null : room;
+            });
+        }
+        gameRooms.values().removeIf(roomId -> !rooms.containsKey(roomId));
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        playersExpired.increment(expired.values().stream().mapToInt(List::size).sum());
+        if (!autoLeave) {
+            return;
+        }
+        for (Map.Entry<UUID, List<UUID>> entry : expired.entrySet()) {
+            try {
+                RoomDepartureResponse departure = roomPlayerService.removeDisconnectedPlayers(entry.getKey(), entry.getValue());
+                if (departure != null) {
+                    broadcastDeparture(departure);
+                }
+            } catch (Exception e) {
+                log.error("移除掉线玩家失败: roomId={}, error={}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private void broadcastDeparture(RoomDepartureResponse departure) {
+        String roomId = departure.getRoomId().toString();
+        if (departure.isRoomClosed()) {
+            Map<String, Object> closedEventData = new HashMap<>();
+            closedEventData.put("roomId", roomId);
+            closedEventData.put("roomCode", departure.getRoomCode());
+            closedEventData.put("timestamp", System.currentTimeMillis());
+            roomEventController.broadcastRoomEventWithData(roomId, "ROOM_CLOSED", closedEventData);
+            return;
+        }
+
+        if (departure.getNewHost() != null) {
+            Map<String, Object> hostTransferData = new HashMap<>();
+            hostTransferData.put("roomId", roomId);
+            hostTransferData.put("newHost", departure.getNewHost());
+            hostTransferData.put("roomCode", departure.getRoomCode());
+            hostTransferData.put("timestamp", System.currentTimeMillis());
+            roomEventController.broadcastRoomEventWithData(roomId, "HOST_TRANSFERRED", hostTransferData);
+        }
+
+        Map<String, Object> roomInfo = new HashMap<>();
+        roomInfo.put("currentPlayers", departure.getPlayers().size());
+        roomInfo.put("maxPlayers", departure.getMaxPlayers());
+        roomInfo.put("status", departure.getStatus());
+        for (PlayerInfoResponse leftPlayer : departure.getLeftPlayers()) {
+            Map<String, Object> eventData = new HashMap<>();
+            eventData.put("leftPlayer", Map.of(
+                "userId", leftPlayer.getPlayerId().toString(),
+                "username", leftPlayer.getUsername()
+            ));
+            eventData.put("players", departure.getPlayers());
+            eventData.put("roomInfo", roomInfo);
+            eventData.put("reason", "DISCONNECTED");
+            roomEventController.broadcastRoomEventWithData(roomId, "PLAYER_LEFT", eventData);
+        }
+    }
+
+    private void detach(UUID roomId, UUID userId) {
+        RoomPresence room = rooms.get(roomId);
+        if (room != null) {
+            room.detach(userId, System.currentTimeMillis() + gracePeriod);
+        }
+    }
+
+    /**
+     * 解析订阅对应的房间，房间主题的订阅者不是房间内的活跃玩家时返回null，不计入在线
+     */
+    private UUID resolveRoomId(String destination, UUID userId) {
+        if (destination == null) {
+            return null;
+        }
+        Matcher roomMatcher = ROOM_DESTINATION.matcher(destination);
+        if (roomMatcher.matches()) {
+            UUID roomId = parseUuid(roomMatcher.group(1));
+            return roomId != null && roomPlayerRepository.existsByRoomIdAndUserIdAndIsActiveTrue(roomId, userId)
+                ? roomId : null;
+        }
+        Matcher gameMatcher = GAME_DESTINATION.matcher(destination);
+        if (!gameMatcher.matches()) {
+            return null;
+        }
+        UUID gameId = parseUuid(gameMatcher.group(1));
+        if (gameId == null) {
+            return null;
+        }
+        UUID cached = gameRooms.get(gameId);
+        if (cached != null) {
+            return cached;
+        }
+        UUID roomId = gameRepository.findById(gameId)
+            .map(game -> game.getRoom().getId())
+            .orElse(null);
+        if (roomId != null) {
+            gameRooms.put(gameId, roomId);
+        }
+        return roomId;
+    }
+
+    private UUID parseUuid(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private double totalOnline() {
+        long now = System.currentTimeMillis();
+        return rooms.values().stream().mapToInt(room -> room.onlineCount(now)).sum();
+    }
+
+    private static final class SessionPresence {
+        private final UUID userId;
+        /**
+         * subscriptionId -> roomId
+         */
+        private final Map<String, UUID> subscriptions = new ConcurrentHashMap<>();
+
+        SessionPresence(UUID userId) {
+            this.userId = userId;
+        }
+    }
+
+    /**
+     * 单个房间的在线玩家，按玩家统计订阅数，订阅数归零时记录宽限期截止时间
+     */
+    private static final class RoomPresence {
+        private final Map<UUID, Member> members = new HashMap<>();
+
+        synchronized void attach(UUID userId) {
+            Member member = members.computeIfAbsent(userId, id -> new Member());
+            member.subscriptions++;
+            member.graceUntil = 0;
+        }
+
+        synchronized void detach(UUID userId, long graceUntil) {
+            Member member = members.get(userId);
+            if (member == null || member.subscriptions == 0) {
+                return;
+            }
+            if (--member.subscriptions == 0) {
+                member.graceUntil = graceUntil;
+            }
+        }
+
+        synchronized boolean isOnline(UUID userId, long now) {
+            Member member = members.get(userId);
+            return member != null && member.isOnline(now);
+        }
+
+        synchronized int onlineCount(long now) {
+            int count = 0;
+            for (Member member : members.values()) {
+                if (member.isOnline(now)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        synchronized List<UUID> removeExpired(long now) {
+            List<UUID> expired = new ArrayList<>();
+            members.entrySet().removeIf(entry -> {
+                if (entry.getValue().isOnline(now)) {
+                    return false;
+                }
+                expired.add(entry.getKey());
+                return true;
+            });
+            return expired;
+        }
+
+        synchronized boolean isEmpty() {
+            return members.isEmpty();
+        }
+    }
+
+    private static final class Member {
+        private int subscriptions;
+        private long graceUntil;
+
+        boolean isOnline(long now) {
+            return subscriptions > 0 || graceUntil > now;
+        }
+    }
+}
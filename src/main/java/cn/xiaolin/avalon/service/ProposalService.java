@@ -1,17 +1,21 @@
 package cn.xiaolin.avalon.service;
 
+import cn.xiaolin.avalon.dto.ProposalRound;
 import cn.xiaolin.avalon.dto.ProposeTeamRequest;
+import cn.xiaolin.avalon.engine.AvalonRules;
 import cn.xiaolin.avalon.entity.*;
+import cn.xiaolin.avalon.enums.GamePhase;
 import cn.xiaolin.avalon.enums.QuestStatus;
 import cn.xiaolin.avalon.repository.*;
+import cn.xiaolin.avalon.websocket.GameEventBroadcaster;
 import cn.xiaolin.avalon.websocket.GameMessage;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.Objects;
 
@@ -22,7 +26,9 @@ public class ProposalService {
     private final GamePlayerRepository gamePlayerRepository;
     private final QuestRepository questRepository;
     private final UserRepository userRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ProposalRepository proposalRepository;
+    private final GameEventBroadcaster gameEventBroadcaster;
+    private final PhaseDeadlineService phaseDeadlineService;
     
     @PersistenceContext
     private EntityManager entityManager;
@@ -33,43 +39,110 @@ public class ProposalService {
         Game game = gameRepository.findById(gameId)
             .orElseThrow(() -> new RuntimeException("游戏不存在"));
     
-        Quest currentQuest = getCurrentQuest(game);
-        if (currentQuest == null) {
-            throw new RuntimeException("没有当前任务");
-        }
+        Quest currentQuest = questRepository.findCurrentQuest(game)
+            .orElseThrow(() -> new RuntimeException("没有当前任务"));
     
         // 检查队长是否为空
         if (Objects.isNull(currentQuest.getLeader())) {
-            // 尝试重新加载任务以获取队长信息
-            currentQuest = questRepository.findById(currentQuest.getId())
-                    .orElse(currentQuest);
-            if (Objects.isNull(currentQuest.getLeader())) {
-                throw new RuntimeException("当前任务队长未设置");
-            }
+            throw new RuntimeException("当前任务队长未设置");
         }
     
         // 验证请求者是否为当前任务的队长
         if (!Objects.equals(currentQuest.getLeader().getId(), leaderId)) {
             throw new RuntimeException("不是当前队长");
         }
+
+        // 记录玩家操作时间，供空闲回收判断
+        game.setLastActivityAt(LocalDateTime.now());
     
-        // 验证任务状态是否为队伍组建阶段
-        if (!Objects.equals(currentQuest.getStatus(), QuestStatus.PROPOSING.getValue())) {
-            throw new RuntimeException("当前阶段不是队伍组建");
-        }
+        // 验证游戏是否处于队伍组建阶段
+        game.requirePhase(GamePhase.PROPOSING, "当前阶段不是队伍组建");
     
         // 验证队伍成员数量是否符合要求
         if (request.getPlayerIds().size() != currentQuest.getRequiredPlayers()) {
             throw new RuntimeException("队伍人数不符合要求");
         }
     
+        return submitTeam(game, currentQuest, request.getPlayerIds(), "队伍已提议，请投票");
+    }
+
+    /**
+     * 一局游戏的提议历史：每次组队的队长座位、队员和投票位掩码
+     */
+    public List<ProposalRound> getProposalHistory(UUID gameId) {
+        if (!gameRepository.existsById(gameId)) {
+            throw new RuntimeException("游戏不存在");
+        }
+        return proposalRepository.findRoundsByGameId(gameId);
+    }
+
+    /**
+     * 组队限时到期的默认操作：由队长和其后座位的玩家组成队伍
+     * @param questId 登记限时时的任务，阶段已变化时不做任何操作
+     */
+    @Transactional
+    public void proposeDefaultTeam(UUID gameId, UUID questId) {
+        Game game = gameRepository.findById(gameId).orElse(null);
+        if (game == null || !Objects.equals(game.getPhase(), GamePhase.PROPOSING.getValue())
+            || !Objects.equals(game.getCurrentQuestId(), questId)) {
+            return;
+        }
+        Quest quest = questRepository.findCurrentQuest(game).orElse(null);
+        if (quest == null) {
+            return;
+        }
+
+        List<GamePlayer> players = gamePlayerRepository.findByGame(game).stream()
+            .sorted(Comparator.comparing(GamePlayer::getSeatNumber))
+            .toList();
+        int leaderIndex = 0;
+        for (int i = 0; i < players.size(); i++) {
+            if (Objects.equals(players.get(i).getSeatNumber(), game.getLeaderSeat())) {
+                leaderIndex = i;
+                break;
+            }
+        }
+        List<UUID> playerIds = new ArrayList<>();
+        for (int i = 0; i < quest.getRequiredPlayers() && i < players.size(); i++) {
+            playerIds.add(players.get((leaderIndex + i) % players.size()).getUser().getId());
+        }
+
+        submitTeam(game, quest, playerIds, "队长超时未组队，已自动组队，请投票");
+    }
+
+    private Quest submitTeam(Game game, Quest currentQuest, List<UUID> playerIds, String content) {
+        // 队员的座位位掩码，出征时据此校验队员身份并判断是否全部出牌
+        int teamMask = 0;
+        for (GamePlayer player : gamePlayerRepository.findByGame(game)) {
+            if (playerIds.contains(player.getUser().getId())) {
+                teamMask |= AvalonRules.seatBit(player.getSeatNumber());
+            }
+        }
+        if (Integer.bitCount(teamMask) != playerIds.size()) {
+            throw new RuntimeException("队伍成员必须是本局的不同玩家");
+        }
+        currentQuest.setTeamMask(teamMask);
+
         // 设置提议的队伍成员
-        List<User> proposedMembers = userRepository.findAllById(request.getPlayerIds());
+        List<User> proposedMembers = userRepository.findAllById(playerIds);
         currentQuest.setProposedMembers(proposedMembers);
     
         // 更新任务状态为投票阶段
         currentQuest.setStatus(QuestStatus.VOTING.getValue());
         questRepository.save(currentQuest);
+
+        // 每次提议保存一行紧凑记录（队长座位、队员位掩码，投票位掩码由投票时更新），游戏指向当前提议并进入投票阶段
+        Proposal proposal = new Proposal();
+        proposal.setQuest(currentQuest);
+        proposal.setLeader(currentQuest.getLeader());
+        proposal.setAttempt((int) proposalRepository.countByQuest(currentQuest) + 1);
+        proposal.setLeaderSeat(game.getLeaderSeat());
+        proposal.setTeamMask(teamMask);
+        proposalRepository.save(proposal);
+
+        game.setCurrentProposalId(proposal.getId());
+        game.transitionTo(GamePhase.VOTING);
+        gameRepository.save(game);
     
         // 刷新实体管理器以确保数据同步
         entityManager.flush();
@@ -77,25 +150,13 @@ public class ProposalService {
         // 发送WebSocket消息通知所有玩家开始投票
         GameMessage message = new GameMessage();
         message.setType("TEAM_PROPOSED");
-        message.setGameId(gameId);
-        message.setContent("队伍已提议，请投票");
+        message.setGameId(game.getId());
+        message.setContent(content);
         message.setTimestamp(System.currentTimeMillis());
     
-        messagingTemplate.convertAndSend("/topic/game/" + gameId, message);
+        gameEventBroadcaster.broadcastToGame(game.getId(), message);
+        phaseDeadlineService.schedule(game.getId(), PhaseDeadlineService.Phase.VOTING, currentQuest.getId());
     
         return currentQuest;
     }
-
-    /**
-     * 获取当前进行中的任务
-     * @param game 游戏对象
-     * @return 当前任务，如果没有找到则返回null
-     */
-    private Quest getCurrentQuest(Game game) {
-        return questRepository.findByGameOrderByRoundNumber(game).stream()
-            .filter(q -> !Objects.equals(q.getStatus(), QuestStatus.COMPLETED.getValue()) && 
-                       !Objects.equals(q.getStatus(), QuestStatus.FAILED.getValue()))
-            .findFirst()
-            .orElse(null);
-    }
-}
\ No newline at end of file
+}
@@ -1,21 +1,20 @@
 package cn.xiaolin.avalon.service;
 
 import cn.xiaolin.avalon.dto.ExecuteQuestRequest;
+import cn.xiaolin.avalon.dto.QuestCardTally;
+import cn.xiaolin.avalon.engine.AvalonRules;
 import cn.xiaolin.avalon.entity.*;
+import cn.xiaolin.avalon.enums.GamePhase;
 import cn.xiaolin.avalon.enums.QuestStatus;
-import cn.xiaolin.avalon.enums.VoteType;
 import cn.xiaolin.avalon.repository.*;
+import cn.xiaolin.avalon.websocket.GameEventBroadcaster;
 import cn.xiaolin.avalon.websocket.GameMessage;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 import java.util.Objects;
 
 @Service
@@ -24,24 +23,10 @@ public class QuestService {
     private final GameRepository gameRepository;
     private final GamePlayerRepository gamePlayerRepository;
     private final QuestRepository questRepository;
-    private final VoteRepository voteRepository;
     private final QuestResultRepository questResultRepository;
-    private final UserRepository userRepository;
     private final RoomRepository roomRepository; // 添加RoomRepository
-    private final SimpMessagingTemplate messagingTemplate;
-    
-    @PersistenceContext
-    private EntityManager entityManager;
-
-    // 任务配置：轮次 -> (需要玩家数, 需要失败数)
-    private static final Map<Integer, List<int[]>> QUEST_CONFIGS = Map.of(
-        5, List.of(new int[]{2, 1}, new int[]{3, 1}, new int[]{2, 1}, new int[]{3, 1}, new int[]{3, 1}),
-        6, List.of(new int[]{2, 1}, new int[]{3, 1}, new int[]{4, 1}, new int[]{3, 1}, new int[]{4, 1}),
-        7, List.of(new int[]{2, 1}, new int[]{3, 1}, new int[]{3, 1}, new int[]{4, 2}, new int[]{4, 1}),
-        8, List.of(new int[]{3, 1}, new int[]{4, 1}, new int[]{4, 1}, new int[]{5, 2}, new int[]{5, 1}),
-        9, List.of(new int[]{3, 1}, new int[]{4, 1}, new int[]{4, 1}, new int[]{5, 2}, new int[]{5, 1}),
-        10, List.of(new int[]{3, 1}, new int[]{4, 1}, new int[]{4, 1}, new int[]{5, 2}, new int[]{5, 1})
-    );
+    private final GameEventBroadcaster gameEventBroadcaster;
+    private final PhaseDeadlineService phaseDeadlineService;
 
     /**
      * 统一的任务启动方法
@@ -55,10 +40,8 @@ public class QuestService {
 
         // 对于第一个任务，需要特殊处理
         if (isFirstQuest) {
-            // 确保游戏处于正确的状态（ROLE_VIEWING表示所有玩家已加入并准备开始游戏）
-            if (!Objects.equals(game.getStatus(), "role_viewing")) {
-                throw new RuntimeException("游戏状态不正确，无法开始第一个任务");
-            }
+            // 确保游戏处于查看角色阶段（所有玩家已加入并准备开始游戏）
+            game.requirePhase(GamePhase.ROLE_VIEWING, "游戏状态不正确，无法开始第一个任务");
             
             // 获取玩家数量
             List<GamePlayer> gamePlayers = gamePlayerRepository.findByGame(game);
@@ -67,15 +50,9 @@ public class QuestService {
             // 为游戏创建所有任务
             createQuests(game, playerCount);
             
-            // 更新游戏状态为PLAYING，表示游戏正式开始
-            game.setStatus("playing");
-            gameRepository.save(game);
-            
             // 获取第一个任务
-            Quest firstQuest = questRepository.findByGameOrderByRoundNumber(game).get(0);
-            if (firstQuest == null) {
-                throw new RuntimeException("没有找到第一个任务");
-            }
+            Quest firstQuest = questRepository.findByGameAndRoundNumber(game, 1)
+                .orElseThrow(() -> new RuntimeException("没有找到第一个任务"));
             
             // 确保第一个任务的队长已设置
             if (Objects.isNull(firstQuest.getLeader()) && !gamePlayers.isEmpty()) {
@@ -83,6 +60,13 @@ public class QuestService {
                 questRepository.save(firstQuest);
             }
             
+            // 更新游戏状态为PLAYING，表示游戏正式开始，游戏指向第一个任务并进入组队阶段
+            game.setStatus("playing");
+            game.setCurrentQuestId(firstQuest.getId());
+            game.setLeaderSeat(seatOf(gamePlayers, firstQuest.getLeader()));
+            game.transitionTo(GamePhase.PROPOSING);
+            gameRepository.save(game);
+            
             // 发送WebSocket消息通知所有玩家第一个任务已开始
             GameMessage message = new GameMessage();
             message.setType("FIRST_QUEST_STARTED");
@@ -90,9 +74,11 @@ public class QuestService {
             message.setContent("第一个任务已开始");
             message.setTimestamp(System.currentTimeMillis());
             
-            messagingTemplate.convertAndSend("/topic/game/" + gameId, message);
+            gameEventBroadcaster.broadcastToGame(gameId, message);
+            phaseDeadlineService.schedule(gameId, PhaseDeadlineService.Phase.PROPOSING, firstQuest.getId());
         } else {
-            // 后续任务的处理逻辑
+            // 后续任务的处理逻辑：手动跳到下一轮只能在组队阶段进行，游戏已结束或队伍已提交时拒绝
+            game.requirePhase(GamePhase.PROPOSING, "游戏状态不正确，无法开始下一个任务");
             startNextRound(game);
         }
     }
@@ -103,22 +89,20 @@ public class QuestService {
      * @param playerCount 玩家数量
      */
     private void createQuests(Game game, int playerCount) {
-        List<int[]> questConfig = QUEST_CONFIGS.get(playerCount);
-        
         // 获取游戏中的所有玩家，用于设置任务的队长
         List<GamePlayer> gamePlayers = gamePlayerRepository.findByGame(game);
         
-        for (int i = 0; i < questConfig.size(); i++) {
+        for (int i = 0; i < AvalonRules.QUEST_COUNT; i++) {
             Quest quest = new Quest();
             quest.setGame(game);
             quest.setRoundNumber(i + 1);
-            quest.setRequiredPlayers(questConfig.get(i)[0]);
-            quest.setRequiredFails(questConfig.get(i)[1]);
+            quest.setRequiredPlayers(AvalonRules.questSize(playerCount, i));
+            quest.setRequiredFails(AvalonRules.failsRequired(playerCount, i));
             quest.setStatus(QuestStatus.PROPOSING.getValue());
             
             // 为每个任务设置队长（按座位号顺序循环选择）
             if (!gamePlayers.isEmpty()) {
-                int leaderIndex = i % gamePlayers.size();
+                int leaderIndex = AvalonRules.roundLeaderSeat(i, gamePlayers.size());
                 quest.setLeader(gamePlayers.get(leaderIndex).getUser());
             }
             
@@ -138,141 +122,123 @@ public class QuestService {
         Game game = gameRepository.findById(gameId)
             .orElseThrow(() -> new RuntimeException("游戏不存在"));
         
-        GamePlayer player = gamePlayerRepository.findByGameAndUser(game, userRepository.findById(playerId).orElseThrow())
+        GamePlayer player = gamePlayerRepository.findByGameAndUserId(game, playerId)
             .orElseThrow(() -> new RuntimeException("玩家不在游戏中"));
+
+        // 记录玩家操作时间，供空闲回收判断
+        game.setLastActivityAt(LocalDateTime.now());
         
-        Quest currentQuest = getCurrentQuest(game);
-        if (currentQuest == null) {
-            throw new RuntimeException("没有当前任务");
-        }
-        
-        // 验证任务状态是否为执行阶段
-        if (!Objects.equals(currentQuest.getStatus(), QuestStatus.EXECUTING.getValue())) {
-            throw new RuntimeException("当前阶段不是任务执行");
-        }
-        
-        // 创建任务执行结果
-        QuestResult result = new QuestResult();
-        result.setQuest(currentQuest);
-        result.setPlayer(player.getUser());
-        result.setSuccess(request.getSuccess());
-        result.setExecutedAt(LocalDateTime.now());
-        
-        questResultRepository.save(result);
+        // 验证游戏是否处于任务执行阶段
+        game.requirePhase(GamePhase.EXECUTING, "当前阶段不是任务执行");
+
+        Quest currentQuest = questRepository.findCurrentQuest(game)
+            .orElseThrow(() -> new RuntimeException("没有当前任务"));
         
-        // 检查是否所有队员都执行了任务
-        List<GamePlayer> questMembers = getQuestMembers(currentQuest); // 这里需要实现获取队伍成员的逻辑
-        List<QuestResult> results = questResultRepository.findByQuest(currentQuest);
+        playCard(currentQuest, player, request.getSuccess());
         
-        if (results.size() == questMembers.size()) {
-            // 所有队员都执行了任务，计算结果
-            boolean questSuccess = calculateQuestSuccess(currentQuest, results);
-            
-            // 进入下一轮或结束游戏
-            if (questSuccess) {
-                // 先设置当前任务为完成状态
-                currentQuest.setStatus(QuestStatus.COMPLETED.getValue());
-                questRepository.save(currentQuest);
-                
-                // 重新加载游戏对象以确保数据是最新的
-                game = gameRepository.findById(game.getId()).orElseThrow(() -> new RuntimeException("游戏不存在"));
-                
-                // 重新加载当前任务以确保数据是最新的
-                currentQuest = questRepository.findById(currentQuest.getId()).orElseThrow(() -> new RuntimeException("任务不存在"));
-                
-                // 检查是否已经有3个任务成功完成（包括当前这个）
-                // 注意：我们刚刚设置了当前任务为COMPLETED状态，所以这里应该能正确计数
-                List<Quest> allQuests = questRepository.findByGameOrderByRoundNumber(game);
-                long completedQuests = allQuests.stream()
-                    .filter(q -> Objects.equals(q.getStatus(), QuestStatus.COMPLETED.getValue()))
-                    .count();
-                
-                // 检查是否已经完成了3个任务
-                if (completedQuests >= 3) {
-                    // 正义阵营胜利
-                    endGame(game, "good", "quest_victory");
-                } else {
-                    // 进入下一轮
-                    startNextRound(game);
-                }
+        completeQuestIfReady(game, currentQuest);
+    }
 
-            } else {
-                // 先设置当前任务为失败状态
-                currentQuest.setStatus(QuestStatus.FAILED.getValue());
-                questRepository.save(currentQuest);
-                
-                // 重新加载游戏对象以确保数据是最新的
-                game = gameRepository.findById(game.getId()).orElseThrow(() -> new RuntimeException("游戏不存在"));
-                
-                // 重新加载当前任务以确保数据是最新的
-                currentQuest = questRepository.findById(currentQuest.getId()).orElseThrow(() -> new RuntimeException("任务不存在"));
-                
-                // 检查是否已经有3个任务失败（包括当前这个）
-                List<Quest> allQuests = questRepository.findByGameOrderByRoundNumber(game);
-                long failedQuests = allQuests.stream()
-                    .filter(q -> Objects.equals(q.getStatus(), QuestStatus.FAILED.getValue()))
-                    .count();
-                
-                // 检查是否已经失败了3个任务
-                if (failedQuests >= 3) {
-                    // 邪恶阵营胜利
-                    endGame(game, "evil", "quest_failure");
-                } else {
-                    // 进入下一轮
-                    startNextRound(game);
-                }
+    /**
+     * 执行限时到期的默认操作：未提交结果的队员按任务成功处理，随后结算任务
+     * @param questId 登记限时时的任务，阶段已变化时不做任何操作
+     */
+    @Transactional
+    public void fillMissingResults(UUID gameId, UUID questId) {
+        Game game = gameRepository.findById(gameId).orElse(null);
+        if (game == null || !Objects.equals(game.getPhase(), GamePhase.EXECUTING.getValue())
+            || !Objects.equals(game.getCurrentQuestId(), questId)) {
+            return;
+        }
+        Quest quest = questRepository.findCurrentQuest(game).orElse(null);
+        if (quest == null) {
+            return;
+        }
 
+        QuestCardTally tally = questRepository.findCardTally(questId);
+        int missing = tally.getTeamMask() & ~tally.getPlayedMask();
+        for (GamePlayer player : gamePlayerRepository.findByGame(game)) {
+            if ((missing & AvalonRules.seatBit(player.getSeatNumber())) != 0) {
+                playCard(quest, player, true);
             }
         }
+
+        completeQuestIfReady(game, quest);
     }
 
     /**
-     * 获取当前进行中的任务
-     * @param game 游戏对象
-     * @return 当前任务，如果没有找到则返回null
+     * 所有队员都提交结果后结算任务，进入下一轮或结束游戏
      */
-    private Quest getCurrentQuest(Game game) {
-        return questRepository.findByGameOrderByRoundNumber(game).stream()
-            .filter(q -> !Objects.equals(q.getStatus(), QuestStatus.COMPLETED.getValue()) && 
-                       !Objects.equals(q.getStatus(), QuestStatus.FAILED.getValue()))
-            .findFirst()
-            .orElse(null);
+    private void completeQuestIfReady(Game game, Quest currentQuest) {
+        // 出牌位掩码填满即所有队员都执行了任务，直接用计数结算，不再逐个加载队员和结果
+        QuestCardTally tally = questRepository.findCardTally(currentQuest.getId());
+        
+        if (!tally.isComplete()) {
+            return;
+        }
+
+        // 所有队员都执行了任务，计算结果
+        boolean questSuccess = AvalonRules.questSucceeds(tally.getFailCount(), currentQuest.getRequiredFails());
+        QuestStatus result = questSuccess ? QuestStatus.COMPLETED : QuestStatus.FAILED;
+        currentQuest.setStatus(result.getValue());
+        questRepository.save(currentQuest);
+
+        // 按状态计数已结算的任务（包括当前这个），任一阵营达到3个即结束
+        if (questRepository.countByGameAndStatus(game, result.getValue()) >= AvalonRules.QUESTS_TO_WIN) {
+            if (questSuccess) {
+                // 正义阵营胜利
+                endGame(game, "good", "quest_victory");
+            } else {
+                // 邪恶阵营胜利
+                endGame(game, "evil", "quest_failure");
+            }
+        } else {
+            // 进入下一轮
+            startNextRound(game);
+        }
     }
 
-    private List<GamePlayer> getQuestMembers(Quest quest) {
-        // 获取当前任务提议的队伍成员
-        return quest.getProposedMembers().stream()
-            .map(user -> gamePlayerRepository.findByGameAndUser(quest.getGame(), user)
-                .orElseThrow(() -> new RuntimeException("玩家不在游戏中")))
-            .collect(Collectors.toList());
+    /**
+     * 记录一张任务牌：先原子地更新任务的出牌位掩码和计数，成功后再写入出牌明细
+     */
+    private void playCard(Quest quest, GamePlayer player, boolean success) {
+        int seatBit = AvalonRules.seatBit(player.getSeatNumber());
+        if (questRepository.playCard(quest.getId(), seatBit, success) == 0) {
+            boolean member = quest.getTeamMask() != null && (quest.getTeamMask() & seatBit) != 0;
+            throw new RuntimeException(member ? "已经提交过任务结果" : "不是本轮出征队员");
+        }
+
+        QuestResult result = new QuestResult();
+        result.setQuest(quest);
+        result.setPlayer(player.getUser());
+        result.setSuccess(success);
+        result.setExecutedAt(LocalDateTime.now());
+        questResultRepository.save(result);
     }
 
-    private boolean calculateQuestSuccess(Quest quest, List<QuestResult> results) {
-        long failCount = results.stream()
-            .filter(r -> !r.getSuccess())
-            .count();
-        
-        return failCount < quest.getRequiredFails();
+    /**
+     * 用户在本局中的座位号
+     */
+    private Integer seatOf(List<GamePlayer> players, User user) {
+        if (user == null) {
+            return null;
+        }
+        return players.stream()
+            .filter(p -> Objects.equals(p.getUser().getId(), user.getId()))
+            .findFirst()
+            .map(GamePlayer::getSeatNumber)
+            .orElse(null);
     }
 
     private void startNextRound(Game game) {
-        // 增加游戏轮次
-        game.setCurrentRound(game.getCurrentRound() + 1);
-        gameRepository.save(game);
-        
-        // 获取对应轮次的任务（所有任务在游戏开始时已预先创建）
-        List<Quest> quests = questRepository.findByGameOrderByRoundNumber(game);
-        
-        // 添加调试信息
-        System.out.println("游戏当前轮次: " + game.getCurrentRound());
-        System.out.println("找到的任务数量: " + quests.size());
-        for (Quest q : quests) {
-            System.out.println("任务轮次: " + q.getRoundNumber());
+        // 上一轮任务结算后进入下一轮组队；手动开始下一轮时已处于组队阶段，阶段不变
+        if (game.currentPhase() != GamePhase.PROPOSING) {
+            game.transitionTo(GamePhase.PROPOSING);
         }
+        game.setCurrentRound(game.getCurrentRound() + 1);
         
-        Quest nextQuest = quests.stream()
-            .filter(q -> Objects.equals(q.getRoundNumber(), game.getCurrentRound()))
-            .findFirst()
+        // 按轮次读取对应的任务（所有任务在游戏开始时已预先创建）
+        Quest nextQuest = questRepository.findByGameAndRoundNumber(game, game.getCurrentRound())
             .orElseThrow(() -> new RuntimeException("没有找到第" + game.getCurrentRound() + "轮任务"));
         
         // 更新任务状态为队伍组建阶段
@@ -280,11 +246,17 @@ public class QuestService {
         
         // 设置新的队长（按座位号顺序循环选择）
         List<GamePlayer> players = gamePlayerRepository.findByGame(game);
-        int currentLeaderIndex = (game.getCurrentRound() - 1) % players.size();
+        int currentLeaderIndex = AvalonRules.roundLeaderSeat(game.getCurrentRound() - 1, players.size());
         GamePlayer newLeader = players.get(currentLeaderIndex);
         nextQuest.setLeader(newLeader.getUser());
         
         questRepository.save(nextQuest);
+
+        // 游戏指向新一轮任务
+        game.setCurrentQuestId(nextQuest.getId());
+        game.setCurrentProposalId(null);
+        game.setLeaderSeat(newLeader.getSeatNumber());
+        gameRepository.save(game);
         
         // 发送WebSocket消息通知所有玩家下一轮已开始
         GameMessage message = new GameMessage();
@@ -293,11 +265,26 @@ public class QuestService {
         message.setContent("第" + game.getCurrentRound() + "轮任务已开始");
         message.setTimestamp(System.currentTimeMillis());
         
-        messagingTemplate.convertAndSend("/topic/game/" + game.getId(), message);
+        gameEventBroadcaster.broadcastToGame(game.getId(), message);
+        phaseDeadlineService.schedule(game.getId(), PhaseDeadlineService.Phase.PROPOSING, nextQuest.getId());
+    }
+
+    /**
+     * 本轮提议连续被否决达到上限：当前任务判定失败，邪恶阵营获胜
+     */
+    @Transactional
+    public void endGameByRejections(Game game, Quest currentQuest) {
+        currentQuest.setStatus(QuestStatus.FAILED.getValue());
+        questRepository.save(currentQuest);
+        endGame(game, "evil", "proposal_rejections");
     }
 
     private void endGame(Game game, String winner, String winType) {
         game.setStatus("ended");
+        // 正义阵营完成任务后进入刺杀阶段，否则游戏彻底结束
+        game.transitionTo("good".equals(winner) ? GamePhase.ASSASSINATION : GamePhase.ENDED);
+        game.setCurrentQuestId(null);
+        game.setCurrentProposalId(null);
         game.setWinner(winner);
         game.setEndedAt(LocalDateTime.now());
         gameRepository.save(game);
@@ -316,6 +303,11 @@ public class QuestService {
         message.setContent("游戏结束，" + ("good".equals(winner) ? "正义" : "邪恶") + "阵营获胜");
         message.setTimestamp(System.currentTimeMillis());
         
-        messagingTemplate.convertAndSend("/topic/game/" + game.getId(), message);
+        gameEventBroadcaster.broadcastToGame(game.getId(), message);
+        if ("good".equals(winner)) {
+            phaseDeadlineService.schedule(game.getId(), PhaseDeadlineService.Phase.ASSASSINATION, null);
+        } else {
+            phaseDeadlineService.cancel(game.getId());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+package cn.xiaolin.avalon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 令牌桶限流服务
+ * local 模式：状态保存在本机内存，按键哈希分段加锁，每段是有容量上限的LRU表，伪造大量IP也不会无限占用内存
+ * redis 模式：多实例共享同一个令牌桶，使用Lua脚本原子地补充和扣减令牌；Redis不可用时退回本机限流
+ */
+@Service
+@Slf4j
+public class RateLimitService {
+    private static final int STRIPES = 64;
+
+    private static final RedisScript<List> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(
+        "local capacity = tonumber(ARGV[1]) " +
+        "local rate = tonumber(ARGV[2]) " +
+        "local t = redis.call('TIME') " +
+        "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+        "local data = redis.call('HMGET', KEYS[1], 'tokens', 'ts') " +
+        "local tokens = tonumber(data[1]) " +
+        "local ts = tonumber(data[2]) " +
+        "if tokens == nil then tokens = capacity ts = now end " +
+        "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate) " +
+        "local allowed = 0 " +
+        "local wait = 0 " +
+        "if tokens >= 1 then tokens = tokens - 1 allowed = 1 else wait = math.ceil((1 - tokens) / rate) end " +
+        "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now) " +
+        "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate) + 1000) " +
+        "return {allowed, wait}",
+        List.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final Counter redisErrors;
+
+    @Value("${rate-limit.mode:local}")
+    private String mode;
+
+    @Value("${rate-limit.max-keys:100000}")
+    private Integer maxKeys;
+
+    public RateLimitService(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.redisErrors = Counter.builder("avalon.ratelimit.redis.errors")
+            .description("Redis限流失败后退回本机限流的次数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 尝试从令牌桶中取一个令牌
+     * @param key 限流键（路由名 + 用户ID或IP）
+     * @param capacity 桶容量，即允许的突发请求数
+     * @param refillPerSecond 每秒补充的令牌数
+     * @return 0 表示放行；大于0表示被拒绝，值为建议的重试等待毫秒数
+     */
+    public long tryAcquire(String key, int capacity, double refillPerSecond) {
+        if ("redis".equalsIgnoreCase(mode)) {
+            try {
+                List<?> result = redisTemplate.execute(TOKEN_BUCKET_SCRIPT, List.of("ratelimit:" + key),
+                    String.valueOf(capacity), String.valueOf(refillPerSecond / 1000.0));
+                if (result != null && result.size() == 2) {
+                    return ((Number) result.get(0)).longValue() == 1 ? 0 : Math.max(1, ((Number) result.get(1)).longValue());
+                }
+            } catch (Exception e) {
+                redisErrors.increment();
+                log.warn("Redis限流失败，退回本机限流: {}", e.getMessage());
+            }
+        }
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        synchronized (stripe) {
+            TokenBucket bucket = stripe.buckets.computeIfAbsent(key, k -> new TokenBucket(capacity));
+            return bucket.tryAcquire(capacity, refillPerSecond, System.nanoTime());
+        }
+    }
+
+    /**
+     * 一个分段：访问顺序的LinkedHashMap，超过容量时淘汰最久未访问的桶
+     */
+    private final class Stripe {
+        private final Map<String, TokenBucket> buckets = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+                return size() > Math.max(1, maxKeys / STRIPES);
+            }
+        };
+    }
+
+    private static final class TokenBucket {
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        TokenBucket(int capacity) {
+            this.tokens = capacity;
+        }
+
+        long tryAcquire(int capacity, double refillPerSecond, long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * refillPerSecond);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / refillPerSecond * 1000));
+        }
+    }
+}
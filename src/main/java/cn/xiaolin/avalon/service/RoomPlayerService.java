@@ -1,11 +1,13 @@
 package cn.xiaolin.avalon.service;
 
 import cn.xiaolin.avalon.dto.JoinRoomRequest;
+import cn.xiaolin.avalon.dto.RoomDepartureResponse;
 import cn.xiaolin.avalon.dto.RoomPlayersResponse;
 import cn.xiaolin.avalon.dto.PlayerInfoResponse;
 import cn.xiaolin.avalon.entity.Room;
 import cn.xiaolin.avalon.entity.RoomPlayer;
 import cn.xiaolin.avalon.entity.User;
+import cn.xiaolin.avalon.enums.RoomStatus;
 import cn.xiaolin.avalon.repository.RoomPlayerRepository;
 import cn.xiaolin.avalon.repository.RoomRepository;
 import cn.xiaolin.avalon.repository.UserRepository;
@@ -13,6 +15,8 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
@@ -34,13 +38,29 @@ public class RoomPlayerService {
         Room room = roomRepository.findByRoomCode(request.getRoomCode())
                 .orElseThrow(() -> new RuntimeException("房间不存在"));
 
+        return join(user, room);
+    }
+
+    @Transactional
+    public RoomPlayer joinRoomById(UUID userId, UUID roomId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("用户不存在"));
+
+        Room room = roomRepository.findById(roomId)
+                .orElseThrow(() -> new RuntimeException("房间不存在"));
+
+        return join(user, room);
+    }
+
+    private RoomPlayer join(User user, Room room) {
         // Check if room is closed
         if ("closed".equals(room.getStatus())) {
             throw new RuntimeException("房间已关闭");
         }
 
-        // Check if user is already in the room and active
-        if (roomPlayerRepository.existsByRoomIdAndUserIdAndIsActiveTrue(room.getId(), userId)) {
+        // 一次查询同时判断是否已在房间中、是否曾经加入过
+        Optional<RoomPlayer> existingPlayerOpt = roomPlayerRepository.findByRoomIdAndUserId(room.getId(), user.getId());
+        if (existingPlayerOpt.isPresent() && existingPlayerOpt.get().getIsActive()) {
             throw new RuntimeException("您已经在该房间中");
         }
 
@@ -50,8 +70,6 @@ public class RoomPlayerService {
             throw new RuntimeException("房间已满");
         }
 
-        // Check if user has previously joined and left the room
-        Optional<RoomPlayer> existingPlayerOpt = roomPlayerRepository.findByRoomIdAndUserId(room.getId(), userId);
         RoomPlayer roomPlayer;
 
         if (existingPlayerOpt.isPresent()) {
@@ -225,4 +243,68 @@ public class RoomPlayerService {
 
         return response;
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量移除掉线超时的玩家（仅等待中的房间），一次更新语句完成置为非活跃，
+     * 房主掉线时转移给座位号最小的剩余玩家，房间无人时关闭房间
+     * @param roomId 房间ID
+     * @param userIds 掉线超时的用户ID
+     * @return 移除结果；房间不在等待中或这些玩家都已不在房间中时返回null
+     */
+    @Transactional
+    public RoomDepartureResponse removeDisconnectedPlayers(UUID roomId, Collection<UUID> userIds) {
+        Room room = roomRepository.findById(roomId).orElse(null);
+        if (room == null || !RoomStatus.WAITING.getValue().equals(room.getStatus())) {
+            return null;
+        }
+
+        List<RoomPlayer> activePlayers = roomPlayerRepository.findActivePlayersWithUserByRoomId(roomId);
+        List<RoomPlayer> leavingPlayers = activePlayers.stream()
+                .filter(rp -> userIds.contains(rp.getUser().getId()))
+                .collect(Collectors.toList());
+        if (leavingPlayers.isEmpty()) {
+            return null;
+        }
+        List<RoomPlayer> remainingPlayers = activePlayers.stream()
+                .filter(rp -> !userIds.contains(rp.getUser().getId()))
+                .collect(Collectors.toList());
+        roomPlayerRepository.deactivateByRoomIdAndUserIds(roomId,
+                leavingPlayers.stream().map(rp -> rp.getUser().getId()).collect(Collectors.toList()),
+                LocalDateTime.now());
+
+        boolean roomClosed = remainingPlayers.isEmpty();
+        String newHostUsername = null;
+        if (roomClosed) {
+            room.setStatus("closed");
+            roomRepository.save(room);
+        } else if (leavingPlayers.stream().anyMatch(RoomPlayer::getIsHost)) {
+            RoomPlayer newHostPlayer = remainingPlayers.stream()
+                    .min(Comparator.comparing(RoomPlayer::getSeatNumber))
+                    .get();
+            newHostPlayer.setIsHost(true);
+            roomPlayerRepository.save(newHostPlayer);
+            newHostUsername = newHostPlayer.getUser().getUsername();
+        }
+
+        // 批量更新不回写已加载的实体，这里只修正返回值，避免实体变脏后逐条更新
+        List<PlayerInfoResponse> leftPlayers = toPlayerInfos(leavingPlayers);
+        leftPlayers.forEach(player -> player.setIsActive(false));
+
+        return new RoomDepartureResponse(roomId, room.getRoomCode(), room.getMaxPlayers(), room.getStatus(),
+                leftPlayers, roomClosed, newHostUsername, toPlayerInfos(remainingPlayers));
+    }
+
+    private List<PlayerInfoResponse> toPlayerInfos(List<RoomPlayer> roomPlayers) {
+        return roomPlayers.stream()
+                .map(rp -> new PlayerInfoResponse(
+                        rp.getUser().getId(),
+                        rp.getUser().getUsername(),
+                        "unknown",
+                        "unknown",
+                        rp.getIsHost(),
+                        rp.getSeatNumber(),
+                        rp.getIsActive()
+                ))
+                .collect(Collectors.toList());
+    }
+}
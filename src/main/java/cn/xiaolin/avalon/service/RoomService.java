@@ -4,16 +4,14 @@ import cn.xiaolin.avalon.dto.CreateRoomRequest;
 import cn.xiaolin.avalon.dto.RoomResponse;
 import cn.xiaolin.avalon.dto.RoomPlayersResponse;
 import cn.xiaolin.avalon.dto.PlayerInfoResponse;
+import cn.xiaolin.avalon.dto.RoomSnapshotResponse;
 import cn.xiaolin.avalon.entity.Room;
 import cn.xiaolin.avalon.entity.User;
 import cn.xiaolin.avalon.entity.RoomPlayer;
-import cn.xiaolin.avalon.entity.Game;
-import cn.xiaolin.avalon.entity.GamePlayer;
 import cn.xiaolin.avalon.enums.RoomStatus;
 import cn.xiaolin.avalon.repository.RoomRepository;
 import cn.xiaolin.avalon.repository.UserRepository;
 import cn.xiaolin.avalon.repository.RoomPlayerRepository;
-import cn.xiaolin.avalon.repository.GameRepository;
 import cn.xiaolin.avalon.repository.GamePlayerRepository;
 import cn.xiaolin.avalon.utils.RoomCodeGenerator;
 import lombok.RequiredArgsConstructor;
@@ -21,10 +19,11 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -32,11 +31,17 @@ public class RoomService {
     private final RoomRepository roomRepository;
     private final UserRepository userRepository;
     private final RoomPlayerRepository roomPlayerRepository;
-    private final GameRepository gameRepository;
     private final GamePlayerRepository gamePlayerRepository;
+    private final PresenceService presenceService;
+    private final DrainService drainService;
 
     @Transactional
     public RoomResponse createRoom(UUID userId, CreateRoomRequest request) {
+        // 排空中的实例即将停机，新房间由其他实例创建
+        if (drainService.isDraining()) {
+            throw new RuntimeException("服务正在维护，暂不接受新房间");
+        }
+
         User creator = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
 
@@ -66,120 +71,127 @@ public class RoomService {
                 savedRoom.getStatus(),
                 creator.getUsername(),
                 1,  // 新建房间只有创建者1人
-                null  // 新建房间还没有游戏
+                null,  // 新建房间还没有游戏
+                0  // 创建者尚未建立WebSocket连接
         );
     }
 
     @Cacheable(value = "room", key = "#roomCode", unless = "#result == null")
     public RoomResponse getRoomByCode(String roomCode) {
-        // 优化查询：使用JOIN FETCH预加载creator，避免N+1问题
-        Room room = roomRepository.findByRoomCodeWithCreator(roomCode)
-                .orElseThrow(() -> new RuntimeException("房间不存在"));
+        RoomSnapshotResponse snapshot = getRoomSnapshotByCode(roomCode);
 
         // Check if room is closed
-        if ("closed".equals(room.getStatus())) {
+        if ("closed".equals(snapshot.getStatus())) {
             throw new RuntimeException("房间已关闭");
         }
 
-        // 获取当前玩家数量
-        int currentPlayerCount = (int) roomPlayerRepository.countActivePlayersByRoomId(room.getId());
-
-        // 获取游戏ID（如果游戏已开始）
-        UUID gameId = null;
-        Optional<Game> gameOpt = gameRepository.findByRoomId(room.getId());
-        if (gameOpt.isPresent()) {
-            gameId = gameOpt.get().getId();
-        }
-
-        return new RoomResponse(
-                room.getId(),
-                room.getRoomCode(),
-                room.getMaxPlayers(),
-                room.getStatus(),
-                room.getCreator().getUsername(),
-                currentPlayerCount,  // 新增：当前玩家数量
-                gameId  // 新增：游戏ID（如果游戏已开始）
-        );
+        return toRoomResponse(snapshot);
     }
 
     public RoomResponse getRoomById(UUID roomId) {
-        Room room = roomRepository.findById(roomId)
-                .orElseThrow(() -> new RuntimeException("房间不存在"));
+        return toRoomResponse(getOpenRoomSnapshot(roomId));
+    }
+
+    /**
+     * 获取未关闭房间的快照，房间已关闭时抛出异常
+     */
+    public RoomSnapshotResponse getOpenRoomSnapshot(UUID roomId) {
+        RoomSnapshotResponse snapshot = getRoomSnapshot(roomId);
 
         // Check if room is closed
-        if ("closed".equals(room.getStatus())) {
+        if ("closed".equals(snapshot.getStatus())) {
             throw new RuntimeException("房间已关闭");
         }
 
-        // 获取当前玩家数量
-        int currentPlayerCount = (int) roomPlayerRepository.countActivePlayersByRoomId(room.getId());
+        return snapshot;
+    }
 
-        // 获取游戏ID（如果游戏已开始）
-        UUID gameId = null;
-        Optional<Game> gameOpt = gameRepository.findByRoomId(room.getId());
-        if (gameOpt.isPresent()) {
-            gameId = gameOpt.get().getId();
-        }
+    /**
+     * 获取房间快照（不校验房间是否关闭），一条查询返回房间、活跃玩家、房主和当前游戏
+     */
+    public RoomSnapshotResponse getRoomSnapshot(UUID roomId) {
+        return toSnapshot(roomRepository.findSnapshotRowsById(roomId));
+    }
 
+    public RoomSnapshotResponse getRoomSnapshotByCode(String roomCode) {
+        return toSnapshot(roomRepository.findSnapshotRowsByRoomCode(roomCode));
+    }
+
+    public RoomResponse toRoomResponse(RoomSnapshotResponse snapshot) {
         return new RoomResponse(
-                room.getId(),
-                room.getRoomCode(),
-                room.getMaxPlayers(),
-                room.getStatus(),
-                room.getCreator().getUsername(),
-                currentPlayerCount,  // 新增：当前玩家数量
-                gameId  // 新增：游戏ID（如果游戏已开始）
+                snapshot.getRoomId(),
+                snapshot.getRoomCode(),
+                snapshot.getMaxPlayers(),
+                snapshot.getStatus(),
+                snapshot.getCreatorName(),
+                snapshot.getPlayers().size(),  // 新增：当前玩家数量
+                snapshot.getGameId(),  // 新增：游戏ID（如果游戏已开始）
+                presenceService.onlineCount(snapshot.getRoomId())  // 在线人数来自内存，不查询数据库
         );
     }
-    
+
     @Cacheable(value = "roomPlayers", key = "#roomCode", unless = "#result == null")
     public RoomPlayersResponse getRoomPlayers(String roomCode) {
-        // 优化查询：一次性获取房间和玩家信息，避免 N+1 问题
-        Room room = roomRepository.findByRoomCode(roomCode)
-                .orElseThrow(() -> new RuntimeException("房间不存在"));
-
-        // Try to find an active game for this room
-        Optional<Game> gameOpt = gameRepository.findByRoomId(room.getId());
-
-        List<PlayerInfoResponse> players;
-
-        if (gameOpt.isPresent() && !"ended".equals(gameOpt.get().getStatus())) {
-            // If there's an active game, get players from game with optimized query
-            Game game = gameOpt.get();
-            List<GamePlayer> gamePlayers = gamePlayerRepository.findByGameWithUser(game);
-
-            players = gamePlayers.stream()
-                    .filter(gp -> gp.getIsActive() == true)
-                    .map(gp -> new PlayerInfoResponse(
-                            gp.getUser().getId(),
-                            gp.getUser().getUsername(),
-                            gp.getRole(),
-                            gp.getAlignment(),
-                            gp.getIsHost(),
-                            gp.getSeatNumber(),
-                            gp.getIsActive()
-                    ))
-                    .collect(Collectors.toList());
-        } else {
-            // If no active game, get players from room_players table with optimized query
-            List<RoomPlayer> roomPlayers = roomPlayerRepository.findActivePlayersByRoomCode(roomCode);
-
-            players = roomPlayers.stream()
-                    .filter(rp -> rp.getIsActive() == true)
-                    .map(rp -> new PlayerInfoResponse(
-                            rp.getUser().getId(),
-                            rp.getUser().getUsername(),
-                            "unknown",
-                            "unknown",
-                            rp.getIsHost(),
-                            rp.getSeatNumber(),
-                            rp.getIsActive()
-                    ))
-                    .collect(Collectors.toList());
+        return getRoomPlayers(getRoomSnapshotByCode(roomCode));
+    }
+
+    /**
+     * 根据房间快照获取玩家列表：游戏进行中时返回游戏玩家，否则直接使用快照中的房间玩家
+     */
+    public RoomPlayersResponse getRoomPlayers(RoomSnapshotResponse snapshot) {
+        if (snapshot.getGameId() == null || "ended".equals(snapshot.getGameStatus())) {
+            return new RoomPlayersResponse(snapshot.getRoomCode(), snapshot.getPlayers());
+        }
+
+        // If there's an active game, project game players straight into DTOs
+        List<PlayerInfoResponse> players = gamePlayerRepository.findActivePlayerInfosByGameId(snapshot.getGameId());
+        return new RoomPlayersResponse(snapshot.getRoomCode(), players);
+    }
+
+    private RoomSnapshotResponse toSnapshot(List<RoomRepository.RoomSnapshotRow> rows) {
+        if (rows.isEmpty()) {
+            throw new RuntimeException("房间不存在");
+        }
+
+        RoomRepository.RoomSnapshotRow first = rows.get(0);
+        List<PlayerInfoResponse> players = new ArrayList<>();
+        String hostName = null;
+        for (RoomRepository.RoomSnapshotRow row : rows) {
+            if (row.getUserId() == null) {
+                continue;
+            }
+            players.add(new PlayerInfoResponse(
+                    row.getUserId(),
+                    row.getUsername(),
+                    "unknown",
+                    "unknown",
+                    row.getIsHost(),
+                    row.getSeatNumber(),
+                    true
+            ));
+            if (Boolean.TRUE.equals(row.getIsHost())) {
+                hostName = row.getUsername();
+            }
         }
 
-        return new RoomPlayersResponse(roomCode, players);
+        LocalDateTime changedAt = first.getLastChangedAt() != null && first.getLastChangedAt().isAfter(first.getCreatedAt())
+                ? first.getLastChangedAt()
+                : first.getCreatedAt();
+        long version = changedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        return new RoomSnapshotResponse(
+                first.getRoomId(),
+                first.getRoomCode(),
+                first.getMaxPlayers(),
+                first.getStatus(),
+                first.getCreatorName(),
+                hostName,
+                first.getGameId(),
+                first.getGameStatus(),
+                version,
+                players
+        );
     }
-    
+
     // 注意：joinRoom和leaveRoom方法已经移到RoomPlayerService中
 }
\ No newline at end of file
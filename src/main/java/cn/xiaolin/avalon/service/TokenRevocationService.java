@@ -0,0 +1,267 @@
+package cn.xiaolin.avalon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 令牌吊销服务
+ * 被吊销令牌的ID（jti）保存在本机内存：布隆过滤器负责常数时间的快速判断，绝大多数未吊销的令牌
+ * 只需几次位运算即可放行；过滤器命中时再查精确集合，排除误判。记录保留到令牌自身过期为止。
+ * redis 模式下吊销记录以 SET NX 写入Redis，是否首次吊销以Redis为准，并通过发布订阅同步到其他实例，启动时从Redis恢复
+ */
+@Service
+@Slf4j
+public class TokenRevocationService {
+    private static final String KEY_PREFIX = "jwt:revoked:";
+    private static final String CHANNEL = "jwt:revocations";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisConnectionFactory connectionFactory;
+
+    /**
+     * jti -> 令牌过期时间（毫秒）
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter filter;
+
+    private final Counter falsePositives;
+
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Value("${jwt.revocation.mode:local}")
+    private String mode;
+
+    @Value("${jwt.revocation.expected-revocations:100000}")
+    private Integer expectedRevocations;
+
+    public TokenRevocationService(StringRedisTemplate redisTemplate,
+                                  RedisConnectionFactory connectionFactory,
+                                  MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = connectionFactory;
+        Gauge.builder("avalon.jwt.revoked", revoked, Map::size)
+            .description("当前仍在有效期内的已吊销令牌数")
+            .register(meterRegistry);
+        this.falsePositives = Counter.builder("avalon.jwt.revocation.false.positives")
+            .description("布隆过滤器命中但令牌未被吊销的次数")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        filter = new BloomFilter(expectedRevocations);
+        if (!isRedisMode()) {
+            return;
+        }
+        try {
+            restoreFromRedis();
+            listenerContainer = new RedisMessageListenerContainer();
+            listenerContainer.setConnectionFactory(connectionFactory);
+            listenerContainer.addMessageListener(this::onRevocationMessage, new ChannelTopic(CHANNEL));
+            listenerContainer.afterPropertiesSet();
+            listenerContainer.start();
+        } catch (Exception e) {
+            log.warn("令牌吊销记录同步初始化失败，仅使用本机记录: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    /**
+     * 吊销令牌
+     * redis 模式下以 SET NX 在Redis中原子地占用 jti，多个实例同时吊销同一令牌时只有一个成功，
+     * 刷新令牌的一次性使用据此跨实例判定；本机集合只作缓存。Redis不可用时退回本机判断
+     * @param jti 令牌ID
+     * @param expiresAtMillis 令牌过期时间，之后不再需要保留记录
+     * @return 此前未被吊销时返回 true
+     */
+    public boolean revoke(String jti, long expiresAtMillis) {
+        if (jti == null || expiresAtMillis <= System.currentTimeMillis()) {
+            return false;
+        }
+        if (!isRedisMode()) {
+            return addLocal(jti, expiresAtMillis);
+        }
+        if (revoked.containsKey(jti)) {
+            return false;
+        }
+        Boolean claimed;
+        try {
+            long ttl = expiresAtMillis - System.currentTimeMillis();
+            claimed = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + jti, String.valueOf(expiresAtMillis), Duration.ofMillis(Math.max(1, ttl)));
+        } catch (Exception e) {
+            log.warn("令牌吊销记录写入Redis失败，仅按本机记录判断: jti={}, error={}", jti, e.getMessage());
+            return addLocal(jti, expiresAtMillis);
+        }
+        // 无论是否由本实例占用，记录都写入本机缓存
+        addLocal(jti, expiresAtMillis);
+        if (!Boolean.TRUE.equals(claimed)) {
+            return false;
+        }
+        try {
+            redisTemplate.convertAndSend(CHANNEL, jti + ":" + expiresAtMillis);
+        } catch (Exception e) {
+            log.warn("令牌吊销消息发布失败: jti={}, error={}", jti, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * 判断令牌是否已被吊销；没有jti的旧令牌无法吊销，只能等待自然过期
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null || !filter.mightContain(jti)) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        if (expiresAt == null) {
+            falsePositives.increment();
+            return false;
+        }
+        return expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * 清理已过期的记录并重建布隆过滤器（过滤器本身无法删除元素）
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.cleanup-interval:60000}", initialDelayString = "${jwt.revocation.cleanup-interval:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        if (!revoked.values().removeIf(expiresAt -> expiresAt <= now)) {
+            return;
+        }
+        synchronized (this) {
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, revoked.size() * 2));
+            revoked.keySet().forEach(rebuilt::put);
+            filter = rebuilt;
+        }
+    }
+
+    private boolean addLocal(String jti, long expiresAtMillis) {
+        // 加锁保证重建过滤器期间新增的记录不会丢失；吊销是低频操作
+        synchronized (this) {
+            if (revoked.putIfAbsent(jti, expiresAtMillis) != null) {
+                return false;
+            }
+            filter.put(jti);
+            return true;
+        }
+    }
+
+    private void onRevocationMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator <= 0) {
+            return;
+        }
+        try {
+            long expiresAt = Long.parseLong(body.substring(separator + 1));
+            if (expiresAt > System.currentTimeMillis()) {
+                addLocal(body.substring(0, separator), expiresAt);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("忽略格式错误的令牌吊销消息: {}", body);
+        }
+    }
+
+    private void restoreFromRedis() {
+        int restored = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                String value = redisTemplate.opsForValue().get(key);
+                if (value != null && addLocal(key.substring(KEY_PREFIX.length()), Long.parseLong(value))) {
+                    restored++;
+                }
+            }
+        }
+        log.info("从Redis恢复已吊销令牌: {}", restored);
+    }
+
+    private boolean isRedisMode() {
+        return "redis".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 布隆过滤器：按千分之一误判率确定位数，使用双重哈希生成各个位置
+     */
+    private static final class BloomFilter {
+        private static final double FALSE_POSITIVE_RATE = 0.001;
+
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        BloomFilter(int expectedInsertions) {
+            long m = (long) Math.ceil(-expectedInsertions * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((m + 63) / 64));
+            this.bitCount = bits.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) m / expectedInsertions * Math.log(2)));
+        }
+
+        void put(String value) {
+            long[] hash = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(hash[0] + i * hash[1], bitCount);
+                long mask = 1L << index;
+                int word = (int) (index >>> 6);
+                long current;
+                do {
+                    current = bits.get(word);
+                } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long[] hash = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(hash[0] + i * hash[1], bitCount);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * jti 是随机UUID，直接取其高低64位作为两个哈希值；其他格式退回字符串哈希
+         */
+        private static long[] hash(String value) {
+            try {
+                UUID uuid = UUID.fromString(value);
+                return new long[]{uuid.getMostSignificantBits(), uuid.getLeastSignificantBits() | 1};
+            } catch (IllegalArgumentException e) {
+                long h = value.hashCode() * 0x9E3779B97F4A7C15L;
+                return new long[]{h, (h >>> 31) | 1};
+            }
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package cn.xiaolin.avalon.service;
 
+import cn.xiaolin.avalon.dto.ProposalRound;
 import cn.xiaolin.avalon.dto.VoteRequest;
+import cn.xiaolin.avalon.engine.AvalonRules;
 import cn.xiaolin.avalon.entity.*;
+import cn.xiaolin.avalon.enums.GamePhase;
 import cn.xiaolin.avalon.enums.QuestStatus;
 import cn.xiaolin.avalon.enums.VoteType;
 import cn.xiaolin.avalon.repository.*;
+import cn.xiaolin.avalon.websocket.GameEventBroadcaster;
 import cn.xiaolin.avalon.websocket.GameMessage;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.Objects;
 
@@ -20,60 +24,34 @@ public class VoteService {
     private final GameRepository gameRepository;
     private final GamePlayerRepository gamePlayerRepository;
     private final QuestRepository questRepository;
+    private final ProposalRepository proposalRepository;
     private final VoteRepository voteRepository;
-    private final UserRepository userRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final QuestService questService;
+    private final GameEventBroadcaster gameEventBroadcaster;
+    private final PhaseDeadlineService phaseDeadlineService;
 
     @Transactional
     public Vote submitVote(UUID gameId, UUID playerId, VoteRequest request) {
         Game game = gameRepository.findById(gameId)
             .orElseThrow(() -> new RuntimeException("游戏不存在"));
     
-        GamePlayer player = gamePlayerRepository.findByGameAndUser(game, userRepository.findById(playerId).orElseThrow())
+        GamePlayer player = gamePlayerRepository.findByGameAndUserId(game, playerId)
             .orElseThrow(() -> new RuntimeException("玩家不在游戏中"));
+
+        // 记录玩家操作时间，供空闲回收判断
+        game.setLastActivityAt(LocalDateTime.now());
         
-        // 获取当前进行中的任务（排除已完成或失败的任务）
-        List<Quest> quests = questRepository.findByGameOrderByRoundNumber(game);
-        Quest currentQuest = quests.stream()
-            .filter(q -> !Objects.equals(q.getStatus(), QuestStatus.COMPLETED.getValue()) && 
-                       !Objects.equals(q.getStatus(), QuestStatus.FAILED.getValue()))
-            .findFirst()
-            .orElse(null);
-        
-        if (Objects.isNull(currentQuest)) {
-            throw new RuntimeException("没有当前任务");
-        }
-    
-        // 通过ID重新查询任务以确保获取最新状态
-        currentQuest = questRepository.findById(currentQuest.getId())
-            .orElseThrow(() -> new RuntimeException("任务不存在"));
-    
-        // 验证任务状态是否为投票阶段
-        if (!Objects.equals(currentQuest.getStatus(),QuestStatus.VOTING.getValue())) {
-            // 添加更详细的错误信息
-            throw new RuntimeException("当前阶段不是投票，当前状态为: " + currentQuest.getStatus());
-        }
-    
-        // 检查玩家是否已经对该任务投过票
-        boolean hasVoted = voteRepository.existsByQuestAndPlayer(currentQuest, player.getUser());
-        if (hasVoted) {
-            throw new RuntimeException("已经投过票了");
-        }
-    
-        // 创建投票记录
-        Vote vote = new Vote();
-        vote.setQuest(currentQuest);
-        vote.setPlayer(player.getUser());
-        vote.setVoteType(request.getVoteType());
+        // 验证游戏是否处于投票阶段
+        game.requirePhase(GamePhase.VOTING, "当前阶段不是投票，当前阶段为: " + game.getPhase());
+
+        Quest currentQuest = questRepository.findCurrentQuest(game)
+            .orElseThrow(() -> new RuntimeException("没有当前任务"));
     
-        Vote savedVote = voteRepository.save(vote);
+        Vote savedVote = castVote(game, currentQuest, player, request.getVoteType());
         
-        // 检查是否所有玩家都已投票，如果是则处理投票结果
-        List<GamePlayer> gamePlayers = gamePlayerRepository.findByGame(game);
-        List<Vote> votes = voteRepository.findByQuest(currentQuest);
-        
-        // 如果所有玩家都已投票，则处理投票结果
-        if (votes.size() == gamePlayers.size()) {
+        // 投票位掩码覆盖所有座位时处理投票结果
+        ProposalRound round = currentRound(game);
+        if (round.votedMask() == allSeats(gamePlayerRepository.countByGame(game))) {
             processVoteResults(gameId);
         } else {
             // 发送WebSocket消息通知投票情况
@@ -83,7 +61,7 @@ public class VoteService {
             message.setContent(player.getUser().getUsername() + "已投票");
             message.setTimestamp(System.currentTimeMillis());
             
-            messagingTemplate.convertAndSend("/topic/game/" + gameId, message);
+            gameEventBroadcaster.broadcastToGame(gameId, message);
         }
     
         return savedVote;
@@ -94,40 +72,42 @@ public class VoteService {
         Game game = gameRepository.findById(gameId)
             .orElseThrow(() -> new RuntimeException("游戏不存在"));
         
-        Quest currentQuest = getCurrentQuest(game);
-        if (Objects.isNull(currentQuest)) {
-            throw new RuntimeException("没有当前任务");
-        }
+        game.requirePhase(GamePhase.VOTING, "当前阶段不是投票");
+        Quest currentQuest = questRepository.findCurrentQuest(game)
+            .orElseThrow(() -> new RuntimeException("没有当前任务"));
         
-        // 统计投票结果
-        List<Vote> votes = voteRepository.findByQuest(currentQuest);
-        long approveCount = votes.stream()
-            .filter(v -> Objects.equals(v.getVoteType(), VoteType.APPROVE.getValue()))
-            .count();
-        long rejectCount = votes.stream()
-            .filter(v -> Objects.equals(v.getVoteType(), VoteType.REJECT.getValue()))
-            .count();
+        // 统计投票结果，直接使用当前提议的投票位掩码
+        ProposalRound round = currentRound(game);
         
         // 判断投票是否通过（赞成票数大于反对票数）
-        boolean votePassed = approveCount > rejectCount;
+        boolean votePassed = AvalonRules.votePasses(round.getApproveCount(), round.getRejectCount());
+        // 本轮第5次提议仍被否决，邪恶阵营获胜
+        boolean rejectionLimitReached = !votePassed && AvalonRules.rejectionLimitReached(round.getAttempt());
         
         if (votePassed) {
             // 投票通过，进入任务执行阶段
             currentQuest.setStatus(QuestStatus.EXECUTING.getValue());
-        } else {
+            game.transitionTo(GamePhase.EXECUTING);
+        } else if (!rejectionLimitReached) {
             // 投票失败，重新进入队伍组建阶段
             currentQuest.setStatus(QuestStatus.PROPOSING.getValue());
+            game.transitionTo(GamePhase.PROPOSING);
+            game.setCurrentProposalId(null);
             // 更换队长
             changeLeader(game, currentQuest);
         }
         
         questRepository.save(currentQuest);
+        gameRepository.save(game);
         
         // 发送WebSocket消息通知投票结果
         GameMessage message = new GameMessage();
         if (votePassed) {
             message.setType("TEAM_APPROVED");
             message.setContent("队伍提议已通过，进入任务执行阶段");
+        } else if (rejectionLimitReached) {
+            message.setType("TEAM_REJECTED");
+            message.setContent("队伍提议连续" + AvalonRules.MAX_REJECTIONS + "次被否决");
         } else {
             message.setType("TEAM_REJECTED");
             message.setContent("队伍提议被否决，需要重新提议队伍");
@@ -135,38 +115,115 @@ public class VoteService {
         message.setGameId(gameId);
         message.setTimestamp(System.currentTimeMillis());
         
-        messagingTemplate.convertAndSend("/topic/game/" + gameId, message);
+        gameEventBroadcaster.broadcastToGame(gameId, message);
+        if (rejectionLimitReached) {
+            questService.endGameByRejections(game, currentQuest);
+            return;
+        }
+        phaseDeadlineService.schedule(gameId,
+            votePassed ? PhaseDeadlineService.Phase.EXECUTING : PhaseDeadlineService.Phase.PROPOSING,
+            currentQuest.getId());
     }
 
     /**
-     * 获取当前进行中的任务
-     * @param game 游戏对象
-     * @return 当前任务，如果没有找到则返回null
+     * 投票限时到期的默认操作：未投票的玩家按默认票处理，随后统计投票结果
+     * @param questId 登记限时时的任务，阶段已变化时不做任何操作
+     * @param defaultVoteType 默认票（approve 或 reject）
      */
-    private Quest getCurrentQuest(Game game) {
-        return questRepository.findByGameOrderByRoundNumber(game).stream()
-            .filter(q -> !Objects.equals(q.getStatus(), QuestStatus.COMPLETED.getValue()) && 
-                       !Objects.equals(q.getStatus(), QuestStatus.FAILED.getValue()))
-            .findFirst()
-            .orElse(null);
+    @Transactional
+    public void fillMissingVotes(UUID gameId, UUID questId, String defaultVoteType) {
+        Game game = gameRepository.findById(gameId).orElse(null);
+        if (game == null || !Objects.equals(game.getPhase(), GamePhase.VOTING.getValue())
+            || !Objects.equals(game.getCurrentQuestId(), questId)) {
+            return;
+        }
+        Quest quest = questRepository.findCurrentQuest(game).orElse(null);
+        if (quest == null) {
+            return;
+        }
+
+        ProposalRound round = game.getCurrentProposalId() == null
+            ? null : proposalRepository.findRoundById(game.getCurrentProposalId());
+        if (round == null) {
+            // 没有当前提议的投票阶段无法结算，退回组队阶段由队长重新提议，避免对局停在投票阶段
+            game.transitionTo(GamePhase.PROPOSING);
+            quest.setStatus(QuestStatus.PROPOSING.getValue());
+            questRepository.save(quest);
+            gameRepository.save(game);
+            phaseDeadlineService.schedule(gameId, PhaseDeadlineService.Phase.PROPOSING, quest.getId());
+            gameEventBroadcaster.scheduleDelayedBroadcast(gameId);
+            return;
+        }
+
+        int voted = round.votedMask();
+        for (GamePlayer player : gamePlayerRepository.findByGame(game)) {
+            if ((voted & AvalonRules.seatBit(player.getSeatNumber())) == 0) {
+                castVote(game, quest, player, defaultVoteType);
+            }
+        }
+
+        processVoteResults(gameId);
+    }
+
+    /**
+     * 记录一张投票：先原子地更新当前提议的投票位掩码，成功后再写入投票明细
+     */
+    private Vote castVote(Game game, Quest quest, GamePlayer player, String voteType) {
+        boolean approve = Objects.equals(voteType, VoteType.APPROVE.getValue());
+        if (!approve && !Objects.equals(voteType, VoteType.REJECT.getValue())) {
+            throw new RuntimeException("投票类型无效");
+        }
+        if (game.getCurrentProposalId() == null) {
+            throw new RuntimeException("没有当前提议");
+        }
+
+        // 每个座位只能投一次
+        int seatBit = AvalonRules.seatBit(player.getSeatNumber());
+        if (proposalRepository.castVote(game.getCurrentProposalId(), seatBit, approve) == 0) {
+            throw new RuntimeException("已经投过票了");
+        }
+    
+        // 创建投票记录
+        Vote vote = new Vote();
+        vote.setQuest(quest);
+        vote.setProposal(proposalRepository.getReferenceById(game.getCurrentProposalId()));
+        vote.setPlayer(player.getUser());
+        vote.setVoteType(voteType);
+        return voteRepository.save(vote);
+    }
+
+    /**
+     * 当前提议的投票情况，没有当前提议时抛出异常
+     */
+    private ProposalRound currentRound(Game game) {
+        ProposalRound round = game.getCurrentProposalId() == null
+            ? null : proposalRepository.findRoundById(game.getCurrentProposalId());
+        if (round == null) {
+            throw new RuntimeException("没有当前提议");
+        }
+        return round;
+    }
+
+    /**
+     * 所有座位的位掩码
+     */
+    private static int allSeats(long playerCount) {
+        return (1 << playerCount) - 1;
     }
 
     private void changeLeader(Game game, Quest quest) {
         List<GamePlayer> players = gamePlayerRepository.findByGame(game);
-        // 找到当前队长在玩家列表中的索引位置
-        int currentLeaderIndex = players.stream()
-            .filter(p -> Objects.equals(p.getUser().getId(), quest.getLeader().getId()))
-            .findFirst()
-            .map(p -> p.getSeatNumber() - 1)
-            .orElse(0);
+        // 当前队长的座位索引直接取自游戏
+        int currentLeaderIndex = game.getLeaderSeat() != null ? game.getLeaderSeat() - 1 : 0;
         
         // 计算下一个队长的索引位置（循环选择）
-        int nextLeaderIndex = (currentLeaderIndex + 1) % players.size();
+        int nextLeaderIndex = AvalonRules.nextLeaderSeat(currentLeaderIndex, players.size());
         GamePlayer nextLeader = players.stream()
             .filter(p -> p.getSeatNumber() == nextLeaderIndex + 1)
             .findFirst()
             .orElse(players.get(0));
         
         quest.setLeader(nextLeader.getUser());
+        game.setLeaderSeat(nextLeader.getSeatNumber());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package cn.xiaolin.avalon.utils;
+
+import cn.xiaolin.avalon.websocket.GameMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 排空快照编解码器
+ * 一个实例排空时的全部对局打包为一个快照，以gzip压缩的JSON存储，恢复时一次读取、批量恢复
+ */
+@Component
+@RequiredArgsConstructor
+public class DrainSnapshotCodec {
+    public static final int FORMAT_VERSION = 1;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 排空快照
+     * @param createdAt 快照时间（毫秒）
+     */
+    public record Snapshot(int version, long createdAt, List<LiveGame> games) {
+    }
+
+    /**
+     * 一局进行中游戏的内存状态
+     * @param sequence 事件日志最近一次分配的序号
+     * @param events 事件日志中仍保留的事件
+     * @param phase 阶段限时对应的阶段，没有限时为空
+     * @param questId 阶段限时登记时的当前任务
+     * @param expiresAt 阶段限时的到期时间（毫秒）
+     * @param pendingBroadcast 是否有尚未执行的状态广播
+     */
+    public record LiveGame(UUID gameId, long sequence, List<GameMessage> events,
+                           String phase, UUID questId, Long expiresAt, boolean pendingBroadcast) {
+    }
+
+    public byte[] encode(Snapshot snapshot) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            objectMapper.writeValue(out, snapshot);
+        } catch (IOException e) {
+            throw new RuntimeException("排空快照序列化失败", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    public Snapshot decode(byte[] payload) {
+        Snapshot snapshot;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            snapshot = objectMapper.readValue(in, Snapshot.class);
+        } catch (IOException e) {
+            throw new RuntimeException("排空快照解析失败", e);
+        }
+        if (snapshot.version() != FORMAT_VERSION) {
+            throw new RuntimeException("不支持的排空快照版本: " + snapshot.version());
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,44 @@
+package cn.xiaolin.avalon.utils;
+
+import cn.xiaolin.avalon.dto.GameStatisticsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 游戏归档快照编解码器
+ * 快照以gzip压缩的JSON存储，体积约为明文的十分之一，读取时按需解压
+ */
+@Component
+@RequiredArgsConstructor
+public class GameArchiveCodec {
+    public static final int FORMAT_VERSION = 1;
+
+    private final ObjectMapper objectMapper;
+
+    public byte[] encode(GameStatisticsResponse statistics) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            objectMapper.writeValue(out, statistics);
+        } catch (IOException e) {
+            throw new RuntimeException("归档数据序列化失败", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    public GameStatisticsResponse decode(byte[] payload) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return objectMapper.readValue(in, GameStatisticsResponse.class);
+        } catch (IOException e) {
+            throw new RuntimeException("归档数据解析失败", e);
+        }
+    }
+}
@@ -15,52 +15,133 @@ public class JwtUtil {
     @Value("${jwt.secret:avalon-game-secret-key-that-should-be-very-long-and-secure}")
     private String secret;
     
-    @Value("${jwt.expiration:86400000}") // 24 hours
+    @Value("${jwt.expiration:900000}") // 15 minutes，访问令牌有效期
     private Long expiration;
+
+    @Value("${jwt.refresh-expiration:604800000}") // 7 days
+    private Long refreshExpiration;
+
+    @Value("${jwt.stream-expiration:300000}") // 5 minutes
+    private Long streamExpiration;
+
+    /**
+     * 令牌类型声明；没有该声明的旧令牌视为访问令牌
+     */
+    public static final String TOKEN_TYPE_CLAIM = "typ";
+    public static final String ACCESS_TOKEN = "access";
+    public static final String REFRESH_TOKEN = "refresh";
+    public static final String STREAM_TOKEN = "stream";
+
+    /**
+     * 事件流令牌限定的游戏ID声明
+     */
+    public static final String GAME_ID_CLAIM = "gid";
     
     private Key getSigningKey() {
         return Keys.hmacShaKeyFor(secret.getBytes());
     }
     
+    /**
+     * 生成访问令牌，每个令牌带唯一ID（jti），用于吊销
+     */
     public String generateToken(UUID userId, String username) {
+        return buildToken(userId, username, ACCESS_TOKEN, expiration);
+    }
+
+    /**
+     * 生成刷新令牌，只能用于换取新的访问令牌
+     */
+    public String generateRefreshToken(UUID userId, String username) {
+        return buildToken(userId, username, REFRESH_TOKEN, refreshExpiration);
+    }
+
+    /**
+     * 生成事件流令牌：浏览器 EventSource 不能携带请求头，令牌放在URL中，
+     * 因此只对一局游戏的事件流有效、有效期短，不能当作访问令牌使用
+     */
+    public String generateStreamToken(UUID userId, String username, UUID gameId) {
+        return buildToken(userId, username, STREAM_TOKEN, streamExpiration, gameId);
+    }
+
+    public long getStreamExpiration() {
+        return streamExpiration;
+    }
+
+    private String buildToken(UUID userId, String username, String type, long ttl) {
+        return buildToken(userId, username, type, ttl, null);
+    }
+
+    private String buildToken(UUID userId, String username, String type, long ttl, UUID gameId) {
         Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + expiration);
+        Date expiryDate = new Date(now.getTime() + ttl);
         
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(userId.toString())
                 .claim("username", username)
+                .claim(TOKEN_TYPE_CLAIM, type);
+        if (gameId != null) {
+            builder.claim(GAME_ID_CLAIM, gameId.toString());
+        }
+        return builder
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(getSigningKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
-    
-    public UUID getUserIdFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
+
+    /**
+     * 校验签名和有效期并返回声明，一次解析即可取得所有字段
+     * @throws JwtException 令牌无效或已过期
+     */
+    public Claims parseClaims(String token) {
+        return Jwts.parserBuilder()
                 .setSigningKey(getSigningKey())
                 .build()
                 .parseClaimsJws(token)
                 .getBody();
-        
-        return UUID.fromString(claims.getSubject());
+    }
+
+    public boolean isAccessToken(Claims claims) {
+        String type = claims.get(TOKEN_TYPE_CLAIM, String.class);
+        return type == null || ACCESS_TOKEN.equals(type);
+    }
+
+    public boolean isRefreshToken(Claims claims) {
+        return REFRESH_TOKEN.equals(claims.get(TOKEN_TYPE_CLAIM, String.class));
+    }
+
+    /**
+     * 是否为指定游戏的事件流令牌
+     */
+    public boolean isStreamTokenFor(Claims claims, UUID gameId) {
+        return STREAM_TOKEN.equals(claims.get(TOKEN_TYPE_CLAIM, String.class))
+                && gameId.toString().equals(claims.get(GAME_ID_CLAIM, String.class));
+    }
+    
+    /**
+     * 解析访问令牌；刷新令牌和事件流令牌不能当作访问令牌使用
+     * @throws JwtException 令牌无效、已过期或不是访问令牌
+     */
+    private Claims parseAccessClaims(String token) {
+        Claims claims = parseClaims(token);
+        if (!isAccessToken(claims)) {
+            throw new UnsupportedJwtException("不是访问令牌: " + claims.get(TOKEN_TYPE_CLAIM, String.class));
+        }
+        return claims;
+    }
+
+    public UUID getUserIdFromToken(String token) {
+        return UUID.fromString(parseAccessClaims(token).getSubject());
     }
     
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        
-        return claims.get("username", String.class);
+        return parseAccessClaims(token).get("username", String.class);
     }
     
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token);
+            parseAccessClaims(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             return false;
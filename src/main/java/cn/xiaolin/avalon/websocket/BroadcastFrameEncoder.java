@@ -0,0 +1,114 @@
+package cn.xiaolin.avalon.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * 广播帧编码器
+ * 广播负载只序列化一次，得到的字节数组由STOMP代理分发给所有订阅会话、并直接写给SSE连接，
+ * 不再为每个目的地或每个连接重复经过消息转换器
+ */
+@Component
+@RequiredArgsConstructor
+public class BroadcastFrameEncoder {
+
+    private static final UUID USER_PLACEHOLDER = new UUID(0L, 0L);
+    private static final String DATA_PLACEHOLDER = "__AVALON_FRAME_DATA__";
+
+    private final ObjectMapper objectMapper;
+
+    public byte[] encode(Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("广播消息序列化失败", e);
+        }
+    }
+
+    /**
+     * 把已编码的JSON负载包装为可直接交给 SimpMessagingTemplate#send 的消息，跳过消息转换器
+     */
+    public Message<byte[]> toMessage(byte[] payload) {
+        return MessageBuilder.withPayload(payload)
+            .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON)
+            .build();
+    }
+
+    /**
+     * 为按用户发送的消息生成拼接模板：公共外壳只序列化一次，userId 和 data 在发送时拼接
+     * @param envelope 消息外壳，userId 和 data 字段会被忽略
+     */
+    public UserFrameTemplate userTemplate(GameMessage envelope) {
+        GameMessage placeholder = new GameMessage(envelope.getType(), envelope.getGameId(), envelope.getRoomId(),
+            USER_PLACEHOLDER, envelope.getContent(), envelope.getSender(), DATA_PLACEHOLDER,
+            envelope.getSequence(), envelope.getTimestamp());
+        return new UserFrameTemplate(encode(placeholder));
+    }
+
+    /**
+     * 按用户拼接的帧模板
+     */
+    public static final class UserFrameTemplate {
+        private static final byte[] USER_TOKEN = ("\"" + USER_PLACEHOLDER + "\"").getBytes(StandardCharsets.UTF_8);
+        private static final byte[] DATA_TOKEN = ("\"" + DATA_PLACEHOLDER + "\"").getBytes(StandardCharsets.UTF_8);
+
+        private final byte[] frame;
+        private final int userOffset;
+        private final int dataOffset;
+
+        private UserFrameTemplate(byte[] frame) {
+            this.frame = frame;
+            this.userOffset = indexOf(frame, USER_TOKEN);
+            this.dataOffset = indexOf(frame, DATA_TOKEN);
+            if (userOffset < 0 || dataOffset < 0 || userOffset > dataOffset) {
+                throw new IllegalStateException("消息外壳结构不支持拼接");
+            }
+        }
+
+        /**
+         * @param userId 接收者用户ID
+         * @param data 已编码的 data 字段JSON
+         * @return 完整的消息JSON
+         */
+        public byte[] splice(UUID userId, byte[] data) {
+            byte[] user = ("\"" + userId + "\"").getBytes(StandardCharsets.UTF_8);
+            int afterUser = userOffset + USER_TOKEN.length;
+            int afterData = dataOffset + DATA_TOKEN.length;
+
+            byte[] out = new byte[frame.length - USER_TOKEN.length - DATA_TOKEN.length + user.length + data.length];
+            int pos = 0;
+            System.arraycopy(frame, 0, out, pos, userOffset);
+            pos += userOffset;
+            System.arraycopy(user, 0, out, pos, user.length);
+            pos += user.length;
+            System.arraycopy(frame, afterUser, out, pos, dataOffset - afterUser);
+            pos += dataOffset - afterUser;
+            System.arraycopy(data, 0, out, pos, data.length);
+            pos += data.length;
+            System.arraycopy(frame, afterData, out, pos, frame.length - afterData);
+            return out;
+        }
+
+        private static int indexOf(byte[] haystack, byte[] needle) {
+            outer:
+            for (int i = 0; i <= haystack.length - needle.length; i++) {
+                for (int j = 0; j < needle.length; j++) {
+                    if (haystack[i + j] != needle[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cn.xiaolin.avalon.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 紧凑线路协议（compact-v1）
+ * 客户端在 STOMP CONNECT 帧中携带 x-avalon-protocol: compact-v1 时启用：
+ * 1. 事件类型替换为数字编码
+ * 2. 外层字段名替换为短键，空字段不再下发；content 只在固定文案、可由类型和 data 推出的事件中省略，
+ *    错误原因、投票人、提议理由、胜负等无法推出的 content 以短键 c 下发
+ * 3. data 负载保持原结构，GAME_REPLAY 中补发的事件同样按本协议压缩
+ */
+public final class CompactProtocol {
+
+    public static final String HEADER = "x-avalon-protocol";
+    public static final String VERSION = "compact-v1";
+
+    /**
+     * 事件类型编码，只允许追加，已分配的编码不能修改
+     */
+    private static final Map<String, Integer> TYPE_CODES = Map.ofEntries(
+        Map.entry("ERROR", 1),
+        Map.entry("GAME_STATE_UPDATE", 2),
+        Map.entry("GAME_REPLAY", 3),
+        Map.entry("GAME_STARTED", 10),
+        Map.entry("FIRST_QUEST_STARTED", 11),
+        Map.entry("TEAM_PROPOSED", 12),
+        Map.entry("VOTE_SUBMITTED", 13),
+        Map.entry("TEAM_APPROVED", 14),
+        Map.entry("TEAM_REJECTED", 15),
+        Map.entry("QUEST_COMPLETED", 16),
+        Map.entry("NEXT_ROUND_STARTED", 17),
+        Map.entry("GAME_EXPIRED", 18),
+        Map.entry("PLAYER_JOINED", 30),
+        Map.entry("PLAYER_LEFT", 31),
+        Map.entry("HOST_TRANSFERRED", 32),
+        Map.entry("ROOM_CLOSED", 33)
+    );
+
+    private static final Map<String, String> SHORT_KEYS = Map.ofEntries(
+        Map.entry("type", "t"),
+        Map.entry("gameId", "g"),
+        Map.entry("roomId", "r"),
+        Map.entry("userId", "u"),
+        Map.entry("username", "n"),
+        Map.entry("newHost", "h"),
+        Map.entry("sender", "s"),
+        Map.entry("content", "c"),
+        Map.entry("data", "d"),
+        Map.entry("sequence", "q"),
+        Map.entry("timestamp", "ts")
+    );
+
+    /**
+     * content 为固定文案的事件类型，紧凑格式中省略 content
+     */
+    private static final Set<String> FIXED_CONTENT_TYPES = Set.of(
+        "GAME_STATE_UPDATE",
+        "GAME_REPLAY",
+        "GAME_STARTED",
+        "FIRST_QUEST_STARTED",
+        "TEAM_APPROVED",
+        "NEXT_ROUND_STARTED",
+        "GAME_EXPIRED"
+    );
+
+    private CompactProtocol() {
+    }
+
+    public static boolean isRequested(String headerValue) {
+        return VERSION.equalsIgnoreCase(headerValue);
+    }
+
+    /**
+     * 将标准JSON消息转换为紧凑格式
+     * @param objectMapper JSON序列化器
+     * @param json 标准格式的消息JSON
+     * @return 紧凑格式的消息JSON；无法识别的负载原样返回
+     */
+    public static byte[] encode(ObjectMapper objectMapper, byte[] json) throws IOException {
+        JsonNode tree = objectMapper.readTree(json);
+        if (!tree.isObject()) {
+            return json;
+        }
+        return objectMapper.writeValueAsBytes(compact(objectMapper, (ObjectNode) tree));
+    }
+
+    private static ObjectNode compact(ObjectMapper objectMapper, ObjectNode message) {
+        ObjectNode out = objectMapper.createObjectNode();
+        String type = message.path("type").asText(null);
+        Iterator<Map.Entry<String, JsonNode>> fields = message.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String key = field.getKey();
+            JsonNode value = field.getValue();
+            if (value.isNull() || ("content".equals(key) && FIXED_CONTENT_TYPES.contains(type))) {
+                continue;
+            }
+            if ("type".equals(key) && TYPE_CODES.containsKey(value.asText())) {
+                value = objectMapper.getNodeFactory().numberNode(TYPE_CODES.get(value.asText()));
+            } else if ("data".equals(key) && "GAME_REPLAY".equals(type) && value.isArray()) {
+                ArrayNode events = objectMapper.createArrayNode();
+                for (JsonNode event : value) {
+                    events.add(event.isObject() ? compact(objectMapper, (ObjectNode) event) : event);
+                }
+                value = events;
+            }
+            out.set(SHORT_KEYS.getOrDefault(key, key), value);
+        }
+        return out;
+    }
+}
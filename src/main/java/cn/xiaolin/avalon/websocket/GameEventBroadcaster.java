@@ -0,0 +1,255 @@
+package cn.xiaolin.avalon.websocket;
+
+import cn.xiaolin.avalon.dto.GameStateResponse;
+import cn.xiaolin.avalon.service.GameStateService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 游戏事件广播器
+ * 统一的广播管道：同一个事件只构建一次，同时分发给STOMP订阅者和SSE订阅者
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GameEventBroadcaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final GameSseHub sseHub;
+
+    private final GameStateService gameStateService;
+
+    private final GameEventLog eventLog;
+
+    private final MeterRegistry meterRegistry;
+
+    private final BroadcastFrameEncoder frameEncoder;
+
+    private final WireProtocolInterceptor wireProtocol;
+
+    private final SpectatorFeed spectatorFeed;
+
+    @Value("${sse.heartbeat-interval:15000}")
+    private Long heartbeatInterval;
+
+    @Value("${websocket.replay.evict-interval:60000}")
+    private Long replayEvictInterval;
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+
+    /**
+     * SSE心跳单独使用一个线程，写入较慢的连接不会推迟游戏状态广播
+     */
+    private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final Map<UUID, Boolean> pendingBroadcasts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void startHeartbeat() {
+        heartbeatScheduler.scheduleAtFixedRate(sseHub::sendHeartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(eventLog::evictIdle, replayEvictInterval, replayEvictInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(wireProtocol::evictIdle, replayEvictInterval, replayEvictInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(spectatorFeed::evictIdle, replayEvictInterval, replayEvictInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeatScheduler.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 广播游戏事件到 /topic/game/{gameId} 以及该游戏的所有SSE连接，
+     * 并延迟推送一次个性化的游戏状态。事件先写入事件日志获得序号，供断线重连补发；
+     * 序号分配和推送在同一把发布锁内完成，订阅者按序号顺序收到事件
+     */
+    public void broadcastToGame(UUID gameId, GameMessage message) {
+        eventLog.appendAndPublish(gameId, message, event -> publish(gameId, event));
+
+        // 延迟广播游戏状态更新，避免频繁调用
+        scheduleDelayedBroadcast(gameId);
+    }
+
+    /**
+     * 广播游戏的最后一个事件并关闭该游戏的SSE连接，不再推送游戏状态
+     */
+    public void closeGame(UUID gameId, GameMessage message) {
+        eventLog.appendAndPublish(gameId, message, event -> publish(gameId, event));
+        sseHub.closeGame(gameId);
+        eventLog.clear(gameId);
+        wireProtocol.finishGame(gameId);
+        spectatorFeed.closeGame(gameId);
+    }
+
+    /**
+     * 断线重连后恢复事件流
+     * 缓冲区中仍保留客户端错过的全部事件时只补发这些事件，否则推送一次当前状态快照
+     *
+     * @param gameId 游戏ID
+     * @param userId 用户ID
+     * @param lastSequence 客户端最后收到的事件序号，为空表示首次订阅
+     * @return GAME_REPLAY 消息（data 为错过的事件列表）或 GAME_STATE_UPDATE 快照
+     */
+    public GameMessage resume(UUID gameId, UUID userId, Long lastSequence) {
+        Optional<List<GameMessage>> missed = lastSequence == null
+            ? Optional.empty()
+            : eventLog.since(gameId, lastSequence);
+
+        if (missed.isPresent()) {
+            meterRegistry.counter("avalon.replay.resumed", "result", "replay").increment();
+            GameMessage replay = new GameMessage();
+            replay.setType("GAME_REPLAY");
+            replay.setGameId(gameId);
+            replay.setUserId(userId);
+            replay.setContent("补发断线期间的事件");
+            replay.setData(missed.get());
+            replay.setSequence(eventLog.currentSequence(gameId));
+            replay.setTimestamp(System.currentTimeMillis());
+            return replay;
+        }
+
+        meterRegistry.counter("avalon.replay.resumed", "result", "snapshot").increment();
+        // 快照前先读取序号，快照之后产生的事件客户端会在订阅的主题上收到
+        long sequence = eventLog.currentSequence(gameId);
+        GameMessage snapshot = buildStateMessage(gameId, userId, gameStateService.getGameState(gameId, userId));
+        snapshot.setSequence(sequence);
+        return snapshot;
+    }
+
+    /**
+     * 打开SSE事件流
+     * 客户端携带 Last-Event-ID 且错过的事件仍在缓冲区中时只补发这些事件，否则推送一次当前状态快照
+     *
+     * @param gameId 游戏ID
+     * @param userId 用户ID
+     * @param lastEventId 客户端最后收到的事件ID（可选）
+     * @return SSE连接
+     */
+    public SseEmitter openStream(UUID gameId, UUID userId, String lastEventId) {
+        // 先校验玩家在游戏中，不在游戏中直接抛出异常
+        GameStateResponse gameState = gameStateService.getGameState(gameId, userId);
+
+        // 登记连接和补发在发布锁内完成，期间产生的事件排在补发之后推送
+        return eventLog.withPublishLock(gameId, () -> {
+            SseEmitter emitter = sseHub.subscribe(gameId, userId);
+            Optional<List<GameMessage>> missed = parseLastEventId(lastEventId)
+                .flatMap(last -> eventLog.since(gameId, last));
+            if (missed.isPresent()) {
+                for (GameMessage event : missed.get()) {
+                    sseHub.sendTo(emitter, event.getSequence(), event);
+                }
+                return emitter;
+            }
+
+            sseHub.sendTo(emitter, eventLog.currentSequence(gameId), buildStateMessage(gameId, userId, gameState));
+            return emitter;
+        });
+    }
+
+    public void scheduleDelayedBroadcast(UUID gameId) {
+        // 如果已经有待处理的广播，跳过
+        if (pendingBroadcasts.putIfAbsent(gameId, true) != null) {
+            return;
+        }
+
+        // 延迟1秒后执行广播
+        scheduler.schedule(() -> {
+            try {
+                broadcastGameState(gameId);
+            } finally {
+                pendingBroadcasts.remove(gameId);
+            }
+        }, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 已安排但尚未执行状态广播的游戏
+     */
+    public Set<UUID> pendingBroadcastIds() {
+        return Set.copyOf(pendingBroadcasts.keySet());
+    }
+
+    // 广播游戏状态的方法
+    public void broadcastGameState(UUID gameId) {
+        try {
+            // 获取所有玩家的游戏状态
+            Map<UUID, GameStateResponse> allPlayerStates = gameStateService.getGameStatesForAllPlayers(gameId);
+
+            // 消息外壳只编码一次，每个玩家只拼接 userId 和状态数据；内容相同的状态也只编码一次
+            GameMessage envelope = buildStateMessage(gameId, null, null);
+            envelope.setSequence(eventLog.currentSequence(gameId));
+            BroadcastFrameEncoder.UserFrameTemplate template = frameEncoder.userTemplate(envelope);
+            Map<GameStateResponse, byte[]> encodedStates = new HashMap<>();
+            String destination = "/topic/game/" + gameId + "/state";
+
+            // 为每个玩家发送个性化的游戏状态
+            for (Map.Entry<UUID, GameStateResponse> entry : allPlayerStates.entrySet()) {
+                UUID userId = entry.getKey();
+                byte[] data = encodedStates.computeIfAbsent(entry.getValue(), frameEncoder::encode);
+                byte[] frame = template.splice(userId, data);
+
+                // 发送给特定用户的游戏状态
+                messagingTemplate.send(messagingTemplate.getUserDestinationPrefix() + userId + destination,
+                    frameEncoder.toMessage(frame));
+                sseHub.sendToUser(gameId, userId, envelope.getType(), frame);
+            }
+
+            // 观战者共享同一份公开状态帧，与观战人数无关
+            spectatorFeed.publish(gameId);
+
+        } catch (Exception e) {
+            // 记录错误但不影响主要功能
+            log.error("广播游戏状态失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 事件只编码一次，同一份字节同时用于STOMP主题和所有SSE连接
+     */
+    private void publish(UUID gameId, GameMessage message) {
+        byte[] frame = frameEncoder.encode(message);
+        messagingTemplate.send("/topic/game/" + gameId, frameEncoder.toMessage(frame));
+        sseHub.sendToGame(gameId, message, frame);
+    }
+
+    private GameMessage buildStateMessage(UUID gameId, UUID userId, GameStateResponse gameState) {
+        GameMessage stateMessage = new GameMessage();
+        stateMessage.setType("GAME_STATE_UPDATE");
+        stateMessage.setGameId(gameId);
+        stateMessage.setUserId(userId);
+        stateMessage.setContent("游戏状态更新");
+        stateMessage.setData(gameState);
+        stateMessage.setTimestamp(System.currentTimeMillis());
+        return stateMessage;
+    }
+
+    private Optional<Long> parseLastEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.parseLong(lastEventId.trim()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
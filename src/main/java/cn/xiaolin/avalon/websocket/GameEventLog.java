@@ -0,0 +1,194 @@
+package cn.xiaolin.avalon.websocket;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 游戏事件日志
+ * 为每局游戏分配单调递增的事件序号，并在有界环形缓冲区中保留最近的事件，
+ * 供断线重连的STOMP/SSE客户端按序号补发错过的事件
+ */
+@Component
+public class GameEventLog {
+
+    @Value("${websocket.replay.capacity:256}")
+    private Integer capacity;
+
+    @Value("${websocket.replay.retention:1800000}") // 30 minutes
+    private Long retention;
+
+    private final Map<UUID, EventRing> rings = new ConcurrentHashMap<>();
+
+    /**
+     * 一局游戏的事件日志快照
+     * @param sequence 最近一次分配的事件序号
+     * @param events 缓冲区中仍保留的事件，按序号升序
+     */
+    public record RingSnapshot(long sequence, List<GameMessage> events) {
+    }
+
+    /**
+     * 为事件分配序号、写入环形缓冲区，并在该局游戏的发布锁内交给 publisher 推送。两次广播之间不会交错，
+     * 订阅者收到事件的顺序与序号一致，按序号续传时既不遗漏也不重复。
+     * 发布锁与缓冲区读写分开，推送较慢时不阻塞序号和补发查询
+     * @return 分配的序号
+     */
+    public long appendAndPublish(UUID gameId, GameMessage message, Consumer<GameMessage> publisher) {
+        EventRing ring = ring(gameId);
+        ring.publishLock.lock();
+        try {
+            long seq = ring.append(message);
+            publisher.accept(message);
+            return seq;
+        } finally {
+            ring.publishLock.unlock();
+        }
+    }
+
+    /**
+     * 在该局游戏的发布锁内执行，期间没有新事件发布；用于新连接登记并补发错过的事件，
+     * 补发内容与之后的实时推送正好衔接
+     */
+    public <T> T withPublishLock(UUID gameId, Supplier<T> action) {
+        EventRing ring = ring(gameId);
+        ring.publishLock.lock();
+        try {
+            return action.get();
+        } finally {
+            ring.publishLock.unlock();
+        }
+    }
+
+    /**
+     * 当前游戏最近一次分配的事件序号，没有任何事件时为0
+     */
+    public long currentSequence(UUID gameId) {
+        EventRing ring = rings.get(gameId);
+        return ring == null ? 0 : ring.current();
+    }
+
+    /**
+     * 获取指定序号之后的所有事件
+     * @param gameId 游戏ID
+     * @param lastSequence 客户端最后收到的事件序号
+     * @return 错过的事件（可能为空列表）；缓冲区已覆盖或序号无效时返回空，需改发状态快照
+     */
+    public Optional<List<GameMessage>> since(UUID gameId, long lastSequence) {
+        EventRing ring = rings.get(gameId);
+        if (ring == null) {
+            return lastSequence == 0 ? Optional.of(List.of()) : Optional.empty();
+        }
+        return Optional.ofNullable(ring.since(lastSequence));
+    }
+
+    public void clear(UUID gameId) {
+        rings.remove(gameId);
+    }
+
+    /**
+     * 当前保留事件日志的游戏
+     */
+    public Set<UUID> gameIds() {
+        return Set.copyOf(rings.keySet());
+    }
+
+    /**
+     * 导出一局游戏的事件日志，没有事件日志时返回 null
+     */
+    public RingSnapshot snapshot(UUID gameId) {
+        EventRing ring = rings.get(gameId);
+        return ring == null ? null : ring.snapshot();
+    }
+
+    /**
+     * 用快照替换一局游戏的事件日志，之后分配的序号从快照的序号继续递增，
+     * 客户端重连时仍可按原有序号补发事件
+     */
+    public void restore(UUID gameId, RingSnapshot snapshot) {
+        EventRing ring = new EventRing(capacity);
+        ring.restore(snapshot);
+        rings.put(gameId, ring);
+    }
+
+    /**
+     * 清理长时间没有新事件的游戏，避免已结束游戏的缓冲区常驻内存
+     */
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - retention;
+        rings.entrySet().removeIf(entry -> entry.getValue().lastAppendAt() < cutoff);
+    }
+
+    private EventRing ring(UUID gameId) {
+        return rings.computeIfAbsent(gameId, id -> new EventRing(capacity));
+    }
+
+    private static final class EventRing {
+        private final ReentrantLock publishLock = new ReentrantLock();
+        private final GameMessage[] events;
+        private long sequence;
+        private long lastAppendAt = System.currentTimeMillis();
+
+        EventRing(int capacity) {
+            this.events = new GameMessage[capacity];
+        }
+
+        synchronized long append(GameMessage message) {
+            long seq = ++sequence;
+            message.setSequence(seq);
+            events[(int) (seq % events.length)] = message;
+            lastAppendAt = System.currentTimeMillis();
+            return seq;
+        }
+
+        synchronized long current() {
+            return sequence;
+        }
+
+        synchronized long lastAppendAt() {
+            return lastAppendAt;
+        }
+
+        synchronized RingSnapshot snapshot() {
+            return new RingSnapshot(sequence, since(Math.max(0, sequence - events.length)));
+        }
+
+        synchronized void restore(RingSnapshot snapshot) {
+            sequence = snapshot.sequence();
+            for (GameMessage message : snapshot.events()) {
+                Long seq = message.getSequence();
+                // 只保留容量范围内的事件，容量调小时较早的事件按已被覆盖处理
+                if (seq != null && seq > sequence - events.length && seq <= sequence) {
+                    events[(int) (seq % events.length)] = message;
+                }
+            }
+            lastAppendAt = System.currentTimeMillis();
+        }
+
+        synchronized List<GameMessage> since(long lastSequence) {
+            // 客户端序号比服务端还新（如服务重启后序号重置），只能发快照
+            if (lastSequence < 0 || lastSequence > sequence) {
+                return null;
+            }
+            long oldest = Math.max(1, sequence - events.length + 1);
+            if (lastSequence + 1 < oldest) {
+                return null;
+            }
+            List<GameMessage> missed = new ArrayList<>((int) (sequence - lastSequence));
+            for (long seq = lastSequence + 1; seq <= sequence; seq++) {
+                missed.add(events[(int) (seq % events.length)]);
+            }
+            return missed;
+        }
+    }
+}
@@ -16,5 +16,8 @@ public class GameMessage {
     private UUID userId;
     private String content;
     private String sender;
+    private Object data;
+    // 游戏内事件序号，断线重连时客户端据此请求补发
+    private Long sequence;
     private Long timestamp;
 }
\ No newline at end of file
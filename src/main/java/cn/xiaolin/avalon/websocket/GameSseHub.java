@@ -0,0 +1,157 @@
+package cn.xiaolin.avalon.websocket;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * SSE订阅管理器
+ * 为无法使用 /ws STOMP 端点的客户端维护每局游戏的SSE连接。
+ * 连接基于Servlet异步请求，空闲时不占用任何线程，只在推送事件时写出数据。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GameSseHub {
+
+    private final GameEventLog eventLog;
+
+    @Value("${sse.timeout:1800000}") // 30 minutes
+    private Long timeout;
+
+    /**
+     * gameId -> 该游戏下所有打开的SSE连接
+     */
+    private final Map<UUID, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    public SseEmitter subscribe(UUID gameId, UUID userId) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        Subscription subscription = new Subscription(userId, emitter);
+
+        subscriptions.computeIfAbsent(gameId, id -> new CopyOnWriteArrayList<>()).add(subscription);
+
+        emitter.onCompletion(() -> remove(gameId, subscription));
+        emitter.onTimeout(() -> remove(gameId, subscription));
+        emitter.onError(e -> remove(gameId, subscription));
+
+        return emitter;
+    }
+
+    /**
+     * 推送给游戏内所有SSE订阅者，事件ID使用事件日志分配的序号，用于 Last-Event-ID 断点续传
+     *
+     * @param message 事件消息
+     * @param frame 已编码的消息JSON，所有连接共用同一份字节
+     */
+    public void sendToGame(UUID gameId, GameMessage message, byte[] frame) {
+        List<Subscription> subs = subscriptions.get(gameId);
+        if (subs == null) {
+            return;
+        }
+        for (Subscription subscription : subs) {
+            send(gameId, subscription, message.getSequence(), message.getType(), frame);
+        }
+    }
+
+    /**
+     * 只推送给游戏内指定用户的SSE连接（个性化的游戏状态）
+     *
+     * @param type 事件类型
+     * @param frame 已编码的消息JSON
+     */
+    public void sendToUser(UUID gameId, UUID userId, String type, byte[] frame) {
+        List<Subscription> subs = subscriptions.get(gameId);
+        if (subs == null) {
+            return;
+        }
+        long eventId = eventLog.currentSequence(gameId);
+        for (Subscription subscription : subs) {
+            if (Objects.equals(subscription.userId(), userId)) {
+                send(gameId, subscription, eventId, type, frame);
+            }
+        }
+    }
+
+    /**
+     * 直接向单个连接推送事件（用于连接建立时补发错过的事件或状态快照）
+     */
+    public void sendTo(SseEmitter emitter, long eventId, GameMessage message) {
+        try {
+            emitter.send(SseEmitter.event()
+                .id(String.valueOf(eventId))
+                .name(message.getType())
+                .data(message, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * 发送心跳注释行，防止代理因连接空闲而断开
+     */
+    public void sendHeartbeat() {
+        subscriptions.forEach((gameId, subs) -> {
+            for (Subscription subscription : subs) {
+                try {
+                    subscription.emitter().send(SseEmitter.event().comment("heartbeat"));
+                } catch (IOException | IllegalStateException e) {
+                    remove(gameId, subscription);
+                    subscription.emitter().completeWithError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 关闭游戏的所有SSE连接
+     */
+    public void closeGame(UUID gameId) {
+        List<Subscription> subs = subscriptions.remove(gameId);
+        if (subs == null) {
+            return;
+        }
+        for (Subscription subscription : subs) {
+            subscription.emitter().complete();
+        }
+    }
+
+    public int getSubscriberCount(UUID gameId) {
+        List<Subscription> subs = subscriptions.get(gameId);
+        return subs == null ? 0 : subs.size();
+    }
+
+    private void send(UUID gameId, Subscription subscription, long eventId, String type, byte[] frame) {
+        try {
+            subscription.emitter().send(SseEmitter.event()
+                .id(String.valueOf(eventId))
+                .name(type)
+                .data(frame, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开，移除连接，不影响其他订阅者
+            log.debug("SSE推送失败，移除连接: gameId={}, userId={}", gameId, subscription.userId());
+            remove(gameId, subscription);
+            subscription.emitter().completeWithError(e);
+        }
+    }
+
+    private void remove(UUID gameId, Subscription subscription) {
+        subscriptions.computeIfPresent(gameId, (id, subs) -> {
+            subs.remove(subscription);
+            return subs.isEmpty() ? null : subs;
+        });
+    }
+
+    private record Subscription(UUID userId, SseEmitter emitter) {
+    }
+}
@@ -0,0 +1,78 @@
+package cn.xiaolin.avalon.websocket;
+
+import cn.xiaolin.avalon.repository.GamePlayerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 游戏主题订阅校验
+ * 注册在 clientInboundChannel 上。/topic/game/{gameId} 及其子主题推送的是未延迟的实时事件，
+ * /app/game/{gameId}/replay 补发同样的事件，只允许本局玩家订阅；观战者只能订阅
+ * /topic/game/{gameId}/spectate，spectator.delay 不会被绕过。校验只在 SUBSCRIBE 时执行一次
+ */
+@Component
+@Slf4j
+public class GameTopicGuard implements ChannelInterceptor {
+
+    private static final Pattern PLAYER_DESTINATION = Pattern.compile(
+        "^(?:/topic/game/([0-9a-fA-F-]{36})(?:/.*)?|/app/game/([0-9a-fA-F-]{36})/replay)$");
+
+    private static final String SPECTATE_SUFFIX = "/spectate";
+
+    private final GamePlayerRepository gamePlayerRepository;
+
+    private final Counter denied;
+
+    public GameTopicGuard(GamePlayerRepository gamePlayerRepository, MeterRegistry meterRegistry) {
+        this.gamePlayerRepository = gamePlayerRepository;
+        this.denied = Counter.builder("avalon.websocket.subscribe.denied")
+            .description("非本局玩家订阅游戏实时事件被拒绝的次数")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            return message;
+        }
+        String destination = accessor.getDestination();
+        if (destination == null || destination.endsWith(SPECTATE_SUFFIX)) {
+            return message;
+        }
+        Matcher matcher = PLAYER_DESTINATION.matcher(destination);
+        if (!matcher.matches()) {
+            return message;
+        }
+        UUID gameId = parse(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+        if (gameId == null || !(accessor.getUser() instanceof StompPrincipal principal)
+            || !gamePlayerRepository.existsByGameIdAndUserId(gameId, principal.userId())) {
+            denied.increment();
+            log.debug("拒绝订阅游戏实时事件: destination={}, user={}", destination,
+                accessor.getUser() == null ? null : accessor.getUser().getName());
+            throw new RuntimeException("只有本局玩家可以订阅游戏事件，观战请订阅 /topic/game/{gameId}/spectate");
+        }
+        return message;
+    }
+
+    private static UUID parse(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,21 +1,35 @@
 package cn.xiaolin.avalon.websocket;
 
-import cn.xiaolin.avalon.dto.GameStateResponse;
-import cn.xiaolin.avalon.service.GameStateService;
+import cn.xiaolin.avalon.dto.ExecuteQuestRequest;
+import cn.xiaolin.avalon.dto.ProposeTeamRequest;
+import cn.xiaolin.avalon.dto.VoteRequest;
+import cn.xiaolin.avalon.service.ProposalService;
+import cn.xiaolin.avalon.service.QuestService;
+import cn.xiaolin.avalon.service.VoteService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Controller;
 
-import java.util.Map;
+import java.security.Principal;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 @Controller
 @RequiredArgsConstructor
@@ -23,55 +37,97 @@ public class GameWebSocketController {
 
     private final SimpMessagingTemplate messagingTemplate;
     
-    private final GameStateService gameStateService;
-    
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
-    private final Map<UUID, Boolean> pendingBroadcasts = new ConcurrentHashMap<>();
+    private final GameEventBroadcaster gameEventBroadcaster;
 
+    private final SpectatorFeed spectatorFeed;
 
-    @MessageMapping("/game.join")
-    public void joinGame(@Payload GameMessage message) {
-        message.setTimestamp(System.currentTimeMillis());
-        messagingTemplate.convertAndSend("/topic/game/" + message.getGameId(), message);
-        
-        // 延迟广播游戏状态更新，避免频繁调用
-        scheduleDelayedBroadcast(message.getGameId());
+    private final VoteService voteService;
+
+    private final QuestService questService;
+
+    private final ProposalService proposalService;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final MeterRegistry meterRegistry;
+
+    private MessageChannel clientOutboundChannel;
+
+    @Autowired
+    public void setClientOutboundChannel(@Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    /**
+     * 断线重连恢复事件流
+     * 客户端重新订阅 /topic/game/{gameId} 后订阅 /app/game/{gameId}/replay，
+     * 并在 last-sequence 头中携带最后收到的事件序号，服务端直接回复错过的事件或状态快照
+     */
+    @SubscribeMapping("/game/{gameId}/replay")
+    public GameMessage replay(@DestinationVariable UUID gameId,
+                              @Header(name = "last-sequence", required = false) Long lastSequence,
+                              Principal principal) {
+        try {
+            return gameEventBroadcaster.resume(gameId, resolveUserId(principal), lastSequence);
+        } catch (RuntimeException e) {
+            GameMessage error = new GameMessage();
+            error.setType("ERROR");
+            error.setGameId(gameId);
+            error.setContent(e.getMessage());
+            error.setTimestamp(System.currentTimeMillis());
+            return error;
+        }
     }
 
+
+    /**
+     * 观战初始画面
+     * 观战者订阅 /topic/game/{gameId}/spectate 后订阅 /app/game/{gameId}/spectate 获取当前公开状态，
+     * 之后的公开状态由观战主题推送
+     */
+    @SubscribeMapping("/game/{gameId}/spectate")
+    public GameMessage spectate(@DestinationVariable UUID gameId) {
+        try {
+            return spectatorFeed.snapshot(gameId);
+        } catch (RuntimeException e) {
+            GameMessage error = new GameMessage();
+            error.setType("ERROR");
+            error.setGameId(gameId);
+            error.setContent(e.getMessage());
+            error.setTimestamp(System.currentTimeMillis());
+            return error;
+        }
+    }
+
+    /**
+     * 投票指令，data 与 POST /api/games/{gameId}/votes 的请求体相同
+     * 游戏指令在已认证的连接上直接执行，结果事件由服务广播到游戏主题；帧中带有 receipt 头时成功后回复 RECEIPT，
+     * 失败时向本会话的 /user/queue/errors 发送 ERROR 消息（receipt-id 头与指令对应），连接保持不断开
+     */
     @MessageMapping("/game.vote")
-    public void processVote(@Payload GameMessage message) {
-        message.setTimestamp(System.currentTimeMillis());
-        messagingTemplate.convertAndSend("/topic/game/" + message.getGameId(), message);
-        
-        // 延迟广播游戏状态更新，避免频繁调用
-        scheduleDelayedBroadcast(message.getGameId());
+    public void processVote(@Payload GameMessage message, Principal principal, SimpMessageHeaderAccessor headers) {
+        execute("vote", message, principal, headers, (gameId, userId) ->
+            voteService.submitVote(gameId, userId, command(message, VoteRequest.class)));
     }
 
+    /**
+     * 执行任务指令，data 与 POST /api/games/{gameId}/quests/execute 的请求体相同
+     */
     @MessageMapping("/game.quest")
-    public void processQuest(@Payload GameMessage message) {
-        message.setTimestamp(System.currentTimeMillis());
-        messagingTemplate.convertAndSend("/topic/game/" + message.getGameId(), message);
-        
-        // 延迟广播游戏状态更新，避免频繁调用
-        scheduleDelayedBroadcast(message.getGameId());
+    public void processQuest(@Payload GameMessage message, Principal principal, SimpMessageHeaderAccessor headers) {
+        execute("quest", message, principal, headers, (gameId, userId) ->
+            questService.executeQuest(gameId, userId, command(message, ExecuteQuestRequest.class)));
     }
 
+    /**
+     * 队长提议队伍指令，data 与 POST /api/games/{gameId}/proposals 的请求体相同
+     */
     @MessageMapping("/game.team-proposed")
-    public void teamProposed(@Payload GameMessage message) {
-        message.setTimestamp(System.currentTimeMillis());
-        messagingTemplate.convertAndSend("/topic/game/" + message.getGameId(), message);
-        
-        // 延迟广播游戏状态更新，避免频繁调用
-        scheduleDelayedBroadcast(message.getGameId());
-    }
-
-    @MessageMapping("/game.phase-changed")
-    public void phaseChanged(@Payload GameMessage message) {
-        message.setTimestamp(System.currentTimeMillis());
-        messagingTemplate.convertAndSend("/topic/game/" + message.getGameId(), message);
-        
-        // 延迟广播游戏状态更新，避免频繁调用
-        scheduleDelayedBroadcast(message.getGameId());
+    public void teamProposed(@Payload GameMessage message, Principal principal, SimpMessageHeaderAccessor headers) {
+        execute("propose", message, principal, headers, (gameId, userId) ->
+            proposalService.proposeTeam(gameId, userId, command(message, ProposeTeamRequest.class)));
     }
 
     @MessageMapping("/room.join")
@@ -104,48 +160,84 @@ public class GameWebSocketController {
         System.out.println("收到测试消息: " + message.getContent());
         messagingTemplate.convertAndSend("/topic/test", message);
     }
-    
-    private void scheduleDelayedBroadcast(UUID gameId) {
-        // 如果已经有待处理的广播，跳过
-        if (pendingBroadcasts.putIfAbsent(gameId, true) != null) {
-            return;
-        }
-        
-        // 延迟1秒后执行广播
-        scheduler.schedule(() -> {
-            try {
-                broadcastGameState(gameId);
-            } finally {
-                pendingBroadcasts.remove(gameId);
-            }
-        }, 1, TimeUnit.SECONDS);
+
+    private interface GameCommand {
+        void execute(UUID gameId, UUID userId);
     }
 
-    // 广播游戏状态的方法
-    public void broadcastGameState(UUID gameId) {
+    private void execute(String name, GameMessage message, Principal principal,
+                         SimpMessageHeaderAccessor headers, GameCommand command) {
+        String receiptId = headers.getFirstNativeHeader("receipt");
         try {
-            // 获取所有玩家的游戏状态
-            Map<UUID, GameStateResponse> allPlayerStates = gameStateService.getGameStatesForAllPlayers(gameId);
-            
-            // 为每个玩家发送个性化的游戏状态
-            for (Map.Entry<UUID, GameStateResponse> entry : allPlayerStates.entrySet()) {
-                UUID userId = entry.getKey();
-                GameStateResponse gameState = entry.getValue();
-                
-                GameMessage stateMessage = new GameMessage();
-                stateMessage.setType("GAME_STATE_UPDATE");
-                stateMessage.setGameId(gameId);
-                stateMessage.setUserId(userId);
-                stateMessage.setContent("游戏状态更新");
-                stateMessage.setTimestamp(System.currentTimeMillis());
-                
-                // 发送给特定用户的游戏状态
-                messagingTemplate.convertAndSendToUser(userId.toString(), "/topic/game/" + gameId + "/state", stateMessage);
+            if (message.getGameId() == null) {
+                throw new RuntimeException("游戏ID不能为空");
             }
-            
-        } catch (Exception e) {
-            // 记录错误但不影响主要功能
-            System.err.println("广播游戏状态失败: " + e.getMessage());
+            command.execute(message.getGameId(), resolveUserId(principal));
+            meterRegistry.counter("avalon.stomp.commands", "command", name, "result", "success").increment();
+            if (receiptId != null) {
+                sendReceipt(headers.getSessionId(), receiptId);
+            }
+        } catch (RuntimeException e) {
+            meterRegistry.counter("avalon.stomp.commands", "command", name, "result", "error").increment();
+            sendError(principal, headers.getSessionId(), receiptId, message.getGameId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 用户ID在CONNECT认证时随会话保存，不再按用户名查询
+     */
+    private UUID resolveUserId(Principal principal) {
+        if (!(principal instanceof StompPrincipal stompPrincipal)) {
+            throw new RuntimeException("WebSocket未认证");
+        }
+        return stompPrincipal.userId();
+    }
+
+    /**
+     * 把 data 转换为与HTTP接口相同的请求体并校验
+     */
+    private <T> T command(GameMessage message, Class<T> type) {
+        if (message.getData() == null) {
+            throw new RuntimeException("指令内容不能为空");
+        }
+        T request;
+        try {
+            request = objectMapper.convertValue(message.getData(), type);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("指令内容格式错误");
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            throw new RuntimeException(violations.iterator().next().getMessage());
+        }
+        return request;
+    }
+
+    private void sendReceipt(String sessionId, String receiptId) {
+        StompHeaderAccessor receipt = StompHeaderAccessor.create(StompCommand.RECEIPT);
+        receipt.setSessionId(sessionId);
+        receipt.setReceiptId(receiptId);
+        clientOutboundChannel.send(MessageBuilder.createMessage(new byte[0], receipt.getMessageHeaders()));
+    }
+
+    /**
+     * STOMP的ERROR帧会关闭连接，指令失败（如不是本人回合）改为只发给本会话的错误消息
+     */
+    private void sendError(Principal principal, String sessionId, String receiptId, UUID gameId, String reason) {
+        GameMessage error = new GameMessage();
+        error.setType("ERROR");
+        error.setGameId(gameId);
+        error.setContent(reason);
+        error.setTimestamp(System.currentTimeMillis());
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        if (receiptId != null) {
+            accessor.setNativeHeader("receipt-id", receiptId);
         }
+        accessor.setLeaveMutable(true);
+        // 未认证的会话没有用户名，以会话ID作为用户目的地
+        String user = principal != null ? principal.getName() : sessionId;
+        messagingTemplate.convertAndSendToUser(user, "/queue/errors", error, accessor.getMessageHeaders());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,162 @@
+package cn.xiaolin.avalon.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 出站消息积压拦截器
+ * 统计每个WebSocket会话在 clientOutboundChannel 中排队的消息数，并对慢速会话保护：
+ * 1. 同一会话同一目的地的游戏状态更新是全量快照，排队期间有更新的快照时丢弃旧的（合并）
+ * 2. 会话积压超过上限时直接丢弃状态更新，事件消息仍然投递（客户端可通过重连补发恢复）
+ */
+@Component
+@Slf4j
+public class OutboundBacklogInterceptor implements ExecutorChannelInterceptor {
+
+    @Value("${websocket.outbound.max-session-backlog:64}")
+    private Integer maxSessionBacklog;
+
+    /**
+     * sessionId -> 排队中的消息数
+     */
+    private final Map<String, AtomicInteger> backlogs = new ConcurrentHashMap<>();
+
+    /**
+     * sessionId + 目的地 -> 最新入队的状态更新，用于判断排队中的旧快照是否已过期
+     */
+    private final Map<String, Message<?>> latestStateUpdates = new ConcurrentHashMap<>();
+
+    private final Counter collapsed;
+    private final Counter dropped;
+
+    public OutboundBacklogInterceptor(MeterRegistry meterRegistry) {
+        this.collapsed = Counter.builder("avalon.websocket.outbound.collapsed")
+            .description("被更新快照替代而丢弃的状态更新数")
+            .register(meterRegistry);
+        this.dropped = Counter.builder("avalon.websocket.outbound.dropped")
+            .description("会话积压超限而丢弃的状态更新数")
+            .register(meterRegistry);
+        Gauge.builder("avalon.websocket.outbound.backlog.max", this, OutboundBacklogInterceptor::maxBacklog)
+            .description("单个会话最大出站积压消息数")
+            .register(meterRegistry);
+        Gauge.builder("avalon.websocket.outbound.backlog.total", this, OutboundBacklogInterceptor::totalBacklog)
+            .description("所有会话出站积压消息总数")
+            .register(meterRegistry);
+        Gauge.builder("avalon.websocket.outbound.sessions.slow", this, OutboundBacklogInterceptor::slowSessions)
+            .description("积压超过上限的会话数")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+        backlogs.computeIfAbsent(sessionId, id -> new AtomicInteger()).incrementAndGet();
+        String stateKey = stateKey(sessionId, message);
+        if (stateKey != null) {
+            latestStateUpdates.put(stateKey, message);
+        }
+        return message;
+    }
+
+    @Override
+    public Message<?> beforeHandle(@NonNull Message<?> message, @NonNull MessageChannel channel,
+                                   @NonNull MessageHandler handler) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        String stateKey = sessionId == null ? null : stateKey(sessionId, message);
+        if (stateKey == null) {
+            return message;
+        }
+
+        // 排队期间已有更新的快照，当前快照已过期
+        if (latestStateUpdates.get(stateKey) != message) {
+            collapsed.increment();
+            release(sessionId);
+            return null;
+        }
+
+        AtomicInteger backlog = backlogs.get(sessionId);
+        if (backlog != null && backlog.get() > maxSessionBacklog) {
+            log.warn("WebSocket会话积压过多，丢弃状态更新: sessionId={}, backlog={}", sessionId, backlog.get());
+            latestStateUpdates.remove(stateKey, message);
+            dropped.increment();
+            release(sessionId);
+            return null;
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(@NonNull Message<?> message, @NonNull MessageChannel channel,
+                                    @NonNull MessageHandler handler, Exception ex) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return;
+        }
+        String stateKey = stateKey(sessionId, message);
+        if (stateKey != null) {
+            latestStateUpdates.remove(stateKey, message);
+        }
+        release(sessionId);
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        String sessionId = event.getSessionId();
+        backlogs.remove(sessionId);
+        latestStateUpdates.keySet().removeIf(key -> key.startsWith(sessionId + "|"));
+    }
+
+    public int getBacklog(String sessionId) {
+        AtomicInteger backlog = backlogs.get(sessionId);
+        return backlog == null ? 0 : backlog.get();
+    }
+
+    private void release(String sessionId) {
+        AtomicInteger backlog = backlogs.get(sessionId);
+        if (backlog != null) {
+            backlog.decrementAndGet();
+        }
+    }
+
+    /**
+     * 只有游戏状态更新（/topic/game/{gameId}/state 及其用户目的地）可以合并或丢弃
+     */
+    private String stateKey(String sessionId, Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !destination.startsWith("/topic/game/") || !destination.contains("/state")) {
+            return null;
+        }
+        return sessionId + "|" + destination;
+    }
+
+    private double maxBacklog() {
+        return backlogs.values().stream().mapToInt(AtomicInteger::get).max().orElse(0);
+    }
+
+    private double totalBacklog() {
+        return backlogs.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    private double slowSessions() {
+        return backlogs.values().stream().filter(backlog -> backlog.get() > maxSessionBacklog).count();
+    }
+}
@@ -6,6 +6,7 @@ import lombok.Builder;
 @Data
 @Builder
 public class RoomClosedEvent {
+    @Builder.Default
     private String type = "ROOM_CLOSED";
     private String roomId;
     private long timestamp;
@@ -21,6 +21,8 @@ public class RoomEventController {
 
     private final SimpMessagingTemplate messagingTemplate;
 
+    private final BroadcastFrameEncoder frameEncoder;
+
 
 
     /**
@@ -38,10 +40,7 @@ public class RoomEventController {
 
         log.info("broadcast room event: {}", event);
 
-        messagingTemplate.convertAndSend(
-            "/topic/room/" + roomId, 
-            event
-        );
+        send(roomId, event);
     }
 
     /**
@@ -62,9 +61,30 @@ public class RoomEventController {
 
         log.info("broadcast room event with data: type={}, roomId={}, data={}", eventType, roomId, data);
 
-        messagingTemplate.convertAndSend(
-            "/topic/room/" + roomId, 
-            event
-        );
+        send(roomId, event);
+    }
+
+    /**
+     * 广播房间关闭事件（供服务端主动调用）
+     * 用于房间被回收等非玩家主动触发的关闭
+     *
+     * @param roomId 房间ID
+     */
+    public void broadcastRoomClosed(String roomId) {
+        RoomClosedEvent event = RoomClosedEvent.builder()
+            .roomId(roomId)
+            .timestamp(System.currentTimeMillis())
+            .build();
+
+        log.info("broadcast room closed: roomId={}", roomId);
+
+        send(roomId, event);
+    }
+
+    /**
+     * 事件只编码一次，编码后的字节由代理直接分发给房间的所有订阅会话
+     */
+    private void send(String roomId, Object event) {
+        messagingTemplate.send("/topic/room/" + roomId, frameEncoder.toMessage(frameEncoder.encode(event)));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,265 @@
+package cn.xiaolin.avalon.websocket;
+
+import cn.xiaolin.avalon.dto.GameStateResponse;
+import cn.xiaolin.avalon.service.GameStateService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 观战推送
+ * 观战者订阅 /topic/game/{gameId}/spectate，只收到不含角色信息的公开游戏状态。
+ * 每个状态版本（事件序号）只构建、编码一次，作为同一个帧发到观战主题，由代理分发给所有观战者，
+ * 因此观战人数不影响每次游戏操作的计算量；没有观战者的游戏不做任何额外工作。
+ * 可配置延迟推送（spectator.delay），防止观战者向场上玩家透露信息
+ */
+@Component
+@Slf4j
+public class SpectatorFeed {
+
+    private static final Pattern SPECTATE_DESTINATION = Pattern.compile("^/topic/game/([0-9a-fA-F-]{36})/spectate$");
+
+    private final GameStateService gameStateService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final BroadcastFrameEncoder frameEncoder;
+    private final GameEventLog eventLog;
+
+    private final ScheduledExecutorService delayScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * 会话ID -> (订阅ID -> 游戏ID)
+     */
+    private final Map<String, Map<String, UUID>> subscriptions = new ConcurrentHashMap<>();
+
+    private final Map<UUID, AtomicInteger> spectatorCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 每局游戏已构建的最新版本，保证同一版本只构建一次
+     */
+    private final Map<UUID, Long> builtVersions = new ConcurrentHashMap<>();
+
+    /**
+     * 每局游戏最近一次推送给观战者的帧，新观战者订阅时直接回放
+     */
+    private final Map<UUID, SpectatorFrame> publishedFrames = new ConcurrentHashMap<>();
+
+    private final Counter frameBuilds;
+
+    @Value("${spectator.enabled:true}")
+    private Boolean enabled;
+
+    @Value("${spectator.delay:0}")
+    private Long delay;
+
+    @Value("${websocket.replay.retention:1800000}") // 30 minutes
+    private Long retention;
+
+    public SpectatorFeed(GameStateService gameStateService,
+                         SimpMessagingTemplate messagingTemplate,
+                         BroadcastFrameEncoder frameEncoder,
+                         GameEventLog eventLog,
+                         MeterRegistry meterRegistry) {
+        this.gameStateService = gameStateService;
+        this.messagingTemplate = messagingTemplate;
+        this.frameEncoder = frameEncoder;
+        this.eventLog = eventLog;
+        this.frameBuilds = Counter.builder("avalon.spectator.frames")
+            .description("为观战者构建的公开状态帧数（每个状态版本一次）")
+            .register(meterRegistry);
+        Gauge.builder("avalon.spectator.sessions", subscriptions, this::totalSpectators)
+            .description("当前观战订阅数")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        delayScheduler.shutdownNow();
+    }
+
+    public static String destination(UUID gameId) {
+        return "/topic/game/" + gameId + "/spectate";
+    }
+
+    /**
+     * 游戏状态变化后调用：有观战者时为当前版本构建一次公开状态并推送
+     */
+    public void publish(UUID gameId) {
+        if (!enabled || spectatorCount(gameId) == 0) {
+            return;
+        }
+        long version = eventLog.currentSequence(gameId);
+        if (!claimVersion(gameId, version)) {
+            return;
+        }
+
+        GameMessage message = buildMessage(gameId, version, gameStateService.getPublicGameState(gameId));
+        byte[] frame = frameEncoder.encode(message);
+        frameBuilds.increment();
+        if (delay > 0) {
+            delayScheduler.schedule(() -> send(gameId, message, frame), delay, TimeUnit.MILLISECONDS);
+        } else {
+            send(gameId, message, frame);
+        }
+    }
+
+    /**
+     * 观战者加入时的初始画面
+     * 优先使用最近一次推送的帧；尚未推送过且未配置延迟时现场构建，配置了延迟时不提前泄露实时状态
+     */
+    public GameMessage snapshot(UUID gameId) {
+        if (!enabled) {
+            throw new RuntimeException("观战功能未开启");
+        }
+        SpectatorFrame published = publishedFrames.get(gameId);
+        if (published != null) {
+            return published.message();
+        }
+        if (delay > 0) {
+            throw new RuntimeException("观战画面准备中，请稍后再试");
+        }
+        long version = eventLog.currentSequence(gameId);
+        return buildMessage(gameId, version, gameStateService.getPublicGameState(gameId));
+    }
+
+    public int spectatorCount(UUID gameId) {
+        AtomicInteger count = spectatorCounts.get(gameId);
+        return count == null ? 0 : count.get();
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        Matcher matcher = SPECTATE_DESTINATION.matcher(destination);
+        if (!matcher.matches()) {
+            return;
+        }
+        UUID gameId;
+        try {
+            gameId = UUID.fromString(matcher.group(1));
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        UUID previous = subscriptions.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+            .put(accessor.getSubscriptionId(), gameId);
+        if (previous == null) {
+            spectatorCounts.computeIfAbsent(gameId, id -> new AtomicInteger()).incrementAndGet();
+        }
+        if (enabled && delay > 0 && !publishedFrames.containsKey(gameId)) {
+            // 延迟模式下没有可回放的画面，立即构建一帧，延迟结束后通过主题送达
+            delayScheduler.execute(() -> publish(gameId));
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, UUID> sessionSubscriptions = accessor.getSessionId() == null ? null : subscriptions.get(accessor.getSessionId());
+        if (sessionSubscriptions != null && accessor.getSubscriptionId() != null) {
+            release(sessionSubscriptions.remove(accessor.getSubscriptionId()));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, UUID> sessionSubscriptions = subscriptions.remove(event.getSessionId());
+        if (sessionSubscriptions != null) {
+            sessionSubscriptions.values().forEach(this::release);
+        }
+    }
+
+    /**
+     * 游戏被回收，释放该局的观战缓存
+     */
+    public void closeGame(UUID gameId) {
+        builtVersions.remove(gameId);
+        publishedFrames.remove(gameId);
+    }
+
+    /**
+     * 长时间没有新画面的游戏视为已结束，释放缓存
+     */
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - retention;
+        publishedFrames.entrySet().removeIf(entry -> {
+            if (entry.getValue().publishedAt() >= cutoff) {
+                return false;
+            }
+            builtVersions.remove(entry.getKey());
+            return true;
+        });
+    }
+
+    private boolean claimVersion(UUID gameId, long version) {
+        boolean[] claimed = {false};
+        builtVersions.compute(gameId, (id, built) -> {
+            if (built != null && built >= version) {
+                return built;
+            }
+            claimed[0] = true;
+            return version;
+        });
+        return claimed[0];
+    }
+
+    private void send(UUID gameId, GameMessage message, byte[] frame) {
+        try {
+            messagingTemplate.send(destination(gameId), frameEncoder.toMessage(frame));
+            publishedFrames.merge(gameId, new SpectatorFrame(message, System.currentTimeMillis()),
+                (current, next) -> next.message().getSequence() >= current.message().getSequence() ? next : current);
+        } catch (Exception e) {
+            log.error("推送观战画面失败: gameId={}, error={}", gameId, e.getMessage());
+        }
+    }
+
+    private GameMessage buildMessage(UUID gameId, long version, GameStateResponse state) {
+        GameMessage message = new GameMessage();
+        message.setType("GAME_STATE_UPDATE");
+        message.setGameId(gameId);
+        message.setContent("观战画面更新");
+        message.setData(state);
+        message.setSequence(version);
+        message.setTimestamp(System.currentTimeMillis());
+        return message;
+    }
+
+    private void release(UUID gameId) {
+        if (gameId == null) {
+            return;
+        }
+        spectatorCounts.computeIfPresent(gameId, (id, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    private int totalSpectators(Map<String, Map<String, UUID>> all) {
+        return all.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * 最近一次推送给观战者的画面
+     */
+    private record SpectatorFrame(GameMessage message, long publishedAt) {
+    }
+}
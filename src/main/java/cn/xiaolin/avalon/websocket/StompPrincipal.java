@@ -0,0 +1,17 @@
+package cn.xiaolin.avalon.websocket;
+
+import java.security.Principal;
+import java.util.UUID;
+
+/**
+ * STOMP连接的认证用户
+ * 名称仍为用户名，用户目的地和在线状态按用户名解析；同时携带CONNECT时从令牌解析出的用户ID，
+ * 游戏指令直接使用，不再按用户名查询数据库
+ */
+public record StompPrincipal(String name, UUID userId) implements Principal {
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
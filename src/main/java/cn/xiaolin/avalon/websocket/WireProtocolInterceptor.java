@@ -0,0 +1,201 @@
+package cn.xiaolin.avalon.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 线路协议拦截器
+ * 1. 入站（{@link #inbound()}）：CONNECT 帧携带 x-avalon-protocol: compact-v1 的会话启用紧凑协议
+ * 2. 出站：紧凑会话的消息改写为紧凑格式；同一份广播负载只转换一次，由所有紧凑会话共享
+ * 3. 统计每条消息和每局游戏的出站字节数（应用层字节，不含 permessage-deflate 压缩效果）
+ */
+@Component
+@Slf4j
+public class WireProtocolInterceptor implements ChannelInterceptor {
+
+    private static final Pattern GAME_DESTINATION = Pattern.compile("/topic/game/([0-9a-fA-F-]{36})");
+
+    @Value("${websocket.compact.enabled:true}")
+    private Boolean compactEnabled;
+
+    @Value("${websocket.replay.retention:1800000}") // 30 minutes
+    private Long retention;
+
+    private final ObjectMapper objectMapper;
+
+    private final Set<String> compactSessions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 标准负载 -> 紧凑负载。负载字节数组按引用比较，广播到多个会话时是同一个数组
+     */
+    private final Map<byte[], byte[]> compactFrames = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<UUID, GameTraffic> gameTraffic = new ConcurrentHashMap<>();
+
+    private final DistributionSummary jsonBytes;
+    private final DistributionSummary compactBytes;
+    private final DistributionSummary gameBytes;
+    private final DistributionSummary gameMessages;
+
+    public WireProtocolInterceptor(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.jsonBytes = messageBytes(meterRegistry, "json");
+        this.compactBytes = messageBytes(meterRegistry, "compact");
+        this.gameBytes = DistributionSummary.builder("avalon.websocket.game.bytes")
+            .description("每局游戏下发给所有会话的字节数")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        this.gameMessages = DistributionSummary.builder("avalon.websocket.game.messages")
+            .description("每局游戏下发给所有会话的消息数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 注册在 clientInboundChannel 上，在 CONNECT 时协商线路协议
+     */
+    public ChannelInterceptor inbound() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand()) && compactEnabled
+                    && CompactProtocol.isRequested(accessor.getFirstNativeHeader(CompactProtocol.HEADER))) {
+                    compactSessions.add(accessor.getSessionId());
+                }
+                return message;
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+            || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        Message<?> outgoing = message;
+        if (sessionId != null && compactSessions.contains(sessionId)) {
+            byte[] compact = compactFrames.computeIfAbsent(payload, this::toCompact);
+            if (compact != payload) {
+                outgoing = MessageBuilder.createMessage(compact, message.getHeaders());
+            }
+            compactBytes.record(compact.length);
+            recordGameTraffic(message, compact.length);
+        } else {
+            jsonBytes.record(payload.length);
+            recordGameTraffic(message, payload.length);
+        }
+        return outgoing;
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        compactSessions.remove(event.getSessionId());
+    }
+
+    /**
+     * 游戏结束，记录该局的出站流量
+     */
+    public void finishGame(UUID gameId) {
+        GameTraffic traffic = gameTraffic.remove(gameId);
+        if (traffic != null) {
+            record(gameId, traffic);
+        }
+    }
+
+    /**
+     * 长时间没有消息的游戏视为已结束，记录流量并释放统计
+     */
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - retention;
+        gameTraffic.entrySet().removeIf(entry -> {
+            if (entry.getValue().lastSentAt.get() >= cutoff) {
+                return false;
+            }
+            record(entry.getKey(), entry.getValue());
+            return true;
+        });
+    }
+
+    private byte[] toCompact(byte[] payload) {
+        try {
+            return CompactProtocol.encode(objectMapper, payload);
+        } catch (IOException e) {
+            // 非JSON负载原样下发
+            return payload;
+        }
+    }
+
+    private void recordGameTraffic(Message<?> message, int bytes) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) {
+            return;
+        }
+        Matcher matcher = GAME_DESTINATION.matcher(destination);
+        if (!matcher.find()) {
+            return;
+        }
+        UUID gameId;
+        try {
+            gameId = UUID.fromString(matcher.group(1));
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        GameTraffic traffic = gameTraffic.computeIfAbsent(gameId, id -> new GameTraffic());
+        traffic.bytes.add(bytes);
+        traffic.messages.increment();
+        traffic.lastSentAt.set(System.currentTimeMillis());
+    }
+
+    private void record(UUID gameId, GameTraffic traffic) {
+        long bytes = traffic.bytes.sum();
+        long messages = traffic.messages.sum();
+        gameBytes.record(bytes);
+        gameMessages.record(messages);
+        log.info("游戏出站流量统计: gameId={}, messages={}, bytes={}", gameId, messages, bytes);
+    }
+
+    private static DistributionSummary messageBytes(MeterRegistry meterRegistry, String protocol) {
+        return DistributionSummary.builder("avalon.websocket.outbound.bytes")
+            .description("每条出站消息的负载字节数")
+            .baseUnit("bytes")
+            .tag("protocol", protocol)
+            .register(meterRegistry);
+    }
+
+    private static final class GameTraffic {
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder messages = new LongAdder();
+        private final AtomicLong lastSentAt = new AtomicLong(System.currentTimeMillis());
+    }
+}
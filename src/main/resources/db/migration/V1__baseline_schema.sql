@@ -0,0 +1,123 @@
+-- 基线表结构，与实体映射保持一致（原先由 ddl-auto: update 生成）
+-- 已有数据库由 spring.flyway.baseline-on-migrate 以版本0为基线，本脚本仍会执行：
+-- 所有语句均为幂等写法，空库建表，旧库只补齐缺失的表和列
+
+CREATE TABLE IF NOT EXISTS users (
+    id UUID PRIMARY KEY,
+    username VARCHAR(50) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    avatar_url VARCHAR(500),
+    level INTEGER NOT NULL,
+    experience INTEGER NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE IF NOT EXISTS rooms (
+    id UUID PRIMARY KEY,
+    creator_id UUID NOT NULL REFERENCES users(id),
+    room_code VARCHAR(10) NOT NULL,
+    max_players INTEGER NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_rooms_room_code UNIQUE (room_code)
+);
+
+CREATE TABLE IF NOT EXISTS room_players (
+    id UUID PRIMARY KEY,
+    room_id UUID NOT NULL REFERENCES rooms(id),
+    user_id UUID NOT NULL REFERENCES users(id),
+    is_host BOOLEAN NOT NULL,
+    is_active BOOLEAN NOT NULL,
+    seat_number INTEGER,
+    joined_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS games (
+    id UUID PRIMARY KEY,
+    room_id UUID NOT NULL REFERENCES rooms(id),
+    status VARCHAR(20) NOT NULL,
+    current_round INTEGER NOT NULL,
+    game_config VARCHAR(255),
+    winner VARCHAR(10),
+    started_at TIMESTAMP(6),
+    ended_at TIMESTAMP(6),
+    last_activity_at TIMESTAMP(6),
+    archived_at TIMESTAMP(6),
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS game_players (
+    id UUID PRIMARY KEY,
+    game_id UUID NOT NULL REFERENCES games(id),
+    user_id UUID NOT NULL REFERENCES users(id),
+    role VARCHAR(30) NOT NULL,
+    alignment VARCHAR(10) NOT NULL,
+    is_host BOOLEAN NOT NULL,
+    seat_number INTEGER NOT NULL,
+    is_active BOOLEAN NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS quests (
+    id UUID PRIMARY KEY,
+    game_id UUID REFERENCES games(id),
+    round_number INTEGER,
+    required_players INTEGER,
+    required_fails INTEGER,
+    status VARCHAR(255),
+    created_at TIMESTAMP(6),
+    leader_id UUID REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS quest_proposed_members (
+    quest_id UUID NOT NULL REFERENCES quests(id),
+    user_id UUID NOT NULL REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS proposals (
+    id UUID PRIMARY KEY,
+    quest_id UUID NOT NULL REFERENCES quests(id),
+    leader_id UUID NOT NULL REFERENCES users(id),
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS proposal_members (
+    proposal_id UUID NOT NULL REFERENCES proposals(id),
+    user_id UUID NOT NULL REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS votes (
+    id UUID PRIMARY KEY,
+    quest_id UUID REFERENCES quests(id),
+    proposal_id UUID REFERENCES proposals(id),
+    player_id UUID NOT NULL REFERENCES users(id),
+    vote_type VARCHAR(10) NOT NULL,
+    voted_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS quest_results (
+    id UUID PRIMARY KEY,
+    quest_id UUID NOT NULL REFERENCES quests(id),
+    player_id UUID NOT NULL REFERENCES users(id),
+    success BOOLEAN NOT NULL,
+    executed_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS game_archives (
+    game_id UUID PRIMARY KEY REFERENCES games(id),
+    room_id UUID NOT NULL,
+    winner VARCHAR(10),
+    ended_at TIMESTAMP(6),
+    format_version INTEGER NOT NULL,
+    payload BYTEA NOT NULL,
+    archived_at TIMESTAMP(6) NOT NULL
+);
+
+-- ddl-auto 时期创建的旧库可能缺少以下列
+ALTER TABLE games ADD COLUMN IF NOT EXISTS last_activity_at TIMESTAMP(6);
+ALTER TABLE games ADD COLUMN IF NOT EXISTS archived_at TIMESTAMP(6);
@@ -0,0 +1,50 @@
+-- 与 repository 包中各查询一一对应的索引
+-- users.username / users.email / rooms.room_code 已由唯一约束建立索引
+
+-- rooms
+-- RoomRepository.findIdleRoomIds: status IN (...) AND created_at < :cutoff
+CREATE INDEX IF NOT EXISTS idx_rooms_status_created_at ON rooms (status, created_at);
+
+-- room_players
+-- RoomPlayerRepository.findByRoomIdAndUserId / existsByRoomIdAndUserId / existsByRoomIdAndUserIdAndIsActiveTrue
+-- RoomRepository.findIdleRoomIds 的 NOT EXISTS 子查询（room_id 前缀）
+CREATE INDEX IF NOT EXISTS idx_room_players_room_user_active ON room_players (room_id, user_id, is_active);
+-- RoomPlayerRepository.findByRoomIdAndIsActiveTrue / countActivePlayersByRoomId / findActivePlayersByRoomCode
+-- deactivateByRoomIds 只处理活跃玩家，离开房间的历史记录不进入该索引
+CREATE INDEX IF NOT EXISTS idx_room_players_active_room ON room_players (room_id) WHERE is_active;
+
+-- games
+-- GameRepository.findByRoomId / findByRoomRoomCode
+CREATE INDEX IF NOT EXISTS idx_games_room ON games (room_id);
+-- GameRepository.findIdleGameIds: status IN (...)
+CREATE INDEX IF NOT EXISTS idx_games_status ON games (status);
+-- GameRepository.findArchivableGameIds: 只索引已结束且未归档的游戏，归档后自动移出索引
+CREATE INDEX IF NOT EXISTS idx_games_archivable ON games (ended_at)
+    WHERE status = 'ended' AND archived_at IS NULL;
+
+-- game_players
+-- GamePlayerRepository.findByGame / findByGameWithUser / findByGameIdWithUserAndGame / findByGameAndUser
+-- findGameAndUserIdsByGameIds / deleteByGameIds
+CREATE INDEX IF NOT EXISTS idx_game_players_game_user ON game_players (game_id, user_id);
+
+-- quests
+-- QuestRepository.findByGame / findByGameOrderByRoundNumber / deleteByGameIds
+CREATE INDEX IF NOT EXISTS idx_quests_game_round ON quests (game_id, round_number);
+CREATE INDEX IF NOT EXISTS idx_quest_proposed_members_quest ON quest_proposed_members (quest_id);
+
+-- proposals
+-- ProposalRepository.findByQuest / findByQuestAndLeader / findByQuestWithMembers
+CREATE INDEX IF NOT EXISTS idx_proposals_quest_leader ON proposals (quest_id, leader_id);
+CREATE INDEX IF NOT EXISTS idx_proposal_members_proposal ON proposal_members (proposal_id);
+
+-- votes
+-- VoteRepository.findByQuest / existsByQuestAndPlayer / findByGame / findByQuestsWithQuest
+CREATE INDEX IF NOT EXISTS idx_votes_quest_player ON votes (quest_id, player_id);
+-- VoteRepository.findByProposal / existsByProposalAndPlayer / findByProposalsWithProposal
+CREATE INDEX IF NOT EXISTS idx_votes_proposal_player ON votes (proposal_id, player_id) WHERE proposal_id IS NOT NULL;
+-- 按玩家汇总投票（统计）
+CREATE INDEX IF NOT EXISTS idx_votes_player ON votes (player_id);
+
+-- quest_results
+-- QuestResultRepository.findByQuest / findByGame / findByQuestsWithQuest
+CREATE INDEX IF NOT EXISTS idx_quest_results_quest_player ON quest_results (quest_id, player_id);
@@ -0,0 +1,32 @@
+-- 任务队伍和任务牌计数
+-- team_mask: 出征队员座位的位掩码（第 n 位对应座位号 n + 1）
+-- played_mask: 已提交任务牌的队员位掩码，等于 team_mask 时任务结算
+-- success_count / fail_count: 成功牌和失败牌计数
+ALTER TABLE quests ADD COLUMN IF NOT EXISTS team_mask INTEGER;
+ALTER TABLE quests ADD COLUMN IF NOT EXISTS played_mask INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE quests ADD COLUMN IF NOT EXISTS success_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE quests ADD COLUMN IF NOT EXISTS fail_count INTEGER NOT NULL DEFAULT 0;
+
+-- 由已有的队伍成员和任务结果回填，进行中的对局升级后可以继续
+UPDATE quests q SET team_mask = m.mask
+FROM (
+    SELECT qpm.quest_id, bit_or(1 << (gp.seat_number - 1)) AS mask
+    FROM quest_proposed_members qpm
+    JOIN quests mq ON mq.id = qpm.quest_id
+    JOIN game_players gp ON gp.game_id = mq.game_id AND gp.user_id = qpm.user_id
+    GROUP BY qpm.quest_id
+) m
+WHERE q.id = m.quest_id;
+
+UPDATE quests q SET played_mask = r.mask, success_count = r.successes, fail_count = r.fails
+FROM (
+    SELECT qr.quest_id,
+           bit_or(1 << (gp.seat_number - 1)) AS mask,
+           count(*) FILTER (WHERE qr.success) AS successes,
+           count(*) FILTER (WHERE NOT qr.success) AS fails
+    FROM quest_results qr
+    JOIN quests rq ON rq.id = qr.quest_id
+    JOIN game_players gp ON gp.game_id = rq.game_id AND gp.user_id = qr.player_id
+    GROUP BY qr.quest_id
+) r
+WHERE q.id = r.quest_id;
@@ -0,0 +1,28 @@
+-- 对局阶段和当前任务指针
+-- phase: 对局阶段（preparing / role_viewing / proposing / voting / executing / assassination / ended）
+-- current_quest_id / current_proposal_id: 当前任务和当前提议，不加外键，归档删除明细后对局行仍然保留
+-- leader_seat: 当前队长座位号（从1开始）
+ALTER TABLE games ADD COLUMN IF NOT EXISTS phase VARCHAR(20);
+ALTER TABLE games ADD COLUMN IF NOT EXISTS current_quest_id UUID;
+ALTER TABLE games ADD COLUMN IF NOT EXISTS current_proposal_id UUID;
+ALTER TABLE games ADD COLUMN IF NOT EXISTS leader_seat INTEGER;
+
+-- 进行中的对局：当前任务为第一个未结算的任务，阶段取自任务状态
+UPDATE games g SET current_quest_id = q.id, phase = q.status, leader_seat = gp.seat_number
+FROM quests q
+LEFT JOIN game_players gp ON gp.game_id = q.game_id AND gp.user_id = q.leader_id
+WHERE g.status = 'playing' AND q.game_id = g.id
+  AND q.round_number = (
+      SELECT min(uq.round_number) FROM quests uq
+      WHERE uq.game_id = g.id AND uq.status NOT IN ('completed', 'failed'));
+
+-- 正义阵营完成任务且尚未刺杀（也未超时）的对局处于刺杀阶段
+UPDATE games SET phase = 'assassination'
+WHERE phase IS NULL AND status = 'ended' AND winner = 'good'
+  AND (game_config IS NULL
+       OR (game_config NOT LIKE '%"assassination"%' AND game_config <> '{"assassinTimedOut":true}'));
+
+UPDATE games SET phase = status WHERE phase IS NULL AND status IN ('preparing', 'role_viewing', 'ended');
+UPDATE games SET phase = 'ended' WHERE phase IS NULL;
+
+ALTER TABLE games ALTER COLUMN phase SET NOT NULL;
@@ -0,0 +1,66 @@
+-- 提议轮次记录：每次组队一行，历史、统计和回放不再关联 votes 和 proposal_members
+-- attempt: 本轮任务的第几次提议（从1开始），第5次提议仍被否决时邪恶阵营获胜
+-- leader_seat: 提议时的队长座位号
+-- team_mask: 提议队员的座位位掩码（第 n 位对应座位号 n + 1）
+-- approve_mask / reject_mask: 投赞成票、反对票玩家的座位位掩码
+ALTER TABLE proposals ADD COLUMN IF NOT EXISTS attempt INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE proposals ADD COLUMN IF NOT EXISTS leader_seat INTEGER;
+ALTER TABLE proposals ADD COLUMN IF NOT EXISTS team_mask INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE proposals ADD COLUMN IF NOT EXISTS approve_mask INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE proposals ADD COLUMN IF NOT EXISTS reject_mask INTEGER NOT NULL DEFAULT 0;
+
+-- 旧版流程只按任务记录投票、没有提议记录：每个有投票的任务补一条提议（多次提议无法区分，合并为一条）
+INSERT INTO proposals (id, quest_id, leader_id, created_at, attempt, team_mask)
+SELECT gen_random_uuid(), q.id, q.leader_id, min(v.voted_at), 1, coalesce(q.team_mask, 0)
+FROM quests q
+JOIN votes v ON v.quest_id = q.id
+WHERE q.leader_id IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM proposals p WHERE p.quest_id = q.id)
+GROUP BY q.id, q.leader_id, q.team_mask;
+
+-- 投票归属到投票前最近的一次提议
+UPDATE votes v SET proposal_id = (
+    SELECT p.id FROM proposals p
+    WHERE p.quest_id = v.quest_id AND p.created_at <= v.voted_at
+    ORDER BY p.created_at DESC
+    LIMIT 1)
+WHERE v.proposal_id IS NULL AND v.quest_id IS NOT NULL;
+
+-- 由已有的提议、提议成员和投票回填
+UPDATE proposals p SET attempt = n.attempt
+FROM (
+    SELECT id, row_number() OVER (PARTITION BY quest_id ORDER BY created_at, id) AS attempt
+    FROM proposals
+) n
+WHERE p.id = n.id;
+
+UPDATE proposals p SET leader_seat = gp.seat_number
+FROM quests q
+JOIN game_players gp ON gp.game_id = q.game_id
+WHERE q.id = p.quest_id AND gp.user_id = p.leader_id;
+
+UPDATE proposals p SET team_mask = m.mask
+FROM (
+    SELECT pm.proposal_id, bit_or(1 << (gp.seat_number - 1)) AS mask
+    FROM proposal_members pm
+    JOIN proposals mp ON mp.id = pm.proposal_id
+    JOIN quests q ON q.id = mp.quest_id
+    JOIN game_players gp ON gp.game_id = q.game_id AND gp.user_id = pm.user_id
+    GROUP BY pm.proposal_id
+) m
+WHERE p.id = m.proposal_id;
+
+UPDATE proposals p SET approve_mask = v.approves, reject_mask = v.rejects
+FROM (
+    SELECT v.proposal_id,
+           coalesce(bit_or(1 << (gp.seat_number - 1)) FILTER (WHERE v.vote_type = 'approve'), 0) AS approves,
+           coalesce(bit_or(1 << (gp.seat_number - 1)) FILTER (WHERE v.vote_type = 'reject'), 0) AS rejects
+    FROM votes v
+    JOIN proposals vp ON vp.id = v.proposal_id
+    JOIN quests q ON q.id = vp.quest_id
+    JOIN game_players gp ON gp.game_id = q.game_id AND gp.user_id = v.player_id
+    GROUP BY v.proposal_id
+) v
+WHERE p.id = v.proposal_id;
+
+CREATE INDEX IF NOT EXISTS idx_proposals_quest_attempt ON proposals (quest_id, attempt);
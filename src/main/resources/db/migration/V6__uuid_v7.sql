@@ -0,0 +1,28 @@
+-- 时间有序主键
+-- 应用侧由 UuidV7Generator 生成第7版UUID，这里提供同样格式的数据库函数，
+-- 作为各表主键的默认值，迁移脚本和手工写入的数据也追加在主键索引的右侧。
+-- 已有数据保留原来的随机主键：主键被外键、归档快照、令牌中的用户ID和客户端URL引用，改写代价远大于收益；
+-- 两种主键可以共存，新数据有序追加，旧数据所在的页不再分裂，需要回收空间时在低峰期执行
+-- REINDEX INDEX CONCURRENTLY <表名>_pkey（不能在迁移事务中执行）
+CREATE OR REPLACE FUNCTION uuid_v7() RETURNS uuid AS $$
+    -- 用随机UUID的后10个字节作为随机部分，前6个字节替换为毫秒时间戳，版本位从4改为7
+    SELECT encode(
+        set_bit(
+            set_bit(
+                overlay(uuid_send(gen_random_uuid())
+                        PLACING substring(int8send(floor(extract(epoch FROM clock_timestamp()) * 1000)::bigint) FROM 3)
+                        FROM 1 FOR 6),
+                52, 1),
+            53, 1),
+        'hex')::uuid;
+$$ LANGUAGE sql VOLATILE;
+
+ALTER TABLE users ALTER COLUMN id SET DEFAULT uuid_v7();
+ALTER TABLE rooms ALTER COLUMN id SET DEFAULT uuid_v7();
+ALTER TABLE room_players ALTER COLUMN id SET DEFAULT uuid_v7();
+ALTER TABLE games ALTER COLUMN id SET DEFAULT uuid_v7();
+ALTER TABLE game_players ALTER COLUMN id SET DEFAULT uuid_v7();
+ALTER TABLE quests ALTER COLUMN id SET DEFAULT uuid_v7();
+ALTER TABLE proposals ALTER COLUMN id SET DEFAULT uuid_v7();
+ALTER TABLE votes ALTER COLUMN id SET DEFAULT uuid_v7();
+ALTER TABLE quest_results ALTER COLUMN id SET DEFAULT uuid_v7();
@@ -0,0 +1,18 @@
+-- 回填投票阶段对局的当前提议
+-- V4 加入 current_proposal_id 时旧版流程还没有提议记录，V5 补建提议后没有回填这个指针，
+-- 升级时正处于投票阶段的对局无法投票，投票限时到期后也无法结算。
+-- V5 只为已有投票的任务补建提议，还没有人投票的当前任务在这里补建
+INSERT INTO proposals (id, quest_id, leader_id, created_at, attempt, leader_seat, team_mask)
+SELECT uuid_v7(), q.id, q.leader_id, now(), 1, g.leader_seat, coalesce(q.team_mask, 0)
+FROM games g
+JOIN quests q ON q.id = g.current_quest_id
+WHERE g.phase = 'voting' AND g.current_proposal_id IS NULL AND q.leader_id IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM proposals p WHERE p.quest_id = q.id);
+
+-- 当前提议为当前任务的最后一次提议
+UPDATE games g SET current_proposal_id = (
+    SELECT p.id FROM proposals p
+    WHERE p.quest_id = g.current_quest_id
+    ORDER BY p.attempt DESC, p.created_at DESC
+    LIMIT 1)
+WHERE g.phase = 'voting' AND g.current_proposal_id IS NULL;
@@ -0,0 +1,4 @@
+-- room_players
+-- RoomRepository.findIdleRoomIds 的 NOT EXISTS 子查询: room_id = r.id AND updated_at >= :cutoff
+-- 只有 room_id 前缀时要逐行回表检查 updated_at，规划器改为顺序扫描整个 room_players 表
+CREATE INDEX IF NOT EXISTS idx_room_players_room_updated_at ON room_players (room_id, updated_at);
@@ -0,0 +1,67 @@
+package cn.xiaolin.avalon.config;
+
+import cn.xiaolin.avalon.dto.LoginRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 接口限流测试
+ * 测试配置默认关闭限流，这里单独开启；每个用例使用独立的客户端IP，互不消耗对方的令牌桶
+ */
+@SpringBootTest(properties = "rate-limit.enabled=true")
+@AutoConfigureMockMvc
+@Transactional
+public class RateLimitFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * LOG-TC-003: 登录暴力破解限流
+     * 测试目的: 验证同一IP在短时间内连续登录超过预算后返回429，并携带 Retry-After 响应头。
+     */
+    @Test
+    void whenLoginRepeatedlyFromSameIp_thenReturnsTooManyRequests() throws Exception {
+        String clientIp = "10.0." + (int) (Math.random() * 250) + "." + (int) (Math.random() * 250);
+        String uniqueUsername = "brtusr" + UUID.randomUUID().toString().substring(0, 6);
+        LoginRequest loginRequest = new LoginRequest(uniqueUsername, "password123");
+
+        // 默认预算为10次突发请求
+        for (int i = 0; i < 10; i++) {
+            mockMvc.perform(post("/api/auth/login")
+                            .with(request -> {
+                                request.setRemoteAddr(clientIp);
+                                return request;
+                            })
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(loginRequest)))
+                    .andExpect(status().isBadRequest());
+        }
+
+        mockMvc.perform(post("/api/auth/login")
+                        .with(request -> {
+                            request.setRemoteAddr(clientIp);
+                            return request;
+                        })
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("请求过于频繁，请稍后再试"));
+    }
+}
@@ -1,6 +1,7 @@
 package cn.xiaolin.avalon.controller;
 
 import cn.xiaolin.avalon.dto.LoginRequest;
+import cn.xiaolin.avalon.dto.RefreshTokenRequest;
 import cn.xiaolin.avalon.dto.RegisterRequest;
 import cn.xiaolin.avalon.repository.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -15,6 +16,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.UUID;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -181,4 +183,86 @@ public class AuthControllerTest {
                 .andExpect(jsonPath("$.success").value(false))
                 .andExpect(jsonPath("$.message").value("用户不存在"));
     }
-}
\ No newline at end of file
+
+    /**
+     * TOKEN-TC-001: 刷新令牌轮换
+     * 测试目的: 验证刷新令牌可以换取新的令牌对，且同一个刷新令牌不能重复使用。
+     */
+    @Test
+    void whenRefreshTokenReused_thenSecondRefreshIsRejected() throws Exception {
+        String clientIp = randomClientIp();
+        String refreshToken = objectMapper.readTree(register(clientIp, "rfsusr"))
+                .at("/data/data/refreshToken").asText();
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .with(request -> {
+                            request.setRemoteAddr(clientIp);
+                            return request;
+                        })
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new RefreshTokenRequest(refreshToken))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.data.token").isString())
+                .andExpect(jsonPath("$.data.data.refreshToken").isString());
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .with(request -> {
+                            request.setRemoteAddr(clientIp);
+                            return request;
+                        })
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new RefreshTokenRequest(refreshToken))))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    /**
+     * TOKEN-TC-002: 退出登录吊销访问令牌
+     * 测试目的: 验证退出登录后，原访问令牌立即不能再访问需要认证的接口。
+     */
+    @Test
+    void whenLoggedOut_thenAccessTokenIsRejected() throws Exception {
+        String clientIp = randomClientIp();
+        String accessToken = objectMapper.readTree(register(clientIp, "outusr"))
+                .at("/data/data/token").asText();
+        UUID gameId = UUID.randomUUID();
+
+        // 令牌有效时请求到达业务逻辑，返回游戏不存在
+        mockMvc.perform(get("/api/games/{gameId}", gameId)
+                        .header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/api/auth/logout")
+                        .with(request -> {
+                            request.setRemoteAddr(clientIp);
+                            return request;
+                        })
+                        .header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/games/{gameId}", gameId)
+                        .header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private String register(String clientIp, String prefix) throws Exception {
+        String lastStr = UUID.randomUUID().toString().substring(0, 6);
+        RegisterRequest registerRequest = new RegisterRequest(prefix + lastStr, prefix + "_" + lastStr + "@example.com", "password123");
+
+        return mockMvc.perform(post("/api/auth/register")
+                        .with(request -> {
+                            request.setRemoteAddr(clientIp);
+                            return request;
+                        })
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(registerRequest)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+
+    private String randomClientIp() {
+        return "10.1." + (int) (Math.random() * 250) + "." + (int) (Math.random() * 250);
+    }
+}
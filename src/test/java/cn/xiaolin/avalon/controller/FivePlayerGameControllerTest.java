@@ -5,7 +5,6 @@ import cn.xiaolin.avalon.entity.GamePlayer;
 import cn.xiaolin.avalon.entity.User;
 import cn.xiaolin.avalon.repository.*;
 import cn.xiaolin.avalon.utils.JwtUtil;
-import cn.xiaolin.avalon.websocket.GameMessage;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import org.junit.jupiter.api.AfterEach;
@@ -14,7 +13,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
@@ -26,6 +27,8 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -36,7 +39,8 @@ import static org.mockito.Mockito.*;
  * @Description 5人游戏控制器测试
  * @create 2025/12/07
  */
-@SpringBootTest
+@SpringBootTest(properties = "sql-stats.header=true")
+@Import(QueryBudget.class)
 @AutoConfigureMockMvc
 @Transactional
 class FivePlayerGameControllerTest {
@@ -71,6 +75,9 @@ class FivePlayerGameControllerTest {
     @Autowired
     private QuestResultRepository questResultRepository;
 
+    @Autowired
+    private ProposalRepository proposalRepository;
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -133,6 +140,7 @@ class FivePlayerGameControllerTest {
         // 按正确顺序清理测试数据
         voteRepository.deleteAll();
         questResultRepository.deleteAll();
+        proposalRepository.deleteAll();
         questRepository.deleteAll();
         gamePlayerRepository.deleteAll();
         gameRepository.deleteAll();
@@ -185,8 +193,8 @@ class FivePlayerGameControllerTest {
                 TypeFactory.defaultInstance().constructParametricType(Result.class, RoomPlayersResponse.class));
         List<PlayerInfoResponse> players = playersResult.getData().getPlayers();
 
-        // 执行所有5个任务，确保正义阵营获胜
-        for (int round = 1; round <= 5; round++) {
+        // 正义阵营连续完成3个任务，游戏随之结束
+        for (int round = 1; round <= 3; round++) {
             // 获取当前任务信息以确定真正的队长
             String gameResponseStr = mockMvc.perform(get("/api/games/{gameId}/quests", gameId)
                     .header("Authorization", authorizationHeader))
@@ -268,8 +276,8 @@ class FivePlayerGameControllerTest {
                 }
             }
 
-            // 检查游戏是否结束（第5轮之后应该结束）
-            if (round == 5) {
+            // 检查游戏是否结束（第3个任务成功后应该结束）
+            if (round == 3) {
                 // 等待一段时间确保游戏状态更新
                 Thread.sleep(200);
                 
@@ -778,7 +786,7 @@ class FivePlayerGameControllerTest {
 
         // 注释掉WebSocket验证以避免测试不稳定
          verify(messagingTemplate, atLeastOnce())
-                 .convertAndSend(eq("/topic/game/" + gameId), any(GameMessage.class));
+                 .send(eq("/topic/game/" + gameId), any(Message.class));
     }
 
     /**
@@ -928,6 +936,43 @@ class FivePlayerGameControllerTest {
         }
     }
 
+    /**
+     * MULTI-GAME-RUN-TC-011: 观战画面不包含角色信息
+     * 测试目的: 验证观战接口返回的公开游戏状态包含全部玩家，但游戏进行中不暴露任何玩家的角色和阵营。
+     */
+    @Test
+    void whenSpectatorRequestsGameView_thenRolesAreHidden() throws Exception {
+        mockMvc.perform(post("/api/games/{roomId}/start", roomId)
+                        .header("Authorization", authorizationHeader))
+                .andExpect(status().isOk());
+
+        String roomResponseStr = mockMvc.perform(get("/api/rooms/{roomId}", roomId)
+                .header("Authorization", authorizationHeader))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        Result<RoomResponse> roomResult = objectMapper.readValue(roomResponseStr,
+                TypeFactory.defaultInstance().constructParametricType(Result.class, RoomResponse.class));
+        String gameId = roomResult.getData().getGameId().toString();
+
+        // 观战者不是游戏玩家
+        User spectator = new User();
+        spectator.setUsername("watcher_" + UUID.randomUUID().toString().substring(0, 8));
+        spectator.setEmail("watcher_" + UUID.randomUUID().toString().substring(0, 8) + "@example.com");
+        spectator.setPasswordHash("hashed_password");
+        spectator = userRepository.save(spectator);
+        String spectatorToken = "Bearer " + jwtUtil.generateToken(spectator.getId(), spectator.getUsername());
+
+        mockMvc.perform(get("/api/games/{gameId}/spectate", gameId)
+                        .header("Authorization", spectatorToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.type").value("GAME_STATE_UPDATE"))
+                .andExpect(jsonPath("$.data.data.players.length()").value(5))
+                .andExpect(jsonPath("$.data.data.players[*].role").value(everyItem(nullValue())))
+                .andExpect(jsonPath("$.data.data.players[*].alignment").value(everyItem(nullValue())));
+    }
+
     /**
      * 根据轮次获取5人游戏中所需玩家数
      *
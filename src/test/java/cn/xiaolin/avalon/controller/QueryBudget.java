@@ -0,0 +1,74 @@
+package cn.xiaolin.avalon.controller;
+
+import cn.xiaolin.avalon.config.SqlStatementFilter;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcBuilderCustomizer;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 游戏操作的查询预算
+ * 测试类通过 @Import(QueryBudget.class) 引入，并开启 sql-stats.header。MockMvc 的每个请求都会被检查：
+ * 命中下列游戏操作的请求读取 {@link SqlStatementFilter} 返回的语句数响应头，断言执行的SQL语句数不超过预算。
+ * 预算取5到10人局测试中实测的最大语句数，与玩家人数无关；按人数或按任务逐个查询（N+1）会让人数多的对局直接失败。
+ * 测试类运行在测试事务中，请求之间共享持久化上下文，实测值低于生产环境，预算只用于发现回归。
+ * 查询有意增加时，重新运行 *PlayerGameControllerTest，按失败信息中的实际语句数更新预算
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class QueryBudget {
+    /**
+     * 队长提议队伍
+     */
+    static final int PROPOSE_TEAM = 7;
+
+    /**
+     * 玩家投票（包括最后一票触发的投票结算和换队长）
+     */
+    static final int VOTE = 7;
+
+    /**
+     * 队员执行任务（包括最后一张牌触发的任务结算、进入下一轮或结束游戏）
+     */
+    static final int EXECUTE_QUEST = 10;
+
+    /**
+     * 查询任务列表
+     */
+    static final int LIST_QUESTS = 1;
+
+    private static final String GAME = "/api/games/[0-9a-fA-F-]{36}";
+
+    /**
+     * 请求方法和路径 -> 预算
+     */
+    private static final Map<Pattern, Integer> BUDGETS = Map.of(
+        Pattern.compile("POST " + GAME + "/proposals"), PROPOSE_TEAM,
+        Pattern.compile("POST " + GAME + "/votes"), VOTE,
+        Pattern.compile("POST " + GAME + "/quests/execute"), EXECUTE_QUEST,
+        Pattern.compile("GET " + GAME + "/quests"), LIST_QUESTS);
+
+    @Bean
+    MockMvcBuilderCustomizer queryBudgetCustomizer() {
+        return builder -> builder.alwaysExpect(QueryBudget::check);
+    }
+
+    private static void check(MvcResult result) {
+        String route = result.getRequest().getMethod() + " " + result.getRequest().getRequestURI();
+        for (Map.Entry<Pattern, Integer> budget : BUDGETS.entrySet()) {
+            if (budget.getKey().matcher(route).matches()) {
+                String header = result.getResponse().getHeader(SqlStatementFilter.STATEMENTS_HEADER);
+                assertNotNull(header, "响应中没有SQL语句数，请开启 sql-stats.header");
+                int executed = Integer.parseInt(header);
+                assertTrue(executed <= budget.getValue(),
+                    route + " 执行了 " + executed + " 条SQL语句，超出预算 " + budget.getValue());
+                return;
+            }
+        }
+    }
+}
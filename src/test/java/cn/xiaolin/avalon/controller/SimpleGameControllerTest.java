@@ -4,21 +4,23 @@ import cn.xiaolin.avalon.dto.*;
 import cn.xiaolin.avalon.entity.User;
 import cn.xiaolin.avalon.repository.*;
 import cn.xiaolin.avalon.utils.JwtUtil;
-import cn.xiaolin.avalon.websocket.GameMessage;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatcher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -68,6 +70,9 @@ class SimpleGameControllerTest {
     @Autowired
     private QuestResultRepository questResultRepository;
 
+    @Autowired
+    private ProposalRepository proposalRepository;
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -131,6 +136,7 @@ class SimpleGameControllerTest {
         // 按正确顺序清理测试数据
         voteRepository.deleteAll();
         questResultRepository.deleteAll();
+        proposalRepository.deleteAll();
         questRepository.deleteAll();
         gamePlayerRepository.deleteAll();
         gameRepository.deleteAll();
@@ -403,6 +409,182 @@ class SimpleGameControllerTest {
                 .andExpect(status().isBadRequest());  // 修改为实际返回的状态码
     }
     
+    /**
+     * GAME-EVENTS-TC-001: 玩家订阅游戏事件流(SSE)
+     * 测试目的: 验证游戏玩家可以打开SSE事件流，并在连接建立时收到当前游戏状态快照。
+     */
+    @Test
+    void whenPlayerOpensEventStream_thenReceivesStateSnapshot() throws Exception {
+        // 首先开始游戏
+        mockMvc.perform(post("/api/games/{roomId}/start", roomId)
+                        .header("Authorization", authorizationHeader))
+                .andExpect(status().isOk());
+
+        // 获取实际的游戏ID
+        String roomResponseStr = mockMvc.perform(get("/api/rooms/{roomId}", roomId))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        Result<RoomResponse> roomResult = objectMapper.readValue(roomResponseStr,
+                TypeFactory.defaultInstance().constructParametricType(Result.class, RoomResponse.class));
+        String gameId = roomResult.getData().getGameId().toString();
+
+        // When & Then - 异步请求已开始，且首个事件为游戏状态快照
+        mockMvc.perform(get("/api/games/{gameId}/events", gameId)
+                        .header("Authorization", authorizationHeader)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("event:GAME_STATE_UPDATE")));
+    }
+
+    /**
+     * GAME-EVENTS-TC-002: 非游戏玩家订阅游戏事件流
+     * 测试目的: 验证未加入游戏的用户无法订阅游戏事件流。
+     */
+    @Test
+    void whenNonPlayerOpensEventStream_thenReturnsError() throws Exception {
+        String invalidGameId = "123e4567-e89b-12d3-a456-426614174000";
+
+        mockMvc.perform(get("/api/games/{gameId}/events", invalidGameId)
+                        .header("Authorization", authorizationHeader)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * GAME-EVENTS-TC-003: 携带 Last-Event-ID 重连游戏事件流
+     * 测试目的: 验证重连时只补发错过的事件，而不是重新推送整个游戏状态快照。
+     */
+    @Test
+    void whenPlayerReconnectsWithLastEventId_thenReceivesMissedEvents() throws Exception {
+        // 首先开始游戏
+        mockMvc.perform(post("/api/games/{roomId}/start", roomId)
+                        .header("Authorization", authorizationHeader))
+                .andExpect(status().isOk());
+
+        // 获取实际的游戏ID
+        String roomResponseStr = mockMvc.perform(get("/api/rooms/{roomId}", roomId))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        Result<RoomResponse> roomResult = objectMapper.readValue(roomResponseStr,
+                TypeFactory.defaultInstance().constructParametricType(Result.class, RoomResponse.class));
+        String gameId = roomResult.getData().getGameId().toString();
+
+        // 开始第一个任务，产生序号为1的事件
+        mockMvc.perform(post("/api/games/{gameId}/quests", gameId)
+                    .param("isFirstQuest", "true")
+                    .header("Authorization", authorizationHeader))
+            .andExpect(status().isOk());
+
+        // When & Then - 客户端最后收到的事件序号为0，只补发错过的事件
+        mockMvc.perform(get("/api/games/{gameId}/events", gameId)
+                        .header("Authorization", authorizationHeader)
+                        .header("Last-Event-ID", "0")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("event:FIRST_QUEST_STARTED")))
+                .andExpect(content().string(org.hamcrest.Matchers.not(
+                        org.hamcrest.Matchers.containsString("event:GAME_STATE_UPDATE"))));
+    }
+
+    /**
+     * GAME-EVENTS-TC-004: 浏览器使用事件流令牌订阅游戏事件流
+     * 测试目的: 验证 EventSource 无法携带请求头时，可以用访问令牌换取事件流令牌，并以查询参数打开事件流。
+     */
+    @Test
+    void whenPlayerOpensEventStreamWithStreamToken_thenReceivesStateSnapshot() throws Exception {
+        String gameId = startGame();
+
+        String tokenResponseStr = mockMvc.perform(post("/api/games/{gameId}/events/token", gameId)
+                        .header("Authorization", authorizationHeader))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        Result<StreamTokenResponse> tokenResult = objectMapper.readValue(tokenResponseStr,
+                TypeFactory.defaultInstance().constructParametricType(Result.class, StreamTokenResponse.class));
+
+        // When & Then - 不携带 Authorization 头，只通过查询参数认证
+        mockMvc.perform(get("/api/games/{gameId}/events", gameId)
+                        .param("token", tokenResult.getData().getToken())
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("event:GAME_STATE_UPDATE")));
+    }
+
+    /**
+     * GAME-EVENTS-TC-005: 查询参数中的令牌不匹配时拒绝订阅
+     * 测试目的: 验证查询参数只接受限定为该局游戏的事件流令牌，访问令牌和其他游戏的事件流令牌都不能打开事件流。
+     */
+    @Test
+    void whenEventStreamQueryTokenIsNotScopedToGame_thenUnauthorized() throws Exception {
+        String gameId = startGame();
+        String accessToken = authorizationHeader.substring(7);
+        String username = jwtUtil.getUsernameFromToken(accessToken);
+        String otherGameToken = jwtUtil.generateStreamToken(
+                jwtUtil.getUserIdFromToken(accessToken), username, UUID.randomUUID());
+
+        mockMvc.perform(get("/api/games/{gameId}/events", gameId)
+                        .param("token", accessToken)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/api/games/{gameId}/events", gameId)
+                        .param("token", otherGameToken)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * GAME-EVENTS-TC-006: 事件流令牌不能当作访问令牌使用
+     * 测试目的: 验证事件流令牌只能打开对应游戏的事件流，放在 Authorization 头或查询参数中访问房间和游戏接口都返回401。
+     */
+    @Test
+    void whenStreamTokenIsUsedAsBearerToken_thenUnauthorized() throws Exception {
+        String gameId = startGame();
+        String accessToken = authorizationHeader.substring(7);
+        String streamToken = jwtUtil.generateStreamToken(jwtUtil.getUserIdFromToken(accessToken),
+                jwtUtil.getUsernameFromToken(accessToken), UUID.fromString(gameId));
+        CreateRoomRequest createRoomRequest = new CreateRoomRequest();
+        createRoomRequest.setMaxPlayers(5);
+
+        mockMvc.perform(post("/api/rooms")
+                        .header("Authorization", "Bearer " + streamToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createRoomRequest)))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/api/rooms")
+                        .param("token", streamToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createRoomRequest)))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/api/games/{gameId}", gameId)
+                        .header("Authorization", "Bearer " + streamToken))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private String startGame() throws Exception {
+        mockMvc.perform(post("/api/games/{roomId}/start", roomId)
+                        .header("Authorization", authorizationHeader))
+                .andExpect(status().isOk());
+
+        String roomResponseStr = mockMvc.perform(get("/api/rooms/{roomId}", roomId))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        Result<RoomResponse> roomResult = objectMapper.readValue(roomResponseStr,
+                TypeFactory.defaultInstance().constructParametricType(Result.class, RoomResponse.class));
+        return roomResult.getData().getGameId().toString();
+    }
+
     /**
      * TEAM-PROPOSAL-TC-001: 队长成功提议队伍
      * 测试目的: 验证队长可以成功为当前任务提议一个符合要求的队伍。
@@ -882,8 +1064,7 @@ class SimpleGameControllerTest {
         
         // 验证发送了TEAM_APPROVED消息（在最后一个玩家投票后应该触发）
         verify(messagingTemplate, atLeastOnce())
-                .convertAndSend(eq("/topic/game/" + gameId), (Object) argThat(argument -> 
-                    argument instanceof GameMessage && "TEAM_APPROVED".equals(((GameMessage) argument).getType())));
+                .send(eq("/topic/game/" + gameId), argThat(gameEvent("TEAM_APPROVED")));
     }
     
     /**
@@ -990,8 +1171,7 @@ class SimpleGameControllerTest {
         
         // 验证发送了TEAM_REJECTED消息（在最后一个玩家投票后应该触发）
         verify(messagingTemplate, atLeastOnce())
-                .convertAndSend(eq("/topic/game/" + gameId), (Object) argThat(argument -> 
-                    argument instanceof GameMessage && "TEAM_REJECTED".equals(((GameMessage) argument).getType())));
+                .send(eq("/topic/game/" + gameId), argThat(gameEvent("TEAM_REJECTED")));
     }
     
     /**
@@ -1131,8 +1311,7 @@ class SimpleGameControllerTest {
                         
                 // 验证WebSocket消息已发送
                 verify(messagingTemplate, atLeastOnce())
-                        .convertAndSend(eq("/topic/game/" + gameId), (Object) argThat(argument -> 
-                            argument instanceof GameMessage && "QUEST_COMPLETED".equals(((GameMessage) argument).getType())));
+                        .send(eq("/topic/game/" + gameId), argThat(gameEvent("QUEST_COMPLETED")));
                 break; // 退出循环，因为游戏已经结束了
             }
         }
@@ -1234,10 +1413,22 @@ class SimpleGameControllerTest {
                 
         // 验证WebSocket消息已发送
         verify(messagingTemplate, atLeastOnce())
-                .convertAndSend(eq("/topic/game/" + gameId), (Object) argThat(argument -> 
-                    argument instanceof GameMessage && "NEXT_ROUND_STARTED".equals(((GameMessage) argument).getType())));
+                .send(eq("/topic/game/" + gameId), argThat(gameEvent("NEXT_ROUND_STARTED")));
     }
     
+    /**
+     * 游戏事件只编码一次，以JSON字节帧发送到游戏主题，按帧中的事件类型匹配
+     */
+    private ArgumentMatcher<Message<?>> gameEvent(String type) {
+        return message -> {
+            try {
+                return type.equals(objectMapper.readTree((byte[]) message.getPayload()).path("type").asText());
+            } catch (IOException e) {
+                return false;
+            }
+        };
+    }
+
     /**
      * 根据轮次获取所需玩家数（5人游戏配置）
      * @param round 轮次
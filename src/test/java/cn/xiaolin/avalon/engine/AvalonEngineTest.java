@@ -0,0 +1,161 @@
+package cn.xiaolin.avalon.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 规则引擎与模拟测试
+ * 不依赖数据库和Spring容器，验证规则表、引擎的阶段推进，以及并行模拟的结果可复现
+ */
+class AvalonEngineTest {
+
+    private static final int[] EVIL_COUNTS = {0, 0, 0, 0, 0, 2, 2, 3, 3, 3, 4};
+
+    /**
+     * ENGINE-TC-001: 角色配置校验
+     * 测试目的: 验证每种人数的角色数与人数一致、邪恶人数符合标准配置，且都有梅林和刺客
+     */
+    @Test
+    void roleSetups_matchStandardConfiguration() {
+        for (int players = AvalonRules.MIN_PLAYERS; players <= AvalonRules.MAX_PLAYERS; players++) {
+            byte[] setup = AvalonRules.roleSetup(players);
+            assertEquals(players, setup.length);
+
+            int evil = 0;
+            int merlins = 0;
+            int assassins = 0;
+            for (byte role : setup) {
+                evil += AvalonRules.isEvil(role) ? 1 : 0;
+                merlins += role == AvalonRules.MERLIN ? 1 : 0;
+                assassins += role == AvalonRules.ASSASSIN ? 1 : 0;
+            }
+            assertEquals(EVIL_COUNTS[players], evil, players + "人局邪恶人数");
+            assertEquals(1, merlins);
+            assertEquals(1, assassins);
+
+            for (int round = 0; round < AvalonRules.QUEST_COUNT; round++) {
+                assertTrue(AvalonRules.questSize(players, round) < players);
+                assertTrue(AvalonRules.failsRequired(players, round) <= evil);
+            }
+        }
+        assertEquals("evil", AvalonRules.alignmentOf("mordred"));
+        assertThrows(IllegalArgumentException.class, () -> AvalonRules.roleSetup(4));
+    }
+
+    /**
+     * ENGINE-TC-002: 脚本对局
+     * 测试目的: 验证组队、投票否决后换队长、任务成败、正义三胜后刺杀梅林的完整流程
+     */
+    @Test
+    void scriptedGame_followsServiceRules() {
+        byte[] roles = {AvalonRules.MERLIN, AvalonRules.PERCIVAL, AvalonRules.LOYAL_SERVANT,
+            AvalonRules.MORGANA, AvalonRules.ASSASSIN};
+        AvalonEngine game = new AvalonEngine().reset(roles);
+
+        // 第1轮：第一次提议被否决（2赞成3反对），队长轮换到座位1
+        game.proposeTeam(0, 0b00011);
+        voteAll(game, 0b00011);
+        assertEquals(AvalonEngine.PROPOSING, game.phase());
+        assertEquals(1, game.leader());
+        assertThrows(IllegalStateException.class, () -> game.proposeTeam(0, 0b00011));
+
+        // 第二次提议通过，正义队员完成任务
+        game.proposeTeam(1, 0b00110);
+        voteAll(game, 0b00111);
+        assertEquals(AvalonEngine.EXECUTING, game.phase());
+        assertThrows(IllegalStateException.class, () -> game.execute(0, true));
+        game.execute(1, true);
+        game.execute(2, true);
+        assertEquals(1, game.successes());
+        assertEquals(1, game.round());
+        assertEquals(1, game.leader());
+
+        // 第2轮：邪恶队员破坏任务
+        game.proposeTeam(1, 0b01011);
+        voteAll(game, 0b11111);
+        game.execute(0, true);
+        game.execute(1, true);
+        game.execute(3, false);
+        assertEquals(1, game.failures());
+
+        // 第3、4轮：正义队伍连续成功，进入刺杀阶段
+        for (int round = 2; round <= 3; round++) {
+            game.proposeTeam(game.leader(), game.requiredPlayers() == 2 ? 0b00011 : 0b00111);
+            voteAll(game, 0b11111);
+            for (int members = game.team(); members != 0; members &= members - 1) {
+                game.execute(Integer.numberOfTrailingZeros(members), true);
+            }
+        }
+        assertEquals(AvalonEngine.ASSASSINATION, game.phase());
+        assertEquals(AvalonEngine.GOOD_WINS, game.winner());
+
+        // 只有刺客能刺杀，刺中梅林邪恶翻盘
+        assertThrows(IllegalStateException.class, () -> game.assassinate(3, 0));
+        game.assassinate(4, 0);
+        assertTrue(game.isEnded());
+        assertEquals(AvalonEngine.EVIL_WINS, game.winner());
+        assertEquals(AvalonEngine.WIN_ASSASSINATION, game.winType());
+    }
+
+    /**
+     * ENGINE-TC-003: 并行模拟
+     * 测试目的: 验证各人数的随机对局都能按规则结束、统计守恒，且相同种子的结果一致
+     */
+    @Test
+    void simulation_isConsistentAndReproducible() {
+        SimulationHarness harness = new SimulationHarness();
+        for (int players = AvalonRules.MIN_PLAYERS; players <= AvalonRules.MAX_PLAYERS; players++) {
+            SimulationHarness.SimulationResult result = harness.simulate(players, 50_000, 42L, SimulationStrategy.RANDOM);
+            assertEquals(50_000, result.games());
+            assertEquals(0, result.stalled());
+            assertEquals(result.finished(), result.goodWins() + result.evilQuestWins()
+                + result.evilAssassinationWins() + result.evilRejectionWins());
+            assertTrue(result.averageRounds() >= AvalonRules.QUESTS_TO_WIN && result.averageRounds() <= AvalonRules.QUEST_COUNT);
+            assertTrue(result.goodWins() > 0 && result.evilQuestWins() > 0 && result.evilAssassinationWins() > 0
+                && result.evilRejectionWins() > 0);
+
+            assertEquals(result, harness.simulate(players, 50_000, 42L, SimulationStrategy.RANDOM));
+        }
+    }
+
+    /**
+     * ENGINE-TC-004: 连续否决
+     * 测试目的: 验证同一轮连续5次提议被否决时邪恶阵营直接获胜，任务结算后否决计数清零
+     */
+    @Test
+    void fiveRejections_evilWins() {
+        byte[] roles = {AvalonRules.MERLIN, AvalonRules.PERCIVAL, AvalonRules.LOYAL_SERVANT,
+            AvalonRules.MORGANA, AvalonRules.ASSASSIN};
+        AvalonEngine game = new AvalonEngine().reset(roles);
+
+        // 第1轮否决4次后通过，任务结算后计数清零
+        for (int i = 0; i < AvalonRules.MAX_REJECTIONS - 1; i++) {
+            game.proposeTeam(game.leader(), 0b00011);
+            voteAll(game, 0);
+        }
+        assertEquals(AvalonRules.MAX_REJECTIONS - 1, game.rejections());
+        game.proposeTeam(game.leader(), 0b00011);
+        voteAll(game, 0b11111);
+        game.execute(0, true);
+        game.execute(1, true);
+        assertEquals(0, game.rejections());
+
+        // 第2轮连续否决5次，邪恶阵营获胜
+        for (int i = 0; i < AvalonRules.MAX_REJECTIONS; i++) {
+            game.proposeTeam(game.leader(), 0b00111);
+            voteAll(game, 0b00011);
+        }
+        assertTrue(game.isEnded());
+        assertEquals(AvalonEngine.EVIL_WINS, game.winner());
+        assertEquals(AvalonEngine.WIN_REJECTIONS, game.winType());
+    }
+
+    private static void voteAll(AvalonEngine game, int approveMask) {
+        for (int seat = 0; seat < game.playerCount(); seat++) {
+            game.vote(seat, (approveMask & (1 << seat)) != 0);
+        }
+    }
+}
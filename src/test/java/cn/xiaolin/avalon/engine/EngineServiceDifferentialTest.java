@@ -0,0 +1,308 @@
+package cn.xiaolin.avalon.engine;
+
+import cn.xiaolin.avalon.dto.AssassinationRequest;
+import cn.xiaolin.avalon.dto.CreateRoomRequest;
+import cn.xiaolin.avalon.dto.ExecuteQuestRequest;
+import cn.xiaolin.avalon.dto.ProposeTeamRequest;
+import cn.xiaolin.avalon.dto.RoomResponse;
+import cn.xiaolin.avalon.dto.VoteRequest;
+import cn.xiaolin.avalon.entity.Game;
+import cn.xiaolin.avalon.entity.GamePlayer;
+import cn.xiaolin.avalon.entity.Quest;
+import cn.xiaolin.avalon.entity.User;
+import cn.xiaolin.avalon.enums.GamePhase;
+import cn.xiaolin.avalon.enums.QuestStatus;
+import cn.xiaolin.avalon.enums.VoteType;
+import cn.xiaolin.avalon.repository.GamePlayerRepository;
+import cn.xiaolin.avalon.repository.GameRepository;
+import cn.xiaolin.avalon.repository.QuestRepository;
+import cn.xiaolin.avalon.repository.UserRepository;
+import cn.xiaolin.avalon.service.AssassinationService;
+import cn.xiaolin.avalon.service.GameService;
+import cn.xiaolin.avalon.service.ProposalService;
+import cn.xiaolin.avalon.service.QuestService;
+import cn.xiaolin.avalon.service.RoomPlayerService;
+import cn.xiaolin.avalon.service.RoomService;
+import cn.xiaolin.avalon.service.VoteService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 规则引擎与服务层对照测试
+ * 用同一个随机数序列生成每一步操作，同时作用于 AvalonEngine 和 ProposalService / VoteService /
+ * QuestService / AssassinationService，每步之后比较阶段、队长、轮次、任务结果、组队次数和胜方，
+ * 保证模拟结果可以代表真实对局。操作中按一定概率插入非法操作（非队长组队、重复投票、非队员出征），
+ * 两边必须以相同的原因拒绝
+ */
+@SpringBootTest
+@Transactional
+class EngineServiceDifferentialTest {
+
+    private static final int GAMES_PER_PLAYER_COUNT = 3;
+
+    private static final GamePhase[] PHASES = {
+        GamePhase.PROPOSING, GamePhase.VOTING, GamePhase.EXECUTING, GamePhase.ASSASSINATION, GamePhase.ENDED
+    };
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private GamePlayerRepository gamePlayerRepository;
+
+    @Autowired
+    private QuestRepository questRepository;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private RoomPlayerService roomPlayerService;
+
+    @Autowired
+    private GameService gameService;
+
+    @Autowired
+    private ProposalService proposalService;
+
+    @Autowired
+    private VoteService voteService;
+
+    @Autowired
+    private QuestService questService;
+
+    @Autowired
+    private AssassinationService assassinationService;
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * ENGINE-DIFF-TC-001: 随机对局对照
+     * 测试目的: 验证各人数下同一随机操作序列在规则引擎和服务层上得到相同的阶段推进、队长轮换、任务结果和胜方
+     */
+    @Test
+    void randomGames_engineMatchesServices() {
+        for (int players = AvalonRules.MIN_PLAYERS; players <= AvalonRules.MAX_PLAYERS; players++) {
+            for (int i = 0; i < GAMES_PER_PLAYER_COUNT; i++) {
+                playBoth(players, 1000L * players + i);
+            }
+        }
+    }
+
+    /**
+     * 把同一局游戏同时在引擎和服务层上下到结束
+     */
+    private void playBoth(int playerCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        SimulationStrategy strategy = SimulationStrategy.RANDOM;
+        ServiceGame game = startServiceGame(playerCount);
+        AvalonEngine engine = new AvalonEngine().reset(game.roles());
+        String context = playerCount + "人局 seed=" + seed;
+
+        byte[] dealt = game.roles().clone();
+        byte[] setup = AvalonRules.roleSetup(playerCount);
+        Arrays.sort(dealt);
+        Arrays.sort(setup);
+        assertArrayEquals(setup, dealt, context + " 角色配置");
+        assertSameState(engine, game, context);
+
+        while (!engine.isEnded()) {
+            switch (engine.phase()) {
+                case AvalonEngine.PROPOSING -> {
+                    assertTrue(engine.proposals() < SimulationHarness.MAX_PROPOSALS, context + " 组队次数超过上限");
+                    if (random.nextInt(4) == 0) {
+                        int other = AvalonRules.nextLeaderSeat(engine.leader(), playerCount);
+                        int mask = strategy.proposeTeam(engine, random);
+                        assertBothReject(context,
+                            () -> engine.proposeTeam(other, mask),
+                            () -> proposalService.proposeTeam(game.gameId(), game.userId(other), teamRequest(game, mask)));
+                    }
+                    int mask = strategy.proposeTeam(engine, random);
+                    int leader = engine.leader();
+                    engine.proposeTeam(leader, mask);
+                    proposalService.proposeTeam(game.gameId(), game.userId(leader), teamRequest(game, mask));
+                }
+                case AvalonEngine.VOTING -> {
+                    for (int seat = 0; seat < playerCount && engine.phase() == AvalonEngine.VOTING; seat++) {
+                        boolean approve = strategy.vote(engine, seat, random);
+                        engine.vote(seat, approve);
+                        voteService.submitVote(game.gameId(), game.userId(seat), voteRequest(approve));
+                        if (engine.phase() == AvalonEngine.VOTING && random.nextInt(8) == 0) {
+                            int voter = seat;
+                            assertBothReject(context,
+                                () -> engine.vote(voter, approve),
+                                () -> voteService.submitVote(game.gameId(), game.userId(voter), voteRequest(approve)));
+                        }
+                        assertSameState(engine, game, context);
+                    }
+                }
+                case AvalonEngine.EXECUTING -> {
+                    int outsiders = engine.allSeats() & ~engine.team();
+                    if (random.nextInt(4) == 0) {
+                        int outsider = SimulationStrategy.randomSeat(outsiders, random);
+                        assertBothReject(context,
+                            () -> engine.execute(outsider, true),
+                            () -> questService.executeQuest(game.gameId(), game.userId(outsider), executeRequest(true)));
+                    }
+                    for (int members = engine.team(); members != 0 && engine.phase() == AvalonEngine.EXECUTING; members &= members - 1) {
+                        int seat = Integer.numberOfTrailingZeros(members);
+                        boolean success = strategy.execute(engine, seat, random);
+                        engine.execute(seat, success);
+                        questService.executeQuest(game.gameId(), game.userId(seat), executeRequest(success));
+                    }
+                }
+                case AvalonEngine.ASSASSINATION -> {
+                    int target = strategy.assassinate(engine, random);
+                    engine.assassinate(engine.assassinSeat(), target);
+                    AssassinationRequest request = new AssassinationRequest();
+                    request.setTargetPlayerId(game.gamePlayerId(target));
+                    assassinationService.processAssassination(game.gameId(), game.userId(engine.assassinSeat()), request);
+                }
+                default -> throw new IllegalStateException("未知阶段: " + engine.phase());
+            }
+            assertSameState(engine, game, context);
+        }
+    }
+
+    /**
+     * 比较引擎和数据库中的对局状态
+     */
+    private void assertSameState(AvalonEngine engine, ServiceGame serviceGame, String context) {
+        Game game = gameRepository.findById(serviceGame.gameId()).orElseThrow();
+        assertEquals(PHASES[engine.phase()].getValue(), game.getPhase(), context + " 阶段");
+        if (engine.phase() <= AvalonEngine.EXECUTING) {
+            assertEquals(engine.leader() + 1, game.getLeaderSeat(), context + " 队长座位");
+            assertEquals(engine.round() + 1, game.getCurrentRound(), context + " 轮次");
+        }
+        assertEquals(winnerOf(engine), game.getWinner(), context + " 胜方");
+        assertEquals(engine.proposals(), proposalService.getProposalHistory(game.getId()).size(), context + " 组队次数");
+
+        List<Quest> quests = questRepository.findByGameOrderByRoundNumber(game);
+        assertEquals(AvalonRules.QUEST_COUNT, quests.size());
+        int settled = engine.successes() + engine.failures();
+        for (int round = 0; round < AvalonRules.QUEST_COUNT; round++) {
+            String status = quests.get(round).getStatus();
+            if (round < settled) {
+                boolean success = (engine.questResults() & (1 << round)) != 0;
+                assertEquals(success ? QuestStatus.COMPLETED.getValue() : QuestStatus.FAILED.getValue(), status,
+                    context + " 第" + (round + 1) + "轮任务结果");
+            } else if (engine.winType() == AvalonEngine.WIN_REJECTIONS && round == engine.round()) {
+                // 连续否决结束时服务层把当前任务记为失败，引擎不计入任务失败数
+                assertEquals(QuestStatus.FAILED.getValue(), status, context + " 连续否决的任务");
+            } else {
+                assertNotEquals(QuestStatus.COMPLETED.getValue(), status, context + " 第" + (round + 1) + "轮任务未结算");
+                assertNotEquals(QuestStatus.FAILED.getValue(), status, context + " 第" + (round + 1) + "轮任务未结算");
+            }
+        }
+    }
+
+    /**
+     * 非法操作在引擎和服务层都被拒绝，且原因相同
+     */
+    private static void assertBothReject(String context, Executable engineAction, Executable serviceAction) {
+        String expected = assertThrows(IllegalStateException.class, engineAction, context).getMessage();
+        String actual = assertThrows(RuntimeException.class, serviceAction, context).getMessage();
+        assertEquals(expected, actual, context + " 拒绝原因");
+    }
+
+    private static String winnerOf(AvalonEngine engine) {
+        return switch (engine.winner()) {
+            case AvalonEngine.GOOD_WINS -> "good";
+            case AvalonEngine.EVIL_WINS -> "evil";
+            default -> null;
+        };
+    }
+
+    /**
+     * 通过房间和游戏服务开始一局游戏并进入第一个任务，按座位读出服务层发的角色
+     */
+    private ServiceGame startServiceGame(int playerCount) {
+        List<UUID> userIds = new ArrayList<>();
+        for (int i = 0; i < playerCount; i++) {
+            User user = new User();
+            String suffix = UUID.randomUUID().toString().substring(0, 8);
+            user.setUsername("diff" + i + "_" + suffix);
+            user.setEmail("diff" + i + "_" + suffix + "@example.com");
+            user.setPasswordHash("hashed_password");
+            userIds.add(userRepository.save(user).getId());
+        }
+
+        CreateRoomRequest createRequest = new CreateRoomRequest();
+        createRequest.setMaxPlayers(playerCount);
+        RoomResponse room = roomService.createRoom(userIds.get(0), createRequest);
+        for (int i = 1; i < playerCount; i++) {
+            roomPlayerService.joinRoomById(userIds.get(i), room.getRoomId());
+        }
+        gameService.startGame(room.getRoomId());
+        Game game = gameService.getGameByRoomId(room.getRoomId());
+        questService.startQuest(game.getId(), true);
+
+        byte[] roles = new byte[playerCount];
+        UUID[] seatUsers = new UUID[playerCount];
+        UUID[] seatPlayers = new UUID[playerCount];
+        for (GamePlayer player : gamePlayerRepository.findByGame(game)) {
+            int seat = player.getSeatNumber() - 1;
+            roles[seat] = AvalonRules.roleOf(player.getRole());
+            seatUsers[seat] = player.getUser().getId();
+            seatPlayers[seat] = player.getId();
+        }
+        return new ServiceGame(game.getId(), roles, seatUsers, seatPlayers);
+    }
+
+    private static ProposeTeamRequest teamRequest(ServiceGame game, int teamMask) {
+        List<UUID> playerIds = new ArrayList<>();
+        for (int members = teamMask; members != 0; members &= members - 1) {
+            playerIds.add(game.userId(Integer.numberOfTrailingZeros(members)));
+        }
+        ProposeTeamRequest request = new ProposeTeamRequest();
+        request.setPlayerIds(playerIds);
+        return request;
+    }
+
+    private static VoteRequest voteRequest(boolean approve) {
+        VoteRequest request = new VoteRequest();
+        request.setVoteType(approve ? VoteType.APPROVE.getValue() : VoteType.REJECT.getValue());
+        return request;
+    }
+
+    private static ExecuteQuestRequest executeRequest(boolean success) {
+        ExecuteQuestRequest request = new ExecuteQuestRequest();
+        request.setSuccess(success);
+        return request;
+    }
+
+    /**
+     * 服务层的一局游戏，数组下标为引擎座位（座位号减1）
+     */
+    private record ServiceGame(UUID gameId, byte[] roles, UUID[] seatUsers, UUID[] seatPlayers) {
+
+        UUID userId(int seat) {
+            return seatUsers[seat];
+        }
+
+        UUID gamePlayerId(int seat) {
+            return seatPlayers[seat];
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package cn.xiaolin.avalon.repository;
+
+import cn.xiaolin.avalon.entity.Game;
+import cn.xiaolin.avalon.entity.Proposal;
+import cn.xiaolin.avalon.entity.Quest;
+import cn.xiaolin.avalon.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 仓库查询索引覆盖测试
+ * 在接近生产分布的种子数据上调用 repository 包中的查询方法，由 {@link StatementCapture} 记录 Hibernate 实际生成的SQL和绑定参数，
+ * 再绑定同样的参数执行 EXPLAIN，断言执行计划不包含顺序扫描。规划器使用默认配置和 ANALYZE 后的统计信息，
+ * 计划中出现 Seq Scan 说明该查询缺少匹配的索引，或者生成的SQL无法使用已有索引。
+ * 新增查询方法时在对应的测试中补充调用
+ */
+@SpringBootTest
+@Transactional
+@Import(StatementCapture.class)
+class RepositoryIndexUsageTest {
+
+    /**
+     * 房间数，每个房间5名玩家、一局游戏、5轮任务、每轮2次提议
+     */
+    private static final int ROOMS = 1000;
+
+    /**
+     * 每50个房间中第0个进行中、第1个已结束未归档，其余已关闭且对局已归档
+     */
+    private static final int ACTIVE_EVERY = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private RoomPlayerRepository roomPlayerRepository;
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private GamePlayerRepository gamePlayerRepository;
+
+    @Autowired
+    private QuestRepository questRepository;
+
+    @Autowired
+    private ProposalRepository proposalRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private QuestResultRepository questResultRepository;
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    private String salt;
+    private UUID userId;
+    private String username;
+    private UUID roomId;
+    private String roomCode;
+    private UUID gameId;
+    private UUID questId;
+    private UUID proposalId;
+
+    @BeforeEach
+    void setUp() {
+        salt = UUID.randomUUID().toString().substring(0, 8);
+        seed();
+        jdbcTemplate.execute("ANALYZE users, rooms, room_players, games, game_players, quests, " +
+            "quest_proposed_members, proposals, proposal_members, votes, quest_results");
+
+        userId = seededId("u0_1");
+        username = "idx_" + salt + "_0_1";
+        roomId = seededId("r0");
+        roomCode = "I" + salt.substring(0, 4) + "0";
+        gameId = seededId("g0");
+        questId = seededId("q0_1");
+        proposalId = seededId("p0_1_1");
+    }
+
+    /**
+     * REPO-INDEX-TC-001: 房间相关查询使用索引
+     * 测试目的: 验证 RoomRepository 和 RoomPlayerRepository 的查询生成的SQL均命中索引
+     */
+    @Test
+    void roomQueries_useIndexScans() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(30);
+
+        assertIndexScans("RoomRepository.findByRoomCode", () -> roomRepository.findByRoomCode(roomCode));
+        assertIndexScans("RoomRepository.findByRoomCodeWithCreator",
+            () -> roomRepository.findByRoomCodeWithCreator(roomCode));
+        assertIndexScans("RoomRepository.findSnapshotRowsById", () -> roomRepository.findSnapshotRowsById(roomId));
+        assertIndexScans("RoomRepository.findSnapshotRowsByRoomCode",
+            () -> roomRepository.findSnapshotRowsByRoomCode(roomCode));
+        assertIndexScans("RoomRepository.findIdleRoomIds",
+            () -> roomRepository.findIdleRoomIds(List.of("waiting", "ended"), cutoff, PageRequest.of(0, 500)));
+        assertIndexScans("RoomRepository.findRoomCodesByIds", () -> roomRepository.findRoomCodesByIds(List.of(roomId)));
+        assertIndexScans("RoomRepository.updateStatusByIds",
+            () -> roomRepository.updateStatusByIds(List.of(roomId), "playing"));
+
+        assertIndexScans("RoomPlayerRepository.findByRoomIdAndIsActiveTrue",
+            () -> roomPlayerRepository.findByRoomIdAndIsActiveTrue(roomId));
+        assertIndexScans("RoomPlayerRepository.findByRoomIdAndUserId",
+            () -> roomPlayerRepository.findByRoomIdAndUserId(roomId, userId));
+        assertIndexScans("RoomPlayerRepository.existsByRoomIdAndUserId",
+            () -> roomPlayerRepository.existsByRoomIdAndUserId(roomId, userId));
+        assertIndexScans("RoomPlayerRepository.existsByRoomIdAndUserIdAndIsActiveTrue",
+            () -> roomPlayerRepository.existsByRoomIdAndUserIdAndIsActiveTrue(roomId, userId));
+        assertIndexScans("RoomPlayerRepository.findActivePlayersByRoomCode",
+            () -> roomPlayerRepository.findActivePlayersByRoomCode(roomCode));
+        assertIndexScans("RoomPlayerRepository.findActivePlayersWithRoomByRoomCode",
+            () -> roomPlayerRepository.findActivePlayersWithRoomByRoomCode(roomCode));
+        assertIndexScans("RoomPlayerRepository.findActivePlayersWithUserByRoomId",
+            () -> roomPlayerRepository.findActivePlayersWithUserByRoomId(roomId));
+        assertIndexScans("RoomPlayerRepository.countActivePlayersByRoomId",
+            () -> roomPlayerRepository.countActivePlayersByRoomId(roomId));
+        assertIndexScans("RoomPlayerRepository.deactivateByRoomIdAndUserIds",
+            () -> roomPlayerRepository.deactivateByRoomIdAndUserIds(roomId, List.of(userId), LocalDateTime.now()));
+        assertIndexScans("RoomPlayerRepository.deactivateByRoomIds",
+            () -> roomPlayerRepository.deactivateByRoomIds(List.of(roomId), LocalDateTime.now()));
+    }
+
+    /**
+     * REPO-INDEX-TC-002: 游戏相关查询使用索引
+     * 测试目的: 验证 GameRepository 和 GamePlayerRepository 的查询生成的SQL均命中索引
+     */
+    @Test
+    void gameQueries_useIndexScans() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(30);
+        Game game = gameRepository.findById(gameId).orElseThrow();
+
+        assertIndexScans("GameRepository.findByRoomId", () -> gameRepository.findByRoomId(roomId));
+        assertIndexScans("GameRepository.findResponseById", () -> gameRepository.findResponseById(gameId));
+        assertIndexScans("GameRepository.findByRoomRoomCode", () -> gameRepository.findByRoomRoomCode(roomCode));
+        assertIndexScans("GameRepository.findIdleGameIds", () -> gameRepository.findIdleGameIds(
+            List.of("preparing", "role_viewing", "playing"), cutoff, PageRequest.of(0, 500)));
+        assertIndexScans("GameRepository.findRoomIdsByGameIds",
+            () -> gameRepository.findRoomIdsByGameIds(List.of(gameId)));
+        assertIndexScans("GameRepository.findArchivableGameIds",
+            () -> gameRepository.findArchivableGameIds("ended", cutoff, PageRequest.of(0, 100)));
+        assertIndexScans("GameRepository.updateStatusByIds",
+            () -> gameRepository.updateStatusByIds(List.of(gameId), "ended", "ended", LocalDateTime.now()));
+        assertIndexScans("GameRepository.markArchived",
+            () -> gameRepository.markArchived(List.of(gameId), LocalDateTime.now()));
+
+        assertIndexScans("GamePlayerRepository.findByGame", () -> gamePlayerRepository.findByGame(game));
+        assertIndexScans("GamePlayerRepository.countByGame", () -> gamePlayerRepository.countByGame(game));
+        assertIndexScans("GamePlayerRepository.findByGameWithUser", () -> gamePlayerRepository.findByGameWithUser(game));
+        assertIndexScans("GamePlayerRepository.findByGameIdWithUserAndGame",
+            () -> gamePlayerRepository.findByGameIdWithUserAndGame(gameId));
+        assertIndexScans("GamePlayerRepository.findResponsesByGameId",
+            () -> gamePlayerRepository.findResponsesByGameId(gameId));
+        assertIndexScans("GamePlayerRepository.findResponsesByGameIdAndAlignment",
+            () -> gamePlayerRepository.findResponsesByGameIdAndAlignment(gameId, "good"));
+        assertIndexScans("GamePlayerRepository.findActivePlayerInfosByGameId",
+            () -> gamePlayerRepository.findActivePlayerInfosByGameId(gameId));
+        assertIndexScans("GamePlayerRepository.findByGameAndUserId",
+            () -> gamePlayerRepository.findByGameAndUserId(game, userId));
+        assertIndexScans("GamePlayerRepository.existsByGameIdAndUserId",
+            () -> gamePlayerRepository.existsByGameIdAndUserId(gameId, userId));
+        assertIndexScans("GamePlayerRepository.findGameAndUserIdsByGameIds",
+            () -> gamePlayerRepository.findGameAndUserIdsByGameIds(List.of(gameId)));
+    }
+
+    /**
+     * REPO-INDEX-TC-003: 任务、提议、投票和任务结果查询使用索引
+     * 测试目的: 验证 QuestRepository、ProposalRepository、VoteRepository、QuestResultRepository 的查询生成的SQL均命中索引
+     */
+    @Test
+    void questQueries_useIndexScans() {
+        Game game = gameRepository.findById(gameId).orElseThrow();
+        // 当前任务按主键加载，需要在任务进入持久化上下文之前调用，否则不会执行SQL
+        Quest quest = assertIndexScans("QuestRepository.findCurrentQuest",
+            () -> questRepository.findCurrentQuest(game)).orElseThrow();
+        User leader = userRepository.findById(userId).orElseThrow();
+
+        assertIndexScans("QuestRepository.findByGame", () -> questRepository.findByGame(game));
+        assertIndexScans("QuestRepository.findByGameOrderByRoundNumber",
+            () -> questRepository.findByGameOrderByRoundNumber(game));
+        assertIndexScans("QuestRepository.findByGameAndRoundNumber",
+            () -> questRepository.findByGameAndRoundNumber(game, 2));
+        assertIndexScans("QuestRepository.countByGameAndStatus",
+            () -> questRepository.countByGameAndStatus(game, "completed"));
+        assertIndexScans("QuestRepository.findCardTally", () -> questRepository.findCardTally(questId));
+        assertIndexScans("QuestRepository.playCard", () -> questRepository.playCard(questId, 1, true));
+
+        Proposal proposal = proposalRepository.findById(proposalId).orElseThrow();
+        assertIndexScans("ProposalRepository.findByQuest", () -> proposalRepository.findByQuest(quest));
+        assertIndexScans("ProposalRepository.findByQuestAndLeader",
+            () -> proposalRepository.findByQuestAndLeader(quest, leader));
+        assertIndexScans("ProposalRepository.countByQuest", () -> proposalRepository.countByQuest(quest));
+        assertIndexScans("ProposalRepository.findRoundById", () -> proposalRepository.findRoundById(proposalId));
+        assertIndexScans("ProposalRepository.findRoundsByGameId", () -> proposalRepository.findRoundsByGameId(gameId));
+        assertIndexScans("ProposalRepository.findByQuestWithMembers",
+            () -> proposalRepository.findByQuestWithMembers(quest));
+        assertIndexScans("ProposalRepository.castVote", () -> proposalRepository.castVote(proposalId, 1, true));
+
+        assertIndexScans("VoteRepository.findByQuest", () -> voteRepository.findByQuest(quest));
+        assertIndexScans("VoteRepository.existsByQuestAndPlayer", () -> voteRepository.existsByQuestAndPlayer(quest, leader));
+        assertIndexScans("VoteRepository.findByProposal", () -> voteRepository.findByProposal(proposal));
+        assertIndexScans("VoteRepository.existsByProposalAndPlayer",
+            () -> voteRepository.existsByProposalAndPlayer(proposal, leader));
+        assertIndexScans("VoteRepository.findByGame", () -> voteRepository.findByGame(game));
+        assertIndexScans("VoteRepository.findByQuestsWithQuest", () -> voteRepository.findByQuestsWithQuest(List.of(quest)));
+        assertIndexScans("VoteRepository.findByProposalsWithProposal",
+            () -> voteRepository.findByProposalsWithProposal(List.of(proposal)));
+
+        assertIndexScans("QuestResultRepository.findByQuest", () -> questResultRepository.findByQuest(quest));
+        assertIndexScans("QuestResultRepository.findByGame", () -> questResultRepository.findByGame(game));
+        assertIndexScans("QuestResultRepository.findByQuestsWithQuest",
+            () -> questResultRepository.findByQuestsWithQuest(List.of(quest)));
+    }
+
+    /**
+     * REPO-INDEX-TC-004: 用户查询使用索引
+     * 测试目的: 验证 UserRepository 的用户名、邮箱查询命中唯一索引
+     */
+    @Test
+    void userQueries_useIndexScans() {
+        String email = username + "@example.com";
+
+        assertIndexScans("UserRepository.findByUsername", () -> userRepository.findByUsername(username));
+        assertIndexScans("UserRepository.findByEmail", () -> userRepository.findByEmail(email));
+        assertIndexScans("UserRepository.existsByUsername", () -> userRepository.existsByUsername(username));
+        assertIndexScans("UserRepository.existsByEmail", () -> userRepository.existsByEmail(email));
+        assertIndexScans("UserRepository.findConflictingUsernames",
+            () -> userRepository.findConflictingUsernames(username, email));
+    }
+
+    /**
+     * REPO-INDEX-TC-005: 归档删除明细使用索引
+     * 测试目的: 验证 GameArchiveService 按对局删除明细的语句均命中索引，按归档顺序执行以满足外键约束
+     */
+    @Test
+    void archiveDeletes_useIndexScans() {
+        List<UUID> gameIds = List.of(gameId);
+
+        assertIndexScans("VoteRepository.deleteByGameIds", () -> voteRepository.deleteByGameIds(gameIds));
+        assertIndexScans("QuestResultRepository.deleteByGameIds", () -> questResultRepository.deleteByGameIds(gameIds));
+        assertIndexScans("ProposalRepository.deleteMembersByGameIds",
+            () -> proposalRepository.deleteMembersByGameIds(gameIds));
+        assertIndexScans("ProposalRepository.deleteByGameIds", () -> proposalRepository.deleteByGameIds(gameIds));
+        assertIndexScans("QuestRepository.deleteProposedMembersByGameIds",
+            () -> questRepository.deleteProposedMembersByGameIds(gameIds));
+        assertIndexScans("QuestRepository.deleteByGameIds", () -> questRepository.deleteByGameIds(gameIds));
+        assertIndexScans("GamePlayerRepository.deleteByGameIds", () -> gamePlayerRepository.deleteByGameIds(gameIds));
+    }
+
+    /**
+     * 调用查询方法，对期间执行的每条语句绑定原参数执行 EXPLAIN
+     */
+    private <T> T assertIndexScans(String query, Supplier<T> call) {
+        StatementCapture.Recorded<T> recorded = StatementCapture.record(call);
+        assertFalse(recorded.statements().isEmpty(), query + " 没有执行SQL");
+        for (StatementCapture.CapturedStatement statement : recorded.statements()) {
+            String plan = explain(statement);
+            assertFalse(plan.contains("Seq Scan"), query + " 未使用索引:\n" + statement.sql() + "\n" + plan);
+        }
+        return recorded.result();
+    }
+
+    private String explain(StatementCapture.CapturedStatement statement) {
+        return jdbcTemplate.execute("EXPLAIN " + statement.sql(), (PreparedStatementCallback<String>) ps -> {
+            statement.bind(ps);
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        });
+    }
+
+    private UUID seededId(String key) {
+        return jdbcTemplate.queryForObject("SELECT md5(?)::uuid", UUID.class, salt + key);
+    }
+
+    /**
+     * 用 generate_series 在数据库端生成种子数据，主键为 md5(salt || 键)，例如 u{房间}_{座位}、q{房间}_{轮次}
+     */
+    private void seed() {
+        String[] statements = {
+            "INSERT INTO users (id, username, email, password_hash, level, experience, created_at, updated_at) " +
+                "SELECT md5(:s || 'u' || r || '_' || p)::uuid, 'idx_' || :s || '_' || r || '_' || p, " +
+                "'idx_' || :s || '_' || r || '_' || p || '@example.com', 'hash', 1, 0, now(), now() " +
+                "FROM generate_series(0, :rooms - 1) r, generate_series(1, 5) p",
+            "INSERT INTO rooms (id, creator_id, room_code, max_players, status, created_at) " +
+                "SELECT md5(:s || 'r' || r)::uuid, md5(:s || 'u' || r || '_1')::uuid, 'I' || left(:s, 4) || r, 10, " +
+                "CASE r % :every WHEN 0 THEN 'playing' WHEN 1 THEN 'ended' ELSE 'closed' END, now() - interval '2 hours' " +
+                "FROM generate_series(0, :rooms - 1) r",
+            "INSERT INTO room_players (id, room_id, user_id, is_host, is_active, seat_number, joined_at, updated_at) " +
+                "SELECT md5(:s || 'rp' || r || '_' || p)::uuid, md5(:s || 'r' || r)::uuid, " +
+                "md5(:s || 'u' || r || '_' || p)::uuid, p = 1, r % :every < 2, p, now() - interval '2 hours', " +
+                "now() - interval '1 hour' FROM generate_series(0, :rooms - 1) r, generate_series(1, 5) p",
+            "INSERT INTO games (id, room_id, status, phase, current_quest_id, leader_seat, current_round, started_at, " +
+                "ended_at, last_activity_at, archived_at, created_at) " +
+                "SELECT md5(:s || 'g' || r)::uuid, md5(:s || 'r' || r)::uuid, " +
+                "CASE WHEN r % :every = 0 THEN 'playing' ELSE 'ended' END, " +
+                "CASE WHEN r % :every = 0 THEN 'proposing' ELSE 'ended' END, " +
+                "CASE WHEN r % :every = 0 THEN md5(:s || 'q' || r || '_1')::uuid END, 1, 1, now() - interval '2 hours', " +
+                "CASE WHEN r % :every = 0 THEN NULL ELSE now() - interval '1 hour' END, now() - interval '1 hour', " +
+                "CASE WHEN r % :every < 2 THEN NULL ELSE now() END, now() - interval '2 hours' " +
+                "FROM generate_series(0, :rooms - 1) r",
+            "INSERT INTO game_players (id, game_id, user_id, role, alignment, is_host, seat_number, is_active, created_at) " +
+                "SELECT md5(:s || 'gp' || r || '_' || p)::uuid, md5(:s || 'g' || r)::uuid, " +
+                "md5(:s || 'u' || r || '_' || p)::uuid, 'loyal_servant', 'good', p = 1, p, true, now() " +
+                "FROM generate_series(0, :rooms - 1) r, generate_series(1, 5) p",
+            "INSERT INTO quests (id, game_id, round_number, required_players, required_fails, status, created_at, " +
+                "leader_id, team_mask) " +
+                "SELECT md5(:s || 'q' || r || '_' || q)::uuid, md5(:s || 'g' || r)::uuid, q, 2, 1, 'completed', now(), " +
+                "md5(:s || 'u' || r || '_' || q)::uuid, 3 " +
+                "FROM generate_series(0, :rooms - 1) r, generate_series(1, 5) q",
+            "INSERT INTO quest_proposed_members (quest_id, user_id) " +
+                "SELECT md5(:s || 'q' || r || '_' || q)::uuid, md5(:s || 'u' || r || '_' || p)::uuid " +
+                "FROM generate_series(0, :rooms - 1) r, generate_series(1, 5) q, generate_series(1, 2) p",
+            "INSERT INTO proposals (id, quest_id, leader_id, created_at, attempt, leader_seat, team_mask) " +
+                "SELECT md5(:s || 'p' || r || '_' || q || '_' || k)::uuid, md5(:s || 'q' || r || '_' || q)::uuid, " +
+                "md5(:s || 'u' || r || '_' || q)::uuid, now(), k, q, 3 " +
+                "FROM generate_series(0, :rooms - 1) r, generate_series(1, 5) q, generate_series(1, 2) k",
+            "INSERT INTO proposal_members (proposal_id, user_id) " +
+                "SELECT md5(:s || 'p' || r || '_' || q || '_' || k)::uuid, md5(:s || 'u' || r || '_' || p)::uuid " +
+                "FROM generate_series(0, :rooms - 1) r, generate_series(1, 5) q, generate_series(1, 2) k, " +
+                "generate_series(1, 2) p",
+            "INSERT INTO votes (id, quest_id, proposal_id, player_id, vote_type, voted_at) " +
+                "SELECT md5(:s || 'v' || r || '_' || q || '_' || k || '_' || p)::uuid, " +
+                "md5(:s || 'q' || r || '_' || q)::uuid, md5(:s || 'p' || r || '_' || q || '_' || k)::uuid, " +
+                "md5(:s || 'u' || r || '_' || p)::uuid, 'approve', now() " +
+                "FROM generate_series(0, :rooms - 1) r, generate_series(1, 5) q, generate_series(1, 2) k, " +
+                "generate_series(1, 5) p",
+            "INSERT INTO quest_results (id, quest_id, player_id, success, executed_at) " +
+                "SELECT md5(:s || 'qr' || r || '_' || q || '_' || p)::uuid, md5(:s || 'q' || r || '_' || q)::uuid, " +
+                "md5(:s || 'u' || r || '_' || p)::uuid, true, now() " +
+                "FROM generate_series(0, :rooms - 1) r, generate_series(1, 5) q, generate_series(1, 2) p"
+        };
+        for (String statement : statements) {
+            jdbcTemplate.update(statement
+                .replace(":s", "'" + salt + "'")
+                .replace(":rooms", String.valueOf(ROOMS))
+                .replace(":every", String.valueOf(ACTIVE_EVERY)));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package cn.xiaolin.avalon.repository;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.lang.NonNull;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * 记录 Hibernate 实际发送给数据库的SQL语句和绑定参数
+ * 测试类通过 @Import(StatementCapture.class) 引入，数据源被包装：{@link #record} 执行期间，
+ * 当前线程上执行的预编译语句连同绑定参数被记录下来，之后可以在另一条语句上原样绑定参数（例如加上 EXPLAIN 查看执行计划）
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class StatementCapture {
+
+    private static final ThreadLocal<List<CapturedStatement>> RECORDING = new ThreadLocal<>();
+
+    /**
+     * 一条执行过的语句
+     * @param sql Hibernate 生成的SQL
+     * @param bindings 参数序号 -> 绑定该参数的 setXxx 调用
+     */
+    public record CapturedStatement(String sql, Map<Integer, Binding> bindings) {
+        /**
+         * 在另一条预编译语句上按相同的序号和类型绑定参数
+         */
+        public void bind(PreparedStatement statement) throws SQLException {
+            for (Binding binding : bindings.values()) {
+                invoke(binding.setter(), statement, binding.args());
+            }
+        }
+    }
+
+    public record Binding(Method setter, Object[] args) {
+    }
+
+    @Bean
+    static BeanPostProcessor statementCaptureDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof CapturingDataSource)
+                    ? new CapturingDataSource(dataSource) : bean;
+            }
+        };
+    }
+
+    /**
+     * 执行操作并返回操作结果和期间当前线程执行的语句
+     */
+    public static <T> Recorded<T> record(Supplier<T> action) {
+        List<CapturedStatement> statements = new ArrayList<>();
+        RECORDING.set(statements);
+        try {
+            return new Recorded<>(action.get(), statements);
+        } finally {
+            RECORDING.remove();
+        }
+    }
+
+    public record Recorded<T>(T result, List<CapturedStatement> statements) {
+    }
+
+    private static final class CapturingDataSource extends DelegatingDataSource {
+        CapturingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        @NonNull
+        public Connection getConnection() throws SQLException {
+            return capturing(super.getConnection());
+        }
+
+        @Override
+        @NonNull
+        public Connection getConnection(@NonNull String username, @NonNull String password) throws SQLException {
+            return capturing(super.getConnection(username, password));
+        }
+    }
+
+    private static Connection capturing(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(StatementCapture.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                Object result = invoke(method, connection, args);
+                if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement statement) {
+                    return capturing(statement, (String) args[0]);
+                }
+                return result;
+            });
+    }
+
+    private static PreparedStatement capturing(PreparedStatement statement, String sql) {
+        Map<Integer, Binding> bindings = new TreeMap<>();
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCapture.class.getClassLoader(),
+            new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    bindings.put(index, new Binding(method, args.clone()));
+                } else if (name.equals("clearParameters")) {
+                    bindings.clear();
+                } else if (name.startsWith("execute") && (args == null || args.length == 0)) {
+                    List<CapturedStatement> recording = RECORDING.get();
+                    if (recording != null) {
+                        recording.add(new CapturedStatement(sql, new TreeMap<>(bindings)));
+                    }
+                }
+                return invoke(method, statement, args);
+            });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws SQLException {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package cn.xiaolin.avalon.repository;
+
+import cn.xiaolin.avalon.utils.UuidV7Generator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 主键插入基准
+ * 在结构与 votes 相同的两张表中分别写入随机UUID（第4版）和时间有序UUID（第7版）主键，比较插入耗时和主键索引大小。
+ * 有序主键总是追加在索引最右侧，分裂出的页面几乎是满的；随机主键分散写入所有页面，索引更大、插入时访问的页面更多。
+ * 表在测试事务中创建，结束后随事务回滚
+ */
+@SpringBootTest
+@Transactional
+class UuidInsertBenchmarkTest {
+
+    private static final int ROWS = 200_000;
+    private static final int BATCH_SIZE = 1_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * REPO-UUID-TC-001: 时间有序主键
+     * 测试目的: 验证生成的主键为第7版且严格递增
+     */
+    @Test
+    void uuidV7_isVersionSevenAndMonotonic() {
+        UUID previous = UuidV7Generator.next();
+        for (int i = 0; i < 100_000; i++) {
+            UUID current = UuidV7Generator.next();
+            assertEquals(7, current.version());
+            assertEquals(2, current.variant());
+            assertTrue(Long.compareUnsigned(current.getMostSignificantBits(), previous.getMostSignificantBits()) > 0,
+                previous + " 之后生成了 " + current);
+            previous = current;
+        }
+        long drift = Math.abs(UuidV7Generator.timestampOf(previous) - System.currentTimeMillis());
+        assertTrue(drift < 1_000, "主键时间戳偏离当前时间 " + drift + "ms");
+
+        UUID fromDatabase = jdbcTemplate.queryForObject("SELECT uuid_v7()", UUID.class);
+        assertEquals(7, fromDatabase.version());
+    }
+
+    /**
+     * REPO-UUID-TC-002: 主键插入基准
+     * 测试目的: 对比随机主键和时间有序主键的插入耗时和主键索引大小，有序主键的索引应更小
+     */
+    @Test
+    void timeOrderedIds_produceSmallerPrimaryKeyIndex() {
+        long randomNanos = insertRows("uuid_bench_random", UUID::randomUUID);
+        long orderedNanos = insertRows("uuid_bench_ordered", UuidV7Generator::next);
+
+        long randomIndexBytes = indexSize("uuid_bench_random_pkey");
+        long orderedIndexBytes = indexSize("uuid_bench_ordered_pkey");
+
+        System.out.printf("UUID主键插入基准（%d 行）%n", ROWS);
+        System.out.printf("  随机（v4）: %8.0f 行/秒, 主键索引 %6d KB%n",
+            ROWS / (randomNanos / 1e9), randomIndexBytes / 1024);
+        System.out.printf("  有序（v7）: %8.0f 行/秒, 主键索引 %6d KB%n",
+            ROWS / (orderedNanos / 1e9), orderedIndexBytes / 1024);
+
+        assertTrue(orderedIndexBytes < randomIndexBytes,
+            "有序主键索引 " + orderedIndexBytes + " 字节，随机主键索引 " + randomIndexBytes + " 字节");
+    }
+
+    /**
+     * 建表并分批写入，返回写入耗时（纳秒）
+     */
+    private long insertRows(String table, Supplier<UUID> ids) {
+        jdbcTemplate.execute("CREATE TABLE " + table + " (" +
+            "id UUID PRIMARY KEY, quest_id UUID NOT NULL, player_id UUID NOT NULL, " +
+            "vote_type VARCHAR(10) NOT NULL, voted_at TIMESTAMP(6) NOT NULL)");
+
+        UUID questId = UUID.randomUUID();
+        UUID playerId = UUID.randomUUID();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String sql = "INSERT INTO " + table + " (id, quest_id, player_id, vote_type, voted_at) VALUES (?, ?, ?, ?, ?)";
+
+        long start = System.nanoTime();
+        for (int inserted = 0; inserted < ROWS; inserted += BATCH_SIZE) {
+            List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(new Object[]{ids.get(), questId, playerId, "approve", now});
+            }
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long indexSize(String index) {
+        return jdbcTemplate.queryForObject("SELECT pg_relation_size('" + index + "')", Long.class);
+    }
+}
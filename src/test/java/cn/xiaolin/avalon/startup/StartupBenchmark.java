@@ -0,0 +1,120 @@
+package cn.xiaolin.avalon.startup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 冷启动基准
+ * 以生产使用的 startup 配置启动应用，分别不带和带上训练运行生成的CDS归档，两次启动只有归档这一处不同。
+ * 计时从创建进程到就绪探针 /actuator/health/readiness 返回 UP，包含启动预热、Flyway 和 Hibernate 校验，
+ * 因此需要 application.yml（或环境变量）中配置的数据库和Redis可以连接。
+ * 每种配置运行多次取中位数并输出对比，只报告结果，不以耗时决定退出码。
+ * 由 mvn -Pstartup package 在打包和训练后运行
+ * 用法: StartupBenchmark <解压后的应用jar> <CDS归档> [每种配置的运行次数] [HTTP端口]
+ */
+public final class StartupBenchmark {
+
+    private static final Duration READY_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(20);
+
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofMillis(200))
+        .build();
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("用法: StartupBenchmark <应用jar> <CDS归档> [运行次数] [HTTP端口]");
+            System.exit(2);
+        }
+        String jar = Path.of(args[0]).toAbsolutePath().toString();
+        String archive = Path.of(args[1]).toAbsolutePath().toString();
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 18080;
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        List<String> application = List.of("-jar", jar,
+            "--spring.profiles.active=startup",
+            "--server.port=" + port,
+            // 基准进程被直接结束，不需要保存排空快照
+            "--drain.on-shutdown=false");
+
+        List<String> withoutArchive = new ArrayList<>(List.of(java, "-Xshare:auto"));
+        withoutArchive.addAll(application);
+        List<String> withArchive = new ArrayList<>(List.of(java,
+            "-XX:SharedArchiveFile=" + archive, "-Xlog:cds=off", "-Xlog:cds+dynamic=off"));
+        withArchive.addAll(application);
+
+        URI readiness = URI.create("http://localhost:" + port + "/actuator/health/readiness");
+        long baseline = medianMillis(runs, withoutArchive, readiness);
+        long optimized = medianMillis(runs, withArchive, readiness);
+
+        System.out.println("冷启动基准（startup 配置，启动到就绪探针返回 UP，" + runs + " 次取中位数）");
+        System.out.printf("  不带CDS归档:  %6d ms%n", baseline);
+        System.out.printf("  带CDS归档:    %6d ms（%.0f%%）%n", optimized, 100.0 * optimized / baseline);
+        if (optimized >= baseline) {
+            System.out.println("  CDS归档没有缩短启动时间，请检查归档是否与当前JDK和jar匹配，或增加运行次数减少波动");
+        }
+    }
+
+    private static long medianMillis(int runs, List<String> command, URI readiness)
+            throws IOException, InterruptedException {
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            millis[i] = launchMillis(command, readiness);
+        }
+        Arrays.sort(millis);
+        return millis[runs / 2];
+    }
+
+    /**
+     * 启动一次应用，返回从创建进程到就绪的耗时，随后结束进程并等待其退出，下一次启动不会与之争用端口
+     */
+    private static long launchMillis(List<String> command, URI readiness) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        try {
+            long deadline = start + READY_TIMEOUT.toNanos();
+            while (!isReady(readiness)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("应用启动失败，退出码 " + process.exitValue() + ": " + String.join(" ", command));
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("应用在 " + READY_TIMEOUT.toSeconds() + " 秒内未就绪: " + String.join(" ", command));
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+            return (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static boolean isReady(URI readiness) throws InterruptedException {
+        try {
+            HttpResponse<Void> response = HTTP.send(HttpRequest.newBuilder(readiness).timeout(Duration.ofSeconds(1)).GET().build(),
+                HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200;
+        } catch (IOException e) {
+            // Web服务尚未启动
+            return false;
+        }
+    }
+}